@@ -12,6 +12,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -56,7 +57,7 @@ import org.openhab.binding.digitalstrom.internal.config.ConnectionConfig;
 import org.openhab.binding.digitalstrom.internal.config.ConsumptionConfig;
 import org.openhab.binding.digitalstrom.internal.config.ContextConfig;
 import org.openhab.binding.digitalstrom.internal.config.DigitalSTROMBindingConfig;
-import org.openhab.core.binding.AbstractActiveBinding;
+import org.openhab.core.binding.AbstractItemPollingBinding;
 import org.openhab.core.binding.BindingProvider;
 import org.openhab.core.events.EventPublisher;
 import org.openhab.core.items.Item;
@@ -86,7 +87,7 @@ import org.slf4j.LoggerFactory;
  * @since 1.3.0
  */
 public class DigitalSTROMBinding extends
-		AbstractActiveBinding<DigitalSTROMBindingProvider> implements
+		AbstractItemPollingBinding<DigitalSTROMBindingProvider> implements
 		ManagedService, DeviceListener {
 
 	
@@ -94,11 +95,17 @@ public class DigitalSTROMBinding extends
 			.getLogger(DigitalSTROMBinding.class);
 
 	/**
-	 * the interval to find new refresh candidates (defaults to 1000
-	 * milliseconds)
+	 * the interval to check the session with the digitalSTROM Server (defaults
+	 * to 1000 milliseconds)
 	 */
 	private int granularity = 1000;
 
+	/**
+	 * the key of the session check in the polling scheduler, which cannot
+	 * clash with an item name
+	 */
+	private static final String SESSION_CHECK = "digitalSTROM session";
+
 	/** host name with port of digitalSTROM Server */
 	private String uri;
 
@@ -142,9 +149,6 @@ public class DigitalSTROMBinding extends
 	private Map<Integer, Map<Short, List<String>>> digitalSTROMZoneGroupMap = Collections
 			.synchronizedMap(new HashMap<Integer, Map<Short, List<String>>>());
 
-	// itemName - time stamp
-	private Map<String, Long> lastUpdateMap = new HashMap<String, Long>();
-
 	// ####### LISTs #########
 
 	private List<String> echoBox = Collections
@@ -160,14 +164,13 @@ public class DigitalSTROMBinding extends
 	private SensorJobExecutor sensorJobExecutor = null;
 
 	public DigitalSTROMBinding() {
-	}
-
-	@Override
-	public void activate() {
+		super("digitalSTROM", 1);
 	}
 
 	@Override
 	public void deactivate() {
+		super.deactivate();
+
 		for (DigitalSTROMBindingProvider provider : providers) {
 			provider.removeBindingChangeListener(this);
 		}
@@ -202,7 +205,6 @@ public class DigitalSTROMBinding extends
 		dsidToDeviceMap.clear();
 		rawDsidToDeviceMap.clear();
 		digitalSTROMZoneGroupMap.clear();
-		lastUpdateMap.clear();
 		echoBox.clear();
 	}
 
@@ -220,24 +222,55 @@ public class DigitalSTROMBinding extends
 	 * @{inheritDoc
 	 */
 	@Override
-	protected long getRefreshInterval() {
-		return granularity;
+	protected void scheduleItems() {
+		// the session is checked by the polling scheduler as well, one request at a time with the items
+		Set<String> itemNames = new HashSet<String>();
+		pollingScheduler.schedule(SESSION_CHECK, null, granularity);
+		itemNames.add(SESSION_CHECK);
+		for (DigitalSTROMBindingProvider provider : providers) {
+			for (DigitalSTROMBindingConfig itemConf : provider
+					.getAllCircuitConsumptionItems()) {
+				pollingScheduler.schedule(itemConf.itemName, null, itemConf.timeinterval);
+				itemNames.add(itemConf.itemName);
+			}
+			for (DigitalSTROMBindingConfig itemConf : provider
+					.getAllDeviceConsumptionItems()) {
+				pollingScheduler.schedule(itemConf.itemName, null, itemConf.timeinterval);
+				itemNames.add(itemConf.itemName);
+			}
+		}
+		pollingScheduler.retainAll(itemNames);
 	}
 
 	/**
-	 * @{inheritDoc
+	 * @{inheritDoc}
 	 */
-	@Override
-	protected String getName() {
-		return "digitalstrom Refresh Service";
-	}
+	public boolean poll(String itemName) {
+		if (SESSION_CHECK.equals(itemName)) {
+			checkSession();
+			return true;
+		}
 
+		DigitalSTROMBindingConfig itemConf = null;
+		for (DigitalSTROMBindingProvider provider : providers) {
+			itemConf = provider.getItemConfig(itemName);
+			if (itemConf != null) {
+				break;
+			}
+		}
 
-	/**
-	 * @{inheritDoc
-	 */
-	@Override
-	protected void execute() {
+		if (itemConf != null && itemConf.isValidMeterItem()) {
+			return serverIsFound() && refreshCircuitConsumption(itemConf);
+		} else if (itemConf != null && itemConf.isValidDeviceMeterItem()) {
+			return refreshDeviceConsumption(itemConf);
+		} else {
+			// the binding has been removed in the meantime
+			pollingScheduler.unschedule(itemName);
+			return true;
+		}
+	}
+
+	private void checkSession() {
 		if (!serverIsFound()) {
 			login();
 		} else {
@@ -246,118 +279,87 @@ public class DigitalSTROMBinding extends
 				login();
 			}
 		}
+	}
 
-		for (DigitalSTROMBindingProvider provider : providers) {
-			for (DigitalSTROMBindingConfig itemConf : provider
-					.getAllCircuitConsumptionItems()) {
-
-				String itemName = itemConf.itemName;
-				int refreshInterval = itemConf.timeinterval;
-
-				Long lastUpdateTimeStamp = lastUpdateMap.get(itemName);
-				if (lastUpdateTimeStamp == null) {
-					lastUpdateTimeStamp = 0L;
+	private boolean refreshCircuitConsumption(DigitalSTROMBindingConfig itemConf) {
+		String itemName = itemConf.itemName;
+		logger.debug("item '{}' is about to be refreshed now",
+				itemName);
+
+		int consumptionValue = -1;
+
+		if (itemConf.consumption == null
+				|| itemConf.consumption
+						.equals(ConsumptionConfig.OUTPUT_CURRENT))
+			itemConf.consumption = ConsumptionConfig.ACTIVE_POWER;
+
+		switch (itemConf.consumption) {
+
+		case ACTIVE_POWER:
+			List<CachedMeteringValue> consumptionList = digitalSTROM
+					.getLatest(getSessionToken(),
+							MeteringTypeEnum.consumption,
+							".meters("
+									+ itemConf.dsmid.getValue()
+											.toLowerCase() + ")",
+							null);
+			if (consumptionList != null) {
+				consumptionValue = 0;
+				for (CachedMeteringValue value : consumptionList) {
+					consumptionValue += value.getValue();
 				}
-
-				long age = System.currentTimeMillis() - lastUpdateTimeStamp;
-				boolean needsUpdate = age >= refreshInterval;
-
-				if (needsUpdate) {
-
-					logger.debug("item '{}' is about to be refreshed now",
-							itemName);
-
-					int consumptionValue = -1;
-
-					if (itemConf.consumption == null
-							|| itemConf.consumption
-									.equals(ConsumptionConfig.OUTPUT_CURRENT))
-						itemConf.consumption = ConsumptionConfig.ACTIVE_POWER;
-
-					switch (itemConf.consumption) {
-
-					case ACTIVE_POWER:
-						List<CachedMeteringValue> consumptionList = digitalSTROM
-								.getLatest(getSessionToken(),
-										MeteringTypeEnum.consumption,
-										".meters("
-												+ itemConf.dsmid.getValue()
-														.toLowerCase() + ")",
-										null);
-						if (consumptionList != null) {
-							consumptionValue = 0;
-							for (CachedMeteringValue value : consumptionList) {
-								consumptionValue += value.getValue();
-							}
-						}
-						break;
-					case ELECTRIC_METER:
-						List<CachedMeteringValue> energyList = digitalSTROM
-								.getLatest(getSessionToken(),
-										MeteringTypeEnum.energy, ".meters("
-												+ itemConf.dsmid.getValue()
-														.toLowerCase() + ")",
-										MeteringUnitsEnum.Wh);
-						if (energyList != null) {
-							consumptionValue = 0;
-							for (CachedMeteringValue value : energyList) {
-								consumptionValue += value.getValue();
-							}
-						}
-						break;
-					default:
-						break;
-					}
-
-					org.openhab.core.types.State state = UnDefType.NULL;
-
-					if (consumptionValue != -1) {
-						state = new DecimalType(consumptionValue);
-					}
-
-					if (state != null) {
-						eventPublisher.postUpdate(itemName, state);
-					}
-					lastUpdateMap.put(itemName, System.currentTimeMillis());
+			}
+			break;
+		case ELECTRIC_METER:
+			List<CachedMeteringValue> energyList = digitalSTROM
+					.getLatest(getSessionToken(),
+							MeteringTypeEnum.energy, ".meters("
+									+ itemConf.dsmid.getValue()
+											.toLowerCase() + ")",
+							MeteringUnitsEnum.Wh);
+			if (energyList != null) {
+				consumptionValue = 0;
+				for (CachedMeteringValue value : energyList) {
+					consumptionValue += value.getValue();
 				}
 			}
+			break;
+		default:
+			break;
+		}
 
-			for (DigitalSTROMBindingConfig itemConf : provider
-					.getAllDeviceConsumptionItems()) {
-
-				String itemName = itemConf.itemName;
-				int refreshInterval = itemConf.timeinterval;
+		org.openhab.core.types.State state = UnDefType.NULL;
 
-				Long lastUpdateTimeStamp = lastUpdateMap.get(itemName);
-				if (lastUpdateTimeStamp == null) {
-					lastUpdateTimeStamp = 0L;
-				}
+		if (consumptionValue != -1) {
+			state = new DecimalType(consumptionValue);
+		}
 
-				long age = System.currentTimeMillis() - lastUpdateTimeStamp;
-				boolean needsUpdate = age >= refreshInterval;
+		if (state != null) {
+			eventPublisher.postUpdate(itemName, state);
+		}
+		return consumptionValue != -1;
+	}
 
-				if (needsUpdate) {
-					logger.debug("item '{}' is about to be refreshed now",
-							itemName);
+	private boolean refreshDeviceConsumption(DigitalSTROMBindingConfig itemConf) {
+		logger.debug("item '{}' is about to be refreshed now",
+				itemConf.itemName);
 
-					Device device = getDsidToDeviceMap().get(
-							itemConf.dsid.getValue());
-					if (device != null) {
-						SensorIndexEnum sensorIndex = null;
-						try {
-							sensorIndex = SensorIndexEnum
-									.valueOf(itemConf.consumption.name());
-						} catch (Exception e) {
-							sensorIndex = SensorIndexEnum.ACTIVE_POWER;
-						}
-						addLowPriorityJob(new DeviceConsumptionSensorJob(
-								device, sensorIndex));
-						lastUpdateMap.put(itemName, System.currentTimeMillis());
-					}
-				}
-			}
+		Device device = getDsidToDeviceMap().get(
+				itemConf.dsid.getValue());
+		if (device == null) {
+			return false;
+		}
 
+		SensorIndexEnum sensorIndex = null;
+		try {
+			sensorIndex = SensorIndexEnum
+					.valueOf(itemConf.consumption.name());
+		} catch (Exception e) {
+			sensorIndex = SensorIndexEnum.ACTIVE_POWER;
 		}
+		addLowPriorityJob(new DeviceConsumptionSensorJob(
+				device, sensorIndex));
+		return true;
 	}
 
 	/**
@@ -2035,6 +2037,7 @@ public class DigitalSTROMBinding extends
 
 	@Override
 	public void bindingChanged(BindingProvider provider, String itemName) {
+		super.bindingChanged(provider, itemName);
 		if(provider instanceof DigitalSTROMBindingProvider){
 			//remove device associated with the item
 			Device device = deviceMap.get(itemName);
@@ -11,8 +11,10 @@ package org.openhab.binding.epsonprojector.internal;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,8 +29,7 @@ import org.openhab.binding.epsonprojector.internal.EpsonProjectorDevice.PowerSta
 import org.openhab.binding.epsonprojector.internal.EpsonProjectorDevice.Source;
 import org.openhab.binding.epsonprojector.internal.EpsonProjectorDevice.Switch;
 
-import org.apache.commons.lang.StringUtils;
-import org.openhab.core.binding.AbstractActiveBinding;
+import org.openhab.core.binding.AbstractItemPollingBinding;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.items.SwitchItem;
 import org.openhab.core.library.types.DecimalType;
@@ -49,20 +50,15 @@ import org.slf4j.LoggerFactory;
  * @since 1.3.0
  */
 public class EpsonProjectorBinding extends
-		AbstractActiveBinding<EpsonProjectorBindingProvider> implements ManagedService {
+		AbstractItemPollingBinding<EpsonProjectorBindingProvider> implements ManagedService {
 
 	private static final Logger logger = 
 		LoggerFactory.getLogger(EpsonProjectorBinding.class);
 
 	private final static int DEFAULT_PORT = 60128;
 
-	/**
-	 * the interval to find new refresh candidates (defaults to 1000
-	 * milliseconds)
-	 */
-	private int granularity = 1000;
-
-	private Map<String, Long> lastUpdateMap = new HashMap<String, Long>();
+	/** the maximum number of projectors which are queried at the same time */
+	private static final int MAX_CONCURRENT_POLLS = 2;
 
 	protected Map<String, DeviceConfig> deviceConfigCache = null;
 
@@ -73,13 +69,20 @@ public class EpsonProjectorBinding extends
 	private static final Pattern EXTRACT_CONFIG_PATTERN = 
 		Pattern.compile("^(.*?)\\.(host|port|serialPort)$");
 
+	public EpsonProjectorBinding() {
+		super("Epson projector", MAX_CONCURRENT_POLLS);
+	}
 	
+	@Override
 	public void activate() {
 		logger.debug("Activate");
+		super.activate();
 	}
 
+	@Override
 	public void deactivate() {
 		logger.debug("Deactivate");
+		super.deactivate();
 		closeConnection();
 	}
 
@@ -112,68 +115,74 @@ public class EpsonProjectorBinding extends
 	 * @{inheritDoc
 	 */
 	@Override
-	protected long getRefreshInterval() {
-		return granularity;
-	}
-
-	/**
-	 * @{inheritDoc
-	 */
-	@Override
-	protected String getName() {
-		return "Epson projector Refresh Service";
+	protected void scheduleItems() {
+		Set<String> itemNames = new HashSet<String>();
+		for (EpsonProjectorBindingProvider provider : providers) {
+			for (String itemName : provider.getInBindingItemNames()) {
+				pollingScheduler.schedule(itemName, provider.getDeviceId(itemName), provider.getRefreshInterval(itemName));
+				itemNames.add(itemName);
+			}
+		}
+		pollingScheduler.retainAll(itemNames);
 	}
 
 	/**
-	 * @{inheritDoc
+	 * @{inheritDoc}
 	 */
-	@Override
-	public void execute() {
-		for (EpsonProjectorBindingProvider provider : providers) {
-			for (String itemName : provider.getInBindingItemNames()) {
-
-				int refreshInterval = provider.getRefreshInterval(itemName);
-
-				Long lastUpdateTimeStamp = lastUpdateMap.get(itemName);
-				if (lastUpdateTimeStamp == null) {
-					lastUpdateTimeStamp = 0L;
-				}
+	public boolean poll(String itemName) {
+		EpsonProjectorBindingProvider provider = findInBindingProvider(itemName);
+		if (provider == null) {
+			// the binding has been removed in the meantime
+			pollingScheduler.unschedule(itemName);
+			return true;
+		}
+		if (deviceConfigCache == null) {
+			return false;
+		}
 
-				long age = System.currentTimeMillis() - lastUpdateTimeStamp;
-				boolean needsUpdate = age >= refreshInterval;
-
-				if (needsUpdate) {
-					boolean refreshOnlyWhenPowerOn = provider.refreshOnlyWhenPowerOn(itemName);
-					String deviceId = provider.getDeviceId(itemName);
-					
-					if (refreshOnlyWhenPowerOn) {
-						OnOffType state = (OnOffType) queryDataFromDevice(
-							deviceId, EpsonProjectorCommandType.POWER, SwitchItem.class);
-						
-						 if (state != OnOffType.ON) {
-							logger.debug("projector power is OFF, skip refresh for item '{}'", itemName);
-							lastUpdateMap.put(itemName, System.currentTimeMillis());
-							return;
-						 }
-					}
-					
-					logger.debug("item '{}' is about to be refreshed now", itemName);
+		boolean refreshOnlyWhenPowerOn = provider.refreshOnlyWhenPowerOn(itemName);
+		String deviceId = provider.getDeviceId(itemName);
+		
+		if (refreshOnlyWhenPowerOn) {
+			OnOffType state = (OnOffType) queryDataFromDevice(
+				deviceId, EpsonProjectorCommandType.POWER, SwitchItem.class);
+			
+			 if (state != OnOffType.ON) {
+				logger.debug("projector power is OFF, skip refresh for item '{}'", itemName);
+				return true;
+			 }
+		}
+		
+		logger.debug("item '{}' is about to be refreshed now", itemName);
 
-					EpsonProjectorCommandType commmandType = provider.getCommandType(itemName);
-					Class<? extends Item> itemType = provider.getItemType(itemName);
+		EpsonProjectorCommandType commmandType = provider.getCommandType(itemName);
+		Class<? extends Item> itemType = provider.getItemType(itemName);
 
-					State state = queryDataFromDevice(deviceId, commmandType, itemType);
+		State state = queryDataFromDevice(deviceId, commmandType, itemType);
 
-					if (state != null) {
-						eventPublisher.postUpdate(itemName, state);
-					} else {
-						logger.error("No response received from command '{}'", commmandType);
-					}
+		if (state != null) {
+			eventPublisher.postUpdate(itemName, state);
+			return true;
+		} else {
+			logger.error("No response received from command '{}'", commmandType);
+			return false;
+		}
+	}
 
-					lastUpdateMap.put(itemName, System.currentTimeMillis());
-				}
+	/**
+	 * Finds the {@link EpsonProjectorBindingProvider} which contains the
+	 * in-binding of <code>itemName</code>.
+	 * 
+	 * @param itemName the item to find the provider for
+	 * @return the provider or <code>null</code> if no provider could be found
+	 */
+	private EpsonProjectorBindingProvider findInBindingProvider(String itemName) {
+		for (EpsonProjectorBindingProvider provider : providers) {
+			if (provider.providesBindingFor(itemName) && provider.getInBindingItemNames().contains(itemName)) {
+				return provider;
 			}
 		}
+		return null;
 	}
 
 	private State queryDataFromDevice(String deviceId,
@@ -548,11 +557,6 @@ public class EpsonProjectorBinding extends
 				deviceConfigCache = new HashMap<String, DeviceConfig>();
 			}
 			
-			String granularityString = (String) config.get("granularity");
-			if (StringUtils.isNotBlank(granularityString)) {
-				granularity = Integer.parseInt(granularityString);
-			}
-
 			Enumeration<String> keys = config.keys();
 			while (keys.hasMoreElements()) {
 				String key = (String) keys.nextElement();
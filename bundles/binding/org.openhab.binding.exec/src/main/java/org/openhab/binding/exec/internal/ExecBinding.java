@@ -13,8 +13,8 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Dictionary;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,7 +27,7 @@ import org.apache.commons.exec.Executor;
 import org.apache.commons.exec.PumpStreamHandler;
 import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.exec.ExecBindingProvider;
-import org.openhab.core.binding.AbstractActiveBinding;
+import org.openhab.core.binding.AbstractItemPollingBinding;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.items.ContactItem;
 import org.openhab.core.library.items.NumberItem;
@@ -63,7 +63,7 @@ import org.slf4j.LoggerFactory;
  * @author Pauli Anttila  
  * @since 0.6.0
  */
-public class ExecBinding extends AbstractActiveBinding<ExecBindingProvider> implements ManagedService {
+public class ExecBinding extends AbstractItemPollingBinding<ExecBindingProvider> implements ManagedService {
 
 	private static final Logger logger = LoggerFactory.getLogger(ExecBinding.class);
 	
@@ -74,22 +74,14 @@ public class ExecBinding extends AbstractActiveBinding<ExecBindingProvider> impl
 	/** the timeout for executing command (defaults to 60000 milliseconds) */
 	private int timeout = 60000;
 
-	/** the interval to find new refresh candidates (defaults to 1000 milliseconds)*/ 
-	private int granularity = 1000;
-
-	private Map<String, Long> lastUpdateMap = new HashMap<String, Long>();
+	/** the maximum number of commands which are executed at the same time to refresh items */
+	private static final int MAX_CONCURRENT_POLLS = 2;
 
 	/** RegEx to extract a parse a function String <code>'(.*?)\((.*)\)'</code> */
 	private static final Pattern EXTRACT_FUNCTION_PATTERN = Pattern.compile("(.*?)\\((.*)\\)");
-		
-	@Override
-	protected long getRefreshInterval() {
-		return granularity;
-	}
-
-	@Override
-	protected String getName() {
-		return "Exec Refresh Service";
+	
+	public ExecBinding() {
+		super("Exec", MAX_CONCURRENT_POLLS);
 	}
 
 	@Override
@@ -98,74 +90,96 @@ public class ExecBinding extends AbstractActiveBinding<ExecBindingProvider> impl
 		setProperlyConfigured(true);
 	}
 	
-	public void execute() {
+	/**
+	 * @{inheritDoc}
+	 */
+	@Override
+	protected void scheduleItems() {
+		Set<String> itemNames = new HashSet<String>();
 		for (ExecBindingProvider provider : providers) {
 			for (String itemName : provider.getInBindingItemNames()) {
-				
-				String commandLine = provider.getCommandLine(itemName);
-				
-				int refreshInterval = provider.getRefreshInterval(itemName);
-				String transformation = provider.getTransformation(itemName);
-				
-				Long lastUpdateTimeStamp = lastUpdateMap.get(itemName);
-				if (lastUpdateTimeStamp == null) {
-					lastUpdateTimeStamp = 0L;
-				}
-				
-				long age = System.currentTimeMillis() - lastUpdateTimeStamp;
-				boolean needsUpdate = age >= refreshInterval;
-				
-				if (needsUpdate) {
-					
-					logger.debug("item '{}' is about to be refreshed now", itemName);
-						
-					commandLine = String.format(commandLine, Calendar.getInstance().getTime(), "", itemName);
+				pollingScheduler.schedule(itemName, null, provider.getRefreshInterval(itemName));
+				itemNames.add(itemName);
+			}
+		}
+		pollingScheduler.retainAll(itemNames);
+	}
+	
+	/**
+	 * @{inheritDoc}
+	 */
+	public boolean poll(String itemName) {
+		ExecBindingProvider provider = findInBindingProvider(itemName);
+		if (provider == null) {
+			// the binding has been removed in the meantime
+			pollingScheduler.unschedule(itemName);
+			return true;
+		}
+		
+		String commandLine = provider.getCommandLine(itemName);
+		String transformation = provider.getTransformation(itemName);
+		
+		logger.debug("item '{}' is about to be refreshed now", itemName);
+			
+		commandLine = String.format(commandLine, Calendar.getInstance().getTime(), "", itemName);
 
-					String response = executeCommandAndWaitResponse(commandLine);
-					
+		String response = executeCommandAndWaitResponse(commandLine);
 
-					if(response==null) {
-						logger.error("No response received from command '{}'", commandLine);
-					} else {
-						String transformedResponse;
-						
-						try {
-							String[] parts = splitTransformationConfig(transformation);
-							String transformationType = parts[0];
-							String transformationFunction = parts[1];
-							
-							TransformationService transformationService = 
-								TransformationHelper.getTransformationService(ExecActivator.getContext(), transformationType);
-							if (transformationService != null) {
-								transformedResponse = transformationService.transform(transformationFunction, response);
-							} else {
-								transformedResponse = response;
-								logger.warn("couldn't transform response because transformationService of type '{}' is unavailable", transformationType);
-							}
-						}
-						catch (TransformationException te) {
-							logger.error("transformation throws exception [transformation="
-									+ transformation + ", response=" + response + "]", te);
-							
-							// in case of an error we return the response without any
-							// transformation
-							transformedResponse = response;
-						}
-						
-						logger.debug("transformed response is '{}'", transformedResponse);
-						
-						Class<? extends Item> itemType = provider.getItemType(itemName);
-						State state = createState(itemType, transformedResponse);
-						
-						if (state != null) {
-							eventPublisher.postUpdate(itemName, state);
-						}
-					}
-					
-					lastUpdateMap.put(itemName, System.currentTimeMillis());
-				}					
+		if(response==null) {
+			logger.error("No response received from command '{}'", commandLine);
+			return false;
+		}
+		
+		String transformedResponse;
+		
+		try {
+			String[] parts = splitTransformationConfig(transformation);
+			String transformationType = parts[0];
+			String transformationFunction = parts[1];
+			
+			TransformationService transformationService = 
+				TransformationHelper.getTransformationService(ExecActivator.getContext(), transformationType);
+			if (transformationService != null) {
+				transformedResponse = transformationService.transform(transformationFunction, response);
+			} else {
+				transformedResponse = response;
+				logger.warn("couldn't transform response because transformationService of type '{}' is unavailable", transformationType);
 			}
 		}
+		catch (TransformationException te) {
+			logger.error("transformation throws exception [transformation="
+					+ transformation + ", response=" + response + "]", te);
+			
+			// in case of an error we return the response without any
+			// transformation
+			transformedResponse = response;
+		}
+		
+		logger.debug("transformed response is '{}'", transformedResponse);
+		
+		Class<? extends Item> itemType = provider.getItemType(itemName);
+		State state = createState(itemType, transformedResponse);
+		
+		if (state != null) {
+			eventPublisher.postUpdate(itemName, state);
+		}
+		return true;
+	}
+	
+	/**
+	 * Finds the {@link ExecBindingProvider} which contains the in-binding of
+	 * <code>itemName</code>.
+	 * 
+	 * @param itemName the item to find the provider for
+	 * @return the provider or <code>null</code> if no provider could be found
+	 */
+	private ExecBindingProvider findInBindingProvider(String itemName) {
+		for (ExecBindingProvider provider : providers) {
+			if (provider.getCommandLine(itemName) != null) {
+				return provider;
+			}
+		}
+		return null;
 	}
 	
 	/**
@@ -392,11 +406,6 @@ public class ExecBinding extends AbstractActiveBinding<ExecBindingProvider> impl
 			if (StringUtils.isNotBlank(timeoutString)) {
 				timeout = Integer.parseInt(timeoutString);
 			}
-			
-			String granularityString = (String) config.get("granularity");
-			if (StringUtils.isNotBlank(granularityString)) {
-				granularity = Integer.parseInt(granularityString);
-			}
 		}
 		
 	}
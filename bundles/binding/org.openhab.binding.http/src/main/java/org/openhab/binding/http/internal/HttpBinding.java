@@ -11,18 +11,22 @@ package org.openhab.binding.http.internal;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.openhab.binding.http.internal.HttpGenericBindingProvider.CHANGED_COMMAND_KEY;
 
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.Calendar;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.http.HttpBindingProvider;
-import org.openhab.core.binding.AbstractActiveBinding;
+import org.openhab.core.binding.AbstractItemPollingBinding;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.items.ContactItem;
 import org.openhab.core.library.items.NumberItem;
@@ -56,17 +60,15 @@ import org.slf4j.LoggerFactory;
  * @auther Ben Jones
  * @since 0.6.0
  */
-public class HttpBinding extends AbstractActiveBinding<HttpBindingProvider> implements ManagedService {
+public class HttpBinding extends AbstractItemPollingBinding<HttpBindingProvider> implements ManagedService {
 
 	static final Logger logger = LoggerFactory.getLogger(HttpBinding.class);
 	
 	/** the timeout to use for connecting to a given host (defaults to 5000 milliseconds) */
 	private int timeout = 5000;
 
-	/** the interval to find new refresh candidates (defaults to 1000 milliseconds)*/ 
-	private int granularity = 1000;
-	
-	private Map<String, Long> lastUpdateMap = new HashMap<String, Long>();
+	/** the maximum number of items which are refreshed at the same time */
+	private static final int MAX_CONCURRENT_POLLS = 4;
 	
 	/** RegEx to extract a parse a function String <code>'(.*?)\((.*)\)'</code> */
 	private static final Pattern EXTRACT_FUNCTION_PATTERN = 
@@ -81,21 +83,9 @@ public class HttpBinding extends AbstractActiveBinding<HttpBindingProvider> impl
 	private Object itemCacheLock = new Object();
 	
 	public HttpBinding() {
+		super("HTTP", MAX_CONCURRENT_POLLS);
 	}
 	
-	/**
-     * @{inheritDoc}
-     */
-    @Override
-    protected long getRefreshInterval() {
-    	return granularity;
-    }
-    
-    @Override
-    protected String getName() {
-    	return "HTTP Refresh Service";
-    }
-    
     @Override
     public void activate() {
     	super.activate();
@@ -122,84 +112,127 @@ public class HttpBinding extends AbstractActiveBinding<HttpBindingProvider> impl
 	 * @{inheritDoc}
 	 */
 	@Override
-	public void execute() {
-		
+	protected void scheduleItems() {
+		Set<String> itemNames = new HashSet<String>();
 		for (HttpBindingProvider provider : providers) {
 			for (String itemName : provider.getInBindingItemNames()) {
-				
-				String url = provider.getUrl(itemName);
-				url = String.format(url, Calendar.getInstance().getTime());
+				pollingScheduler.schedule(itemName, getHost(provider.getUrl(itemName)), provider.getRefreshInterval(itemName));
+				itemNames.add(itemName);
+			}
+		}
+		pollingScheduler.retainAll(itemNames);
+	}
+	
+	/**
+	 * @{inheritDoc}
+	 */
+	public boolean poll(String itemName) {
+		HttpBindingProvider provider = findInBindingProvider(itemName);
+		if (provider == null) {
+			// the binding has been removed in the meantime
+			pollingScheduler.unschedule(itemName);
+			return true;
+		}
+		
+		String configuredUrl = provider.getUrl(itemName);
+		String url = String.format(configuredUrl, Calendar.getInstance().getTime());
 
-				Properties headers = provider.getHttpHeaders(itemName);
-				int refreshInterval = provider.getRefreshInterval(itemName);
-				String transformation = provider.getTransformation(itemName);
-				
-				Long lastUpdateTimeStamp = lastUpdateMap.get(itemName);
-				if (lastUpdateTimeStamp == null) {
-					lastUpdateTimeStamp = 0L;
-				}
-				
-				long age = System.currentTimeMillis() - lastUpdateTimeStamp;
-				boolean needsUpdate = age >= refreshInterval;
-				
-				if (needsUpdate) {
-					
-					String response = null;
-					
-					// check if special URL is used and data should get from
-					// cache rather than directly from server
-					if (isCacheConfig(url)) {
-						logger.debug("item '{}' is fetched from cache", itemName);
-						response = getCacheData(url);
-					} else if (isValidUrl(url)) {
-						logger.debug("item '{}' is about to be refreshed now", itemName);
-						response = HttpUtil.executeUrl("GET", url, headers, null, null, timeout);
-					} else {
-						logger.debug("item '{}' is not a valid URL or is a cache id yet to be initialised ({})", itemName, url);
-						continue;
-					}
-					
-					if (response==null) {
-						logger.error("No response received from '{}'", url);
-					} else {
-						String transformedResponse;
-						try {
-							String[] parts = splitTransformationConfig(transformation);
-							String transformationType = parts[0];
-							String transformationFunction = parts[1];
-							
-							TransformationService transformationService = 
-								TransformationHelper.getTransformationService(HttpActivator.getContext(), transformationType);
-							if (transformationService != null) {
-								transformedResponse = transformationService.transform(transformationFunction, response);
-							} else {
-								transformedResponse = response;
-								logger.warn("couldn't transform response because transformationService of type '{}' is unavailable", transformationType);
-							}
-						}
-						catch (TransformationException te) {
-							logger.error("transformation throws exception [transformation="
-									+ transformation + ", response=" + response + "]", te);
-							
-							// in case of an error we return the response without any
-							// transformation
-							transformedResponse = response;
-						}
-						
-						logger.debug("transformed response is '{}'", transformedResponse);
-						
-						Class<? extends Item> itemType = provider.getItemType(itemName);
-						State state = createState(itemType, transformedResponse);
-						
-						if (state != null) {
-							eventPublisher.postUpdate(itemName, state);
-						}
-					}
-					
-					lastUpdateMap.put(itemName, System.currentTimeMillis());
-				}					
+		Properties headers = provider.getHttpHeaders(itemName);
+		String transformation = provider.getTransformation(itemName);
+		
+		String response = null;
+		
+		// check if special URL is used and data should get from
+		// cache rather than directly from server
+		if (isCacheConfig(url)) {
+			logger.debug("item '{}' is fetched from cache", itemName);
+			response = getCacheData(url);
+		} else if (isValidUrl(url)) {
+			logger.debug("item '{}' is about to be refreshed now", itemName);
+			if (url.equals(configuredUrl)) {
+				response = HttpUtil.executeConditionalGet(url, headers, timeout);
+			} else {
+				// an url with the current date in it is never requested again, so caching its response would only evict others
+				response = HttpUtil.executeUrl("GET", url, headers, null, null, timeout);
+			}
+		} else {
+			logger.debug("item '{}' is not a valid URL or is a cache id yet to be initialised ({})", itemName, url);
+			return true;
+		}
+		
+		if (response==null) {
+			logger.error("No response received from '{}'", url);
+			return false;
+		}
+		
+		String transformedResponse;
+		try {
+			String[] parts = splitTransformationConfig(transformation);
+			String transformationType = parts[0];
+			String transformationFunction = parts[1];
+			
+			TransformationService transformationService = 
+				TransformationHelper.getTransformationService(HttpActivator.getContext(), transformationType);
+			if (transformationService != null) {
+				transformedResponse = transformationService.transform(transformationFunction, response);
+			} else {
+				transformedResponse = response;
+				logger.warn("couldn't transform response because transformationService of type '{}' is unavailable", transformationType);
 			}
 		}
+		catch (TransformationException te) {
+			logger.error("transformation throws exception [transformation="
+					+ transformation + ", response=" + response + "]", te);
+			
+			// in case of an error we return the response without any
+			// transformation
+			transformedResponse = response;
+		}
+		
+		logger.debug("transformed response is '{}'", transformedResponse);
+		
+		Class<? extends Item> itemType = provider.getItemType(itemName);
+		State state = createState(itemType, transformedResponse);
+		
+		if (state != null) {
+			eventPublisher.postUpdate(itemName, state);
+		}
+		return true;
+	}
+	
+	/**
+	 * Finds the {@link HttpBindingProvider} which contains the in-binding of
+	 * <code>itemName</code>.
+	 * 
+	 * @param itemName the item to find the provider for
+	 * @return the provider or <code>null</code> if no provider could be found
+	 */
+	private HttpBindingProvider findInBindingProvider(String itemName) {
+		for (HttpBindingProvider provider : providers) {
+			if (provider.getUrl(itemName) != null) {
+				return provider;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Determines the host of the given url, so that only one request per host
+	 * is sent at a time. Cache ids share the host <code>null</code> and are thus
+	 * not limited, as their requests are serialized by the item cache lock anyway.
+	 * 
+	 * @param url the url to determine the host for
+	 * @return the host of <code>url</code> or <code>null</code> if it is no valid URL
+	 */
+	private String getHost(String url) {
+		if (url == null || !isValidUrl(url)) {
+			return null;
+		}
+		try {
+			return new URL(url).getHost();
+		} catch (MalformedURLException e) {
+			return null;
+		}
 	}
 	
 	/**
@@ -359,7 +392,7 @@ public class HttpBinding extends AbstractActiveBinding<HttpBindingProvider> impl
 
 				// update and store data on cache
 				logger.debug("updating cache for '{}' ('{}')", cacheId, cacheConfig.url);
-				cacheConfig.data = HttpUtil.executeUrl("GET", cacheConfig.url, null, null, null, timeout);
+				cacheConfig.data = HttpUtil.executeConditionalGet(cacheConfig.url, null, timeout);
 
 				if (cacheConfig.data != null)
 					cacheConfig.lastUpdate = System.currentTimeMillis();
@@ -384,11 +417,6 @@ public class HttpBinding extends AbstractActiveBinding<HttpBindingProvider> impl
 					timeout = Integer.parseInt(timeoutString);
 				}
 				
-				String granularityString = (String) config.get("granularity");
-				if (StringUtils.isNotBlank(granularityString)) {
-					granularity = Integer.parseInt(granularityString);
-				}
-				
 				// Parse page cache config
 				
 				@SuppressWarnings("unchecked")
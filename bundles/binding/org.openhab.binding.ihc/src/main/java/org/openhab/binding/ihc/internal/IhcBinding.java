@@ -17,9 +17,9 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Dictionary;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import javax.xml.xpath.XPathExpressionException;
 
@@ -36,7 +36,7 @@ import org.openhab.binding.ihc.utcs.WSTimeValue;
 import org.openhab.binding.ihc.utcs.WSTimerValue;
 import org.openhab.binding.ihc.utcs.WSWeekdayValue;
 import org.openhab.binding.ihc.utcs.IhcClient.EnumValue;
-import org.openhab.core.binding.AbstractActiveBinding;
+import org.openhab.core.binding.AbstractItemPollingBinding;
 import org.openhab.core.binding.BindingChangeListener;
 import org.openhab.core.binding.BindingProvider;
 import org.openhab.core.items.Item;
@@ -73,14 +73,12 @@ import org.slf4j.LoggerFactory;
  * @author Pauli Anttila
  * @since 1.1.0
  */
-public class IhcBinding extends AbstractActiveBinding<IhcBindingProvider>
+public class IhcBinding extends AbstractItemPollingBinding<IhcBindingProvider>
 		implements ManagedService, BindingChangeListener {
 
 	private static final Logger logger = 
 		LoggerFactory.getLogger(IhcBinding.class);
 
-	private long refreshInterval = 1000;
-
 	/** Thread to handle resource value notifications from the controller */
 	private IhcResourceValueNotificationListener resourceValueNotificationListener = null;
 
@@ -90,28 +88,21 @@ public class IhcBinding extends AbstractActiveBinding<IhcBindingProvider>
 	/** Holds time in seconds when configuration is changed */
 	private long lastConfigurationChangeTime = 0;
 
-	/** Holds time stamps in seconds when binding items states are refreshed */
-	private Map<String, Long> lastUpdateMap = new HashMap<String, Long>();
-
 	private boolean listenersStarted = false;
 	
 	
-	@Override
-	protected String getName() {
-		return "IHC / ELKO LS refresh and notification listener service";
-	}
-
-	@Override
-	protected long getRefreshInterval() {
-		return refreshInterval;
+	public IhcBinding() {
+		super("IHC", 1);
 	}
 
 	public void activate(ComponentContext componentContext) {
 		listenersStarted = false;
 		startIhcListener();
+		activate();
 	}
 
 	public void deactivate(ComponentContext componentContext) {
+		deactivate();
 		for (IhcBindingProvider provider : providers) {
 			provider.removeBindingChangeListener(this);
 		}
@@ -134,76 +125,84 @@ public class IhcBinding extends AbstractActiveBinding<IhcBindingProvider>
 	 * @{inheritDoc
 	 */
 	@Override
-	public void execute() {
-
-		IhcClient ihc = IhcConnection.getCommunicator();
-
-		if (ihc != null) {
-			for (IhcBindingProvider provider : providers) {
-				for (String itemName : provider.getItemNames()) {
-
-					int resourceId = provider.getResourceId(itemName);
-					int itemRefreshInterval = provider
-							.getRefreshInterval(itemName) * 1000;
-
-					if (itemRefreshInterval > 0) {
-
-						Long lastUpdateTimeStamp = lastUpdateMap.get(itemName);
-						if (lastUpdateTimeStamp == null) {
-							lastUpdateTimeStamp = 0L;
-						}
+	protected void scheduleItems() {
+		Set<String> itemNames = new HashSet<String>();
+		for (IhcBindingProvider provider : providers) {
+			for (String itemName : provider.getItemNames()) {
+				int itemRefreshInterval = provider.getRefreshInterval(itemName) * 1000;
+				if (itemRefreshInterval > 0) {
+					pollingScheduler.schedule(itemName, null, itemRefreshInterval);
+					itemNames.add(itemName);
+				}
+			}
+		}
+		pollingScheduler.retainAll(itemNames);
+	}
 
-						long age = System.currentTimeMillis()
-								- lastUpdateTimeStamp;
-						boolean needsUpdate = age >= itemRefreshInterval;
+	/**
+	 * @{inheritDoc}
+	 */
+	public boolean poll(String itemName) {
+		IhcBindingProvider provider = findProvider(itemName);
+		if (provider == null) {
+			// the binding has been removed in the meantime
+			pollingScheduler.unschedule(itemName);
+			return true;
+		}
 
-						if (needsUpdate) {
+		IhcClient ihc = IhcConnection.getCommunicator();
+		if (ihc == null) {
+			logger.debug("Controller is null => refresh of item '{}' aborted!", itemName);
+			return false;
+		}
 
-							logger.debug(
-									"Item '{}' is about to be refreshed now",
-									itemName);
+		logger.debug("Item '{}' is about to be refreshed now", itemName);
 
-							try {
-								WSResourceValue resourceValue = null;
+		int resourceId = provider.getResourceId(itemName);
+		try {
+			WSResourceValue resourceValue = null;
 
-								try {
-									resourceValue = ihc
-											.resourceQuery(resourceId);
-								} catch (IOException e1) {
-									logger.warn("Value could not be read from controller - retrying one time.");
+			try {
+				resourceValue = ihc.resourceQuery(resourceId);
+			} catch (IOException e1) {
+				logger.warn("Value could not be read from controller - retrying one time.");
 
-									try {
-										IhcConnection.reconnect();
-										resourceValue = ihc
-												.resourceQuery(resourceId);
-									} catch (Exception e2) {
-										logger.error("Communication error", e2);
-									}
+				try {
+					IhcConnection.reconnect();
+					resourceValue = ihc.resourceQuery(resourceId);
+				} catch (Exception e2) {
+					logger.error("Communication error", e2);
+				}
 
-								}
+			}
 
-								if (resourceValue != null) {
-									Class<? extends Item> itemType = provider
-											.getItemType(itemName);
-									State value = convertResourceValueToState(
-											itemType, resourceValue);
-									eventPublisher.postUpdate(itemName, value);
-								}
+			if (resourceValue != null) {
+				Class<? extends Item> itemType = provider.getItemType(itemName);
+				State value = convertResourceValueToState(itemType, resourceValue);
+				eventPublisher.postUpdate(itemName, value);
+				return true;
+			}
 
-							} catch (Exception e) {
-								logger.error("Exception", e);
-							}
+		} catch (Exception e) {
+			logger.error("Exception", e);
+		}
+		return false;
+	}
 
-							lastUpdateMap.put(itemName,
-									System.currentTimeMillis());
-						}
-					}
-				}
+	/**
+	 * Finds the {@link IhcBindingProvider} which contains the binding of
+	 * <code>itemName</code>.
+	 * 
+	 * @param itemName the item to find the provider for
+	 * @return the provider or <code>null</code> if no provider could be found
+	 */
+	private IhcBindingProvider findProvider(String itemName) {
+		for (IhcBindingProvider provider : providers) {
+			if (provider.providesBindingFor(itemName)) {
+				return provider;
 			}
-		} else {
-			logger.debug("Controller is null => refresh cycle aborted!");
 		}
-
+		return null;
 	}
 
 	/**
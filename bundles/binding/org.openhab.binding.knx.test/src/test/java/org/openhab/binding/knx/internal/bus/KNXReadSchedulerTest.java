@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.knx.internal.bus;
+
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.datapoint.Datapoint;
+import tuwien.auto.calimero.datapoint.StateDP;
+import tuwien.auto.calimero.exception.KNXFormatException;
+
+/**
+ * The scheduler is driven with explicit times instead of its thread. The tests
+ * rely on the defaults of the KNX connection: a reading pause of 50 ms, a read
+ * burst of 5, 4 pending reads, a response timeout of 10 s and 3 retries.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class KNXReadSchedulerTest {
+
+	private static final long START = 1000000L;
+
+	private KNXReadScheduler scheduler;
+
+	@Before
+	public void init() {
+		scheduler = new KNXReadScheduler();
+	}
+
+	@Test
+	public void testPendingReadsAreLimited() throws KNXFormatException {
+		Datapoint[] datapoints = createDatapoints(6);
+		for (Datapoint datapoint : datapoints) {
+			scheduler.schedule(datapoint, 0, START);
+		}
+
+		for (int i = 0; i < 4; i++) {
+			assertSame(datapoints[i], scheduler.takeDueRead(START));
+		}
+		// there are enough tokens left, but no more reads may be pending
+		assertNull(scheduler.takeDueRead(START + 1000));
+
+		scheduler.telegramReceived(datapoints[0].getMainAddress(), true, START + 1000);
+		assertSame(datapoints[4], scheduler.takeDueRead(START + 1000));
+		assertNull(scheduler.takeDueRead(START + 1000));
+	}
+
+	@Test
+	public void testBurstAndReadingPause() throws KNXFormatException {
+		Datapoint[] datapoints = createDatapoints(8);
+		for (Datapoint datapoint : datapoints) {
+			scheduler.schedule(datapoint, 0, START);
+		}
+
+		// after an idle bus the whole burst is sent at once
+		for (int i = 0; i < 4; i++) {
+			assertSame(datapoints[i], scheduler.takeDueRead(START));
+			scheduler.telegramReceived(datapoints[i].getMainAddress(), true, START);
+		}
+		assertSame(datapoints[4], scheduler.takeDueRead(START));
+		scheduler.telegramReceived(datapoints[4].getMainAddress(), true, START);
+
+		// afterwards there is one read per reading pause
+		assertNull(scheduler.takeDueRead(START + 49));
+		assertSame(datapoints[5], scheduler.takeDueRead(START + 50));
+		assertNull(scheduler.takeDueRead(START + 99));
+		assertSame(datapoints[6], scheduler.takeDueRead(START + 100));
+	}
+
+	@Test
+	public void testForeignTelegramsTakeTokens() throws KNXFormatException {
+		Datapoint[] datapoints = createDatapoints(1);
+		scheduler.schedule(datapoints[0], 0, START);
+		for (int i = 0; i < 5; i++) {
+			scheduler.telegramReceived(new GroupAddress(5, 5, i), true, START);
+		}
+
+		// the bus load has used up the burst
+		assertNull(scheduler.takeDueRead(START));
+		assertSame(datapoints[0], scheduler.takeDueRead(START + 50));
+	}
+
+	@Test
+	public void testInitialReadsBeforeRefreshes() throws KNXFormatException {
+		Datapoint[] datapoints = createDatapoints(2);
+		scheduler.schedule(datapoints[0], 1, START);
+		assertSame(datapoints[0], scheduler.takeDueRead(START));
+		scheduler.telegramReceived(datapoints[0].getMainAddress(), true, START);
+
+		// the refresh is due before the second datapoint is scheduled, but read after it
+		scheduler.schedule(datapoints[1], 0, START + 2000);
+		assertSame(datapoints[1], scheduler.takeDueRead(START + 2000));
+		assertSame(datapoints[0], scheduler.takeDueRead(START + 2000));
+	}
+
+	@Test
+	public void testRefreshIsDueAfterResponse() throws KNXFormatException {
+		Datapoint[] datapoints = createDatapoints(1);
+		scheduler.schedule(datapoints[0], 60, START);
+		assertSame(datapoints[0], scheduler.takeDueRead(START));
+		scheduler.telegramReceived(datapoints[0].getMainAddress(), true, START + 200);
+
+		assertNull(scheduler.takeDueRead(START + 60199));
+		assertSame(datapoints[0], scheduler.takeDueRead(START + 60200));
+	}
+
+	@Test
+	public void testReadRequestsDoNotAnswerPendingReads() throws KNXFormatException {
+		Datapoint[] datapoints = createDatapoints(1);
+		scheduler.schedule(datapoints[0], 0, START);
+		assertSame(datapoints[0], scheduler.takeDueRead(START));
+
+		// a read request of another device carries no value
+		scheduler.telegramReceived(datapoints[0].getMainAddress(), false, START + 10);
+		assertNull(scheduler.takeDueRead(START + 10000));
+		// so the read times out and is retried
+		assertSame(datapoints[0], scheduler.takeDueRead(START + 11000));
+	}
+
+	@Test
+	public void testTimeoutRetriesAndGivesUp() throws KNXFormatException {
+		Datapoint[] datapoints = createDatapoints(1);
+		scheduler.schedule(datapoints[0], 0, START);
+		long sent = START;
+		assertSame(datapoints[0], scheduler.takeDueRead(sent));
+
+		// every retry waits one second longer than the one before
+		for (int retry = 1; retry <= 3; retry++) {
+			assertNull(scheduler.takeDueRead(sent + 10000));
+			long retryTime = sent + 10000 + 1000 * retry;
+			assertNull(scheduler.takeDueRead(retryTime - 1));
+			assertSame(datapoints[0], scheduler.takeDueRead(retryTime));
+			sent = retryTime;
+		}
+
+		// after the last retry the datapoint is not read anymore
+		assertNull(scheduler.takeDueRead(sent + 10000));
+		assertNull(scheduler.takeDueRead(sent + 100000));
+	}
+
+	@Test
+	public void testDatapointsWithSameGroupAddressShareRead() throws KNXFormatException {
+		GroupAddress groupAddress = new GroupAddress("1/1/1");
+		Datapoint datapoint1 = new StateDP(groupAddress, "item1", 0, "1.001");
+		Datapoint datapoint2 = new StateDP(groupAddress, "item2", 0, "1.001");
+		scheduler.schedule(datapoint1, 10, START);
+		scheduler.schedule(datapoint2, 10, START);
+
+		// only one request is sent and its response answers both datapoints
+		assertSame(datapoint1, scheduler.takeDueRead(START));
+		assertNull(scheduler.takeDueRead(START));
+		scheduler.telegramReceived(groupAddress, true, START + 100);
+
+		// both refreshes are due at the same time and are sent as one request again
+		assertNull(scheduler.takeDueRead(START + 10099));
+		assertNotNull(scheduler.takeDueRead(START + 10100));
+		assertNull(scheduler.takeDueRead(START + 10100));
+	}
+
+	@Test
+	public void testUnschedulePendingRead() throws KNXFormatException {
+		Datapoint[] datapoints = createDatapoints(5);
+		for (Datapoint datapoint : datapoints) {
+			scheduler.schedule(datapoint, 10, START);
+		}
+		for (int i = 0; i < 4; i++) {
+			assertSame(datapoints[i], scheduler.takeDueRead(START));
+		}
+
+		// unscheduling frees the slot of the pending read, which is neither retried nor refreshed
+		scheduler.unschedule(datapoints[0]);
+		assertSame(datapoints[4], scheduler.takeDueRead(START));
+		for (int i = 0; i < 5; i++) {
+			scheduler.telegramReceived(datapoints[i].getMainAddress(), true, START + i);
+		}
+		for (int i = 1; i < 5; i++) {
+			assertSame(datapoints[i], scheduler.takeDueRead(START + 10010));
+			scheduler.telegramReceived(datapoints[i].getMainAddress(), true, START + 10010);
+		}
+		assertNull(scheduler.takeDueRead(START + 10010));
+	}
+
+	private Datapoint[] createDatapoints(int count) throws KNXFormatException {
+		Datapoint[] datapoints = new Datapoint[count];
+		for (int i = 0; i < count; i++) {
+			datapoints[i] = new StateDP(new GroupAddress(1, 1, i), "item" + i, 0, "1.001");
+		}
+		return datapoints;
+	}
+
+}
@@ -45,6 +45,22 @@ public class KNXCoreTypeMapperTest {
 		assertNotNull(type);
 		assertEquals("5", type.toString());
 	}
+
+	@Test
+	public void testCachedTranslatorsAreReused() throws KNXFormatException {
+
+		// the translator of a datapoint type must not keep the data of a previous telegram
+		assertEquals("6", typeMapper.toType(createDP("5.001"), new byte[] { 0xF }).toString());
+		assertEquals("100", typeMapper.toType(createDP("5.001"), new byte[] { (byte) 0xFF }).toString());
+		assertEquals("0", typeMapper.toType(createDP("5.001"), new byte[] { 0x0 }).toString());
+
+		// the translators of other datapoint types are not shared
+		assertEquals("5", typeMapper.toType(createDP("5.004"), new byte[] { 0xF }).toString());
+		assertEquals("ON", typeMapper.toType(createDP("1.001"), new byte[] { 0x1 }).toString());
+		assertEquals("OFF", typeMapper.toType(createDP("1.001"), new byte[] { 0x0 }).toString());
+		assertEquals("UP", typeMapper.toType(createDP("1.008"), new byte[] { 0x0 }).toString());
+		assertEquals("6", typeMapper.toType(createDP("5.001"), new byte[] { 0xF }).toString());
+	}
 	
 	private Datapoint createDP(String dpt) throws KNXFormatException {
 		return new CommandDP(new GroupAddress("1/2/3"), "test", 0, dpt);
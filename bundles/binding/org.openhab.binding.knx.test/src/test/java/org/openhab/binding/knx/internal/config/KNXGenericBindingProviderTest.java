@@ -14,6 +14,8 @@ import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -144,6 +146,55 @@ public class KNXGenericBindingProviderTest {
 		assertEquals(0, readableDatapoints.next().getMainAddress().getMainGroup());
 	}
 
+	@Test
+	public void testAutoRefreshTime() throws BindingConfigParseException, KNXFormatException {
+		
+		provider.processBindingConfiguration("text", item1, "<(300)1/1/10");
+		provider.processBindingConfiguration("text", item2, "<1/1/11");
+
+		Datapoint datapoint1 = getReadableDatapoint(item1.getName());
+		Datapoint datapoint2 = getReadableDatapoint(item2.getName());
+		assertEquals(new GroupAddress("1/1/10"), datapoint1.getMainAddress());
+		assertEquals(new GroupAddress("1/1/11"), datapoint2.getMainAddress());
+
+		// method under Test
+		assertEquals(300, provider.getAutoRefreshTime(datapoint1));
+		assertEquals(0, provider.getAutoRefreshTime(datapoint2));
+	}
+
+	@Test
+	public void testAutoRefreshTimeWithDPTAndListeningGA() throws BindingConfigParseException, KNXFormatException {
+		
+		provider.processBindingConfiguration("text", item1, "2/1/5+<( 60 )5.001:0/4/5");
+
+		Datapoint datapoint = getReadableDatapoint(item1.getName());
+		assertEquals(new GroupAddress("0/4/5"), datapoint.getMainAddress());
+		assertEquals("5.001", datapoint.getDPT());
+
+		// method under Test
+		assertEquals(60, provider.getAutoRefreshTime(datapoint));
+	}
+
+	@Test(expected=BindingConfigParseException.class)
+	public void testAutoRefreshTime_notANumber() throws BindingConfigParseException {
+		provider.parseBindingConfigString(new TestItem(), "<(abc)1/1/10");
+	}
+
+	@Test(expected=BindingConfigParseException.class)
+	public void testAutoRefreshTime_missingParenthesis() throws BindingConfigParseException {
+		provider.parseBindingConfigString(new TestItem(), "<(300 1/1/10");
+	}
+
+	@Test(expected=BindingConfigParseException.class)
+	public void testAutoRefreshTime_negative() throws BindingConfigParseException {
+		provider.parseBindingConfigString(new TestItem(), "<(-5)1/1/10");
+	}
+
+	@Test(expected=BindingConfigParseException.class)
+	public void testAutoRefreshTime_empty() throws BindingConfigParseException {
+		provider.parseBindingConfigString(new TestItem(), "<()1/1/10");
+	}
+
 	@Test
 	public void testAutoUpdate() throws BindingConfigParseException, KNXFormatException {
 		
@@ -172,6 +223,88 @@ public class KNXGenericBindingProviderTest {
 	}
 
 
+	@Test
+	public void testGetListeningItemNames() throws BindingConfigParseException, KNXFormatException {
+		
+		provider.processBindingConfiguration("text", item1, "<4/2/10+0/2/10, 5.006:4/2/11");
+		provider.processBindingConfiguration("text", item2, "0/2/10");
+
+		// method under Test
+		assertEquals(Arrays.asList("item1"), toList(provider.getListeningItemNames(new GroupAddress("4/2/10"))));
+		assertEquals(Arrays.asList("item1", "item2"), toList(provider.getListeningItemNames(new GroupAddress("0/2/10"))));
+		assertEquals(Arrays.asList("item1"), toList(provider.getListeningItemNames(new GroupAddress("4/2/11"))));
+		assertEquals(Collections.emptyList(), toList(provider.getListeningItemNames(new GroupAddress("4/2/12"))));
+	}
+
+	@Test
+	public void testGetDatapoints() throws BindingConfigParseException, KNXFormatException {
+		
+		provider.processBindingConfiguration("text", item1, "<4/2/10+0/2/10, 5.001:4/2/11");
+		provider.processBindingConfiguration("text", item2, "0/2/10");
+
+		// method under Test
+		List<Datapoint> datapoints = toList(provider.getDatapoints("item1", new GroupAddress("0/2/10")));
+		assertEquals(1, datapoints.size());
+		assertEquals(new GroupAddress("4/2/10"), datapoints.get(0).getMainAddress());
+		assertEquals(0, toList(provider.getDatapoints("item2", new GroupAddress("4/2/10"))).size());
+
+		datapoints = toList(provider.getDatapoints("item1", PercentType.class));
+		assertEquals(1, datapoints.size());
+		assertEquals(new GroupAddress("4/2/11"), datapoints.get(0).getMainAddress());
+		assertEquals(0, toList(provider.getDatapoints("someotheritem", PercentType.class)).size());
+	}
+
+	@Test
+	public void testChangedBindingConfigIsReindexed() throws BindingConfigParseException, KNXFormatException {
+		
+		provider.processBindingConfiguration("text", item1, "<4/2/10+0/2/10");
+		provider.processBindingConfiguration("text", item1, "4/2/20");
+
+		// method under Test
+		assertEquals(Collections.emptyList(), toList(provider.getListeningItemNames(new GroupAddress("4/2/10"))));
+		assertEquals(Collections.emptyList(), toList(provider.getListeningItemNames(new GroupAddress("0/2/10"))));
+		assertEquals(Arrays.asList("item1"), toList(provider.getListeningItemNames(new GroupAddress("4/2/20"))));
+		assertEquals(false, provider.isCommandGA(new GroupAddress("4/2/10")));
+		assertEquals(true, provider.isCommandGA(new GroupAddress("4/2/20")));
+	}
+
+	@Test
+	public void testRemovedConfigurationsAreUnindexed() throws BindingConfigParseException, KNXFormatException {
+		
+		provider.processBindingConfiguration("text", item1, "<4/2/10+0/2/10");
+		provider.processBindingConfiguration("other", item2, "0/2/10");
+
+		// method under Test
+		provider.removeConfigurations("text");
+		assertEquals(Collections.emptyList(), toList(provider.getListeningItemNames(new GroupAddress("4/2/10"))));
+		assertEquals(Arrays.asList("item2"), toList(provider.getListeningItemNames(new GroupAddress("0/2/10"))));
+		assertEquals(false, provider.isCommandGA(new GroupAddress("4/2/10")));
+		assertEquals(true, provider.isCommandGA(new GroupAddress("0/2/10")));
+
+		provider.removeConfigurations("other");
+		assertEquals(Collections.emptyList(), toList(provider.getListeningItemNames(new GroupAddress("0/2/10"))));
+		assertEquals(false, provider.isCommandGA(new GroupAddress("0/2/10")));
+	}
+
+
+	private static <T> List<T> toList(Iterable<T> iterable) {
+		List<T> list = new ArrayList<T>();
+		for (T element : iterable) {
+			list.add(element);
+		}
+		return list;
+	}
+
+	private Datapoint getReadableDatapoint(String itemName) {
+		for (Datapoint datapoint : provider.getReadableDatapoints()) {
+			if (datapoint.getName().equals(itemName)) {
+				return datapoint;
+			}
+		}
+		return null;
+	}
+
+
 	private class TestItem extends GenericItem {
 
 		private List<Class<? extends State>> acceptedDataTypes = new ArrayList<Class<? extends State>>();
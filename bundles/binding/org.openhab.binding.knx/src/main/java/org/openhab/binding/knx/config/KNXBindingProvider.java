@@ -63,6 +63,16 @@ public interface KNXBindingProvider extends BindingProvider {
 	 */
 	public Iterable<Datapoint> getReadableDatapoints();
 	
+	/**
+	 * Returns the interval in which a readable datapoint should be read from the KNX bus
+	 * again, i.e. the number in parentheses after the '&lt;' sign of the binding config.
+	 * 
+	 * @param datapoint a readable datapoint
+	 * @return the refresh interval in seconds or <code>0</code>, if the datapoint
+	 * should only be read on startup
+	 */
+	public int getAutoRefreshTime(Datapoint datapoint);
+	
 	/**
 	 * Checks whether the given <code>groupAddress</code> is to be interpreted as
 	 * CommandGA or not. Returns <code>true</code> if <code>groupAddress</code>
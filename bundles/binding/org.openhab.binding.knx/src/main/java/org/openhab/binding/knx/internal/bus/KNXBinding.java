@@ -10,11 +10,8 @@ package org.openhab.binding.knx.internal.bus;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang.IllegalClassException;
@@ -36,7 +33,6 @@ import tuwien.auto.calimero.DetachEvent;
 import tuwien.auto.calimero.GroupAddress;
 import tuwien.auto.calimero.datapoint.Datapoint;
 import tuwien.auto.calimero.exception.KNXException;
-import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
 import tuwien.auto.calimero.process.ProcessCommunicator;
 import tuwien.auto.calimero.process.ProcessEvent;
 import tuwien.auto.calimero.process.ProcessListener;
@@ -66,20 +62,14 @@ public class KNXBinding extends AbstractBinding<KNXBindingProvider>
 	 */
 	private List<String> ignoreEventList = new ArrayList<String>();
 
-	/**
-	 * keeps track of all datapoints for which we should send a read request to the KNX bus
-	 */
-	private Map<Datapoint, Integer> datapointsToInitialize = Collections.synchronizedMap(new HashMap<Datapoint, Integer>());
-	
-
-	/** the datapoint initializer, which runs in a separate thread */
-	private DatapointInitializer initializer = new DatapointInitializer();
+	/** the read scheduler, which sends read requests to all readable datapoints in a separate thread */
+	private KNXReadScheduler readScheduler = new KNXReadScheduler();
 	
 
 	public void activate(ComponentContext componentContext) {
 		KNXConnection.addConnectionEstablishedListener(this);
-		initializer = new DatapointInitializer();
-		initializer.start();
+		readScheduler = new KNXReadScheduler();
+		readScheduler.start();
 	}
 
 	public void deactivate(ComponentContext componentContext) {
@@ -88,7 +78,7 @@ public class KNXBinding extends AbstractBinding<KNXBindingProvider>
 			provider.removeBindingChangeListener(this);
 		}
 		providers.clear();
-		initializer.setInterrupted(true);
+		readScheduler.stop();
 		KNXConnection.disconnect();
 	}
 	
@@ -189,6 +179,7 @@ public class KNXBinding extends AbstractBinding<KNXBindingProvider>
 		try {
 			GroupAddress destination = e.getDestination();
 			byte[] asdu = e.getASDU();
+			readScheduler.telegramReceived(destination, asdu.length > 0);
 			if (asdu.length==0) {
 				return;
 			}
@@ -230,9 +221,10 @@ public class KNXBinding extends AbstractBinding<KNXBindingProvider>
 	public void bindingChanged(BindingProvider provider, String itemName) {
 		if (provider instanceof KNXBindingProvider) {
 			KNXBindingProvider knxProvider = (KNXBindingProvider) provider;
+			readScheduler.unscheduleItem(itemName);
 			for (Datapoint datapoint : knxProvider.getReadableDatapoints()) {
 				if(datapoint.getName().equals(itemName)) {
-					datapointsToInitialize.put(datapoint, 0);
+					readScheduler.schedule(datapoint, knxProvider.getAutoRefreshTime(datapoint));
 				}
 			}
 		}
@@ -243,10 +235,7 @@ public class KNXBinding extends AbstractBinding<KNXBindingProvider>
 	 */
 	public void allBindingsChanged(BindingProvider provider) {
 		if (provider instanceof KNXBindingProvider) {
-			KNXBindingProvider knxProvider = (KNXBindingProvider) provider;
-			for (Datapoint datapoint : knxProvider.getReadableDatapoints()) {
-				datapointsToInitialize.put(datapoint, 0);
-			}
+			scheduleReadableDatapoints();
 		}
 	}
 	
@@ -256,11 +245,22 @@ public class KNXBinding extends AbstractBinding<KNXBindingProvider>
 	 */
 	@Override
 	public void connectionEstablished() {
+		scheduleReadableDatapoints();
+	}
+	
+	/**
+	 * Schedules initial reads of the readable datapoints of all registered KNX binding
+	 * providers and removes all other datapoints from the read schedule.
+	 */
+	private void scheduleReadableDatapoints() {
+		Set<Datapoint> datapoints = new HashSet<Datapoint>();
 		for (KNXBindingProvider knxProvider : providers) {
 			for (Datapoint datapoint : knxProvider.getReadableDatapoints()) {
-				datapointsToInitialize.put(datapoint, 0);
+				datapoints.add(datapoint);
+				readScheduler.schedule(datapoint, knxProvider.getAutoRefreshTime(datapoint));
 			}
 		}
+		readScheduler.retainAll(datapoints);
 	}
 	
 	/**
@@ -374,98 +374,5 @@ public class KNXBinding extends AbstractBinding<KNXBindingProvider>
 		return null;
 	}
 
-	/**
-	 * The DatapointInitializer runs as a separate thread. Whenever new KNX bindings are added, it takes care that read
-	 * requests are sent to all new datapoints, which support this request. By this, the initial status can be
-	 * determined and one does not have to stay in an "undefined" state until the first telegram is sent on the NX bus
-	 * for this datapoint. As there might be hundreds of datapoints added at the same time and we do not want to flood
-	 * the KNX bus with read requests, we wait a configurable period of milliseconds between two requests. As a result,
-	 * this might be quite long running and thus is executed in its own thread.
-	 * 
-	 * @author Kai Kreuzer
-	 * @since 0.3.0
-	 * 
-	 */
-	private class DatapointInitializer extends Thread {
-		
-		private boolean interrupted = false;
-		
-		public DatapointInitializer() {
-			super("KNX datapoint initializer");
-		}
-
-		public void setInterrupted(boolean interrupted) {
-			this.interrupted = interrupted;
-		}
-
-		@Override
-		public void run() {
-			// as long as no interrupt is requested, continue running
-			while (!interrupted && !KNXConnection.shutdown) {
-				if (datapointsToInitialize.size() > 0) {
-					// we first clone the map, so that it stays unmodified
-					HashMap<Datapoint,Integer> clonedMap =
-						new HashMap<Datapoint, Integer>(datapointsToInitialize);
-					initializeDatapoints(clonedMap);
-				}
-				// just wait before looping again
-				try {
-					sleep(1000L);
-				} catch (InterruptedException e) {
-					interrupted = true;
-				}
-			}
-		}
-
-		private void initializeDatapoints(HashMap<Datapoint,Integer> clonedMap) {
-			for (Datapoint datapoint : clonedMap.keySet()) {
-				try {
-					ProcessCommunicator pc = KNXConnection.getCommunicator();
-					if (pc != null) {
-						logger.debug("Sending read request to KNX for item {}", datapoint.getName());
-						pc.read(datapoint);
-					}
-					datapointsToInitialize.remove(datapoint);
-				} catch (KNXException e) {
-					logger.warn("Cannot read value for item '{}' from KNX bus: {}", new String[] { datapoint.getName(), e.getMessage() });
-					increaseReadLimitCounter(datapoint);
-				} catch (KNXIllegalArgumentException e) {
-					logger.warn("Error sending KNX read request for '{}': {}", new String[] { datapoint.getName(), e.getMessage() });
-					increaseReadLimitCounter(datapoint);
-				}
-
-				int retriesLimit = KNXConnection.getReadRetriesLimit();
-				// it is possible that a key contained in the clonedMap disappeared
-				// from the original datapointMap!
-				int retriesCounter = datapointsToInitialize.get(datapoint) != null ? 
-									 datapointsToInitialize.get(datapoint) : Integer.MIN_VALUE;
-				if (retriesLimit < retriesCounter) {
-					datapointsToInitialize.remove(datapoint);
-					logger.debug("Giving up initialization of item {} - retries ({}) exeeded.", datapoint.getName(), retriesLimit);
-				}
-
-				long readingPause = KNXConnection.getReadingPause();
-				if (readingPause > 0) {
-					try {
-						sleep(readingPause);
-					} catch (InterruptedException e) {
-						logger.debug("KNX reading pause has been interrupted: {}", e.getMessage());
-					}
-				}
-				if(KNXConnection.shutdown) {
-					return;
-				}
-			}
-		}
-
-		private synchronized void increaseReadLimitCounter(Datapoint datapoint) {
-			if (datapointsToInitialize.containsKey(datapoint)) {
-				Integer counter = datapointsToInitialize.get(datapoint);
-				datapointsToInitialize.put(datapoint, counter + 1);
-			}
-		}		
-		
-	}
-	
 
 }
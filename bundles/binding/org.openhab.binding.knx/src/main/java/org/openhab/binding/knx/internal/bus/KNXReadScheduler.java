@@ -0,0 +1,568 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.knx.internal.bus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.openhab.binding.knx.internal.connection.KNXConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.datapoint.Datapoint;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+
+/**
+ * The read scheduler sends read requests for readable datapoints to the KNX bus, once when
+ * they are scheduled and afterwards periodically, if they have an auto refresh interval.
+ *
+ * <p>The read requests are rate limited by a token bucket: on average there is a pause of
+ * {@link KNXConnection#getReadingPause()} milliseconds between two requests, but up to
+ * {@link KNXConnection#getReadBurst()} requests are sent in a row after the bus has been
+ * idle. Telegrams of other devices take a token as well, so that reading slows down while
+ * the bus is busy. The scheduler does not wait for the response of a request before sending
+ * the next one; up to {@link KNXConnection#getMaxPendingReads()} requests can be pending,
+ * until their responses are reported by {@link #telegramReceived(GroupAddress, boolean)}
+ * or they time out and are retried.</p>
+ *
+ * <p>Initial reads are always sent before periodic refreshes. The progress of the
+ * initialization is logged and a summary is logged once all initial reads are done.</p>
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class KNXReadScheduler implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(KNXReadScheduler.class);
+
+	/** the priority of reads which initialize the state of an item */
+	private static final int PRIORITY_INITIAL = 0;
+
+	/** the priority of periodic refreshes */
+	private static final int PRIORITY_REFRESH = 1;
+
+	/** the delay in milliseconds before a failed read is retried, it is multiplied by the number of retries */
+	private static final long RETRY_DELAY = 1000L;
+
+	/** the maximum time in milliseconds to wait before the queues are checked again */
+	private static final long MAX_WAIT = 1000L;
+
+	/** the number of initial reads after which the progress is logged */
+	private static final int PROGRESS_INTERVAL = 100;
+
+	/** all scheduled reads by their datapoint */
+	private final Map<Datapoint, ReadRequest> requests = new HashMap<Datapoint, ReadRequest>();
+
+	/** the reads which are due, ordered by their priority and the time they became due */
+	private final PriorityQueue<ReadRequest> dueReads = new PriorityQueue<ReadRequest>(11, new Comparator<ReadRequest>() {
+		public int compare(ReadRequest r1, ReadRequest r2) {
+			if (r1.priority != r2.priority) {
+				return r1.priority < r2.priority ? -1 : 1;
+			}
+			return r1.sequence < r2.sequence ? -1 : (r1.sequence == r2.sequence ? 0 : 1);
+		}
+	});
+
+	/** the reads which wait for their retry or refresh, ordered by the time they become due */
+	private final PriorityQueue<ReadRequest> delayedReads = new PriorityQueue<ReadRequest>(11, new Comparator<ReadRequest>() {
+		public int compare(ReadRequest r1, ReadRequest r2) {
+			return r1.dueTime < r2.dueTime ? -1 : (r1.dueTime == r2.dueTime ? 0 : 1);
+		}
+	});
+
+	/** the reads which have been sent and wait for a response, by their group address */
+	private final Map<GroupAddress, List<ReadRequest>> pendingReads = new HashMap<GroupAddress, List<ReadRequest>>();
+
+	private long sequence = 0;
+
+	/** the tokens of the bucket which limits the read rate */
+	private double tokens = 0;
+
+	/** the time the bucket has been refilled the last time */
+	private long lastRefill = 0;
+
+	/** the time at which the scheduler thread checks the queues again, if it could not send a request */
+	private long nextCheck = 0;
+
+	/** the number of initial reads which have not been done yet */
+	private int initialReads = 0;
+
+	/** the number of initial reads since the last time all of them had been done */
+	private int initialReadsTotal = 0;
+
+	/** the number of initial reads which failed since the last time all of them had been done */
+	private int initialReadsFailed = 0;
+
+	/** the time the first of the current initial reads has been scheduled */
+	private long initializationStart = 0;
+
+	private Thread thread = null;
+
+	private volatile boolean running = false;
+
+	/**
+	 * Starts the thread which sends the read requests.
+	 */
+	public synchronized void start() {
+		if (thread == null) {
+			running = true;
+			thread = new Thread(this, "KNX read scheduler");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stops the thread which sends the read requests; scheduled reads are kept.
+	 */
+	public void stop() {
+		Thread oldThread;
+		synchronized (this) {
+			running = false;
+			oldThread = thread;
+			thread = null;
+			notifyAll();
+		}
+		if (oldThread != null) {
+			oldThread.interrupt();
+		}
+	}
+
+	/**
+	 * Schedules an initial read of the given datapoint, which is sent as soon as the rate
+	 * limit allows. If the datapoint is already scheduled, it is read again with the
+	 * priority of an initial read.
+	 *
+	 * @param datapoint the datapoint to read
+	 * @param refreshInterval the interval in seconds in which the datapoint is read again
+	 * after the initial read or <code>0</code>, if it should only be read once
+	 */
+	public void schedule(Datapoint datapoint, int refreshInterval) {
+		schedule(datapoint, refreshInterval, System.currentTimeMillis());
+	}
+
+	/** see {@link #schedule(Datapoint, int)}, at the given time in milliseconds */
+	synchronized void schedule(Datapoint datapoint, int refreshInterval, long now) {
+		ReadRequest request = requests.get(datapoint);
+		if (request == null) {
+			request = new ReadRequest(datapoint);
+			requests.put(datapoint, request);
+		}
+		request.refreshInterval = refreshInterval * 1000L;
+		request.retries = 0;
+		startInitialRead(request, now);
+
+		if (request.state == State.PENDING) {
+			// the response of the pending read serves as initial read
+			return;
+		}
+		if (request.state == State.DUE) {
+			if (request.priority == PRIORITY_INITIAL) {
+				return;
+			}
+			dueReads.remove(request);
+		} else if (request.state == State.DELAYED) {
+			delayedReads.remove(request);
+		}
+		request.priority = PRIORITY_INITIAL;
+		enqueue(request);
+		notifyAll();
+	}
+
+	/**
+	 * Removes the given datapoint from the schedule.
+	 *
+	 * @param datapoint the datapoint not to read anymore
+	 */
+	public synchronized void unschedule(Datapoint datapoint) {
+		ReadRequest request = requests.remove(datapoint);
+		if (request == null) {
+			return;
+		}
+		if (request.state == State.DUE) {
+			dueReads.remove(request);
+		} else if (request.state == State.DELAYED) {
+			delayedReads.remove(request);
+		} else if (request.state == State.PENDING) {
+			GroupAddress groupAddress = request.datapoint.getMainAddress();
+			List<ReadRequest> pending = pendingReads.get(groupAddress);
+			pending.remove(request);
+			if (pending.isEmpty()) {
+				pendingReads.remove(groupAddress);
+			}
+		}
+		request.state = State.IDLE;
+		if (request.initial) {
+			request.initial = false;
+			initialReads--;
+			initialReadsTotal--;
+			checkInitializationDone(System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Removes all datapoints of the given item from the schedule.
+	 *
+	 * @param itemName the name of the item
+	 */
+	public synchronized void unscheduleItem(String itemName) {
+		for (Datapoint datapoint : new ArrayList<Datapoint>(requests.keySet())) {
+			if (datapoint.getName().equals(itemName)) {
+				unschedule(datapoint);
+			}
+		}
+	}
+
+	/**
+	 * Removes all datapoints from the schedule, which are not contained in the given collection.
+	 *
+	 * @param datapoints the datapoints to keep
+	 */
+	public synchronized void retainAll(Collection<Datapoint> datapoints) {
+		for (Datapoint datapoint : new ArrayList<Datapoint>(requests.keySet())) {
+			if (!datapoints.contains(datapoint)) {
+				unschedule(datapoint);
+			}
+		}
+	}
+
+	/**
+	 * Has to be called for every telegram received from the KNX bus. If it carries a value for
+	 * a group address with pending read requests, these are answered. All other telegrams take
+	 * a token from the bucket, as they are part of the bus load.
+	 *
+	 * @param groupAddress the destination of the telegram
+	 * @param hasValue <code>true</code>, if the telegram carries a value (i.e. it is a write
+	 * or a response, but not a read request)
+	 */
+	public void telegramReceived(GroupAddress groupAddress, boolean hasValue) {
+		telegramReceived(groupAddress, hasValue, System.currentTimeMillis());
+	}
+
+	/** see {@link #telegramReceived(GroupAddress, boolean)}, at the given time in milliseconds */
+	synchronized void telegramReceived(GroupAddress groupAddress, boolean hasValue, long now) {
+		List<ReadRequest> answered = hasValue ? pendingReads.remove(groupAddress) : null;
+		if (answered == null) {
+			refillTokens(now);
+			tokens = Math.max(0, tokens - 1);
+			return;
+		}
+		for (ReadRequest request : answered) {
+			request.retries = 0;
+			finishInitialRead(request, true, now);
+			reschedule(request, now);
+		}
+		notifyAll();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void run() {
+		while (running) {
+			ReadRequest request;
+			try {
+				request = nextRequest();
+			} catch (InterruptedException e) {
+				break;
+			}
+			if (request == null) {
+				break;
+			}
+			try {
+				logger.debug("Sending read request to KNX for item {}", request.datapoint.getName());
+				KNXConnection.sendGroupRead(request.datapoint.getMainAddress());
+			} catch (KNXException e) {
+				logger.warn("Cannot read value for item '{}' from KNX bus: {}", request.datapoint.getName(), e.getMessage());
+				sendFailed(request);
+			} catch (KNXIllegalArgumentException e) {
+				logger.warn("Error sending KNX read request for '{}': {}", request.datapoint.getName(), e.getMessage());
+				sendFailed(request);
+			}
+		}
+	}
+
+	/**
+	 * Waits until a read request is due, there are less pending reads than allowed and the
+	 * rate limit allows to send another request.
+	 *
+	 * @return the request to send, which has already been marked as pending, or
+	 * <code>null</code> if the scheduler has been stopped
+	 * @throws InterruptedException if the thread has been interrupted while waiting
+	 */
+	private synchronized ReadRequest nextRequest() throws InterruptedException {
+		while (running) {
+			long now = System.currentTimeMillis();
+			ReadRequest request = takeRequest(now);
+			if (request != null) {
+				return request;
+			}
+			wait(Math.max(nextCheck - now, 1));
+		}
+		return null;
+	}
+
+	/**
+	 * Takes the next read request, if one is due, there are less pending reads than allowed
+	 * and the rate limit allows to send it. Otherwise {@link #nextCheck} is set to the time
+	 * at which this should be checked again.
+	 *
+	 * @param now the current time in milliseconds
+	 * @return the request to send, which has already been marked as pending, or
+	 * <code>null</code> if no request may be sent now
+	 */
+	private ReadRequest takeRequest(long now) {
+		while (true) {
+			long wait = Math.min(expirePendingReads(now), moveDueReads(now));
+			ReadRequest request = dueReads.peek();
+			if (request != null && !KNXConnection.shutdown) {
+				GroupAddress groupAddress = request.datapoint.getMainAddress();
+				List<ReadRequest> pending = pendingReads.get(groupAddress);
+				if (pending != null) {
+					// another item reads the same group address, the response answers both
+					dueReads.poll();
+					request.state = State.PENDING;
+					request.sentTime = pending.get(0).sentTime;
+					pending.add(request);
+					continue;
+				}
+				if (pendingReads.size() < KNXConnection.getMaxPendingReads()) {
+					long tokenWait = takeToken(now);
+					if (tokenWait == 0) {
+						dueReads.poll();
+						request.state = State.PENDING;
+						request.sentTime = now;
+						pending = new ArrayList<ReadRequest>(1);
+						pending.add(request);
+						pendingReads.put(groupAddress, pending);
+						return request;
+					}
+					wait = Math.min(wait, tokenWait);
+				}
+			}
+			nextCheck = now + wait;
+			return null;
+		}
+	}
+
+	/**
+	 * Takes the datapoint to read next at the given time, as the scheduler thread would do.
+	 *
+	 * @param now the current time in milliseconds
+	 * @return the datapoint to read or <code>null</code>, if no read request may be sent now
+	 */
+	synchronized Datapoint takeDueRead(long now) {
+		ReadRequest request = takeRequest(now);
+		return request != null ? request.datapoint : null;
+	}
+
+	/**
+	 * Marks the given request and all requests waiting for the same response as failed,
+	 * after the request could not be sent.
+	 */
+	private synchronized void sendFailed(ReadRequest request) {
+		List<ReadRequest> pending = pendingReads.remove(request.datapoint.getMainAddress());
+		if (pending != null) {
+			long now = System.currentTimeMillis();
+			for (ReadRequest failedRequest : pending) {
+				readFailed(failedRequest, now);
+			}
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Fails all pending reads which did not get a response within the response timeout.
+	 *
+	 * @return the time in milliseconds until the next pending read times out
+	 */
+	private long expirePendingReads(long now) {
+		long timeout = KNXConnection.getResponseTimeout();
+		long wait = MAX_WAIT;
+		List<ReadRequest> expired = null;
+		Iterator<List<ReadRequest>> iterator = pendingReads.values().iterator();
+		while (iterator.hasNext()) {
+			List<ReadRequest> pending = iterator.next();
+			long expiry = pending.get(0).sentTime + timeout;
+			if (expiry <= now) {
+				iterator.remove();
+				if (expired == null) {
+					expired = new ArrayList<ReadRequest>();
+				}
+				expired.addAll(pending);
+			} else {
+				wait = Math.min(wait, expiry - now);
+			}
+		}
+		if (expired != null) {
+			for (ReadRequest request : expired) {
+				logger.debug("No response to read request for item '{}' within {} ms", request.datapoint.getName(), timeout);
+				readFailed(request, now);
+			}
+		}
+		return wait;
+	}
+
+	/**
+	 * Moves all delayed reads which are due to the queue of due reads.
+	 *
+	 * @return the time in milliseconds until the next delayed read is due
+	 */
+	private long moveDueReads(long now) {
+		ReadRequest request;
+		while ((request = delayedReads.peek()) != null && request.dueTime <= now) {
+			delayedReads.poll();
+			enqueue(request);
+		}
+		return request == null ? MAX_WAIT : Math.min(MAX_WAIT, request.dueTime - now);
+	}
+
+	private void enqueue(ReadRequest request) {
+		request.state = State.DUE;
+		request.sequence = sequence++;
+		dueReads.add(request);
+	}
+
+	private void delay(ReadRequest request, long dueTime) {
+		request.state = State.DELAYED;
+		request.dueTime = dueTime;
+		delayedReads.add(request);
+	}
+
+	/**
+	 * Schedules the next periodic refresh of a datapoint or removes it from the
+	 * schedule, if it has no refresh interval.
+	 */
+	private void reschedule(ReadRequest request, long now) {
+		if (request.refreshInterval > 0) {
+			request.priority = PRIORITY_REFRESH;
+			delay(request, now + request.refreshInterval);
+		} else {
+			request.state = State.IDLE;
+			requests.remove(request.datapoint);
+		}
+	}
+
+	private void readFailed(ReadRequest request, long now) {
+		request.retries++;
+		int retriesLimit = KNXConnection.getReadRetriesLimit();
+		if (request.retries > retriesLimit) {
+			logger.debug("Giving up reading item {} - retries ({}) exceeded.", request.datapoint.getName(), retriesLimit);
+			request.retries = 0;
+			finishInitialRead(request, false, now);
+			reschedule(request, now);
+		} else {
+			delay(request, now + RETRY_DELAY * request.retries);
+		}
+	}
+
+	/**
+	 * Takes a token from the bucket which limits the read rate.
+	 *
+	 * @return <code>0</code>, if a token has been taken, otherwise the time in
+	 * milliseconds until the next token is available
+	 */
+	private long takeToken(long now) {
+		refillTokens(now);
+		if (tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return (long) Math.ceil((1 - tokens) * KNXConnection.getReadingPause());
+	}
+
+	private void refillTokens(long now) {
+		long pause = KNXConnection.getReadingPause();
+		int burst = KNXConnection.getReadBurst();
+		if (pause <= 0) {
+			tokens = burst;
+		} else {
+			tokens = Math.min(burst, tokens + (double) (now - lastRefill) / pause);
+		}
+		lastRefill = now;
+	}
+
+	private void startInitialRead(ReadRequest request, long now) {
+		if (request.initial) {
+			return;
+		}
+		if (initialReads == 0) {
+			initializationStart = now;
+			initialReadsTotal = 0;
+			initialReadsFailed = 0;
+		}
+		request.initial = true;
+		initialReads++;
+		initialReadsTotal++;
+	}
+
+	private void finishInitialRead(ReadRequest request, boolean successful, long now) {
+		if (!request.initial) {
+			return;
+		}
+		request.initial = false;
+		initialReads--;
+		if (!successful) {
+			initialReadsFailed++;
+		}
+		int done = initialReadsTotal - initialReads;
+		if (initialReads > 0 && done % PROGRESS_INTERVAL == 0) {
+			logger.debug("Read {} of {} datapoints from the KNX bus ({} failed)",
+					new Object[] { done, initialReadsTotal, initialReadsFailed });
+		}
+		checkInitializationDone(now);
+	}
+
+	private void checkInitializationDone(long now) {
+		if (initialReads == 0 && initialReadsTotal > 0) {
+			logger.info("Read {} datapoints from the KNX bus in {} ms ({} failed)",
+					new Object[] { initialReadsTotal, now - initializationStart, initialReadsFailed });
+			initialReadsTotal = 0;
+		}
+	}
+
+	private enum State {
+		/** not queued, as it has been read and has no refresh interval */
+		IDLE,
+		/** waiting to be sent */
+		DUE,
+		/** waiting for a retry or the next refresh */
+		DELAYED,
+		/** sent and waiting for a response */
+		PENDING
+	}
+
+	/**
+	 * The schedule of the reads of a single datapoint.
+	 */
+	private static class ReadRequest {
+		final Datapoint datapoint;
+		State state = State.IDLE;
+		int priority = PRIORITY_INITIAL;
+		long refreshInterval = 0;
+		long sequence = 0;
+		long dueTime = 0;
+		long sentTime = 0;
+		int retries = 0;
+		boolean initial = false;
+
+		ReadRequest(Datapoint datapoint) {
+			this.datapoint = datapoint;
+		}
+	}
+
+}
@@ -8,9 +8,14 @@
  */
 package org.openhab.binding.knx.internal.config;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.NoSuchElementException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openhab.binding.knx.config.KNXBindingProvider;
 import org.openhab.binding.knx.internal.dpt.KNXCoreTypeMapper;
@@ -32,7 +37,6 @@ import tuwien.auto.calimero.exception.KNXFormatException;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 
 /**
  * <p>This class can parse information from the generic binding format and provides KNX binding information from it. It
@@ -40,8 +44,8 @@ import com.google.common.collect.Lists;
  * 
  * <p>The syntax of the binding configuration strings accepted is the following:<p>
  * <p><code>
- * 	knx="[&lt;dptId&gt;:][&lt;]&lt;mainGA&gt;[[+&lt;listeningGA&gt;]+&lt;listeningGA&gt;..],
- *  [&lt;dptId&gt;:][&lt;]&lt;mainGA&gt;[[+&lt;listeningGA&gt;]+&lt;listeningGA&gt;..]"
+ * 	knx="[&lt;dptId&gt;:][&lt;[(&lt;refresh&gt;)]]&lt;mainGA&gt;[[+&lt;listeningGA&gt;]+&lt;listeningGA&gt;..],
+ *  [&lt;dptId&gt;:][&lt;[(&lt;refresh&gt;)]]&lt;mainGA&gt;[[+&lt;listeningGA&gt;]+&lt;listeningGA&gt;..]"
  * </code></p>
  * where parts in brackets [] signify an optional information.
  * 
@@ -50,6 +54,8 @@ import com.google.common.collect.Lists;
  * from the list of accepted command types of the item - i.e. the second datapoint definition is mapped to the second
  * accepted command type of the item.</p>
  * <p> The optional '&lt;' sign tells whether the datapoint accepts read requests on the KNX bus (it does, if the sign is there)</p>
+ * <p> It can be followed by a number of seconds in parentheses, in which case the datapoint is not only read on startup,
+ * but periodically in this interval</p>
  * 
  * <p>Here are some examples for valid binding configuration strings:
  * <ul>
@@ -59,6 +65,7 @@ import com.google.common.collect.Lists;
  * 		<li><code>knx="1.001:1/1/10"</code></li>
  * 		<li><code>knx="<1/1/10"/code></li>
  * 		<li><code>knx="<1/1/10+0/1/13+0/1/14+0/1/15"</code></li>
+ * 		<li><code>knx="<(300)1/1/10"</code></li>
  *	</ul>
  *	</li>
  *	<li> For a RollershutterItem:
@@ -79,6 +86,15 @@ public class KNXGenericBindingProvider extends AbstractGenericBindingProvider im
 
 	/** the binding type to register for as a binding config reader */
 	public static final String KNX_BINDING_TYPE = "knx";
+
+	/**
+	 * the binding config items by each group address they are bound to; it is kept up to date whenever
+	 * binding configs are added or removed, so that telegrams from the bus do not have to be matched against
+	 * all binding configs. The lists are never modified but replaced, all changes are made while holding the
+	 * lock of the map.
+	 */
+	private final Map<GroupAddress, List<KNXBindingConfigItem>> groupAddressIndex = 
+		new ConcurrentHashMap<GroupAddress, List<KNXBindingConfigItem>>();
 	
 	/**
 	 * {@inheritDoc}
@@ -109,126 +125,159 @@ public class KNXGenericBindingProvider extends AbstractGenericBindingProvider im
 	/**
 	 * {@inheritDoc}
 	 */
-	@SuppressWarnings("unchecked")
-	public Iterable<Datapoint> getDatapoints(final String itemName, final GroupAddress groupAddress) {
-		synchronized(bindingConfigs) {
-			try {
-				Iterable<KNXBindingConfig> configList = Iterables.filter(Iterables.concat(bindingConfigs.values()), KNXBindingConfig.class);
-				Iterable<KNXBindingConfigItem> configItemList = Iterables.filter(Iterables.concat(configList), KNXBindingConfigItem.class);
-				
-				Iterable<KNXBindingConfigItem> bindingConfigs = Iterables.filter(configItemList,
-						new Predicate<KNXBindingConfigItem>() {
-							public boolean apply(KNXBindingConfigItem input) {
-								return input.itemName.equals(itemName) && input.allDataPoints.contains(groupAddress);
-							}
-						});
-				
-				Iterable<Datapoint> datapoints = Iterables.transform(bindingConfigs, 
-					new Function<KNXBindingConfigItem, Datapoint>() {
-						public Datapoint apply(KNXBindingConfigItem configItem) {
-							return configItem.mainDataPoint;
+	@Override
+	protected void addBindingConfig(Item item, BindingConfig config) {
+		synchronized (groupAddressIndex) {
+			removeFromIndex(bindingConfigs.get(item.getName()));
+			addToIndex(config);
+		}
+		super.addBindingConfig(item, config);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removeConfigurations(String context) {
+		Set<Item> items = contextMap.get(context);
+		if (items != null) {
+			synchronized (groupAddressIndex) {
+				for (Item item : items) {
+					removeFromIndex(bindingConfigs.get(item.getName()));
+				}
+			}
+		}
+		super.removeConfigurations(context);
+	}
+
+	private void addToIndex(BindingConfig config) {
+		if (config instanceof KNXBindingConfig) {
+			for (KNXBindingConfigItem configItem : (KNXBindingConfig) config) {
+				for (Object datapoint : configItem.allDataPoints.getDatapoints()) {
+					GroupAddress groupAddress = ((Datapoint) datapoint).getMainAddress();
+					List<KNXBindingConfigItem> oldConfigItems = groupAddressIndex.get(groupAddress);
+					List<KNXBindingConfigItem> configItems = oldConfigItems == null ? 
+						new ArrayList<KNXBindingConfigItem>(1) : new ArrayList<KNXBindingConfigItem>(oldConfigItems);
+					configItems.add(configItem);
+					groupAddressIndex.put(groupAddress, configItems);
+				}
+			}
+		}
+	}
+
+	private void removeFromIndex(BindingConfig config) {
+		if (config instanceof KNXBindingConfig) {
+			for (KNXBindingConfigItem configItem : (KNXBindingConfig) config) {
+				for (Object datapoint : configItem.allDataPoints.getDatapoints()) {
+					GroupAddress groupAddress = ((Datapoint) datapoint).getMainAddress();
+					List<KNXBindingConfigItem> oldConfigItems = groupAddressIndex.get(groupAddress);
+					if (oldConfigItems == null) {
+						continue;
+					}
+					List<KNXBindingConfigItem> configItems = new ArrayList<KNXBindingConfigItem>(oldConfigItems.size());
+					for (KNXBindingConfigItem oldConfigItem : oldConfigItems) {
+						if (oldConfigItem != configItem) {
+							configItems.add(oldConfigItem);
 						}
-					});
-				
-				return datapoints;
+					}
+					if (configItems.isEmpty()) {
+						groupAddressIndex.remove(groupAddress);
+					} else {
+						groupAddressIndex.put(groupAddress, configItems);
+					}
+				}
 			}
-			catch(NoSuchElementException e) {
-				return null;
+		}
+	}
+
+	/**
+	 * Returns all binding config items that are bound to the given group address
+	 * 
+	 * @param groupAddress the group address to look up
+	 * @return the binding config items, never <code>null</code>
+	 */
+	private List<KNXBindingConfigItem> getConfigItems(GroupAddress groupAddress) {
+		List<KNXBindingConfigItem> configItems = groupAddressIndex.get(groupAddress);
+		if (configItems == null) {
+			return Collections.emptyList();
+		}
+		return configItems;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Iterable<Datapoint> getDatapoints(final String itemName, final GroupAddress groupAddress) {
+		List<Datapoint> datapoints = new ArrayList<Datapoint>(1);
+		for (KNXBindingConfigItem configItem : getConfigItems(groupAddress)) {
+			if (configItem.itemName.equals(itemName)) {
+				datapoints.add(configItem.mainDataPoint);
 			}
 		}
+		return datapoints;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
-	@SuppressWarnings("unchecked")
 	public Iterable<Datapoint> getDatapoints(final String itemName, final Class<? extends Type> typeClass) {
-		synchronized(bindingConfigs) {
-			try {
-				Iterable<KNXBindingConfig> configList = Iterables.filter(Iterables.concat(bindingConfigs.values()), KNXBindingConfig.class);
-				Iterable<KNXBindingConfigItem> configItemList = Iterables.filter(Iterables.concat(configList), KNXBindingConfigItem.class);
-				Iterable<KNXBindingConfigItem> bindingConfigs = Iterables.filter(configItemList,
-						new Predicate<KNXBindingConfigItem>() {
-							public boolean apply(KNXBindingConfigItem input) {
-								if(input==null) {
-									return false;
-								}
-								return input.itemName.equals(itemName)
-										&& KNXCoreTypeMapper.toTypeClass(input.mainDataPoint.getDPT()).equals(typeClass);
-							}
-						});
-				
-				Iterable<Datapoint> datapoints = Iterables.transform(bindingConfigs,
-					new Function<KNXBindingConfigItem, Datapoint>() {
-						public Datapoint apply(KNXBindingConfigItem configItem) {
-							return configItem.mainDataPoint;
-						}
-					});
-				
-				return Lists.newArrayList(datapoints);
-			}
-			catch (NoSuchElementException e) {
-				// ignore and return null
-				return null;
+		List<Datapoint> datapoints = new ArrayList<Datapoint>();
+		BindingConfig config = bindingConfigs.get(itemName);
+		if (config instanceof KNXBindingConfig) {
+			for (KNXBindingConfigItem configItem : (KNXBindingConfig) config) {
+				if (typeClass.equals(KNXCoreTypeMapper.toTypeClass(configItem.mainDataPoint.getDPT()))) {
+					datapoints.add(configItem.mainDataPoint);
+				}
 			}
 		}
+		return datapoints;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
-	@SuppressWarnings("unchecked")
 	public Iterable<String> getListeningItemNames(final GroupAddress groupAddress) {
-		synchronized(bindingConfigs) {
-			Iterable<KNXBindingConfig> configList = Iterables.filter(Iterables.concat(bindingConfigs.values()), KNXBindingConfig.class);
-			Iterable<KNXBindingConfigItem> configItemList = Iterables.filter(Iterables.concat(configList), KNXBindingConfigItem.class);
-			Iterable<KNXBindingConfigItem> filteredBindingConfigs = Iterables.filter(configItemList,
-					new Predicate<KNXBindingConfigItem>() {
-						public boolean apply(KNXBindingConfigItem input) {
-							if(input==null) {
-								return false;
-							}
-							return input.allDataPoints.contains(groupAddress);
-						}
-					});
-			return Iterables.transform(filteredBindingConfigs, new Function<KNXBindingConfigItem, String>() {
-				public String apply(KNXBindingConfigItem from) {
-					if(from==null) {
-						return null;
-					}
-					return from.itemName;
-				}
-			});
+		List<KNXBindingConfigItem> configItems = getConfigItems(groupAddress);
+		List<String> itemNames = new ArrayList<String>(configItems.size());
+		for (KNXBindingConfigItem configItem : configItems) {
+			itemNames.add(configItem.itemName);
 		}
+		return itemNames;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public boolean isCommandGA(final GroupAddress groupAddress) {
-		synchronized(bindingConfigs) {
-			for (BindingConfig config : bindingConfigs.values()) {
-				KNXBindingConfig knxConfig = (KNXBindingConfig) config;
-				for (KNXBindingConfigItem configItem : knxConfig) {
-					if (configItem.allDataPoints.contains(groupAddress)) {
-						if(configItem.mainDataPoint instanceof CommandDP) {
-							if(configItem.mainDataPoint.getMainAddress().equals(groupAddress)) {
-								// the first GA in a CommandDP is always a command GA
-								return true;
-							} else {
-								return false;
-							}
-						} else {
-							// it is a StateDP, so the GA cannot be a command GA
-							return false;
-						}
-					}
+		List<KNXBindingConfigItem> configItems = getConfigItems(groupAddress);
+		if (configItems.isEmpty()) {
+			return false;
+		}
+		KNXBindingConfigItem configItem = configItems.get(0);
+		if(configItem.mainDataPoint instanceof CommandDP) {
+			// the first GA in a CommandDP is always a command GA
+			return configItem.mainDataPoint.getMainAddress().equals(groupAddress);
+		} else {
+			// it is a StateDP, so the GA cannot be a command GA
+			return false;
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getAutoRefreshTime(Datapoint datapoint) {
+		BindingConfig config = bindingConfigs.get(datapoint.getName());
+		if (config instanceof KNXBindingConfig) {
+			for (KNXBindingConfigItem configItem : (KNXBindingConfig) config) {
+				if (datapoint.equals(configItem.readableDataPoint)) {
+					return configItem.autoRefreshInSecs;
 				}
 			}
 		}
-		return false;
+		return 0;
 	}
-	
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -315,11 +364,26 @@ public class KNXGenericBindingProvider extends AbstractGenericBindingProvider im
 						continue;
 					}
 					
-					// check for the readable flag
+					// check for the readable flag and the optional refresh interval
 					boolean isReadable = false;
 					if (dataPoint.startsWith("<")) {
 						isReadable = true;
 						dataPoint = dataPoint.substring(1);
+						if (dataPoint.startsWith("(")) {
+							int end = dataPoint.indexOf(")");
+							if (end < 0) {
+								throw new BindingConfigParseException("Missing ')' after the refresh interval of '" + dataPoint + "'.");
+							}
+							try {
+								configItem.autoRefreshInSecs = Integer.parseInt(dataPoint.substring(1, end).trim());
+							} catch (NumberFormatException e) {
+								throw new BindingConfigParseException("Invalid refresh interval '" + dataPoint.substring(1, end) + "'.");
+							}
+							if (configItem.autoRefreshInSecs < 0) {
+								throw new BindingConfigParseException("The refresh interval '" + dataPoint.substring(1, end) + "' must not be negative.");
+							}
+							dataPoint = dataPoint.substring(end + 1).trim();
+						}
 					}
 					
 					// find the DPT for this entry
@@ -393,6 +457,7 @@ public class KNXGenericBindingProvider extends AbstractGenericBindingProvider im
 		public String itemName;
 		public Datapoint mainDataPoint = null;
 		public Datapoint readableDataPoint = null;
+		public int autoRefreshInSecs = 0;
 		public DatapointMap allDataPoints = new DatapointMap();
 	}
 }
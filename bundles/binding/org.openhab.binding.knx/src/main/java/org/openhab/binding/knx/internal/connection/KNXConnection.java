@@ -28,7 +28,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.DataUnitBuilder;
 import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.Priority;
 import tuwien.auto.calimero.exception.KNXException;
 import tuwien.auto.calimero.knxnetip.KNXnetIPConnection;
 import tuwien.auto.calimero.link.KNXNetworkLink;
@@ -66,6 +69,9 @@ public class KNXConnection implements ManagedService {
 	/** the ip connection type for connecting to the KNX bus. Could be either TUNNEL or ROUTING */
 	private static int ipConnectionType;
 	
+	/** the application layer service of a group read request */
+	private static final int GROUP_READ = 0x00;
+	
 	/** the default multicast ip address (see <a href="http://www.iana.org/assignments/multicast-addresses/multicast-addresses.xml">iana</a> EIBnet/IP)*/
 	private static final String DEFAULT_MULTICAST_IP = "224.0.23.12";
 
@@ -78,9 +84,15 @@ public class KNXConnection implements ManagedService {
 	/** the serial port to use for connecting to the KNX bus */
 	private static String serialPort;
 
-	/** time in milliseconds of how long should be paused between two read requests to the bus during initialization. Default value is <code>50</Code> */
+	/** time in milliseconds of how long should be paused between two read requests to the bus on average. Default value is <code>50</Code> */
 	private static long readingPause = 50;
 	
+	/** number of read requests that may be sent without pause after the bus has been idle. Default value is <code>5</code> */
+	private static int readBurst = 5;
+	
+	/** maximum number of read requests waiting for their response at the same time. Default value is <code>4</code> */
+	private static int maxPendingReads = 4;
+	
 	/** timeout in milliseconds to wait for a response from the KNX bus. Default value is <code>10000</code> */
 	private static long responseTimeout = 10000;
 	
@@ -104,6 +116,26 @@ public class KNXConnection implements ManagedService {
 		return pc;
 	}
 
+	/**
+	 * Sends a read request for the given group address to the KNX bus. In contrast to
+	 * {@link ProcessCommunicator#read(tuwien.auto.calimero.datapoint.Datapoint)} this
+	 * does not wait for the response, which is passed to the process listener like any
+	 * other telegram instead. Thus several read requests can be pending at the same time.
+	 * 
+	 * @param groupAddress the group address to read
+	 * @throws KNXException if there is no connection or the request could not be sent
+	 */
+	public static void sendGroupRead(GroupAddress groupAddress) throws KNXException {
+		KNXNetworkLink currentLink;
+		synchronized (KNXConnection.class) {
+			if (getCommunicator() == null) {
+				throw new KNXException("No connection to the KNX bus");
+			}
+			currentLink = link;
+		}
+		currentLink.sendRequestWait(groupAddress, Priority.LOW, DataUnitBuilder.createCompactAPDU(GROUP_READ, null));
+	}
+
 	public void setProcessListener(ProcessListener listener) {
 		if (pc != null) {
 			pc.removeProcessListener(KNXConnection.listener);
@@ -307,6 +339,22 @@ public class KNXConnection implements ManagedService {
 				readingPause = Long.parseLong(readingPauseString);
 			}
 			
+			String readBurstString = (String) config.get("readBurst");
+			if (StringUtils.isNotBlank(readBurstString)) {
+				int burst = Integer.parseInt(readBurstString);
+				if (burst > 0) {
+					readBurst = burst;
+				}
+			}
+			
+			String maxPendingReadsString = (String) config.get("maxPendingReads");
+			if (StringUtils.isNotBlank(maxPendingReadsString)) {
+				int pendingReads = Integer.parseInt(maxPendingReadsString);
+				if (pendingReads > 0) {
+					maxPendingReads = pendingReads;
+				}
+			}
+			
 			String responseTimeoutString = (String) config.get("timeout");
 			if (StringUtils.isNotBlank(responseTimeoutString)) {
 				long timeout = Long.parseLong(responseTimeoutString);
@@ -340,6 +388,18 @@ public class KNXConnection implements ManagedService {
 		return readingPause;
 	}
 	
+	public static int getReadBurst() {
+		return readBurst;
+	}
+	
+	public static int getMaxPendingReads() {
+		return maxPendingReads;
+	}
+	
+	public static long getResponseTimeout() {
+		return responseTimeout;
+	}
+	
 	public static int getReadRetriesLimit() {
 		return readRetriesLimit;
 	}
@@ -14,6 +14,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.knx.config.KNXTypeMapper;
@@ -64,6 +65,12 @@ public class KNXCoreTypeMapper implements KNXTypeMapper {
 
 	/** stores the default KNX DPT to use for each openHAB type */
 	static private Map<Class<? extends Type>, String> defaultDptMap;
+
+	/** 
+	 * caches the translators by main number and DPT id, as creating them looks up and instantiates
+	 * the translator class reflectively; a translator is only used while holding its lock
+	 */
+	private final Map<String, DPTXlator> translators = new ConcurrentHashMap<String, DPTXlator>();
 	
 	static {
 		dptTypeMap = new HashMap<String, Class<? extends Type>>();
@@ -131,12 +138,16 @@ public class KNXCoreTypeMapper implements KNXTypeMapper {
 
 	public Type toType(Datapoint datapoint, byte[] data) {
 		try {
-			DPTXlator translator = TranslatorTypes.createTranslator(datapoint.getMainNumber(), datapoint.getDPT());
-			translator.setData(data);
-			String value = translator.getValue();
-			String id = translator.getType().getID();
-			logger.trace("toType datapoint DPT = " + datapoint.getDPT());
-			logger.trace("toType datapoint getMainNumver = " + datapoint.getMainNumber());
+			DPTXlator translator = getTranslator(datapoint);
+			String value;
+			String id;
+			synchronized (translator) {
+				translator.setData(data);
+				value = translator.getValue();
+				id = translator.getType().getID();
+			}
+			logger.trace("toType datapoint DPT = {}", datapoint.getDPT());
+			logger.trace("toType datapoint getMainNumver = {}", datapoint.getMainNumber());
 			if(datapoint.getMainNumber()==9) id = "9.001"; // we do not care about the unit of a value, so map everything to 9.001
 			if(datapoint.getMainNumber()==14) id = "14.001"; // we do not care about the unit of a value, so map everything to 14.001
 			Class<? extends Type> typeClass = toTypeClass(id);
@@ -163,6 +174,24 @@ public class KNXCoreTypeMapper implements KNXTypeMapper {
 		
 		return null;
 	}
+
+	/**
+	 * Returns the translator for the datapoint type of the given datapoint, 
+	 * creating it on first use.
+	 * 
+	 * @param datapoint the datapoint to translate data for
+	 * @return the translator for the datapoint type
+	 * @throws KNXException if no translator is available for the datapoint type
+	 */
+	private DPTXlator getTranslator(Datapoint datapoint) throws KNXException {
+		String key = datapoint.getMainNumber() + ":" + datapoint.getDPT();
+		DPTXlator translator = translators.get(key);
+		if (translator == null) {
+			translator = TranslatorTypes.createTranslator(datapoint.getMainNumber(), datapoint.getDPT());
+			translators.put(key, translator);
+		}
+		return translator;
+	}
 	
 	/**
 	 * Converts a datapoint type id into an openHAB type class
@@ -175,7 +204,7 @@ public class KNXCoreTypeMapper implements KNXTypeMapper {
 		 * DecimalType is by default associated to 9.001, so for 12.001, 14.001 
 		 * or 17.001, we need to do exceptional handling
 		 */
-		logger.trace("toTypeClass looking for dptId = " + dptId);
+		logger.trace("toTypeClass looking for dptId = {}", dptId);
 		if ("12.001".equals(dptId)) { 
 			return DecimalType.class;
 		} else if ("14.001".equals(dptId)) {
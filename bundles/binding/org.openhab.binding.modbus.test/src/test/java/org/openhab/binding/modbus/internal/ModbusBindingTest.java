@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.modbus.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openhab.binding.modbus.ModbusBindingProvider;
+
+/**
+ * Tests the grouping of the slaves into poll groups, which are read with a single
+ * request each, and the locks of their connections.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class ModbusBindingTest {
+
+	@After
+	public void tearDown() {
+		ModbusTcpSlave.setPipelinedRequests(1);
+	}
+
+	@Test
+	public void testAdjacentAndOverlappingSlavesAreGrouped() {
+		ModbusSlave slave1 = createTcpSlave("slave1", "host", 1, ModbusBindingProvider.TYPE_HOLDING, 0, 10);
+		ModbusSlave slave2 = createTcpSlave("slave2", "host", 1, ModbusBindingProvider.TYPE_HOLDING, 10, 10);
+		ModbusSlave slave3 = createTcpSlave("slave3", "host", 1, ModbusBindingProvider.TYPE_HOLDING, 15, 10);
+		// a gap in between starts a new group
+		ModbusSlave slave4 = createTcpSlave("slave4", "host", 1, ModbusBindingProvider.TYPE_HOLDING, 26, 10);
+
+		Map<String, List<ModbusSlave>> groups = ModbusBinding.buildPollGroups(Arrays.asList(slave4, slave3, slave2, slave1));
+
+		assertEquals(2, groups.size());
+		assertEquals(Arrays.asList(slave1, slave2, slave3), groups.get("slave1"));
+		assertEquals(Arrays.asList(slave4), groups.get("slave4"));
+	}
+
+	@Test
+	public void testSlavesOfDifferentUnitsAreNotGrouped() {
+		ModbusSlave slave1 = createTcpSlave("slave1", "host", 1, ModbusBindingProvider.TYPE_HOLDING, 0, 10);
+		ModbusSlave slave2 = createTcpSlave("slave2", "host", 2, ModbusBindingProvider.TYPE_HOLDING, 10, 10);
+		ModbusSlave slave3 = createTcpSlave("slave3", "host", 1, ModbusBindingProvider.TYPE_INPUT, 10, 10);
+		ModbusSlave slave4 = createTcpSlave("slave4", "otherhost", 1, ModbusBindingProvider.TYPE_HOLDING, 10, 10);
+
+		Map<String, List<ModbusSlave>> groups = ModbusBinding.buildPollGroups(Arrays.asList(slave1, slave2, slave3, slave4));
+
+		assertEquals(4, groups.size());
+		for (ModbusSlave slave : Arrays.asList(slave1, slave2, slave3, slave4)) {
+			assertEquals(Arrays.asList(slave), groups.get(slave.getName()));
+		}
+	}
+
+	@Test
+	public void testRegisterGroupsAreLimitedTo125Registers() {
+		ModbusSlave slave1 = createTcpSlave("slave1", "host", 1, ModbusBindingProvider.TYPE_HOLDING, 0, 100);
+		ModbusSlave slave2 = createTcpSlave("slave2", "host", 1, ModbusBindingProvider.TYPE_HOLDING, 100, 25);
+		ModbusSlave slave3 = createTcpSlave("slave3", "host", 1, ModbusBindingProvider.TYPE_HOLDING, 125, 1);
+
+		Map<String, List<ModbusSlave>> groups = ModbusBinding.buildPollGroups(Arrays.asList(slave1, slave2, slave3));
+
+		assertEquals(2, groups.size());
+		assertEquals(Arrays.asList(slave1, slave2), groups.get("slave1"));
+		assertEquals(Arrays.asList(slave3), groups.get("slave3"));
+	}
+
+	@Test
+	public void testBitGroupsAreLimitedTo2000Bits() {
+		ModbusSlave slave1 = createTcpSlave("slave1", "host", 1, ModbusBindingProvider.TYPE_COIL, 0, 1000);
+		ModbusSlave slave2 = createTcpSlave("slave2", "host", 1, ModbusBindingProvider.TYPE_COIL, 1000, 1000);
+		ModbusSlave slave3 = createTcpSlave("slave3", "host", 1, ModbusBindingProvider.TYPE_COIL, 2000, 8);
+		// the limit of the registers is not affected by the one of the bits
+		ModbusSlave slave4 = createTcpSlave("slave4", "host", 1, ModbusBindingProvider.TYPE_INPUT, 0, 100);
+		ModbusSlave slave5 = createTcpSlave("slave5", "host", 1, ModbusBindingProvider.TYPE_INPUT, 100, 100);
+
+		Map<String, List<ModbusSlave>> groups = ModbusBinding.buildPollGroups(Arrays.asList(slave1, slave2, slave3, slave4, slave5));
+
+		assertEquals(4, groups.size());
+		assertEquals(Arrays.asList(slave1, slave2), groups.get("slave1"));
+		assertEquals(Arrays.asList(slave3), groups.get("slave3"));
+		assertEquals(Arrays.asList(slave4), groups.get("slave4"));
+		assertEquals(Arrays.asList(slave5), groups.get("slave5"));
+	}
+
+	@Test
+	public void testPipelinedRequestsExtendTheLimit() {
+		ModbusTcpSlave.setPipelinedRequests(2);
+		ModbusSlave slave1 = createTcpSlave("slave1", "host", 1, ModbusBindingProvider.TYPE_HOLDING, 0, 125);
+		ModbusSlave slave2 = createTcpSlave("slave2", "host", 1, ModbusBindingProvider.TYPE_HOLDING, 125, 125);
+		ModbusSlave slave3 = createTcpSlave("slave3", "host", 1, ModbusBindingProvider.TYPE_HOLDING, 250, 1);
+
+		Map<String, List<ModbusSlave>> groups = ModbusBinding.buildPollGroups(Arrays.asList(slave1, slave2, slave3));
+
+		assertEquals(2, groups.size());
+		assertEquals(Arrays.asList(slave1, slave2), groups.get("slave1"));
+		assertEquals(Arrays.asList(slave3), groups.get("slave3"));
+	}
+
+	@Test
+	public void testSlavesOnTheSameConnectionShareTheLock() {
+		ModbusSerialSlave serial1 = new ModbusSerialSlave("serial1");
+		ModbusSerialSlave serial2 = new ModbusSerialSlave("serial2");
+		serial1.setPort("/dev/ttyS0");
+		assertSame(serial1.getConnectionLock(), serial2.getConnectionLock());
+
+		ModbusSlave tcp1 = createTcpSlave("tcp1", "host", 1, ModbusBindingProvider.TYPE_HOLDING, 0, 1);
+		ModbusSlave tcp2 = createTcpSlave("tcp2", "host", 2, ModbusBindingProvider.TYPE_COIL, 0, 1);
+		ModbusSlave tcp3 = createTcpSlave("tcp3", "otherhost", 1, ModbusBindingProvider.TYPE_HOLDING, 0, 1);
+		assertSame(tcp1.getConnectionLock(), tcp2.getConnectionLock());
+		assertNotSame(tcp1.getConnectionLock(), tcp3.getConnectionLock());
+		assertNotSame(tcp1.getConnectionLock(), serial1.getConnectionLock());
+	}
+
+	private ModbusTcpSlave createTcpSlave(String name, String host, int id, String type, int start, int length) {
+		ModbusTcpSlave slave = new ModbusTcpSlave(name);
+		slave.setHost(host);
+		slave.setId(id);
+		slave.setType(type);
+		slave.setStart(start);
+		slave.setLength(length);
+		return slave;
+	}
+
+}
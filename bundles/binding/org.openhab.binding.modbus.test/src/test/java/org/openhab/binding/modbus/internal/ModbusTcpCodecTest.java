@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.modbus.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.ModbusException;
+import net.wimpi.modbus.ModbusIOException;
+import net.wimpi.modbus.ModbusSlaveException;
+
+import org.junit.Test;
+
+/**
+ * Encodes read requests and decodes responses built the way a device would
+ * send them, byte by byte in network (big endian) order.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class ModbusTcpCodecTest {
+
+	@Test
+	public void testEncodeReadRequest() {
+		ByteBuffer buffer = ByteBuffer.allocate(ModbusTcpCodec.READ_REQUEST_LENGTH);
+		ModbusTcpCodec.encodeReadRequest(buffer, 0x1234, 17, Modbus.READ_MULTIPLE_REGISTERS, 0x0102, 125);
+
+		assertFalse(buffer.hasRemaining());
+		assertArrayEquals(bytes(0x12, 0x34, 0x00, 0x00, 0x00, 0x06, 17, 0x03, 0x01, 0x02, 0x00, 0x7D), buffer.array());
+	}
+
+	@Test
+	public void testRequestsAreAppended() {
+		ByteBuffer buffer = ByteBuffer.allocate(ModbusTcpCodec.READ_REQUEST_LENGTH * 2);
+		ModbusTcpCodec.encodeReadRequest(buffer, 1, 1, Modbus.READ_COILS, 0, 2000);
+		ModbusTcpCodec.encodeReadRequest(buffer, 0xFFFF, 1, Modbus.READ_COILS, 2000, 8);
+		buffer.flip();
+
+		assertEquals(1, ModbusTcpCodec.getTransactionId(buffer));
+		buffer.position(ModbusTcpCodec.READ_REQUEST_LENGTH);
+		// the transaction id is unsigned
+		assertEquals(0xFFFF, ModbusTcpCodec.getTransactionId(buffer));
+	}
+
+	@Test
+	public void testRegistersRoundTrip() throws ModbusException {
+		ByteBuffer request = ByteBuffer.allocate(ModbusTcpCodec.READ_REQUEST_LENGTH);
+		ModbusTcpCodec.encodeReadRequest(request, 42, 1, Modbus.READ_INPUT_REGISTERS, 100, 3);
+		request.flip();
+
+		ByteBuffer frame = respond(request, bytes(0x12, 0x34, 0xFF, 0xFF, 0x80, 0x00));
+		assertEquals(42, ModbusTcpCodec.getTransactionId(frame));
+		ModbusTcpCodec.checkReadResponse(frame, Modbus.READ_INPUT_REGISTERS, 3);
+
+		short[] registers = new short[3];
+		ModbusTcpCodec.decodeRegisters(frame, 0, registers, 0, 3);
+		// the high byte comes first
+		assertEquals(0x1234, registers[0]);
+		// the registers are unsigned, so the callers mask them
+		assertEquals(65535, registers[1] & 0xFFFF);
+		assertEquals(32768, registers[2] & 0xFFFF);
+		assertEquals(-1, registers[1]);
+	}
+
+	@Test
+	public void testDecodePartOfRegisters() throws ModbusException {
+		ByteBuffer frame = createResponse(7, Modbus.READ_MULTIPLE_REGISTERS, bytes(0x00, 0x01, 0x00, 0x02, 0x00, 0x03, 0x00, 0x04));
+		ModbusTcpCodec.checkReadResponse(frame, Modbus.READ_MULTIPLE_REGISTERS, 4);
+
+		short[] registers = new short[4];
+		ModbusTcpCodec.decodeRegisters(frame, 1, registers, 2, 2);
+		assertArrayEquals(new short[] { 0, 0, 2, 3 }, registers);
+	}
+
+	@Test
+	public void testBitsRoundTrip() throws ModbusException {
+		ByteBuffer request = ByteBuffer.allocate(ModbusTcpCodec.READ_REQUEST_LENGTH);
+		ModbusTcpCodec.encodeReadRequest(request, 1, 1, Modbus.READ_INPUT_DISCRETES, 0, 10);
+		request.flip();
+
+		// the first bit is the least significant bit of the first byte
+		ByteBuffer frame = respond(request, bytes(0x81, 0x02));
+		ModbusTcpCodec.checkReadResponse(frame, Modbus.READ_INPUT_DISCRETES, 10);
+
+		BitSet bits = new BitSet();
+		ModbusTcpCodec.decodeBits(frame, 0, bits, 0, 10);
+		assertEquals(bitSet(0, 7, 9), bits);
+
+		// a part of the bits can be decoded to another position
+		bits.clear();
+		ModbusTcpCodec.decodeBits(frame, 7, bits, 1, 3);
+		assertEquals(bitSet(1, 3), bits);
+	}
+
+	@Test
+	public void testFramesAreRelativeToThePosition() throws ModbusException {
+		ByteBuffer frame = createResponse(0xABCD, Modbus.READ_MULTIPLE_REGISTERS, bytes(0x00, 0x2A));
+		ByteBuffer buffer = ByteBuffer.allocate(frame.remaining() + 5);
+		buffer.position(5);
+		buffer.put(frame);
+		buffer.position(5);
+
+		assertEquals(0xABCD, ModbusTcpCodec.getTransactionId(buffer));
+		ModbusTcpCodec.checkReadResponse(buffer, Modbus.READ_MULTIPLE_REGISTERS, 1);
+		short[] registers = new short[1];
+		ModbusTcpCodec.decodeRegisters(buffer, 0, registers, 0, 1);
+		assertEquals(42, registers[0]);
+	}
+
+	@Test
+	public void testExceptionResponse() throws ModbusException {
+		ByteBuffer frame = createFrame(1, bytes(Modbus.READ_MULTIPLE_REGISTERS | 0x80, Modbus.ILLEGAL_ADDRESS_EXCEPTION));
+		try {
+			ModbusTcpCodec.checkReadResponse(frame, Modbus.READ_MULTIPLE_REGISTERS, 1);
+			fail("the exception response has not been detected");
+		} catch (ModbusSlaveException e) {
+			assertTrue(e.isType(Modbus.ILLEGAL_ADDRESS_EXCEPTION));
+		}
+	}
+
+	@Test(expected = ModbusIOException.class)
+	public void testUnexpectedFunctionCode() throws ModbusException {
+		ByteBuffer frame = createResponse(1, Modbus.READ_INPUT_REGISTERS, bytes(0x00, 0x01));
+		ModbusTcpCodec.checkReadResponse(frame, Modbus.READ_MULTIPLE_REGISTERS, 1);
+	}
+
+	@Test
+	public void testTruncatedFrames() throws ModbusException {
+		// the frame ends within the header
+		assertTruncated(createFrame(1, new byte[0]), Modbus.READ_MULTIPLE_REGISTERS, 1);
+		// the frame ends before the byte count
+		assertTruncated(createFrame(1, bytes(Modbus.READ_MULTIPLE_REGISTERS)), Modbus.READ_MULTIPLE_REGISTERS, 1);
+		// the byte count is too small for the registers requested
+		assertTruncated(createResponse(1, Modbus.READ_MULTIPLE_REGISTERS, bytes(0x00, 0x01)), Modbus.READ_MULTIPLE_REGISTERS, 2);
+		// the byte count is right, but the data is missing
+		ByteBuffer frame = createFrame(1, bytes(Modbus.READ_MULTIPLE_REGISTERS, 4, 0x00, 0x01));
+		assertTruncated(frame, Modbus.READ_MULTIPLE_REGISTERS, 2);
+		// 9 bits need 2 bytes
+		assertTruncated(createResponse(1, Modbus.READ_COILS, bytes(0xFF)), Modbus.READ_COILS, 9);
+	}
+
+	private void assertTruncated(ByteBuffer frame, int functionCode, int count) throws ModbusException {
+		try {
+			ModbusTcpCodec.checkReadResponse(frame, functionCode, count);
+			fail("the truncated frame has not been detected");
+		} catch (ModbusIOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Response truncated"));
+		}
+	}
+
+	/**
+	 * Creates the response a device would send to the given request.
+	 */
+	private ByteBuffer respond(ByteBuffer request, byte[] data) {
+		int transactionId = request.getShort(0) & 0xFFFF;
+		int functionCode = request.get(7) & 0xFF;
+		return createResponse(transactionId, functionCode, data);
+	}
+
+	static ByteBuffer createResponse(int transactionId, int functionCode, byte[] data) {
+		byte[] pdu = new byte[data.length + 2];
+		pdu[0] = (byte) functionCode;
+		pdu[1] = (byte) data.length;
+		System.arraycopy(data, 0, pdu, 2, data.length);
+		return createFrame(transactionId, pdu);
+	}
+
+	/**
+	 * Creates a frame with the given PDU and the unit id 1.
+	 */
+	static ByteBuffer createFrame(int transactionId, byte[] pdu) {
+		ByteBuffer frame = ByteBuffer.allocate(ModbusTcpCodec.HEADER_LENGTH + pdu.length);
+		frame.putShort((short) transactionId);
+		frame.putShort((short) Modbus.DEFAULT_PROTOCOL_ID);
+		frame.putShort((short) (pdu.length + 1));
+		frame.put((byte) 1);
+		frame.put(pdu);
+		frame.flip();
+		return frame;
+	}
+
+	static byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+
+	private BitSet bitSet(int... indexes) {
+		BitSet bits = new BitSet();
+		for (int index : indexes) {
+			bits.set(index);
+		}
+		return bits;
+	}
+
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.modbus.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.ModbusIOException;
+import net.wimpi.modbus.ModbusSlaveException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.modbus.ModbusBindingProvider;
+
+/**
+ * Reads the registers of a device simulated by a server socket on the loopback
+ * interface, which answers the pipelined requests in reverse order. Every register
+ * of the device holds its own address.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class ModbusTcpSlaveTest {
+
+	private static final int TIMEOUT = 5000;
+
+	private ServerSocket serverSocket;
+
+	private Device device;
+
+	private List<RecordingSlave> slaves = new ArrayList<RecordingSlave>();
+
+	@Before
+	public void init() throws IOException {
+		serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+		serverSocket.setSoTimeout(TIMEOUT);
+		ModbusTcpSlave.setPipelinedRequests(2);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ModbusTcpSlave.setPipelinedRequests(1);
+		for (RecordingSlave slave : slaves) {
+			slave.resetConnection();
+		}
+		if (device != null) {
+			device.join(TIMEOUT);
+		}
+		serverSocket.close();
+	}
+
+	@Test
+	public void testResponsesInAnyOrder() throws Exception {
+		RecordingSlave slave1 = createSlave("slave1", 100, 125);
+		RecordingSlave slave2 = createSlave("slave2", 225, 125);
+		startDevice(2, 0);
+
+		slave1.read(Arrays.<ModbusSlave> asList(slave1, slave2), 100, 250);
+		assertNull(device.error);
+
+		// the device received both requests before it answered the first one
+		assertEquals(2, device.requests.size());
+		ByteBuffer request1 = device.requests.get(0);
+		ByteBuffer request2 = device.requests.get(1);
+		assertFalse(ModbusTcpCodec.getTransactionId(request1) == ModbusTcpCodec.getTransactionId(request2));
+		assertEquals(100, request1.getShort(8));
+		assertEquals(125, request1.getShort(10));
+		assertEquals(225, request2.getShort(8));
+		assertEquals(125, request2.getShort(10));
+
+		// the responses are matched with the requests by their transaction ids
+		assertEquals(Arrays.asList(225, 100), slave1.references);
+		assertEquals(Arrays.asList(225, 100), slave2.references);
+		assertEquals(100, slave1.first);
+		assertEquals(224, slave1.last);
+		assertEquals(225, slave2.first);
+		assertEquals(349, slave2.last);
+	}
+
+	@Test
+	public void testUnexpectedTransactionId() throws Exception {
+		RecordingSlave slave = createSlave("slave1", 0, 10);
+		startDevice(1, 0x100);
+
+		try {
+			slave.read(Arrays.<ModbusSlave> asList(slave), 0, 10);
+			fail("the response to an unknown request has been accepted");
+		} catch (ModbusIOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Unexpected transaction id"));
+		}
+		assertTrue(slave.references.isEmpty());
+	}
+
+	@Test
+	public void testExceptionResponse() throws Exception {
+		RecordingSlave slave = createSlave("slave1", 0, 10);
+		device = new Device(1, 0) {
+			@Override
+			ByteBuffer respond(ByteBuffer request) {
+				return ModbusTcpCodecTest.createFrame(ModbusTcpCodec.getTransactionId(request),
+						ModbusTcpCodecTest.bytes(Modbus.READ_MULTIPLE_REGISTERS | 0x80, Modbus.ILLEGAL_ADDRESS_EXCEPTION));
+			}
+		};
+		device.start();
+
+		try {
+			slave.read(Arrays.<ModbusSlave> asList(slave), 0, 10);
+			fail("the exception response has been accepted");
+		} catch (ModbusSlaveException e) {
+			assertTrue(e.isType(Modbus.ILLEGAL_ADDRESS_EXCEPTION));
+		}
+		assertTrue(slave.references.isEmpty());
+	}
+
+	private RecordingSlave createSlave(String name, int start, int length) {
+		RecordingSlave slave = new RecordingSlave(name);
+		slave.setHost("127.0.0.1");
+		slave.setPort(serverSocket.getLocalPort());
+		slave.setType(ModbusBindingProvider.TYPE_HOLDING);
+		slave.setStart(start);
+		slave.setLength(length);
+		slaves.add(slave);
+		if (slaves.size() == 1) {
+			assertTrue(slave.connect());
+		}
+		return slave;
+	}
+
+	private void startDevice(int requests, int transactionIdOffset) {
+		device = new Device(requests, transactionIdOffset);
+		device.start();
+	}
+
+	/**
+	 * Records the frames passed to the slave and the first and last register
+	 * decoded for the range of the slave.
+	 */
+	private static class RecordingSlave extends ModbusTcpSlave {
+
+		final List<Integer> references = new ArrayList<Integer>();
+
+		int first = -1;
+
+		int last = -1;
+
+		RecordingSlave(String name) {
+			super(name);
+		}
+
+		@Override
+		void storeData(ByteBuffer frame, int reference, int count) {
+			super.storeData(frame, reference, count);
+			references.add(reference);
+			short[] registers = new short[count];
+			ModbusTcpCodec.decodeRegisters(frame, 0, registers, 0, count);
+			for (int i = 0; i < count; i++) {
+				int address = reference + i;
+				if (address == getStart()) {
+					first = registers[i];
+				} else if (address == getStart() + getLength() - 1) {
+					last = registers[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Accepts a single connection, reads the given number of requests and
+	 * answers them in reverse order.
+	 */
+	private class Device extends Thread {
+
+		final int requestCount;
+
+		final int transactionIdOffset;
+
+		final List<ByteBuffer> requests = new ArrayList<ByteBuffer>();
+
+		volatile String error = null;
+
+		Device(int requestCount, int transactionIdOffset) {
+			this.requestCount = requestCount;
+			this.transactionIdOffset = transactionIdOffset;
+		}
+
+		@Override
+		public void run() {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setSoTimeout(TIMEOUT);
+				try {
+					DataInputStream in = new DataInputStream(socket.getInputStream());
+					for (int i = 0; i < requestCount; i++) {
+						byte[] request = new byte[ModbusTcpCodec.READ_REQUEST_LENGTH];
+						in.readFully(request);
+						requests.add(ByteBuffer.wrap(request));
+					}
+					OutputStream out = socket.getOutputStream();
+					for (int i = requestCount - 1; i >= 0; i--) {
+						ByteBuffer response = respond(requests.get(i));
+						out.write(response.array(), 0, response.limit());
+					}
+					out.flush();
+					// keep the connection open until the client has read the responses
+					in.read();
+				} finally {
+					socket.close();
+				}
+			} catch (IOException e) {
+				error = e.toString();
+			}
+		}
+
+		ByteBuffer respond(ByteBuffer request) {
+			int reference = request.getShort(8) & 0xFFFF;
+			int count = request.getShort(10) & 0xFFFF;
+			byte[] data = new byte[count * 2];
+			for (int i = 0; i < count; i++) {
+				data[i * 2] = (byte) ((reference + i) >> 8);
+				data[i * 2 + 1] = (byte) (reference + i);
+			}
+			int transactionId = ModbusTcpCodec.getTransactionId(request) ^ transactionIdOffset;
+			return ModbusTcpCodecTest.createResponse(transactionId, request.get(7), data);
+		}
+	}
+
+}
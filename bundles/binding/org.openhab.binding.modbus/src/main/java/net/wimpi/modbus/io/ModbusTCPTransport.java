@@ -25,6 +25,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.Modbus;
 import net.wimpi.modbus.ModbusIOException;
@@ -217,6 +218,57 @@ public class ModbusTCPTransport
     }
   }//readResponse
 
+  /**
+   * Writes already encoded frames, e.g. several pipelined
+   * requests, with a single flush.
+   *
+   * @param frames a heap buffer holding the frames between its
+   *        position and its limit.
+   * @throws ModbusIOException if the frames cannot be written.
+   */
+  public void writeFrames(ByteBuffer frames)
+      throws ModbusIOException {
+    try {
+      m_Output.write(frames.array(), frames.arrayOffset() + frames.position(), frames.remaining());
+      m_Output.flush();
+      frames.position(frames.limit());
+    } catch (Exception ex) {
+      throw new ModbusIOException("I/O exception - failed to write.");
+    }
+  }//writeFrames
+
+  /**
+   * Reads a single frame without decoding it, so that the
+   * caller can decode the data straight from the buffer.
+   *
+   * @param frame a heap buffer with room for the largest frame;
+   *        afterwards it holds the frame between position 0 and
+   *        its limit.
+   * @throws ModbusIOException if no complete frame can be read.
+   */
+  public void readFrame(ByteBuffer frame)
+      throws ModbusIOException {
+    try {
+      frame.clear();
+      byte[] buffer = frame.array();
+      int offset = frame.arrayOffset();
+      m_Input.readFully(buffer, offset, 6);
+      //extract length of bytes following in message
+      int bf = (buffer[offset + 4] & 0xff) << 8 | (buffer[offset + 5] & 0xff);
+      if (6 + bf > frame.capacity()) {
+        throw new ModbusIOException("Frame too long (" + bf + " bytes).");
+      }
+      m_Input.readFully(buffer, offset + 6, bf);
+      frame.limit(6 + bf);
+    } catch (ModbusIOException ex) {
+      throw ex;
+    } catch (EOFException eoex) {
+      throw new ModbusIOException("Premature end of stream.", true);
+    } catch (Exception ex) {
+      throw new ModbusIOException("I/O exception - failed to read.");
+    }
+  }//readFrame
+
   /**
    * Prepares the input and output streams of this
    * <tt>ModbusTCPTransport</tt> instance based on the given
@@ -8,23 +8,24 @@
  */
 package org.openhab.binding.modbus.internal;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Dictionary;
 import java.util.Enumeration;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import net.wimpi.modbus.procimg.InputRegister;
-import net.wimpi.modbus.util.BitVector;
-
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.modbus.ModbusBindingProvider;
 import org.openhab.binding.modbus.internal.ModbusGenericBindingProvider.ModbusBindingConfig;
-import org.openhab.core.binding.AbstractActiveBinding;
+import org.openhab.core.binding.AbstractItemPollingBinding;
 import org.openhab.core.binding.BindingProvider;
 import org.openhab.core.library.items.SwitchItem;
 import org.openhab.core.library.types.DecimalType;
@@ -44,7 +45,7 @@ import org.slf4j.LoggerFactory;
  * @author Dmitry Krasnov
  * @since 1.1.0
  */
-public class ModbusBinding extends AbstractActiveBinding<ModbusBindingProvider> implements ManagedService {
+public class ModbusBinding extends AbstractItemPollingBinding<ModbusBindingProvider> implements ManagedService {
 	
 	private static final Logger logger = LoggerFactory.getLogger(ModbusBinding.class);
 
@@ -60,22 +61,28 @@ public class ModbusBinding extends AbstractActiveBinding<ModbusBindingProvider>
 	/** slaves update interval in milliseconds, defaults to 200ms */
 	public static int pollInterval = 200;
 
-	
-	public void activate() {
-	}
+	/** the maximum number of connections which are polled at the same time */
+	private static final int MAX_CONCURRENT_POLLS = 8;
 
-	public void deactivate() {
-	}
-	
-	
-	@Override
-	protected long getRefreshInterval() {
-		return 	pollInterval;
-	}
+	/** 
+	 * the slaves which are read with a single request, by the name of their first slave; 
+	 * these groups are scheduled for polling instead of the single slaves
+	 */
+	private volatile Map<String, List<ModbusSlave>> pollGroups = Collections.emptyMap();
 
-	@Override
-	protected String getName() {
-		return "Modbus Polling Service";
+	/** the configurations of the items bound to each slave, by slave and item name; rebuilt when the bindings change */
+	private volatile Map<String, Map<String, ModbusBindingConfig>> slaveItems = null;
+
+	private static final Comparator<ModbusSlave> START_COMPARATOR = new Comparator<ModbusSlave>() {
+		public int compare(ModbusSlave slave1, ModbusSlave slave2) {
+			return slave1.getStart() - slave2.getStart();
+		}
+	};
+
+	
+	/** polls the slaves of different connections in parallel, but never two slaves on the same connection */
+	public ModbusBinding() {
+		super("Modbus", MAX_CONCURRENT_POLLS);
 	}
 	
 
@@ -95,85 +102,156 @@ public class ModbusBinding extends AbstractActiveBinding<ModbusBindingProvider>
 
 	/**
 	 * Posts update event to OpenHAB bus for "holding" type slaves
-	 * @param binding ModbusBinding to get item configuration from BindingProviding
-	 * @param registers data received from slave device in the last pollInterval
 	 * @param itemName item to update
+	 * @param config configuration of the item
+	 * @param value register value received from slave device in the last pollInterval
 	 */
-	protected void internalUpdateItem(String slaveName, InputRegister[] registers,
-			String itemName) {
-		for (ModbusBindingProvider provider : providers) {
-			if (provider.providesBindingFor(itemName)) {
-				ModbusBindingConfig config = provider.getConfig(itemName);
-				if (config.slaveName.equals(slaveName)) {
-					InputRegister value = registers[config.readRegister];
-					if (config.getItem() instanceof SwitchItem) {
-						if (value.getValue() == 0 && (provider.getConfig(itemName).getItemState() != OnOffType.OFF)) {
-							eventPublisher.postUpdate(itemName, OnOffType.OFF);
-						} else if (value.getValue() != 0 && (provider.getConfig(itemName).getItemState() != OnOffType.ON)) {
-							eventPublisher.postUpdate(itemName, OnOffType.ON);							
-						}
-					} else {
-					DecimalType newState = new DecimalType(value.getValue());
-					if (!newState.equals(provider.getConfig(itemName).getItemState()))
-						eventPublisher.postUpdate(itemName, newState);
-					}
-				}
+	protected void internalUpdateItem(String itemName, ModbusBindingConfig config, 
+			int value) {
+		if (config.getItem() instanceof SwitchItem) {
+			if (value == 0 && (config.getItemState() != OnOffType.OFF)) {
+				eventPublisher.postUpdate(itemName, OnOffType.OFF);
+			} else if (value != 0 && (config.getItemState() != OnOffType.ON)) {
+				eventPublisher.postUpdate(itemName, OnOffType.ON);							
 			}
+		} else {
+			DecimalType newState = new DecimalType(value);
+			if (!newState.equals(config.getItemState()))
+				eventPublisher.postUpdate(itemName, newState);
 		}
 	}
 
 	/**
 	 * Posts update event to OpenHAB bus for "coil" type slaves
-	 * @param binding ModbusBinding to get item configuration from BindingProviding
-	 * @param registers data received from slave device in the last pollInterval
-	 * @param item item to update
+	 * @param itemName item to update
+	 * @param config configuration of the item
+	 * @param state coil value received from slave device in the last pollInterval
 	 */
-	protected void internalUpdateItem(String slaveName, BitVector coils,
-			String itemName) {
-		for (ModbusBindingProvider provider : providers) {
-			if (provider.providesBindingFor(itemName)) {
-				ModbusBindingConfig config = provider.getConfig(itemName);
-				if (config.slaveName.equals(slaveName)) {
-					boolean state = coils.getBit(config.readRegister);
-					State currentState = provider.getConfig(itemName).getItemState();
-					State newState = provider.getConfig(itemName).translateBoolean2State(state);
-					if (!newState.equals(currentState)) {
-						eventPublisher.postUpdate(itemName, newState);
+	protected void internalUpdateItem(String itemName, ModbusBindingConfig config,
+			boolean state) {
+		State currentState = config.getItemState();
+		State newState = config.translateBoolean2State(state);
+		if (!newState.equals(currentState)) {
+			eventPublisher.postUpdate(itemName, newState);
+		}
+	}
+	
+
+	/**
+	 * Returns the configurations of all the items bound to the given slave
+	 * @param slaveName name of the slave
+	 * @return item configurations by item name
+	 */
+	Map<String, ModbusBindingConfig> getSlaveItems(String slaveName) {
+		Map<String, Map<String, ModbusBindingConfig>> index = slaveItems;
+		if (index == null) {
+			index = new HashMap<String, Map<String, ModbusBindingConfig>>();
+			for (ModbusBindingProvider provider : providers) {
+				for (String itemName : provider.getItemNames()) {
+					ModbusBindingConfig config = provider.getConfig(itemName);
+					if (config == null) {
+						continue;
+					}
+					Map<String, ModbusBindingConfig> items = index.get(config.slaveName);
+					if (items == null) {
+						items = new HashMap<String, ModbusBindingConfig>();
+						index.put(config.slaveName, items);
 					}
+					items.put(itemName, config);
 				}
 			}
+			slaveItems = index;
 		}
+		Map<String, ModbusBindingConfig> items = index.get(slaveName);
+		if (items == null) {
+			return Collections.emptyMap();
+		}
+		return items;
+	}
+
+	@Override
+	public void bindingChanged(BindingProvider provider, String itemName) {
+		slaveItems = null;
+		super.bindingChanged(provider, itemName);
+	}
+
+	@Override
+	public void allBindingsChanged(BindingProvider provider) {
+		slaveItems = null;
+		super.allBindingsChanged(provider);
+	}
+
+	@Override
+	public void removeBindingProvider(ModbusBindingProvider provider) {
+		slaveItems = null;
+		super.removeBindingProvider(provider);
 	}
-	
 
 	/**
-	 * Returns names of all the items, registered with this binding
-	 * @return list of item names
+	 * Groups the slaves which can be read with a single request, i.e. the slaves on the same 
+	 * connection with the same unit id and type whose ranges are adjacent or overlap
+	 * @param slaves the slaves to group
+	 * @return the groups by the name of their first slave, each ordered by starting reference
 	 */
-	public Collection<String> getItemNames() {
-		Collection<String> items = null;
-		for (BindingProvider provider : providers) {
-			if (items == null)
-				items = provider.getItemNames();
-			else
-				items.addAll(provider.getItemNames());
+	static Map<String, List<ModbusSlave>> buildPollGroups(Collection<ModbusSlave> slaves) {
+		Map<String, List<ModbusSlave>> candidates = new HashMap<String, List<ModbusSlave>>();
+		for (ModbusSlave slave : slaves) {
+			String key = slave.getConnectionKey() + "#" + slave.getId() + "#" + slave.getType();
+			List<ModbusSlave> sameUnit = candidates.get(key);
+			if (sameUnit == null) {
+				sameUnit = new ArrayList<ModbusSlave>();
+				candidates.put(key, sameUnit);
+			}
+			sameUnit.add(slave);
 		}
-		return items;
+
+		Map<String, List<ModbusSlave>> groups = new HashMap<String, List<ModbusSlave>>();
+		for (List<ModbusSlave> sameUnit : candidates.values()) {
+			Collections.sort(sameUnit, START_COMPARATOR);
+			List<ModbusSlave> group = null;
+			int groupStart = 0;
+			int groupEnd = 0;
+			for (ModbusSlave slave : sameUnit) {
+				int end = slave.getStart() + slave.getLength();
+				if (group == null || slave.getStart() > groupEnd 
+						|| Math.max(groupEnd, end) - groupStart > slave.getMaxReadLength()) {
+					group = new ArrayList<ModbusSlave>();
+					groups.put(slave.getName(), group);
+					groupStart = slave.getStart();
+					groupEnd = end;
+				} else {
+					groupEnd = Math.max(groupEnd, end);
+				}
+				group.add(slave);
+			}
+		}
+		return groups;
 	}
 	
 	
 	/**
-	 * updates all slaves from the modbusSlaves
+	 * Schedules the poll groups, which update the slaves
 	 */
 	@Override
-	protected void execute() {
-		Collection<ModbusSlave> slaves = new HashSet<ModbusSlave>();
-		synchronized (slaves) {
-			slaves.addAll(modbusSlaves.values());
+	protected void scheduleItems() {
+		Map<String, List<ModbusSlave>> groups = pollGroups;
+		for (Map.Entry<String, List<ModbusSlave>> group : groups.entrySet()) {
+			pollingScheduler.schedule(group.getKey(), group.getValue().get(0).getConnectionKey(), pollInterval);
 		}
-		for (ModbusSlave slave : slaves) {
-			slave.update(this);
+		pollingScheduler.retainAll(groups.keySet());
+	}
+
+	/**
+	 * Updates the slaves of a poll group
+	 * {@inheritDoc}
+	 */
+	public boolean poll(String groupName) {
+		List<ModbusSlave> slaves = pollGroups.get(groupName);
+		if (slaves == null) {
+			pollingScheduler.unschedule(groupName);
+			return true;
 		}
+		return ModbusSlave.update(this, slaves);
 	}
 	
 
@@ -201,6 +279,8 @@ public class ModbusBinding extends AbstractActiveBinding<ModbusBindingProvider>
 						}
 					} else if ("writemultipleregisters".equals(key)) {
 						ModbusSlave.setWriteMultipleRegisters(Boolean.valueOf(config.get(key).toString()));
+					} else if ("pipelinedrequests".equals(key)) {
+						ModbusTcpSlave.setPipelinedRequests(Integer.valueOf(config.get(key).toString()));
 					} else {
 						logger.debug("given modbus-slave-config-key '" + key
 							+ "' does not follow the expected pattern 'pollInterval' or '<slaveId>.<connection|id|start|length|type>'");
@@ -261,10 +341,16 @@ public class ModbusBinding extends AbstractActiveBinding<ModbusBindingProvider>
 
 			// connect instances to modbus slaves
 			for (ModbusSlave slave : modbusSlaves.values()) {
-				slave.connect();
+				synchronized (slave.getConnectionLock()) {
+					slave.connect();
+				}
 			}
 
+			pollGroups = buildPollGroups(modbusSlaves.values());
 			setProperlyConfigured(true);
+		} else {
+			pollGroups = Collections.emptyMap();
+			updateSchedule();
 		}
 	}
 	
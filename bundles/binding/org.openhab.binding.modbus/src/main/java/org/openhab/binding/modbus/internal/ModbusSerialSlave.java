@@ -103,4 +103,10 @@ public class ModbusSerialSlave extends ModbusSlave {
 		connection = null;
 	}
 
+	@Override
+	String getConnectionKey() {
+		// all serial slaves share the same connection
+		return "serial:" + port;
+	}
+
 }
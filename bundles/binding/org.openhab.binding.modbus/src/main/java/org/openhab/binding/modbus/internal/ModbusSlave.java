@@ -8,8 +8,16 @@
  */
 package org.openhab.binding.modbus.internal;
 
-import java.util.Collection;
-
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.ModbusException;
 import net.wimpi.modbus.io.ModbusTransaction;
 import net.wimpi.modbus.msg.ModbusRequest;
 import net.wimpi.modbus.msg.ModbusResponse;
@@ -26,9 +34,11 @@ import net.wimpi.modbus.msg.WriteMultipleRegistersRequest;
 import net.wimpi.modbus.msg.WriteSingleRegisterRequest;
 import net.wimpi.modbus.procimg.InputRegister;
 import net.wimpi.modbus.procimg.Register;
+import net.wimpi.modbus.procimg.SimpleRegister;
 import net.wimpi.modbus.util.BitVector;
 
 import org.openhab.binding.modbus.ModbusBindingProvider;
+import org.openhab.binding.modbus.internal.ModbusGenericBindingProvider.ModbusBindingConfig;
 import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.library.types.IncreaseDecreaseType;
 import org.openhab.core.library.types.OnOffType;
@@ -51,6 +61,12 @@ public abstract class ModbusSlave implements ModbusSlaveConnection {
 
 	private static final Logger logger = LoggerFactory.getLogger(ModbusSlave.class);
 
+	/** the maximum number of coils or discrete inputs that can be read with a single request */
+	static final int MAX_BITS_PER_REQUEST = 2000;
+
+	/** the maximum number of registers that can be read with a single request */
+	static final int MAX_REGISTERS_PER_REQUEST = 125;
+
 	/** name - slave name from cfg file, used for items binding */
 	protected String name = null;
 	
@@ -75,9 +91,23 @@ public abstract class ModbusSlave implements ModbusSlaveConnection {
 
 	private int length = 0;
 
-	private Object storage;
+	/** 
+	 * the data read from the device: the bits of "coil" and "discrete" slaves or the registers
+	 * of "holding" and "input" slaves; the buffers are reused for every read and guarded by storageLock
+	 */
+	private BitSet bits = null;
+	private short[] registers = null;
+	private final Object storageLock = new Object();
+
 	protected ModbusTransaction transaction = null; 
 
+	/** 
+	 * the locks which serialize the transactions on each physical connection, by connection key;
+	 * slaves with the same key share the connection and thus the lock, all serial slaves for instance
+	 * share a single serial connection although each of them has its own transaction 
+	 */
+	private static final ConcurrentMap<String, Object> connectionLocks = new ConcurrentHashMap<String, Object>();
+
 
 
 	/**
@@ -132,14 +162,19 @@ public abstract class ModbusSlave implements ModbusSlaveConnection {
 	 */
 	private void setCoil(Command command, int readRegister,
 			int writeRegister) {
-		synchronized (storage) {
-			boolean b = translateCommand2Boolean(command);
-			if (((BitVector)storage).getBit(readRegister) != b) {
-				if (b) {
-					doSetCoil(getStart() + writeRegister, true);
-				} else {
-					doSetCoil(getStart() + writeRegister, readRegister == writeRegister ? false : true);
-				}
+		boolean current;
+		synchronized (storageLock) {
+			if (bits == null) {
+				return;
+			}
+			current = bits.get(readRegister);
+		}
+		boolean b = translateCommand2Boolean(command);
+		if (current != b) {
+			if (b) {
+				doSetCoil(getStart() + writeRegister, true);
+			} else {
+				doSetCoil(getStart() + writeRegister, readRegister == writeRegister ? false : true);
 			}
 		}
 	}
@@ -158,8 +193,11 @@ public abstract class ModbusSlave implements ModbusSlaveConnection {
 		}
 
 		Register newValue = null;
-		synchronized (storage) {
-			newValue = (Register) ((InputRegister[])storage)[readRegister];
+		synchronized (storageLock) {
+			if (registers == null) {
+				return;
+			}
+			newValue = new SimpleRegister(registers[readRegister] & 0xFFFF);
 		}
 
 		if (command instanceof IncreaseDecreaseType) {
@@ -191,14 +229,19 @@ public abstract class ModbusSlave implements ModbusSlaveConnection {
 			request = new WriteSingleRegisterRequest(writeRegister, newValue);
 		}
 		request.setUnitID(getId());
-		transaction.setRequest(request);
 
-		try {
-			logger.debug("ModbusSlave: FC" +request.getFunctionCode()+" ref=" + writeRegister + " value=" + newValue.getValue());				
-			transaction.execute();
-		} catch (Exception e) {
-			logger.debug("ModbusSlave:" + e.getMessage());
-			return;
+		synchronized (getConnectionLock()) {
+			transaction.setRequest(request);
+			try {
+				logger.debug("ModbusSlave: FC" +request.getFunctionCode()+" ref=" + writeRegister + " value=" + newValue.getValue());				
+				transaction.execute();
+			} catch (Exception e) {
+				logger.debug("ModbusSlave:" + e.getMessage());
+				return;
+			}
+		}
+		synchronized (storageLock) {
+			registers[readRegister] = newValue.toShort();
 		}
 	}
 
@@ -215,19 +258,21 @@ public abstract class ModbusSlave implements ModbusSlaveConnection {
 	 * @param b
 	 */
 	public void doSetCoil(int writeRegister, boolean b) {
-		if (!connect()) {
-			logger.info("ModbusSlave not connected");
-			return;
-		}
 		ModbusRequest request = new WriteCoilRequest(writeRegister, b);
 		request.setUnitID(getId());
-		transaction.setRequest(request);
-		try {
-			logger.debug("ModbusSlave: FC05 ref=" + writeRegister + " value=" + b);				
-			transaction.execute();
-		} catch (Exception e) {
-			logger.debug("ModbusSlave:" + e.getMessage());
-			return;
+		synchronized (getConnectionLock()) {
+			if (!connect()) {
+				logger.info("ModbusSlave not connected");
+				return;
+			}
+			transaction.setRequest(request);
+			try {
+				logger.debug("ModbusSlave: FC05 ref=" + writeRegister + " value=" + b);				
+				transaction.execute();
+			} catch (Exception e) {
+				logger.debug("ModbusSlave:" + e.getMessage());
+				return;
+			}
 		}
 	}
 
@@ -235,56 +280,174 @@ public abstract class ModbusSlave implements ModbusSlaveConnection {
 	 * Reads data from the connected device and updates items with the new data
 	 * 
 	 * @param binding ModbusBindig that stores providers information
+	 * @return <code>true</code> if the data could be read from the device
 	 */
-	public void update(ModbusBinding binding) {
-		if (!connect()) {
-			resetConnection();
-			logger.info("ModbusSlave not connected");
-			return;
+	public boolean update(ModbusBinding binding) {
+		return update(binding, Collections.singletonList(this));
+	}
+
+	/**
+	 * Reads the data of several slaves with a single request and updates their items with the new data.
+	 * The slaves have to share the connection, the unit id and the type and their references must not
+	 * have gaps in between; the request is sent through the connection of the first slave.
+	 * 
+	 * @param binding ModbusBindig that stores providers information
+	 * @param slaves the slaves to update, ordered by their starting reference
+	 * @return <code>true</code> if the data could be read from the device
+	 */
+	static boolean update(ModbusBinding binding, List<ModbusSlave> slaves) {
+		ModbusSlave first = slaves.get(0);
+		int start = first.getStart();
+		int end = start;
+		for (ModbusSlave slave : slaves) {
+			end = Math.max(end, slave.getStart() + slave.getLength());
 		}
-		
-		try {
 
-		Object local = null;
+		synchronized (first.getConnectionLock()) {
+			if (!first.connect()) {
+				first.resetConnection();
+				logger.info("ModbusSlave not connected");
+				return false;
+			}
+			try {
+				first.read(slaves, start, end - start);
+			} catch (Exception e) {
+				first.resetConnection();
+				logger.info("ModbusSlave error getting responce from slave");
+				return false;
+			}
+		}
 
+		for (ModbusSlave slave : slaves) {
+			slave.updateItems(binding);
+		}
+		return true;
+	}
 
-			if (ModbusBindingProvider.TYPE_COIL.equals(getType())) {
-				ModbusRequest request = new ReadCoilsRequest(getStart(), getLength());
-				if (this instanceof ModbusSerialSlave) {
-					request.setHeadless();
-				}
-				request.setUnitID(id);
-				ReadCoilsResponse responce = (ReadCoilsResponse) getModbusData(request);
-				local = responce.getCoils();
-			} else if (ModbusBindingProvider.TYPE_DISCRETE.equals(getType())) {
-				ModbusRequest request = new ReadInputDiscretesRequest(getStart(), getLength());
-				ReadInputDiscretesResponse responce = (ReadInputDiscretesResponse) getModbusData(request);
-				local = responce.getDiscretes();
-			} else if (ModbusBindingProvider.TYPE_HOLDING.equals(getType())) {
-				ModbusRequest request = new ReadMultipleRegistersRequest(getStart(), getLength());
-				ReadMultipleRegistersResponse responce = (ReadMultipleRegistersResponse) getModbusData(request);
-				local = responce.getRegisters();
-			} else if (ModbusBindingProvider.TYPE_INPUT.equals(getType())) {
-				ModbusRequest request = new ReadInputRegistersRequest(getStart(), getLength());
-				ReadInputRegistersResponse responce = (ReadInputRegistersResponse) getModbusData(request);
-				local = responce.getRegisters();
+	/**
+	 * Reads a range of data of the type of this slave from the device and stores it 
+	 * in the buffers of the given slaves
+	 * @param slaves the slaves to store the data for
+	 * @param start starting reference of the data to read
+	 * @param length number of coils or registers to read
+	 * @throws ModbusException if the data could not be read
+	 */
+	void read(List<ModbusSlave> slaves, int start, int length) throws ModbusException {
+		Object data = readData(start, length);
+		for (ModbusSlave slave : slaves) {
+			slave.storeData(data, slave.getStart() - start);
+		}
+	}
+
+	/**
+	 * Reads a range of data of the type of this slave from the device
+	 * @param start starting reference of the data to read
+	 * @param length number of coils or registers to read
+	 * @return the data received from the device
+	 */
+	private Object readData(int start, int length) {
+		if (ModbusBindingProvider.TYPE_COIL.equals(getType())) {
+			ModbusRequest request = new ReadCoilsRequest(start, length);
+			if (this instanceof ModbusSerialSlave) {
+				request.setHeadless();
 			}
-			if (storage == null) 
-				storage = local;
-			else {
-				synchronized(storage) {
-					storage = local;
+			ReadCoilsResponse responce = (ReadCoilsResponse) getModbusData(request);
+			return responce.getCoils();
+		} else if (ModbusBindingProvider.TYPE_DISCRETE.equals(getType())) {
+			ModbusRequest request = new ReadInputDiscretesRequest(start, length);
+			ReadInputDiscretesResponse responce = (ReadInputDiscretesResponse) getModbusData(request);
+			return responce.getDiscretes();
+		} else if (ModbusBindingProvider.TYPE_HOLDING.equals(getType())) {
+			ModbusRequest request = new ReadMultipleRegistersRequest(start, length);
+			ReadMultipleRegistersResponse responce = (ReadMultipleRegistersResponse) getModbusData(request);
+			return responce.getRegisters();
+		} else if (ModbusBindingProvider.TYPE_INPUT.equals(getType())) {
+			ModbusRequest request = new ReadInputRegistersRequest(start, length);
+			ReadInputRegistersResponse responce = (ReadInputRegistersResponse) getModbusData(request);
+			return responce.getRegisters();
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the data of this slave from data read for one or several slaves
+	 * @param data data read with a single request
+	 * @param offset position of the starting reference of this slave within the data 
+	 */
+	private void storeData(Object data, int offset) {
+		synchronized (storageLock) {
+			if (data instanceof BitVector) {
+				BitSet bits = getBits();
+				for (int i = 0; i < getLength(); i++) {
+					bits.set(i, ((BitVector) data).getBit(offset + i));
+				}
+			} else if (data instanceof InputRegister[]) {
+				short[] registers = getRegisters();
+				for (int i = 0; i < getLength(); i++) {
+					registers[i] = ((InputRegister[]) data)[offset + i].toShort();
 				}
 			}
-			Collection<String> items = binding.getItemNames();
-			for (String item : items) {
-				updateItem(binding, item);
+		}
+	}
+
+	/**
+	 * Decodes the data of this slave from a response frame which may hold the data
+	 * of other slaves as well
+	 * @param frame a complete and checked read response 
+	 * @param reference starting reference of the data in the frame
+	 * @param count number of coils or registers in the frame
+	 */
+	void storeData(ByteBuffer frame, int reference, int count) {
+		int from = Math.max(reference, getStart());
+		int to = Math.min(reference + count, getStart() + getLength());
+		if (from >= to) {
+			return;
+		}
+		synchronized (storageLock) {
+			if (ModbusTcpCodec.isBitFunction(getReadFunctionCode())) {
+				ModbusTcpCodec.decodeBits(frame, from - reference, getBits(), from - getStart(), to - from);
+			} else {
+				ModbusTcpCodec.decodeRegisters(frame, from - reference, getRegisters(), from - getStart(), to - from);
 			}
-		} catch (Exception e) {
-			resetConnection();
-			logger.info("ModbusSlave error getting responce from slave");
 		}
+	}
+
+	private BitSet getBits() {
+		if (bits == null) {
+			bits = new BitSet(getLength());
+		}
+		return bits;
+	}
 
+	private short[] getRegisters() {
+		if (registers == null || registers.length != getLength()) {
+			registers = new short[getLength()];
+		}
+		return registers;
+	}
+
+	/**
+	 * @return the Modbus function code to read the data of the type of this slave
+	 */
+	int getReadFunctionCode() {
+		if (ModbusBindingProvider.TYPE_COIL.equals(getType())) {
+			return Modbus.READ_COILS;
+		} else if (ModbusBindingProvider.TYPE_DISCRETE.equals(getType())) {
+			return Modbus.READ_INPUT_DISCRETES;
+		} else if (ModbusBindingProvider.TYPE_HOLDING.equals(getType())) {
+			return Modbus.READ_MULTIPLE_REGISTERS;
+		}
+		return Modbus.READ_INPUT_REGISTERS;
+	}
+
+	/**
+	 * Updates the items bound to this slave with the data read from the device
+	 * @param binding ModbusBinding
+	 */
+	private void updateItems(ModbusBinding binding) {
+		for (Map.Entry<String, ModbusBindingConfig> item : binding.getSlaveItems(name).entrySet()) {
+			updateItem(binding, item.getKey(), item.getValue());
+		}
 	}
 
 	/**
@@ -292,13 +455,22 @@ public abstract class ModbusSlave implements ModbusSlaveConnection {
 	 * works only for type "coil" and "holding"
 	 * @param binding ModbusBinding
 	 * @param item item to update
+	 * @param config configuration of the item
 	 */
-	private void updateItem(ModbusBinding binding, String item) {
+	private void updateItem(ModbusBinding binding, String item, ModbusBindingConfig config) {
 		if (ModbusBindingProvider.TYPE_COIL.equals(getType()) || ModbusBindingProvider.TYPE_DISCRETE.equals(getType())) {
-			binding.internalUpdateItem(name, (BitVector)storage,	item);
+			boolean state;
+			synchronized (storageLock) {
+				state = getBits().get(config.readRegister);
+			}
+			binding.internalUpdateItem(item, config, state);
 		}
 		if (ModbusBindingProvider.TYPE_HOLDING.equals(getType()) || ModbusBindingProvider.TYPE_INPUT.equals(getType())) {
-			binding.internalUpdateItem(name, (InputRegister[])storage, item);
+			int value;
+			synchronized (storageLock) {
+				value = getRegisters()[config.readRegister] & 0xFFFF;
+			}
+			binding.internalUpdateItem(item, config, value);
 		}
 	}
 
@@ -309,21 +481,59 @@ public abstract class ModbusSlave implements ModbusSlaveConnection {
 	 */
 	private ModbusResponse getModbusData(ModbusRequest request) {
 		request.setUnitID(getId());
-		transaction.setRequest(request);
 
-		try {
-			transaction.execute();
-		} catch (Exception e) {
-			logger.debug("ModbusSlave:" + e.getMessage());
-			return null;
+		synchronized (getConnectionLock()) {
+			transaction.setRequest(request);
+			try {
+				transaction.execute();
+			} catch (Exception e) {
+				logger.debug("ModbusSlave:" + e.getMessage());
+				return null;
+			}
+
+			ModbusResponse r = transaction.getResponse();
+			if ((r.getTransactionID() != transaction.getTransactionID()) && !r.isHeadless()) {
+				return null;
+			}
+
+			return r;
 		}
+	}
 
-		ModbusResponse r = transaction.getResponse();
-		if ((r.getTransactionID() != transaction.getTransactionID()) && !r.isHeadless()) {
-			return null;
+	/**
+	 * Returns a key which identifies the physical connection to the device. Slaves
+	 * with the same key are never polled at the same time.
+	 * @return the connection key
+	 */
+	abstract String getConnectionKey();
+
+	/**
+	 * Returns the lock which has to be held while using the connection of this slave. The lock
+	 * is shared by all slaves with the same connection key, so their transactions never interleave.
+	 * @return the lock of the connection
+	 */
+	Object getConnectionLock() {
+		String key = getConnectionKey();
+		Object lock = connectionLocks.get(key);
+		if (lock == null) {
+			Object newLock = new Object();
+			lock = connectionLocks.putIfAbsent(key, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
 		}
+		return lock;
+	}
 
-		return r;
+	/**
+	 * @return the maximum number of coils or registers of the type of this slave 
+	 * that can be read with a single request
+	 */
+	int getMaxReadLength() {
+		if (ModbusBindingProvider.TYPE_COIL.equals(getType()) || ModbusBindingProvider.TYPE_DISCRETE.equals(getType())) {
+			return MAX_BITS_PER_REQUEST;
+		}
+		return MAX_REGISTERS_PER_REQUEST;
 	}
 
 	int getStart() {
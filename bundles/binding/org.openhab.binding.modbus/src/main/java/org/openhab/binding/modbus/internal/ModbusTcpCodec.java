@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.modbus.internal;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.ModbusException;
+import net.wimpi.modbus.ModbusIOException;
+import net.wimpi.modbus.ModbusSlaveException;
+
+/**
+ * Encodes Modbus TCP read requests and decodes the responses straight from
+ * the receive buffer into primitive arrays, without creating message or
+ * register objects. All positions are relative to the position of the
+ * buffer, which has to point to the start of the frame.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class ModbusTcpCodec {
+
+	/** length of the MBAP header (transaction id, protocol id, length and unit id) */
+	public static final int HEADER_LENGTH = 7;
+
+	/** length of an encoded read request */
+	public static final int READ_REQUEST_LENGTH = HEADER_LENGTH + 5;
+
+	/** maximum length of a frame: the header plus a PDU of at most 253 bytes */
+	public static final int MAX_FRAME_LENGTH = HEADER_LENGTH + 253;
+
+	/** offset of the data of a read response: header, function code and byte count */
+	private static final int DATA_OFFSET = HEADER_LENGTH + 2;
+
+	private ModbusTcpCodec() {
+	}
+
+	/**
+	 * Encodes a request to read coils, discrete inputs, holding or input registers
+	 *
+	 * @param buffer the buffer to append the request to
+	 * @param transactionId the id to match the response with
+	 * @param unitId the id of the slave
+	 * @param functionCode one of the Modbus read function codes (1-4)
+	 * @param reference the address of the first coil or register to read
+	 * @param count the number of coils or registers to read
+	 */
+	public static void encodeReadRequest(ByteBuffer buffer, int transactionId, int unitId,
+			int functionCode, int reference, int count) {
+		buffer.putShort((short) transactionId);
+		buffer.putShort((short) Modbus.DEFAULT_PROTOCOL_ID);
+		// the length covers the unit id and the PDU
+		buffer.putShort((short) 6);
+		buffer.put((byte) unitId);
+		buffer.put((byte) functionCode);
+		buffer.putShort((short) reference);
+		buffer.putShort((short) count);
+	}
+
+	/**
+	 * @param frame a complete frame
+	 * @return the transaction id of the frame
+	 */
+	public static int getTransactionId(ByteBuffer frame) {
+		return frame.getShort(frame.position()) & 0xFFFF;
+	}
+
+	/**
+	 * Checks that the frame is a complete response to a read request
+	 *
+	 * @param frame a complete response frame
+	 * @param functionCode the function code of the request
+	 * @param count the number of coils or registers requested
+	 * @throws ModbusSlaveException if the slave responded with an exception
+	 * @throws ModbusIOException if the frame does not answer the request
+	 */
+	public static void checkReadResponse(ByteBuffer frame, int functionCode, int count) throws ModbusException {
+		int start = frame.position();
+		if (frame.remaining() < DATA_OFFSET) {
+			throw new ModbusIOException("Response truncated (" + frame.remaining() + " bytes)");
+		}
+		int responseCode = frame.get(start + HEADER_LENGTH) & 0xFF;
+		if (responseCode == (functionCode | 0x80)) {
+			throw new ModbusSlaveException(frame.get(start + HEADER_LENGTH + 1) & 0xFF);
+		}
+		if (responseCode != functionCode) {
+			throw new ModbusIOException("Unexpected function code " + responseCode + " in response");
+		}
+		int byteCount = frame.get(start + HEADER_LENGTH + 1) & 0xFF;
+		int expected = isBitFunction(functionCode) ? (count + 7) / 8 : count * 2;
+		if (byteCount < expected || frame.remaining() < DATA_OFFSET + expected) {
+			throw new ModbusIOException("Response truncated (" + byteCount + " of " + expected + " bytes)");
+		}
+	}
+
+	/**
+	 * Decodes registers of a read holding or input registers response
+	 *
+	 * @param frame a complete and checked response frame
+	 * @param first the index of the first register within the response
+	 * @param registers the array to decode the registers into
+	 * @param offset the index of the first register within the array
+	 * @param count the number of registers to decode
+	 */
+	public static void decodeRegisters(ByteBuffer frame, int first, short[] registers, int offset, int count) {
+		int position = frame.position() + DATA_OFFSET + first * 2;
+		for (int i = 0; i < count; i++) {
+			registers[offset + i] = frame.getShort(position + i * 2);
+		}
+	}
+
+	/**
+	 * Decodes bits of a read coils or discrete inputs response
+	 *
+	 * @param frame a complete and checked response frame
+	 * @param first the index of the first bit within the response
+	 * @param bits the set to decode the bits into
+	 * @param offset the index of the first bit within the set
+	 * @param count the number of bits to decode
+	 */
+	public static void decodeBits(ByteBuffer frame, int first, BitSet bits, int offset, int count) {
+		int position = frame.position() + DATA_OFFSET;
+		for (int i = 0; i < count; i++) {
+			int bit = first + i;
+			// the first bit is the least significant bit of the first byte
+			bits.set(offset + i, (frame.get(position + (bit >> 3)) & (1 << (bit & 7))) != 0);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the function code reads coils or discrete inputs
+	 */
+	public static boolean isBitFunction(int functionCode) {
+		return functionCode == Modbus.READ_COILS || functionCode == Modbus.READ_INPUT_DISCRETES;
+	}
+
+}
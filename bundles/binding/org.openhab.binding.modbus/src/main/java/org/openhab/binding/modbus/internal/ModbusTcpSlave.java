@@ -10,8 +10,14 @@ package org.openhab.binding.modbus.internal;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
 import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.ModbusException;
+import net.wimpi.modbus.ModbusIOException;
 import net.wimpi.modbus.io.ModbusTCPTransaction;
+import net.wimpi.modbus.io.ModbusTCPTransport;
 import net.wimpi.modbus.net.TCPMasterConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +42,17 @@ public class ModbusTcpSlave extends ModbusSlave {
 
 	private TCPMasterConnection connection = null;
 
+	/** the maximum number of requests sent to a device before waiting for its responses, defaults to 1 */
+	private static int pipelinedRequests = 1;
+
+	/** the buffers to encode the requests and to receive the responses, reused for every read */
+	private ByteBuffer requestBuffer = null;
+	private final ByteBuffer responseBuffer = ByteBuffer.allocate(ModbusTcpCodec.MAX_FRAME_LENGTH);
+
+	/** the transaction ids of the requests in flight */
+	private int[] transactionIds = null;
+	private int lastTransactionId = 0;
+
 	public ModbusTcpSlave(String slave) {
 		super(slave);
 		transaction = new ModbusTCPTransaction();
@@ -78,9 +95,88 @@ public class ModbusTcpSlave extends ModbusSlave {
 	}
 	
 	public void resetConnection() {
+		if (connection != null) {
+			connection.close();
+		}
 		connection = null;
 	}
 
+	static void setPipelinedRequests(int requests) {
+		ModbusTcpSlave.pipelinedRequests = Math.max(1, requests);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Ranges that exceed a single request are read with several requests which
+	 * are pipelined, if the devices accept more than one request at a time.
+	 */
+	@Override
+	int getMaxReadLength() {
+		return super.getMaxReadLength() * pipelinedRequests;
+	}
+
+	/**
+	 * Reads the data with up to <code>pipelinedRequests</code> requests in flight and decodes
+	 * the responses straight into the buffers of the slaves, matching them by transaction id
+	 * {@inheritDoc}
+	 */
+	@Override
+	void read(List<ModbusSlave> slaves, int start, int length) throws ModbusException {
+		ModbusTCPTransport transport = (ModbusTCPTransport) connection.getModbusTransport();
+		int functionCode = getReadFunctionCode();
+		int requestLength = super.getMaxReadLength();
+		int requests = (length + requestLength - 1) / requestLength;
+
+		synchronized (getConnectionLock()) {
+			int window = pipelinedRequests;
+			if (requestBuffer == null || transactionIds.length != window) {
+				requestBuffer = ByteBuffer.allocate(ModbusTcpCodec.READ_REQUEST_LENGTH * window);
+				transactionIds = new int[window];
+			}
+
+			for (int first = 0; first < requests; first += window) {
+				int inFlight = Math.min(window, requests - first);
+
+				requestBuffer.clear();
+				for (int i = 0; i < inFlight; i++) {
+					int reference = start + (first + i) * requestLength;
+					int count = Math.min(requestLength, start + length - reference);
+					lastTransactionId = (lastTransactionId + 1) & 0xFFFF;
+					transactionIds[i] = lastTransactionId;
+					ModbusTcpCodec.encodeReadRequest(requestBuffer, lastTransactionId, getId(), functionCode, reference, count);
+				}
+				requestBuffer.flip();
+				transport.writeFrames(requestBuffer);
+
+				// the responses may arrive in any order
+				for (int received = 0; received < inFlight; received++) {
+					transport.readFrame(responseBuffer);
+					int transactionId = ModbusTcpCodec.getTransactionId(responseBuffer);
+					int index = -1;
+					for (int i = 0; i < inFlight; i++) {
+						if (transactionIds[i] == transactionId) {
+							index = i;
+						}
+					}
+					if (index < 0) {
+						throw new ModbusIOException("Unexpected transaction id " + transactionId + " in response");
+					}
+					int reference = start + (first + index) * requestLength;
+					int count = Math.min(requestLength, start + length - reference);
+					ModbusTcpCodec.checkReadResponse(responseBuffer, functionCode, count);
+					for (ModbusSlave slave : slaves) {
+						slave.storeData(responseBuffer, reference, count);
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	String getConnectionKey() {
+		return "tcp:" + getHost() + ":" + getPort();
+	}
+
 	String getHost() {
 		return host;
 	}
@@ -12,8 +12,10 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.util.Dictionary;
 import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -23,7 +25,7 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.owserver.OWServerBindingProvider;
-import org.openhab.core.binding.AbstractActiveBinding;
+import org.openhab.core.binding.AbstractItemPollingBinding;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.items.ContactItem;
 import org.openhab.core.library.items.NumberItem;
@@ -57,7 +59,7 @@ import org.xml.sax.SAXException;
  * @since 1.3.0
  */
 public class OWServerBinding extends
-		AbstractActiveBinding<OWServerBindingProvider> implements
+		AbstractItemPollingBinding<OWServerBindingProvider> implements
 		ManagedService {
 
 	static final Logger logger = LoggerFactory.getLogger(OWServerBinding.class);
@@ -68,12 +70,6 @@ public class OWServerBinding extends
 	 */
 	private int timeout = 5000;
 
-	/**
-	 * the interval to find new refresh candidates (defaults to 1000
-	 * milliseconds)
-	 */
-	private int granularity = 1000;
-
 	/**
 	 * the maximum duration of data in the cache (defaults to 1500 milliseconds)
 	 */
@@ -84,11 +80,13 @@ public class OWServerBinding extends
 	 */
 	private static final Pattern EXTRACT_CONFIG_PATTERN = Pattern.compile("^(.*?)\\.(host)$");
 
-	private Map<String, Long> lastUpdateMap = new HashMap<String, Long>();
+	/** the maximum number of servers which are queried at the same time */
+	private static final int MAX_CONCURRENT_POLLS = 2;
 
-	private Map<String, OWServerConfig> serverList = new HashMap<String, OWServerConfig>();
+	private Map<String, OWServerConfig> serverList = new ConcurrentHashMap<String, OWServerConfig>();
 
 	public OWServerBinding() {
+		super("OWServer", MAX_CONCURRENT_POLLS);
 	}
 
 	@Override
@@ -98,17 +96,11 @@ public class OWServerBinding extends
 		super.activate();
 	}
 
-	/**
-	 * @{inheritDoc
-	 */
 	@Override
-	protected long getRefreshInterval() {
-		return granularity;
-	}
+	public void deactivate() {
+		logger.debug("OWServer: Deactivate");
 
-	@Override
-	protected String getName() {
-		return "OWServer Refresh Service";
+		super.deactivate();
 	}
 
 	String getVariable(String response, String romId, String name) {
@@ -169,71 +161,86 @@ public class OWServerBinding extends
 	 * @{inheritDoc
 	 */
 	@Override
-	public void execute() {
+	protected void scheduleItems() {
+		Set<String> itemNames = new HashSet<String>();
 		for (OWServerBindingProvider provider : providers) {
 			for (String itemName : provider.getInBindingItemNames()) {
-				int refreshInterval = provider.getRefreshInterval(itemName);
+				pollingScheduler.schedule(itemName, provider.getServerId(itemName), provider.getRefreshInterval(itemName));
+				itemNames.add(itemName);
+			}
+		}
+		pollingScheduler.retainAll(itemNames);
+	}
 
-				Long lastUpdateTimeStamp = lastUpdateMap.get(itemName);
-				if (lastUpdateTimeStamp == null) {
-					lastUpdateTimeStamp = 0L;
-				}
+	/**
+	 * @{inheritDoc}
+	 */
+	public boolean poll(String itemName) {
+		OWServerBindingProvider provider = findInBindingProvider(itemName);
+		if (provider == null) {
+			// the binding has been removed in the meantime
+			pollingScheduler.unschedule(itemName);
+			return true;
+		}
 
-				long age = System.currentTimeMillis() - lastUpdateTimeStamp;
-				boolean needsUpdate = age >= refreshInterval;
-
-				if (needsUpdate) {
-					logger.debug("Item '{}' is about to be refreshed now", itemName);
-
-					// Get the unit serverId from the binding, and relate that to the config
-					String unit = provider.getServerId(itemName);
-					OWServerConfig server = serverList.get(unit);
-					needsUpdate = false;
-					if (server == null) {
-						needsUpdate = false;
-						logger.error("Unknown OW server referenced: "+unit);
-						
-						continue;
-					}
-					else {
-						age = System.currentTimeMillis() - server.lastUpdate;
-						if (age >= cacheDuration)
-							needsUpdate = true;
-					}
+		logger.debug("Item '{}' is about to be refreshed now", itemName);
 
-					String response = null;
-					if(needsUpdate == true) {
-						String address = "http://"+server.host+"/details.xml";
-						logger.debug("Getting OWSERVER data from "+address);
-						response = HttpUtil.executeUrl("GET", address, timeout);
-						server.cache = response;
-
-						if (response == null) {
-							server.lastUpdate = (long) 0;
-							logger.error("No response received from '{}'", address);
-						} else {
-							server.lastUpdate = System.currentTimeMillis();
-						}
-						serverList.put(address, server);
-					}
-					else {
-						logger.debug("Using OWSERVER cache");
-						response = server.cache;
-					}
+		// Get the unit serverId from the binding, and relate that to the config
+		String unit = provider.getServerId(itemName);
+		OWServerConfig server = serverList.get(unit);
+		if (server == null) {
+			logger.error("Unknown OW server referenced: "+unit);
+			return false;
+		}
 
-					if(response != null) {
-						String value = getVariable(response, provider.getRomId(itemName), provider.getName(itemName));
-						if (value != null) {
-							Class<? extends Item> itemType = provider.getItemType(itemName);
-							State state = createState(itemType, value);
-							eventPublisher.postUpdate(itemName, state);
-						}
-					}
+		// polls of the same server are never executed concurrently, so
+		// its cache can be shared without further synchronization
+		String response = null;
+		long age = System.currentTimeMillis() - server.lastUpdate;
+		if (age >= cacheDuration) {
+			String address = "http://"+server.host+"/details.xml";
+			logger.debug("Getting OWSERVER data from "+address);
+			response = HttpUtil.executeUrl("GET", address, timeout);
+			server.cache = response;
+
+			if (response == null) {
+				server.lastUpdate = (long) 0;
+				logger.error("No response received from '{}'", address);
+				return false;
+			} else {
+				server.lastUpdate = System.currentTimeMillis();
+			}
+		}
+		else {
+			logger.debug("Using OWSERVER cache");
+			response = server.cache;
+		}
 
-					lastUpdateMap.put(itemName, System.currentTimeMillis());
-				}
+		if(response != null) {
+			String value = getVariable(response, provider.getRomId(itemName), provider.getName(itemName));
+			if (value != null) {
+				Class<? extends Item> itemType = provider.getItemType(itemName);
+				State state = createState(itemType, value);
+				eventPublisher.postUpdate(itemName, state);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the {@link OWServerBindingProvider} which contains the in-binding
+	 * of <code>itemName</code>.
+	 * 
+	 * @param itemName the item to find the provider for
+	 * @return the provider or <code>null</code> if no provider could be found
+	 */
+	private OWServerBindingProvider findInBindingProvider(String itemName) {
+		for (OWServerBindingProvider provider : providers) {
+			if (provider.providesBindingFor(itemName) && provider.getInBindingItemNames().contains(itemName)) {
+				return provider;
 			}
 		}
+		return null;
 	}
 
 	/**
@@ -276,7 +283,7 @@ public class OWServerBinding extends
 			Enumeration<String> keys = config.keys();
 
 			if ( serverList == null ) {
-				serverList = new HashMap<String, OWServerConfig>();
+				serverList = new ConcurrentHashMap<String, OWServerConfig>();
 			}
 			
 			while (keys.hasMoreElements()) {
@@ -321,11 +328,6 @@ public class OWServerBinding extends
 				timeout = Integer.parseInt(timeoutString);
 			}
 
-			String granularityString = (String) config.get("granularity");
-			if (StringUtils.isNotBlank(granularityString)) {
-				granularity = Integer.parseInt(granularityString);
-			}
-
 			String cacheString = (String) config.get("cache");
 			if (StringUtils.isNotBlank(cacheString)) {
 				cacheDuration = Integer.parseInt(cacheString);
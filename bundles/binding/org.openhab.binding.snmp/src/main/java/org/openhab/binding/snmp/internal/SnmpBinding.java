@@ -10,12 +10,12 @@ package org.openhab.binding.snmp.internal;
 
 import java.io.IOException;
 import java.util.Dictionary;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.snmp.SnmpBindingProvider;
-import org.openhab.core.binding.AbstractActiveBinding;
+import org.openhab.core.binding.AbstractItemPollingBinding;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.items.NumberItem;
 import org.openhab.core.library.items.StringItem;
@@ -58,7 +58,7 @@ import org.snmp4j.transport.DefaultUdpTransportMapping;
  * @author Chris Jackson - modified binding to support polling SNMP OIDs (SNMP GET) and setting values (SNMP SET).
  * @since 0.9.0
  */
-public class SnmpBinding extends AbstractActiveBinding<SnmpBindingProvider>
+public class SnmpBinding extends AbstractItemPollingBinding<SnmpBindingProvider>
 		implements ManagedService, CommandResponder, ResponseListener {
 
 	private Snmp snmp;
@@ -77,42 +77,28 @@ public class SnmpBinding extends AbstractActiveBinding<SnmpBindingProvider>
 	private static int timeout = 1500;
 	private static int retries = 0;
 
-	/**
-	 * the interval to find new refresh candidates (defaults to 1000
-	 * milliseconds)
-	 */
-	private int granularity = 1000;
+	/** the maximum number of agents which are queried at the same time */
+	private static final int MAX_CONCURRENT_POLLS = 2;
 
-	private Map<String, Long> lastUpdateMap = new HashMap<String, Long>();
 
+	public SnmpBinding() {
+		super("SNMP", MAX_CONCURRENT_POLLS);
+	}
 
+	@Override
 	public void activate() {
 		logger.debug("SNMP binding activated");
 		super.activate();
 		setProperlyConfigured(true);
 	}
 
+	@Override
 	public void deactivate() {
+		super.deactivate();
 		stopListening();
 		logger.debug("SNMP binding deactivated");
 	}
 
-	/**
-	 * @{inheritDoc
-	 */
-	@Override
-	protected long getRefreshInterval() {
-		return granularity;
-	}
-
-	/**
-	 * @{inheritDoc
-	 */
-	@Override
-	protected String getName() {
-		return "SNMP Refresh Service";
-	}
-
 	/**
 	 * Configures a {@link DefaultUdpTransportMapping} and starts listening on
 	 * <code>SnmpBinding.port</code> for incoming SNMP Traps.
@@ -313,53 +299,71 @@ public class SnmpBinding extends AbstractActiveBinding<SnmpBindingProvider>
 	 * @{inheritDoc
 	 */
 	@Override
-	public void execute() {
+	protected void scheduleItems() {
+		Set<String> itemNames = new HashSet<String>();
 		for (SnmpBindingProvider provider : providers) {
 			for (String itemName : provider.getInBindingItemNames()) {
 				int refreshInterval = provider.getRefreshInterval(itemName);
-
-				Long lastUpdateTimeStamp = lastUpdateMap.get(itemName);
-				if (lastUpdateTimeStamp == null) {
-					lastUpdateTimeStamp = 0L;
+				if (refreshInterval > 0) {
+					Address address = provider.getAddress(itemName);
+					pollingScheduler.schedule(itemName, address != null ? address.toString() : null, refreshInterval);
+					itemNames.add(itemName);
 				}
+			}
+		}
+		pollingScheduler.retainAll(itemNames);
+	}
 
-				long age = System.currentTimeMillis() - lastUpdateTimeStamp;
-				boolean needsUpdate;
-				if (refreshInterval == 0) {
-					needsUpdate = false;
-				} else {
-					needsUpdate = age >= refreshInterval;
-				}
+	/**
+	 * @{inheritDoc}
+	 */
+	public boolean poll(String itemName) {
+		SnmpBindingProvider provider = findInBindingProvider(itemName);
+		if (provider == null) {
+			// the binding has been removed in the meantime
+			pollingScheduler.unschedule(itemName);
+			return true;
+		}
 
-				if (needsUpdate) {
-					logger.debug("Item '{}' is about to be refreshed", itemName);
+		logger.debug("Item '{}' is about to be refreshed", itemName);
 
-					// Set up the target
-					CommunityTarget target = new CommunityTarget();
-						target.setCommunity(provider.getCommunity(itemName));
-						target.setAddress(provider.getAddress(itemName));
-						target.setRetries(retries);
-						target.setTimeout(timeout);
-						target.setVersion(SnmpConstants.version1);
+		// Set up the target
+		CommunityTarget target = new CommunityTarget();
+			target.setCommunity(provider.getCommunity(itemName));
+			target.setAddress(provider.getAddress(itemName));
+			target.setRetries(retries);
+			target.setTimeout(timeout);
+			target.setVersion(SnmpConstants.version1);
 
-					// Create the PDU
-					PDU pdu = new PDU();
-						pdu.add(new VariableBinding(provider.getOID(itemName)));
-						pdu.setType(PDU.GET);
+		// Create the PDU
+		PDU pdu = new PDU();
+			pdu.add(new VariableBinding(provider.getOID(itemName)));
+			pdu.setType(PDU.GET);
 
-					logger.debug("SNMP: Send PDU {} {}", provider.getAddress(itemName), pdu);
+		logger.debug("SNMP: Send PDU {} {}", provider.getAddress(itemName), pdu);
 
-					if (snmp == null) {
-						logger.error("SNMP: snmp not initialised - aborting request");
-					} else {
-						sendPDU(target, pdu);
-					}
+		if (snmp == null) {
+			logger.error("SNMP: snmp not initialised - aborting request");
+			return false;
+		}
+		sendPDU(target, pdu);
+		return true;
+	}
 
-					lastUpdateMap.put(itemName, System.currentTimeMillis());
-				}
+	/**
+	 * Finds the {@link SnmpBindingProvider} which contains the in-binding of
+	 * <code>itemName</code>.
+	 * 
+	 * @param itemName the item to find the provider for
+	 * @return the provider or <code>null</code> if no provider could be found
+	 */
+	private SnmpBindingProvider findInBindingProvider(String itemName) {
+		for (SnmpBindingProvider provider : providers) {
+			if (provider.providesBindingFor(itemName) && provider.getInBindingItemNames().contains(itemName)) {
+				return provider;
 			}
 		}
-
+		return null;
 	}
 
 	/**
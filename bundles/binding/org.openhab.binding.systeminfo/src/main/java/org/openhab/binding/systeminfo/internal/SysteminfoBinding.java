@@ -11,9 +11,9 @@ package org.openhab.binding.systeminfo.internal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Dictionary;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.hyperic.sigar.FileSystem;
@@ -23,7 +23,7 @@ import org.hyperic.sigar.SigarProxy;
 import org.hyperic.sigar.SigarProxyCache;
 import org.hyperic.sigar.ptql.ProcessFinder;
 import org.openhab.binding.systeminfo.SysteminfoBindingProvider;
-import org.openhab.core.binding.AbstractActiveBinding;
+import org.openhab.core.binding.AbstractItemPollingBinding;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.library.types.StringType;
@@ -40,26 +40,28 @@ import org.slf4j.LoggerFactory;
  * @author Pauli Anttila
  * @since 1.3.0
  */
-public class SysteminfoBinding extends AbstractActiveBinding<SysteminfoBindingProvider>
+public class SysteminfoBinding extends AbstractItemPollingBinding<SysteminfoBindingProvider>
 		implements ManagedService {
 
 	private static final Logger logger = LoggerFactory.getLogger(SysteminfoBinding.class);
 
-	/** the interval to find new refresh candidates (defaults to 1000 milliseconds) */
-	private int granularity = 1000;
 	/** the unit to measure keyfacts (defaults to 'M') */
 	private char units = 'M';
 
-	private Map<String, Long> lastUpdateMap = new HashMap<String, Long>();
+	/** Sigar is queried by one poll at a time */
+	private static final int MAX_CONCURRENT_POLLS = 1;
 
 	private static Sigar sigarImpl;
 	private static SigarProxy sigar;
 
 
-	public void activate() {
+	public SysteminfoBinding() {
+		super("Systeminfo", MAX_CONCURRENT_POLLS);
 	}
 
+	@Override
 	public void deactivate() {
+		super.deactivate();
 		sigar = null;
 		sigarImpl = null;
 	}
@@ -68,55 +70,62 @@ public class SysteminfoBinding extends AbstractActiveBinding<SysteminfoBindingPr
 	 * @{inheritDoc
 	 */
 	@Override
-	protected long getRefreshInterval() {
-		return granularity;
-	}
-
-	/**
-	 * @{inheritDoc
-	 */
-	@Override
-	protected String getName() {
-		return "Systeminfo Refresh Service";
+	protected void scheduleItems() {
+		Set<String> itemNames = new HashSet<String>();
+		for (SysteminfoBindingProvider provider : providers) {
+			for (String itemName : provider.getItemNames()) {
+				pollingScheduler.schedule(itemName, null, provider.getRefreshInterval(itemName));
+				itemNames.add(itemName);
+			}
+		}
+		pollingScheduler.retainAll(itemNames);
 	}
 
 	/**
-	 * @{inheritDoc
+	 * @{inheritDoc}
 	 */
-	@Override
-	protected void execute() {
-		for (SysteminfoBindingProvider provider : providers) {
-			for (String itemName : provider.getItemNames()) {
-				int refreshInterval = provider.getRefreshInterval(itemName);
-
-				Long lastUpdateTimeStamp = lastUpdateMap.get(itemName);
-				if (lastUpdateTimeStamp == null) {
-					lastUpdateTimeStamp = 0L;
-				}
-
-				long age = System.currentTimeMillis() - lastUpdateTimeStamp;
-				boolean needsUpdate = age >= refreshInterval;
-
-				if (needsUpdate) {
+	public boolean poll(String itemName) {
+		SysteminfoBindingProvider provider = findProvider(itemName);
+		if (provider == null) {
+			// the binding has been removed in the meantime
+			pollingScheduler.unschedule(itemName);
+			return true;
+		}
+		if (sigar == null) {
+			return false;
+		}
 
-					logger.debug("item '{}' is about to be refreshed now", itemName);
+		logger.debug("item '{}' is about to be refreshed now", itemName);
 
-					SysteminfoCommandType commmandType = provider.getCommandType(itemName);
-					Class<? extends Item> itemType = provider.getItemType(itemName);
-					String target = provider.getTarget(itemName);
+		SysteminfoCommandType commmandType = provider.getCommandType(itemName);
+		Class<? extends Item> itemType = provider.getItemType(itemName);
+		String target = provider.getTarget(itemName);
 
-					State state = getData(commmandType, itemType, target);
+		State state = getData(commmandType, itemType, target);
 
-					if (state != null) {
-						eventPublisher.postUpdate(itemName, state);
-					} else {
-						logger.error("No response received from command '{}'", commmandType);
-					}
+		if (state != null) {
+			eventPublisher.postUpdate(itemName, state);
+			return true;
+		} else {
+			logger.error("No response received from command '{}'", commmandType);
+			return false;
+		}
+	}
 
-					lastUpdateMap.put(itemName, System.currentTimeMillis());
-				}
+	/**
+	 * Finds the {@link SysteminfoBindingProvider} which contains the binding
+	 * of <code>itemName</code>.
+	 * 
+	 * @param itemName the item to find the provider for
+	 * @return the provider or <code>null</code> if no provider could be found
+	 */
+	private SysteminfoBindingProvider findProvider(String itemName) {
+		for (SysteminfoBindingProvider provider : providers) {
+			if (provider.providesBindingFor(itemName)) {
+				return provider;
 			}
 		}
+		return null;
 	}
 
 	private State getData(SysteminfoCommandType commandType, Class<? extends Item> itemType, String target) {
@@ -358,13 +367,6 @@ public class SysteminfoBinding extends AbstractActiveBinding<SysteminfoBindingPr
 	@Override
 	public void updated(Dictionary<String, ?> config) throws ConfigurationException {
 		if (config != null) {
-			String granularityString = (String) config.get("granularity");
-			if (StringUtils.isNotBlank(granularityString)) {
-				granularity = Integer.parseInt(granularityString);
-			}
-
-			logger.debug("Granularity: {} ms", granularity);
-
 			String tmp = (String) config.get("units");
 			if (StringUtils.isNotBlank(tmp)) {
 				if (tmp.length() != 1) {
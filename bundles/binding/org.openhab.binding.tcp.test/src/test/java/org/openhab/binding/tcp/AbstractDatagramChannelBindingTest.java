@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.tcp.AbstractDatagramChannelBinding.Channel;
+import org.openhab.core.types.Command;
+
+/**
+ * Runs the datagram channel binding against a datagram socket on the loopback
+ * interface. The binding is driven by calling {@link AbstractDatagramChannelBinding#execute()}
+ * directly, the network events are handled by its selector thread.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class AbstractDatagramChannelBindingTest {
+
+	private static final int TIMEOUT = 5000;
+
+	private DatagramSocket serverSocket;
+
+	private TestBinding binding;
+
+	private TestChannelBindingProvider provider;
+
+	@Before
+	public void init() throws IOException {
+		serverSocket = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+		serverSocket.setSoTimeout(TIMEOUT);
+
+		provider = new TestChannelBindingProvider(serverSocket.getLocalPort());
+		binding = new TestBinding();
+		binding.addProvider(provider);
+		binding.activate();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		binding.deactivate();
+		for (Channel channel : binding.channels) {
+			if (channel.channel != null) {
+				channel.channel.close();
+			}
+		}
+		serverSocket.close();
+	}
+
+	@Test
+	public void testAsynchronousWriteAndRead() throws Exception {
+		provider.addItem("item1", Direction.OUT);
+		binding.execute();
+		Channel channel = binding.channels.get(0);
+
+		// the data is written by the selector thread once the channel is writable
+		ByteBuffer buffer = ByteBuffer.wrap("hello".getBytes());
+		assertSame(buffer, binding.writeBuffer(buffer, channel, false, 0));
+		DatagramPacket packet = receive();
+		assertEquals("hello", new String(packet.getData(), 0, packet.getLength()));
+
+		send("update", packet);
+		assertEquals("item1:update", binding.received.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testBlockingWriteRead() throws Exception {
+		provider.addItem("item1", Direction.OUT);
+		binding.execute();
+		Channel channel = binding.channels.get(0);
+
+		Thread server = new Thread() {
+			@Override
+			public void run() {
+				try {
+					DatagramPacket packet = receive();
+					send("ack " + new String(packet.getData(), 0, packet.getLength()), packet);
+				} catch (IOException e) {
+					// the blocking write/read operation times out and the test fails
+				}
+			}
+		};
+		server.start();
+
+		ByteBuffer response = binding.writeBuffer(ByteBuffer.wrap("ping".getBytes()), channel, true, TIMEOUT);
+		assertNotNull(response);
+		assertEquals("ack ping", new String(response.array(), 0, response.limit()));
+
+		// the response is returned to the caller and not parsed as an update
+		assertFalse(channel.isBlocking);
+		assertNull(binding.received.poll(100, TimeUnit.MILLISECONDS));
+		server.join(TIMEOUT);
+
+		// the response has been copied, so that the read buffer could be returned to the pool
+		assertEquals(8, response.capacity());
+		assertEquals(1, binding.readBufferPool.size());
+	}
+
+	private DatagramPacket receive() throws IOException {
+		DatagramPacket packet = new DatagramPacket(new byte[1024], 1024);
+		serverSocket.receive(packet);
+		return packet;
+	}
+
+	/**
+	 * Sends the given data back to the sender of the given packet.
+	 */
+	private void send(String data, DatagramPacket request) throws IOException {
+		byte[] bytes = data.getBytes();
+		serverSocket.send(new DatagramPacket(bytes, bytes.length, request.getSocketAddress()));
+	}
+
+	private static class TestBinding extends AbstractDatagramChannelBinding<ChannelBindingProvider> {
+
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+
+		void addProvider(ChannelBindingProvider provider) {
+			// adding the provider the usual way would start the refresh thread
+			providers.add(provider);
+		}
+
+		@Override
+		protected String getName() {
+			return "Test Datagram";
+		}
+
+		@Override
+		protected void configureChannel(DatagramChannel channel) {
+		}
+
+		@Override
+		protected boolean internalReceiveChanneledCommand(String itemName, Command command, Channel reference, String commandAsString) {
+			return false;
+		}
+
+		@Override
+		protected void parseBuffer(String itemName, Command aCommand, Direction theDirection, ByteBuffer byteBuffer) {
+			received.add(itemName + ":" + new String(byteBuffer.array(), 0, byteBuffer.limit()));
+		}
+	}
+
+}
@@ -0,0 +1,299 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.quartz.JobBuilder.newJob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.tcp.AbstractSocketChannelBinding.Channel;
+import org.openhab.core.types.Command;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+
+/**
+ * Runs the socket channel binding against a server socket on the loopback
+ * interface. The binding is driven by calling {@link AbstractSocketChannelBinding#execute()}
+ * directly, the network events are handled by its selector thread.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class AbstractSocketChannelBindingTest {
+
+	private static final long TIMEOUT = 5000;
+
+	private ServerSocket serverSocket;
+
+	private List<Socket> acceptedSockets = new ArrayList<Socket>();
+
+	private TestBinding binding;
+
+	private TestChannelBindingProvider provider;
+
+	@Before
+	public void init() throws IOException {
+		serverSocket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+		serverSocket.setSoTimeout((int) TIMEOUT);
+
+		provider = new TestChannelBindingProvider(serverSocket.getLocalPort());
+		binding = new TestBinding();
+		// the reconnects are triggered by the tests
+		binding.reconnectInterval = 3600;
+		binding.addProvider(provider);
+		binding.activate();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		binding.deactivate();
+		for (Channel channel : binding.channels) {
+			if (channel.channel != null) {
+				channel.channel.close();
+			}
+		}
+		for (Socket socket : acceptedSockets) {
+			socket.close();
+		}
+		serverSocket.close();
+	}
+
+	@Test
+	public void testAsynchronousWriteAndRead() throws Exception {
+		provider.addItem("item1", Direction.OUT);
+		binding.execute();
+		Socket socket = accept();
+		Channel channel = awaitConnected("item1");
+
+		// the data is written by the selector thread once the channel is writable
+		ByteBuffer buffer = ByteBuffer.wrap("hello".getBytes());
+		assertSame(buffer, binding.writeBuffer(buffer, channel, false, 0));
+		assertEquals("hello", read(socket, 5));
+
+		socket.getOutputStream().write("update".getBytes());
+		assertEquals("item1:update", binding.received.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testBlockingWriteRead() throws Exception {
+		provider.addItem("item1", Direction.OUT);
+		binding.execute();
+		final Socket socket = accept();
+		Channel channel = awaitConnected("item1");
+
+		Thread server = new Thread() {
+			@Override
+			public void run() {
+				try {
+					String request = read(socket, 4);
+					socket.getOutputStream().write(("ack " + request).getBytes());
+				} catch (IOException e) {
+					// the blocking write/read operation times out and the test fails
+				}
+			}
+		};
+		server.start();
+
+		ByteBuffer response = binding.writeBuffer(ByteBuffer.wrap("ping".getBytes()), channel, true, TIMEOUT);
+		assertNotNull(response);
+		assertEquals("ack ping", new String(response.array(), 0, response.limit()));
+
+		// the response is returned to the caller and not parsed as an update
+		assertFalse(channel.isBlocking);
+		assertEquals(null, binding.received.poll(100, TimeUnit.MILLISECONDS));
+		server.join(TIMEOUT);
+
+		// the response has been copied, so that the read buffer could be returned to the pool
+		assertEquals(8, response.capacity());
+		assertEquals(1, binding.readBufferPool.size());
+	}
+
+	@Test
+	public void testBlockingWriteReadDoesNotWaitIfNothingIsSent() throws Exception {
+		provider.addItem("item1", Direction.OUT);
+		binding.execute();
+		Socket socket = accept();
+		Channel channel = awaitConnected("item1");
+
+		socket.close();
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (channel.channel.isOpen()) {
+			assertTrue("the channel has not been closed", System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+
+		// the data is neither sent nor queued, so there is no response to wait for
+		binding.queueUntilConnected = false;
+		long start = System.currentTimeMillis();
+		assertNull(binding.writeBuffer(ByteBuffer.wrap("ping".getBytes()), channel, true, TIMEOUT));
+		assertTrue(System.currentTimeMillis() - start < TIMEOUT / 2);
+		assertTrue(channel.writeQueue.isEmpty());
+	}
+
+	@Test
+	public void testSharedChannelWritesInOrder() throws Exception {
+		provider.addItem("item1", Direction.OUT);
+		provider.addItem("item2", Direction.OUT);
+		binding.execute();
+		Socket socket = accept();
+		Channel channel1 = awaitConnected("item1");
+		Channel channel2 = awaitConnected("item2");
+
+		// both items share one connection
+		assertSame(channel1.channel, channel2.channel);
+
+		binding.writeBuffer(ByteBuffer.wrap("a".getBytes()), channel1, false, 0);
+		binding.writeBuffer(ByteBuffer.wrap("b".getBytes()), channel2, false, 0);
+		binding.writeBuffer(ByteBuffer.wrap("c".getBytes()), channel1, false, 0);
+		binding.writeBuffer(ByteBuffer.wrap("d".getBytes()), channel2, false, 0);
+		assertEquals("abcd", read(socket, 4));
+
+		// the data received on the shared connection is parsed for both items
+		socket.getOutputStream().write("update".getBytes());
+		List<String> received = Arrays.asList(
+				binding.received.poll(TIMEOUT, TimeUnit.MILLISECONDS),
+				binding.received.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertTrue(received.contains("item1:update"));
+		assertTrue(received.contains("item2:update"));
+	}
+
+	@Test
+	public void testQueuedDataIsWrittenAfterReconnect() throws Exception {
+		provider.addItem("item1", Direction.OUT);
+		binding.execute();
+		Socket socket = accept();
+		Channel channel = awaitConnected("item1");
+
+		// the remote end closes the connection, so the channel is closed and waits for a reconnect
+		socket.close();
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (channel.channel.isOpen() || !channel.isReconnecting) {
+			assertTrue("the channel has not been closed", System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+
+		// the data is queued on the channel until it is connected again
+		binding.writeBuffer(ByteBuffer.wrap("queued".getBytes()), channel, false, 0);
+		assertEquals(1, channel.writeQueue.size());
+
+		reconnect(channel);
+		Socket newSocket = accept();
+		assertEquals("queued", read(newSocket, 6));
+		assertFalse(channel.isReconnecting);
+	}
+
+	private Socket accept() throws IOException {
+		Socket socket = serverSocket.accept();
+		socket.setSoTimeout((int) TIMEOUT);
+		acceptedSockets.add(socket);
+		return socket;
+	}
+
+	private Channel awaitConnected(String itemName) throws InterruptedException {
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (System.currentTimeMillis() < end) {
+			for (Channel channel : binding.channels) {
+				if (channel.item.equals(itemName) && channel.channel != null && channel.channel.isConnected()) {
+					return channel;
+				}
+			}
+			Thread.sleep(10);
+		}
+		throw new AssertionError("the channel of " + itemName + " has not been connected");
+	}
+
+	private String read(Socket socket, int length) throws IOException {
+		byte[] data = new byte[length];
+		InputStream in = socket.getInputStream();
+		int count = 0;
+		while (count < length) {
+			int read = in.read(data, count, length - count);
+			if (read < 0) {
+				break;
+			}
+			count += read;
+		}
+		return new String(data, 0, count);
+	}
+
+	/**
+	 * Runs the {@link AbstractSocketChannelBinding.ReconnectJob}, which the binding would
+	 * have scheduled with Quartz.
+	 */
+	private void reconnect(Channel channel) throws Exception {
+		JobDataMap map = new JobDataMap();
+		map.put("Channel", channel);
+		map.put("Binding", binding);
+		final JobDetail job = newJob(AbstractSocketChannelBinding.ReconnectJob.class).usingJobData(map).build();
+		JobExecutionContext context = (JobExecutionContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { JobExecutionContext.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("getJobDetail")) {
+							return job;
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+		new AbstractSocketChannelBinding.ReconnectJob().execute(context);
+	}
+
+	private static class TestBinding extends AbstractSocketChannelBinding<ChannelBindingProvider> {
+
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+
+		void addProvider(ChannelBindingProvider provider) {
+			// adding the provider the usual way would start the refresh thread
+			providers.add(provider);
+		}
+
+		@Override
+		protected String getName() {
+			return "Test Socket";
+		}
+
+		@Override
+		protected void configureChannel(Channel channel) {
+		}
+
+		@Override
+		protected boolean internalReceiveChanneledCommand(String itemName, Command command, Channel reference, String commandAsString) {
+			return false;
+		}
+
+		@Override
+		protected void parseBuffer(String itemName, Command aCommand, Direction theDirection, ByteBuffer byteBuffer) {
+			received.add(itemName + ":" + new String(byteBuffer.array(), 0, byteBuffer.limit()));
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.tcp;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openhab.core.binding.BindingChangeListener;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+
+/**
+ * Binds every item to {@link #COMMAND} and the given port on the loopback interface.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+class TestChannelBindingProvider implements ChannelBindingProvider {
+
+	static final Command COMMAND = StringType.valueOf("ON");
+
+	private final int port;
+
+	private final Map<String, Direction> items = new LinkedHashMap<String, Direction>();
+
+	TestChannelBindingProvider(int port) {
+		this.port = port;
+	}
+
+	void addItem(String itemName, Direction direction) {
+		items.put(itemName, direction);
+	}
+
+	public void addBindingChangeListener(BindingChangeListener listener) {
+	}
+
+	public void removeBindingChangeListener(BindingChangeListener listener) {
+	}
+
+	public boolean providesBindingFor(String itemName) {
+		return items.containsKey(itemName);
+	}
+
+	public boolean providesBinding() {
+		return !items.isEmpty();
+	}
+
+	public Collection<String> getItemNames() {
+		return items.keySet();
+	}
+
+	public List<InetSocketAddress> getInetSocketAddresses(String itemName) {
+		return Arrays.asList(getInetSocketAddress(itemName, COMMAND));
+	}
+
+	public InetSocketAddress getInetSocketAddress(String itemName, Command command) {
+		return new InetSocketAddress(getHost(itemName, command), getPort(itemName, command));
+	}
+
+	public String getHost(String itemName, Command command) {
+		return "127.0.0.1";
+	}
+
+	public int getPort(String itemName, Command command) {
+		return port;
+	}
+
+	public String getPortAsString(String itemName, Command command) {
+		return Integer.toString(port);
+	}
+
+	public Collection<String> getItemNames(String host, int port) {
+		return items.keySet();
+	}
+
+	public List<Command> getQualifiedCommands(String itemName, Command command) {
+		return getAllCommands(itemName);
+	}
+
+	public List<Class<? extends State>> getAcceptedDataTypes(String itemName, Command command) {
+		return null;
+	}
+
+	public List<Command> getAllCommands(String itemName) {
+		return Arrays.asList(COMMAND);
+	}
+
+	public Direction getDirection(String itemName, Command command) {
+		return items.get(itemName);
+	}
+
+}
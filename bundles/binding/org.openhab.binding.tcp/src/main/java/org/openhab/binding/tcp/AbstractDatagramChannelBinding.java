@@ -12,16 +12,23 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.NotYetConnectedException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang.StringUtils;
 import org.openhab.core.binding.AbstractActiveBinding;
 import org.openhab.core.library.types.StringType;
@@ -84,8 +91,17 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 	protected DatagramChannel listenerChannel = null;
 	protected SelectionKey listenerKey = null;
 
-	// Queue to store BufferElements that need to be written to the network
-	protected  List<WriteBufferElement> writeQueue =  Collections.synchronizedList(new ArrayList<WriteBufferElement>());
+	// sequence number of the BufferElements, to write the data of Channels that share a DatagramChannel in order
+	private final AtomicLong writeSequence = new AtomicLong();
+
+	// the thread which waits for and handles the events of the selector
+	private Thread selectorThread = null;
+	private volatile boolean selectorThreadRunning = false;
+	// lock to register channels with the selector. The selector itself cannot be used, as it is locked while selecting
+	private final Object selectorGuard = new Object();
+
+	// pool of buffers to read data into, taken by the selector thread and returned by it or by the callers of blocking write/read operations
+	final Queue<ByteBuffer> readBufferPool = new ConcurrentLinkedQueue<ByteBuffer>();
 
 	// Simple datastructure to track the state of Channels
 	protected ChannelTracker<Channel> channels = new ChannelTracker<Channel>();
@@ -107,19 +123,23 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 		// the direction, in our out, of this channel
 		public Direction direction;
 		// flag to indicate if the channel is in a blocking write/read operation
-		public boolean isBlocking;
+		public volatile boolean isBlocking;
 		// placeholder to store the received data as the result of a blocking write/read operation
-		public ByteBuffer buffer;
+		public volatile ByteBuffer buffer;
+		// completed when the data of a blocking write/read operation has been received
+		public volatile CountDownLatch responseLatch;
 		// flag to indicate if the channel is reconnecting / recovering from a previous communication error
-		public boolean isReconnecting;
+		public volatile boolean isReconnecting;
 		// reference to the underlying Java NIO DatagramChannel that represents this UDP/IP connection
-		public DatagramChannel channel;
+		public volatile DatagramChannel channel;
 		// remote host name to use. Could be "*" when using masked addresses
 		public String host;
 		// remote port number to use. Could be "*" when using masked addresses
 		public String port;
 		// the address of the last remote host:ip that this Channel received data from
-		public InetSocketAddress lastRemote;
+		public volatile InetSocketAddress lastRemote;
+		// queue to store BufferElements that need to be written to the network. It stays with the Channel when it is reconnected
+		public final Queue<WriteBufferElement> writeQueue = new ConcurrentLinkedQueue<WriteBufferElement>();
 
 		public Channel(String item, Command command, InetSocketAddress remote,
 				Direction direction, boolean isBlocking, ByteBuffer buffer,
@@ -214,426 +234,391 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 	 * getFirstServed() - return the first Channel that matches the criteria AND that is currently bound to a Java NIO channel
 	 * getAll() - return a collection of all the Channels that match the given criteria
 	 * contains() - return true if a channel that matches the provided criteria exists in the ChannelTracker
+	 * getFirstQueued() - return the BufferElement that has been queued first by the Channels bound to a given Java NIO channel
 	 * replace() - replaces the underlying Java NIO channel on the Channels that match the provided criteria 
 	 * 
+	 * Channels are rarely added but looked up for every network event, so the queries work on a snapshot of the list and do not lock.
+	 * 
 	 * @author Karel Goderis
 	 * @since  1.4.0
 	 * 
 	 **/
-	protected class ChannelTracker<C extends Channel> extends ArrayList<C> {
+	protected class ChannelTracker<C extends Channel> extends CopyOnWriteArrayList<C> {
 
 		private static final long serialVersionUID = 1543958347565096785L;
 
 		public boolean contains(String item, Command command, Direction direction, InetSocketAddress remote) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(item.equals(aChannel.item) && command.equals(aChannel.command) && direction.equals(aChannel.direction)&& remote.equals(aChannel.remote)) {
-						return true;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(item.equals(aChannel.item) && command.equals(aChannel.command) && direction.equals(aChannel.direction)&& remote.equals(aChannel.remote)) {
+					return true;
 				}
-
-				return false;
 			}
+
+			return false;
 		}
 
 		public Channel get(String item, Command command, Direction direction, InetSocketAddress remote) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(item.equals(aChannel.item) && command.equals(aChannel.command) && direction.equals(aChannel.direction)&& remote.equals(aChannel.remote)) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(item.equals(aChannel.item) && command.equals(aChannel.command) && direction.equals(aChannel.direction)&& remote.equals(aChannel.remote)) {
+					return aChannel;
 				}
-
-				return null;
 			}
+
+			return null;
 		}
 
 		public Channel get(String item, Command command, Direction direction, String host, String port) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(item.equals(aChannel.item) && command.equals(aChannel.command) && direction.equals(aChannel.direction)) {
-						if(aChannel.host.equals(host) && aChannel.port.equals(port)) {
-							return aChannel;
-						}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(item.equals(aChannel.item) && command.equals(aChannel.command) && direction.equals(aChannel.direction)) {
+					if(aChannel.host.equals(host) && aChannel.port.equals(port)) {
+						return aChannel;
 					}
 				}
+			}
 
-				return null;
+			return null;
 
-			}
 		}
 
 
 		public Channel get(DatagramChannel theDatagramChannel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theDatagramChannel.equals(aChannel.channel)) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theDatagramChannel.equals(aChannel.channel)) {
+					return aChannel;
 				}
-				return null;
 			}
+			return null;
 		}
 
 		public Channel getFirst(Direction direction, InetSocketAddress remoteAddress) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(remoteAddress.equals(aChannel.remote) && aChannel.channel == null && direction.equals(aChannel.direction)) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(remoteAddress.equals(aChannel.remote) && aChannel.channel == null && direction.equals(aChannel.direction)) {
+					return aChannel;
 				}
+			}
 
-				Iterator<C> it2 = iterator();
-				while(it2.hasNext()) {
-					C aChannel = it2.next();
-					if(remoteAddress.equals(aChannel.remote)) {
-						return aChannel;
-					}
+			Iterator<C> it2 = iterator();
+			while(it2.hasNext()) {
+				C aChannel = it2.next();
+				if(remoteAddress.equals(aChannel.remote)) {
+					return aChannel;
 				}
-
-				return null;
 			}
+
+			return null;
 		}
 
 		public Channel getFirst(String itemName, Direction direction, InetSocketAddress remoteAddress) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(itemName.equals(aChannel.item) && remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction)) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(itemName.equals(aChannel.item) && remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction)) {
+					return aChannel;
 				}
-
-				return null;
 			}
+
+			return null;
 		}
 
 		public Channel getFirstServed(String itemName, Direction direction, InetSocketAddress remoteAddress) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(itemName.equals(aChannel.item) && remoteAddress.equals(aChannel.remote) &&aChannel.channel != null && direction.equals(aChannel.direction)) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(itemName.equals(aChannel.item) && remoteAddress.equals(aChannel.remote) &&aChannel.channel != null && direction.equals(aChannel.direction)) {
+					return aChannel;
 				}
-
-				return null;
 			}
+
+			return null;
 		}
 
 		public void replace(String itemName, Direction direction, DatagramChannel theDatagramChannel,
 				DatagramChannel channel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(itemName.equals(aChannel.item) &&theDatagramChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						aChannel.channel = channel;
-					}
-				}	
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(itemName.equals(aChannel.item) &&theDatagramChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					aChannel.channel = channel;
+				}
+			}	
 
-			}
 		}
 
 		public void replace(String itemName, Direction direction, InetSocketAddress remoteAddress,
 				DatagramChannel channel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(itemName.equals(aChannel.item) &&remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && !channel.equals(aChannel.channel)) {
-						aChannel.channel = channel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(itemName.equals(aChannel.item) &&remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && !channel.equals(aChannel.channel)) {
+					aChannel.channel = channel;
 				}
 			}
 
 		}
 
 		public ArrayList<Channel> getAll(String itemName, Direction direction, DatagramChannel theDatagramChannel) {
-			synchronized(this) {
 
-				ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
+			ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
 
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(itemName.equals(aChannel.item) &&theDatagramChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						selectedChannels.add(aChannel);
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(itemName.equals(aChannel.item) &&theDatagramChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					selectedChannels.add(aChannel);
 				}
-
-				return selectedChannels;
 			}
+
+			return selectedChannels;
 		}
 
 		public ArrayList<Channel> getAll(Direction direction, InetSocketAddress remote ) {
-			synchronized(this) {
 
-				ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
+			ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
 
-				if(useAddressMask) {
-					Iterator<C> it = iterator();
-					while(it.hasNext()) {
-						C aChannel = it.next();
-						if(direction.equals(aChannel.direction)) {
-							if(aChannel.host.equals("*") && aChannel.port.equals(Integer.toString(remote.getPort()))) {
-								selectedChannels.add(aChannel);
-							} else 	if(aChannel.port.equals("*") && aChannel.host.equals(remote.getHostString())) {
-								selectedChannels.add(aChannel);
-							} else if(aChannel.port.equals("*") && aChannel.host.equals("*")) {
-								selectedChannels.add(aChannel);
-							}
-						}
-					}
-				} else {
-					Iterator<C> it = iterator();
-					while(it.hasNext()) {
-						C aChannel = it.next();
-						if(remote.equals(aChannel.remote) && direction.equals(aChannel.direction)) {
+			if(useAddressMask) {
+				Iterator<C> it = iterator();
+				while(it.hasNext()) {
+					C aChannel = it.next();
+					if(direction.equals(aChannel.direction)) {
+						if(aChannel.host.equals("*") && aChannel.port.equals(Integer.toString(remote.getPort()))) {
+							selectedChannels.add(aChannel);
+						} else 	if(aChannel.port.equals("*") && aChannel.host.equals(remote.getHostString())) {
+							selectedChannels.add(aChannel);
+						} else if(aChannel.port.equals("*") && aChannel.host.equals("*")) {
 							selectedChannels.add(aChannel);
 						}
 					}
 				}
-
-
-				return selectedChannels;
-			}
-		}
-
-		public void setAll(String itemName, Direction direction, DatagramChannel theDatagramChannel, boolean b) {
-			synchronized(this) {
+			} else {
 				Iterator<C> it = iterator();
 				while(it.hasNext()) {
 					C aChannel = it.next();
-					if(itemName.equals(aChannel.item) &&theDatagramChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						aChannel.isBlocking = b;
+					if(remote.equals(aChannel.remote) && direction.equals(aChannel.direction)) {
+						selectedChannels.add(aChannel);
 					}
-				}		
+				}
 			}
+
+
+			return selectedChannels;
 		}
 
-		public Channel getFirstServed(InetSocketAddress remoteAddress) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(remoteAddress.equals(aChannel.remote) &&aChannel.channel != null) {
-						return aChannel;
-					}
+		public void setAll(String itemName, Direction direction, DatagramChannel theDatagramChannel, boolean b) {
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(itemName.equals(aChannel.item) &&theDatagramChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					aChannel.isBlocking = b;
 				}
+			}		
+		}
 
-				return null;
+		public Channel getFirstServed(InetSocketAddress remoteAddress) {
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(remoteAddress.equals(aChannel.remote) &&aChannel.channel != null) {
+					return aChannel;
+				}
 			}
+
+			return null;
 		}
 
 		public void replace(Direction direction,
 				SocketChannel oldSocketChannel, DatagramChannel channel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(oldSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						aChannel.channel = channel;
-					}
-				}		
-			}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(oldSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					aChannel.channel = channel;
+				}
+			}		
 		}
 
 		public void replace(Direction direction, InetSocketAddress remoteAddress,
 				DatagramChannel channel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && !channel.equals(aChannel.channel)) {
-						aChannel.channel = channel;
-					}
-				}		
-			}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && !channel.equals(aChannel.channel)) {
+					aChannel.channel = channel;
+				}
+			}		
 		}
 
 		public ArrayList<Channel> getAll(Direction direction,
 				DatagramChannel theDatagramChannel) {
-			synchronized(this) {
-				ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
+			ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
 
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theDatagramChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						selectedChannels.add(aChannel);
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theDatagramChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					selectedChannels.add(aChannel);
 				}
-
-				return selectedChannels;	
 			}
+
+			return selectedChannels;	
 		}
 
 		public void setAllBlocking(Direction direction, DatagramChannel theDatagramChannel,
 				boolean b) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theDatagramChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						aChannel.isBlocking = true;
-					}
-				}	
-			}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theDatagramChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					aChannel.isBlocking = true;
+				}
+			}	
 		}
 
 		public Channel getFirstServed(Direction direction,
 				InetSocketAddress remoteAddress) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(remoteAddress.equals(aChannel.remote) &&aChannel.channel != null && direction.equals(aChannel.direction)) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(remoteAddress.equals(aChannel.remote) &&aChannel.channel != null && direction.equals(aChannel.direction)) {
+					return aChannel;
 				}
-
-				return null;
 			}
+
+			return null;
 		}
 
 		public void replace(DatagramChannel oldDatagramChannel,
 				DatagramChannel channel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(oldDatagramChannel.equals(aChannel.channel)) {
-						aChannel.channel = channel;
-					}
-				}	
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(oldDatagramChannel.equals(aChannel.channel)) {
+					aChannel.channel = channel;
+				}
+			}	
 
-			}			
 		}
 
 		public void replace(InetSocketAddress remoteAddress, DatagramChannel channel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(remoteAddress.equals(aChannel.remote) && !channel.equals(aChannel.channel)) {
-						aChannel.channel = channel;
-					}
-				}		
-			}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(remoteAddress.equals(aChannel.remote) && !channel.equals(aChannel.channel)) {
+					aChannel.channel = channel;
+				}
+			}		
 
 		}
 
 		public ArrayList<Channel> getAll(DatagramChannel theDatagramChannel) {
-			synchronized(this) {
-				ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
+			ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
 
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theDatagramChannel.equals(aChannel.channel)) {
-						selectedChannels.add(aChannel);
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theDatagramChannel.equals(aChannel.channel)) {
+					selectedChannels.add(aChannel);
 				}
-
-				return selectedChannels;	
 			}
+
+			return selectedChannels;	
 		}
 
 		public void setAllBlocking(DatagramChannel theDatagramChannel, boolean b) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theDatagramChannel.equals(aChannel.channel) ) {
-						aChannel.isBlocking = b;
-					}
-				}	
-			}			
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theDatagramChannel.equals(aChannel.channel) ) {
+					aChannel.isBlocking = b;
+				}
+			}	
 		}
 
 		public void setAllReconnecting(DatagramChannel theDatagramChannel, boolean b) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theDatagramChannel.equals(aChannel.channel) ) {
-						aChannel.isReconnecting = b;
-					}
-				}	
-			}			
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theDatagramChannel.equals(aChannel.channel) ) {
+					aChannel.isReconnecting = b;
+				}
+			}	
 		}
 
 		public Channel getFirstNotServed(Direction direction,
 				InetSocketAddress remoteAddress) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && (aChannel.channel == null || !aChannel.channel.isOpen()) ) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && (aChannel.channel == null || !aChannel.channel.isOpen()) ) {
+					return aChannel;
 				}
-
-				return null;
 			}
+
+			return null;
 		}
 
 		public ArrayList<Channel> getAll(Direction direction,
 				DatagramChannel theDatagramChannel,
 				InetSocketAddress clientAddress) {
-			synchronized(this) {
 
-				ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
+			ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
 
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(clientAddress.equals(aChannel.remote) &&theDatagramChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						selectedChannels.add(aChannel);
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(clientAddress.equals(aChannel.remote) &&theDatagramChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					selectedChannels.add(aChannel);
 				}
+			}
+
+			return selectedChannels;
+		}
+
+		public WriteBufferElement getFirstQueued(DatagramChannel theDatagramChannel) {
+			WriteBufferElement firstElement = null;
 
-				return selectedChannels;
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theDatagramChannel.equals(aChannel.channel)) {
+					WriteBufferElement anElement = aChannel.writeQueue.peek();
+					if(anElement != null && (firstElement == null || anElement.sequence < firstElement.sequence)) {
+						firstElement = anElement;
+					}
+				}
 			}
+			return firstElement;
 		}
 
 		public boolean isBlocking(DatagramChannel theDatagramChannel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theDatagramChannel.equals(aChannel.channel) && aChannel.isBlocking) {
-						return true;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theDatagramChannel.equals(aChannel.channel) && aChannel.isBlocking) {
+					return true;
 				}
-				return false;
 			}
+			return false;
 		}
 
 		public Channel getBlocking(DatagramChannel theDatagramChannel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theDatagramChannel.equals(aChannel.channel) && aChannel.isBlocking) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theDatagramChannel.equals(aChannel.channel) && aChannel.isBlocking) {
+					return aChannel;
 				}
-				return null;
 			}
+			return null;
 		}
 
 	}
@@ -650,12 +635,14 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 		public Channel channel;
 		public ByteBuffer buffer;
 		public boolean isBlocking;
+		public final long sequence;
 
 		public WriteBufferElement(Channel channel, ByteBuffer buffer, boolean isBlocking) {
 			super();
 			this.channel = channel;
 			this.buffer = buffer;
 			this.isBlocking = isBlocking;
+			this.sequence = writeSequence.incrementAndGet();
 		}
 
 		@Override
@@ -692,10 +679,10 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 
 			logger.info("Listening for incoming data on {}",listenerChannel.getLocalAddress());
 
-			synchronized(selector) {
+			synchronized(selectorGuard) {
 				selector.wakeup();
 				try {
-					listenerKey = listenerChannel.register(selector, listenerChannel.validOps());
+					listenerKey = listenerChannel.register(selector, SelectionKey.OP_READ);
 				} catch (ClosedChannelException e1) {
 					logger.error("An exception occurred while registering a selector: {}",e1.getMessage());
 				}
@@ -713,6 +700,7 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 		//register the selectors
 		try {
 			selector = Selector.open();
+			startSelectorThread();
 		} catch (IOException e) {
 			logger.error("An exception occurred while registering the selector: {}",e.getMessage());
 		}
@@ -723,14 +711,18 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 	 */
 	public void deactivate() {
 
+		selectorThreadRunning = false;
 		try {
+			// this also wakes up the selector thread
 			selector.close();
 		} catch (IOException e) {
 			logger.error("An exception occurred while closing the selector: {}",e.getMessage());
 		}
 
 		try {
-			listenerChannel.close();
+			if(listenerChannel != null) {
+				listenerChannel.close();
+			}
 		} catch (IOException e) {
 			logger.error("An exception occurred while closing the Listener Channel on port number {} ({})",listenerPort,e.getMessage());
 		}
@@ -1020,16 +1012,18 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 		if(isBlockingWriteRead) {
 
 			if(theBuffer != null) {
-				writeQueue.add(new WriteBufferElement(theChannel,theBuffer,true));
+				CountDownLatch responseLatch = new CountDownLatch(1);
+				theChannel.responseLatch = responseLatch;
 
-				long currentElapsedTimeMillis = System.currentTimeMillis();
+				theChannel.writeQueue.add(new WriteBufferElement(theChannel,theBuffer,true));
+				selector.wakeup();
 
-				while(theChannel.buffer==null && (System.currentTimeMillis()-currentElapsedTimeMillis)<timeOut ) {
-					try {
-						Thread.sleep(50);
-					} catch (InterruptedException e) {
-						logger.warn("An Exception occurred while waiting waiting during a blocking buffer write");
-					}
+				// wait until the selector thread has received the response
+				try {
+					responseLatch.await(timeOut, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					logger.warn("An Exception occurred while waiting waiting during a blocking buffer write");
+					Thread.currentThread().interrupt();
 				}
 
 				ByteBuffer responseBuffer = null;
@@ -1037,8 +1031,11 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 					responseBuffer = theChannel.buffer;
 					theChannel.buffer = null;
 					theChannel.isBlocking = false;
+					theChannel.responseLatch = null;
 				}
-				return responseBuffer;
+				// data queued for this channel in the meantime can be written now
+				selector.wakeup();
+				return copyResponse(responseBuffer);
 			} else {
 				return theBuffer;
 			}
@@ -1046,7 +1043,8 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 		} else {
 
 			if(theBuffer != null) {
-				writeQueue.add(new WriteBufferElement(theChannel,theBuffer,false));
+				theChannel.writeQueue.add(new WriteBufferElement(theChannel,theBuffer,false));
+				selector.wakeup();
 			}
 
 			return theBuffer;
@@ -1104,11 +1102,11 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 						}
 
 
-						synchronized(theBinding.selector) {
+						synchronized(theBinding.selectorGuard) {
 							theBinding.selector.wakeup();
 							try {
 								if(theChannel.channel != null) {
-									theChannel.channel.register(theBinding.selector, theChannel.channel.validOps());
+									theChannel.channel.register(theBinding.selector, SelectionKey.OP_READ);
 								}
 							} catch (ClosedChannelException e1) {
 								logger.error("An exception occurred while registering a selector: {}",e1.getMessage());
@@ -1183,6 +1181,7 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 	@Override
 	protected void execute() {
 
+		// the network events are handled by the selector thread, here we only set up the channels
 		// Cycle through the Items and setup channels if required
 		for (P provider : providers) {
 			for (String itemName : provider.getItemNames()) {
@@ -1324,15 +1323,6 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 											logger.error("An exception occurred while configuring a channel: {}",e.getMessage());
 										}
 
-										synchronized(selector) {
-											selector.wakeup();
-											try {
-												newDatagramChannel.register(selector, newDatagramChannel.validOps());
-											} catch (ClosedChannelException e1) {
-												logger.error("An exception occurred while registering a selector: {}",e1.getMessage());
-											}
-										}
-
 										newChannel.channel = newDatagramChannel;
 										logger.debug("Setting up the outbound channel {}", newChannel);
 
@@ -1343,6 +1333,16 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 										} catch (IOException e) {
 											logger.error("An exception occurred while connecting a channel: {}",e.getMessage());
 										}
+
+										// the channel is registered once it is connected, so that the selector thread finds the Channel for it
+										synchronized(selectorGuard) {
+											selector.wakeup();
+											try {
+												newDatagramChannel.register(selector, SelectionKey.OP_READ);
+											} catch (ClosedChannelException e1) {
+												logger.error("An exception occurred while registering a selector: {}",e1.getMessage());
+											}
+										}
 									} 
 									else {
 										logger.info("There is already an active channel {} for the remote end {}",newChannel.channel,newChannel.remote);
@@ -1355,15 +1355,103 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 			}
 		}
 
-		// Check on channels for which we have to process data
-		synchronized(selector) {
-			try {
-				// Wait for an event
-				selector.selectNow();
-			} catch (IOException e) {
-				logger.error("An exception occurred while Selecting ({})",e.getMessage());
+	}
+
+	/**
+	 * Starts the thread which waits for the events of the selector and handles them as soon as they occur
+	 */
+	private void startSelectorThread() {
+		String threadName = "openHAB " + getName() + " selector";
+		selectorThreadRunning = true;
+		selectorThread = new Thread(threadName) {
+			@Override
+			public void run() {
+				while (selectorThreadRunning) {
+					try {
+						registerPendingWrites();
+
+						// registrations wake up the selector while holding the guard, so wait until they are done
+						synchronized(selectorGuard) {
+						}
+						selector.select();
+
+						processSelectedKeys();
+					} catch (ClosedSelectorException e) {
+						break;
+					} catch (IOException e) {
+						logger.error("An exception occurred while Selecting ({})",e.getMessage());
+					} catch (RuntimeException e) {
+						logger.error("An exception occurred while processing the selected keys", e);
+					}
+				}
 			}
+		};
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+	}
+
+	/**
+	 * Adds the interest to write to the selection keys of all channels with queued data, unless the channel
+	 * waits for the response of a blocking write/read operation. The interest is removed again as soon as the 
+	 * channel has been writable, otherwise the selector would not block as long as a channel is idle.
+	 */
+	private void registerPendingWrites() {
+		for (Channel aChannel : channels) {
+			DatagramChannel theChannel = aChannel.channel;
+			if(!aChannel.writeQueue.isEmpty() && theChannel != null && !channels.isBlocking(theChannel)) {
+				SelectionKey selKey = theChannel.keyFor(selector);
+				if(selKey != null && selKey.isValid()) {
+					selKey.interestOps(selKey.interestOps() | SelectionKey.OP_WRITE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Takes a buffer to read data from the network into from the pool, or allocates a new one if the pool is empty
+	 */
+	private ByteBuffer acquireReadBuffer() {
+		ByteBuffer theBuffer = readBufferPool.poll();
+		if(theBuffer == null || theBuffer.capacity() != maximumBufferSize) {
+			theBuffer = ByteBuffer.allocate(maximumBufferSize);
+		}
+		return theBuffer;
+	}
+
+	/**
+	 * Returns a read buffer to the pool once the data has been parsed, or once the response of a blocking write/read
+	 * operation has been copied out of it. The data is zeroed, as the implementation classes might use the whole array()
+	 */
+	private void releaseReadBuffer(ByteBuffer theBuffer, int numberBytesRead) {
+		if(numberBytesRead > 0) {
+			Arrays.fill(theBuffer.array(), 0, Math.min(numberBytesRead, theBuffer.capacity()), (byte) 0);
+		}
+		theBuffer.clear();
+		readBufferPool.add(theBuffer);
+	}
+
+	/**
+	 * Copies the response of a blocking write/read operation out of the read buffer it has been
+	 * received in, so that the read buffer can be returned to the pool
+	 */
+	private ByteBuffer copyResponse(ByteBuffer theReadBuffer) {
+		if(theReadBuffer == null) {
+			return null;
+		}
+		try {
+			ByteBuffer theResponse = ByteBuffer.allocate(theReadBuffer.remaining());
+			theResponse.put(theReadBuffer.duplicate());
+			theResponse.flip();
+			return theResponse;
+		} finally {
+			releaseReadBuffer(theReadBuffer, theReadBuffer.limit());
 		}
+	}
+
+	/**
+	 * Handles the keys selected by the selector thread
+	 */
+	private void processSelectedKeys() {
 
 		// Get list of selection keys with pending events
 		Iterator<SelectionKey> it = selector.selectedKeys().iterator();
@@ -1379,15 +1467,16 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 
 				if (selKey.isReadable()) {
 					InetSocketAddress clientAddress = null;
-					ByteBuffer readBuffer = ByteBuffer.allocate(maximumBufferSize);
+					ByteBuffer readBuffer = acquireReadBuffer();
 					int numberBytesRead = 0;
 					boolean error = false;
+					boolean handedOver = false;
 
 					if(selKey == listenerKey) {
 						try {
 							clientAddress = (InetSocketAddress) theDatagramChannel.receive(readBuffer);
-							logger.debug("Received {} on the listener port from {}",new String(readBuffer.array()),clientAddress);
 							numberBytesRead = readBuffer.position();
+							logger.debug("Received {} on the listener port from {}",new String(readBuffer.array(),0,numberBytesRead),clientAddress);
 						} catch (Exception e) {
 							error=true;
 						}
@@ -1397,7 +1486,7 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 						try {
 							//TODO: Additional code to split readBuffer in multiple parts, in case the data send by the remote end is not correctly fragemented. Could be handed of to implementation class if for example, the buffer needs to be split based on a special character like line feed or carriage return
 							numberBytesRead = theDatagramChannel.read(readBuffer);
-							logger.debug("Received {} bytes ({}) on the channel {}->{}", new Object[]{numberBytesRead,new String(readBuffer.array()),theDatagramChannel.getLocalAddress(),theDatagramChannel.getRemoteAddress()});
+							logger.debug("Received {} bytes ({}) on the channel {}->{}", new Object[]{numberBytesRead,new String(readBuffer.array(),0,readBuffer.position()),theDatagramChannel.getLocalAddress(),theDatagramChannel.getRemoteAddress()});
 						} catch (NotYetConnectedException e) {
 							try {
 								logger.warn("The channel for {} has no connection pending ({})",theDatagramChannel.getRemoteAddress(),e.getMessage());
@@ -1477,7 +1566,7 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 						if(selKey == listenerKey) {
 							channelsToServe = channels.getAll(Direction.IN,clientAddress);
 							if(channelsToServe.size()==0) {
-								logger.warn("Received data {} from an undefined remote end {}. We will not process it",new String(readBuffer.array()),clientAddress );
+								logger.warn("Received data {} from an undefined remote end {}. We will not process it",new String(readBuffer.array(),0,readBuffer.position()),clientAddress );
 							}
 						} else {
 							channelsToServe = channels.getAll(theDatagramChannel);
@@ -1495,6 +1584,11 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 								//find the Channel with this DGC that is holding a Blocking flag
 								theChannel = channels.getBlocking(theDatagramChannel);
 								theChannel.buffer = readBuffer;
+								handedOver = true;
+								CountDownLatch responseLatch = theChannel.responseLatch;
+								if(responseLatch != null) {
+									responseLatch.countDown();
+								}
 
 							} else {
 								for(Channel aChannel : channelsToServe) {
@@ -1517,19 +1611,19 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 							}
 						}
 					}
+
+					if(!handedOver) {
+						releaseReadBuffer(readBuffer, numberBytesRead);
+					}
 				} else if (selKey.isWritable()) {
 
+					// the interest is registered again by the selector thread as long as there is queued data for this channel
+					selKey.interestOps(selKey.interestOps() & ~SelectionKey.OP_WRITE);
+
 					WriteBufferElement theElement = null;
 
 					if(selKey == listenerKey) {
-						Iterator<WriteBufferElement> iterator = writeQueue.iterator();
-						while (iterator.hasNext()) {
-							WriteBufferElement anElement = iterator.next();
-							if(anElement.channel.channel.equals(listenerChannel)) {
-								theElement = anElement;
-								break;
-							}
-						}
+						theElement = channels.getFirstQueued(listenerChannel);
 					}
 
 					//check if any of the Channel using the DatagramChannel is blocking the DGC in a R/W operation
@@ -1540,14 +1634,7 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 					} else { 
 
 						if(selKey != listenerKey) {									
-							Iterator<WriteBufferElement> iterator = writeQueue.iterator();
-							while (iterator.hasNext()) {
-								WriteBufferElement anElement = iterator.next();
-								if(anElement.channel.channel.equals(theDatagramChannel)) {
-									theElement = anElement;
-									break;
-								}
-							}
+							theElement = channels.getFirstQueued(theDatagramChannel);
 						}
 
 
@@ -1643,7 +1730,7 @@ public abstract class AbstractDatagramChannelBinding<P extends ChannelBindingPro
 								}
 							} else {
 								if(theElement != null ) {
-									writeQueue.remove(theElement);
+									theElement.channel.writeQueue.remove(theElement);
 								}
 
 							}
@@ -12,6 +12,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.NoConnectionPendingException;
 import java.nio.channels.NotYetConnectedException;
 import java.nio.channels.SelectionKey;
@@ -19,10 +20,16 @@ import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang.StringUtils;
 import org.openhab.core.binding.AbstractActiveBinding;
 import org.openhab.core.library.types.StringType;
@@ -89,8 +96,17 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 	protected ServerSocketChannel listenerChannel = null;
 	protected SelectionKey listenerKey = null;
 
-	// Queue to store BufferElements that need to be written to the network
-	protected  List<WriteBufferElement> writeQueue =  Collections.synchronizedList(new ArrayList<WriteBufferElement>());
+	// sequence number of the BufferElements, to write the data of Channels that share a SocketChannel in order
+	private final AtomicLong writeSequence = new AtomicLong();
+
+	// the thread which waits for and handles the events of the selector
+	private Thread selectorThread = null;
+	private volatile boolean selectorThreadRunning = false;
+	// lock to register channels with the selector. The selector itself cannot be used, as it is locked while selecting
+	private final Object selectorGuard = new Object();
+
+	// pool of buffers to read data into, taken by the selector thread and returned by it or by the callers of blocking write/read operations
+	final Queue<ByteBuffer> readBufferPool = new ConcurrentLinkedQueue<ByteBuffer>();
 
 	// Simple datastructure to track the state of Channels
 	protected ChannelTracker<Channel> channels = new ChannelTracker<Channel>();
@@ -112,17 +128,21 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 		// the direction, in our out, of this channel
 		public Direction direction;
 		// flag to indicate if the channel is in a blocking write/read operation
-		public boolean isBlocking;
+		public volatile boolean isBlocking;
 		// placeholder to store the received data as the result of a blocking write/read operation
-		public ByteBuffer buffer;
+		public volatile ByteBuffer buffer;
+		// completed when the data of a blocking write/read operation has been received
+		public volatile CountDownLatch responseLatch;
 		// flag to indicate if the channel is reconnecting / recovering from a previous communication error
-		public boolean isReconnecting;
+		public volatile boolean isReconnecting;
 		// reference to the underlying Java NIO SocketChannel that represents this TCP/IP connection
-		public SocketChannel channel;
+		public volatile SocketChannel channel;
 		// remote host name to use. Could be "*" when using masked addresses
 		public String host;
 		// remote port number to use. Could be "*" when using masked addresses
 		public String port;
+		// queue to store BufferElements that need to be written to the network. It stays with the Channel when it is reconnected
+		public final Queue<WriteBufferElement> writeQueue = new ConcurrentLinkedQueue<WriteBufferElement>();
 
 		public Channel(String item, Command command, InetSocketAddress remote,
 				Direction direction, boolean isBlocking, ByteBuffer buffer,
@@ -219,404 +239,373 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 	 * getFirstServed() - return the first Channel that matches the criteria AND that is currently bound to a Java NIO channel
 	 * getAll() - return a collection of all the Channels that match the given criteria
 	 * contains() - return true if a channel that matches the provided criteria exists in the ChannelTracker
+	 * getFirstQueued() - return the BufferElement that has been queued first by the Channels bound to a given Java NIO channel
 	 * replace() - replaces the underlying Java NIO channel on the Channels that match the provided criteria 
 	 * 
+	 * Channels are rarely added but looked up for every network event, so the queries work on a snapshot of the list and do not lock.
+	 * 
 	 * @author Karel Goderis
 	 * @since  1.4.0
 	 * 
 	 **/
-	protected class ChannelTracker<C extends Channel> extends ArrayList<C> {
+	protected class ChannelTracker<C extends Channel> extends CopyOnWriteArrayList<C> {
 
 		private static final long serialVersionUID = 1543958347565096785L;
 
 		public boolean contains(String item, Command command, Direction direction, InetSocketAddress remote) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(item.equals(aChannel.item) && command.equals(aChannel.command) && direction.equals(aChannel.direction)&& remote.equals(aChannel.remote)) {
-						return true;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(item.equals(aChannel.item) && command.equals(aChannel.command) && direction.equals(aChannel.direction)&& remote.equals(aChannel.remote)) {
+					return true;
 				}
-
-				return false;
 			}
+
+			return false;
 		}
 
 		public Channel get(String item, Command command, Direction direction, InetSocketAddress remote) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(item.equals(aChannel.item) && command.equals(aChannel.command) && direction.equals(aChannel.direction)&& remote.equals(aChannel.remote)) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(item.equals(aChannel.item) && command.equals(aChannel.command) && direction.equals(aChannel.direction)&& remote.equals(aChannel.remote)) {
+					return aChannel;
 				}
-
-				return null;
 			}
+
+			return null;
 		}
 
 		public Channel get(String item, Command command, Direction direction, String host, String port) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(item.equals(aChannel.item) && command.equals(aChannel.command) && direction.equals(aChannel.direction)) {
-						if(aChannel.host.equals(host) && aChannel.port.equals(port)) {
-							return aChannel;
-						}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(item.equals(aChannel.item) && command.equals(aChannel.command) && direction.equals(aChannel.direction)) {
+					if(aChannel.host.equals(host) && aChannel.port.equals(port)) {
+						return aChannel;
 					}
 				}
+			}
 
-				return null;
+			return null;
 
-			}
 		}
 
 		public Channel get(SocketChannel theChannel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theChannel.equals(aChannel.channel)) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theChannel.equals(aChannel.channel)) {
+					return aChannel;
 				}
-				return null;
 			}
+			return null;
 		}
 
 		public Channel getFirst(Direction direction, InetSocketAddress remoteAddress) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(remoteAddress.equals(aChannel.remote) && aChannel.channel == null && direction.equals(aChannel.direction)) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(remoteAddress.equals(aChannel.remote) && aChannel.channel == null && direction.equals(aChannel.direction)) {
+					return aChannel;
 				}
+			}
 
-				Iterator<C> it2 = iterator();
-				while(it2.hasNext()) {
-					C aChannel = it2.next();
-					if(remoteAddress.equals(aChannel.remote)) {
-						return aChannel;
-					}
+			Iterator<C> it2 = iterator();
+			while(it2.hasNext()) {
+				C aChannel = it2.next();
+				if(remoteAddress.equals(aChannel.remote)) {
+					return aChannel;
 				}
-
-				return null;
 			}
+
+			return null;
 		}
 
 		public Channel getFirst(String itemName, Direction direction, InetSocketAddress remoteAddress) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(itemName.equals(aChannel.item) && remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction)) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(itemName.equals(aChannel.item) && remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction)) {
+					return aChannel;
 				}
-
-				return null;
 			}
+
+			return null;
 		}
 
 		public Channel getFirstServed(String itemName, Direction direction, InetSocketAddress remoteAddress) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(itemName.equals(aChannel.item) && remoteAddress.equals(aChannel.remote) &&aChannel.channel != null && direction.equals(aChannel.direction)) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(itemName.equals(aChannel.item) && remoteAddress.equals(aChannel.remote) &&aChannel.channel != null && direction.equals(aChannel.direction)) {
+					return aChannel;
 				}
-
-				return null;
 			}
+
+			return null;
 		}
 
 		public void replace(String itemName, Direction direction, SocketChannel oldSocketChannel,
 				SocketChannel channel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(itemName.equals(aChannel.item) &&oldSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						aChannel.channel = channel;
-					}
-				}	
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(itemName.equals(aChannel.item) &&oldSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					aChannel.channel = channel;
+				}
+			}	
 
-			}
 		}
 
 		public void replace(String itemName, Direction direction, InetSocketAddress remoteAddress,
 				SocketChannel channel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(useAddressMask && (aChannel.host.equals("*") || aChannel.port.equals("*")) && direction.equals(aChannel.direction) && itemName.equals(aChannel.item) && !channel.equals(aChannel.channel)) {
-						if(aChannel.host.equals("*") && aChannel.port.equals(Integer.toString(remoteAddress.getPort()))) {
-							aChannel.channel = channel;
-						} else 	if(aChannel.port.equals("*") && aChannel.host.equals(remoteAddress.getHostString())) {
-							aChannel.channel = channel;
-						} else if(aChannel.port.equals("*") && aChannel.host.equals("*")) {
-							aChannel.channel = channel;
-						}	
-					} else if(itemName.equals(aChannel.item) &&remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && !channel.equals(aChannel.channel)) {
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(useAddressMask && (aChannel.host.equals("*") || aChannel.port.equals("*")) && direction.equals(aChannel.direction) && itemName.equals(aChannel.item) && !channel.equals(aChannel.channel)) {
+					if(aChannel.host.equals("*") && aChannel.port.equals(Integer.toString(remoteAddress.getPort()))) {
 						aChannel.channel = channel;
-					}
+					} else 	if(aChannel.port.equals("*") && aChannel.host.equals(remoteAddress.getHostString())) {
+						aChannel.channel = channel;
+					} else if(aChannel.port.equals("*") && aChannel.host.equals("*")) {
+						aChannel.channel = channel;
+					}	
+				} else if(itemName.equals(aChannel.item) &&remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && !channel.equals(aChannel.channel)) {
+					aChannel.channel = channel;
 				}
 			}
 
 		}
 
 		public ArrayList<Channel> getAll(String itemName, Direction direction, SocketChannel theSocketChannel) {
-			synchronized(this) {
 
-				ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
+			ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
 
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(itemName.equals(aChannel.item) &&theSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						selectedChannels.add(aChannel);
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(itemName.equals(aChannel.item) &&theSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					selectedChannels.add(aChannel);
 				}
-
-				return selectedChannels;
 			}
+
+			return selectedChannels;
 		}
 
 		public void setAllBlocking(String itemName, Direction direction, SocketChannel theSocketChannel, boolean b) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(itemName.equals(aChannel.item) &&theSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						aChannel.isBlocking = b;
-					}
-				}		
-			}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(itemName.equals(aChannel.item) &&theSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					aChannel.isBlocking = b;
+				}
+			}		
 		}
 
 		public Channel getFirstServed(InetSocketAddress remoteAddress) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(remoteAddress.equals(aChannel.remote) &&aChannel.channel != null) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(remoteAddress.equals(aChannel.remote) &&aChannel.channel != null) {
+					return aChannel;
 				}
-
-				return null;
 			}
+
+			return null;
 		}
 
 		public void replace(Direction direction,
 				SocketChannel oldSocketChannel, SocketChannel channel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(oldSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						aChannel.channel = channel;
-					}
-				}		
-			}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(oldSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					aChannel.channel = channel;
+				}
+			}		
 		}
 
 		public void replace(Direction direction, InetSocketAddress remoteAddress,
 				SocketChannel channel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(useAddressMask && (aChannel.host.equals("*") || aChannel.port.equals("*")) && remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && !channel.equals(aChannel.channel)) {
-						if(aChannel.host.equals("*") && aChannel.port.equals(Integer.toString(remoteAddress.getPort()))) {
-							aChannel.channel = channel;
-						} else 	if(aChannel.port.equals("*") && aChannel.host.equals(remoteAddress.getHostString())) {
-							aChannel.channel = channel;
-						} else if(aChannel.port.equals("*") && aChannel.host.equals("*")) {
-							aChannel.channel = channel;
-						}
-					} else if(remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && !channel.equals(aChannel.channel)) {
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(useAddressMask && (aChannel.host.equals("*") || aChannel.port.equals("*")) && remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && !channel.equals(aChannel.channel)) {
+					if(aChannel.host.equals("*") && aChannel.port.equals(Integer.toString(remoteAddress.getPort()))) {
+						aChannel.channel = channel;
+					} else 	if(aChannel.port.equals("*") && aChannel.host.equals(remoteAddress.getHostString())) {
+						aChannel.channel = channel;
+					} else if(aChannel.port.equals("*") && aChannel.host.equals("*")) {
 						aChannel.channel = channel;
 					}
-				}		
-			}
+				} else if(remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && !channel.equals(aChannel.channel)) {
+					aChannel.channel = channel;
+				}
+			}		
 		}
 
 		public ArrayList<Channel> getAll(Direction direction,
 				SocketChannel theSocketChannel) {
-			synchronized(this) {
-				ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
-
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						selectedChannels.add(aChannel);
-					}
-				}
+			ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
 
-				return selectedChannels;	
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					selectedChannels.add(aChannel);
+				}
 			}
+
+			return selectedChannels;	
 		}
 
 		public void setAllBlocking(Direction direction, SocketChannel theSocketChannel,
 				boolean b) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
-						aChannel.isBlocking = b;
-					}
-				}	
-			}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theSocketChannel.equals(aChannel.channel) && direction.equals(aChannel.direction)) {
+					aChannel.isBlocking = b;
+				}
+			}	
 		}
 
 		public Channel getFirstServed(Direction direction,
 				InetSocketAddress remoteAddress) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(remoteAddress.equals(aChannel.remote) &&aChannel.channel != null && direction.equals(aChannel.direction)) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(remoteAddress.equals(aChannel.remote) &&aChannel.channel != null && direction.equals(aChannel.direction)) {
+					return aChannel;
 				}
-
-				return null;
 			}
+
+			return null;
 		}
 
 		public void replace(SocketChannel oldSocketChannel,
 				SocketChannel channel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(oldSocketChannel.equals(aChannel.channel)) {
-						aChannel.channel = channel;
-					}
-				}	
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(oldSocketChannel.equals(aChannel.channel)) {
+					aChannel.channel = channel;
+				}
+			}	
 
-			}			
 		}
 
 		public void replace (InetSocketAddress remoteAddress, SocketChannel channel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(useAddressMask && (aChannel.host.equals("*") || aChannel.port.equals("*")) && !channel.equals(aChannel.channel)) {
-						if(aChannel.host.equals("*") && aChannel.port.equals(Integer.toString(remoteAddress.getPort()))) {
-							aChannel.channel = channel;
-						} else 	if(aChannel.port.equals("*") && aChannel.host.equals(remoteAddress.getHostString())) {
-							aChannel.channel = channel;
-						} else if(aChannel.port.equals("*") && aChannel.host.equals("*")) {
-							aChannel.channel = channel;
-						}
-					} else if(remoteAddress.equals(aChannel.remote) && !channel.equals(aChannel.channel)) {
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(useAddressMask && (aChannel.host.equals("*") || aChannel.port.equals("*")) && !channel.equals(aChannel.channel)) {
+					if(aChannel.host.equals("*") && aChannel.port.equals(Integer.toString(remoteAddress.getPort()))) {
+						aChannel.channel = channel;
+					} else 	if(aChannel.port.equals("*") && aChannel.host.equals(remoteAddress.getHostString())) {
+						aChannel.channel = channel;
+					} else if(aChannel.port.equals("*") && aChannel.host.equals("*")) {
 						aChannel.channel = channel;
 					}
-				}		
-			}
+				} else if(remoteAddress.equals(aChannel.remote) && !channel.equals(aChannel.channel)) {
+					aChannel.channel = channel;
+				}
+			}		
 
 		}
 
 		public ArrayList<Channel> getAll(SocketChannel theSocketChannel) {
-			synchronized(this) {
-				ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
-
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theSocketChannel.equals(aChannel.channel)) {
-						selectedChannels.add(aChannel);
-					}
-				}
+			ArrayList<Channel> selectedChannels = new ArrayList<Channel>();
 
-				return selectedChannels;	
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theSocketChannel.equals(aChannel.channel)) {
+					selectedChannels.add(aChannel);
+				}
 			}
+
+			return selectedChannels;	
 		}
 
 		public void setAllBlocking(SocketChannel theSocketChannel, boolean b) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theSocketChannel.equals(aChannel.channel) ) {
-						aChannel.isBlocking = b;
-					}
-				}	
-			}			
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theSocketChannel.equals(aChannel.channel) ) {
+					aChannel.isBlocking = b;
+				}
+			}	
 		}
 
 		public void setAllReconnecting(SocketChannel theSocketChannel, boolean b) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theSocketChannel.equals(aChannel.channel) ) {
-						aChannel.isReconnecting = b;
-					}
-				}	
-			}			
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theSocketChannel.equals(aChannel.channel) ) {
+					aChannel.isReconnecting = b;
+				}
+			}	
 		}
 
 		public Channel getFirstNotServed(Direction direction,
 				InetSocketAddress remoteAddress) {			
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(useAddressMask && (aChannel.host.equals("*") || aChannel.port.equals("*")) && direction.equals(aChannel.direction) && (aChannel.channel == null || !aChannel.channel.isOpen())) {
-						if(aChannel.host.equals("*") && aChannel.port.equals(Integer.toString(remoteAddress.getPort()))) {
-							return aChannel;
-						} else 	if(aChannel.port.equals("*") && aChannel.host.equals(remoteAddress.getHostString())) {
-							return aChannel;
-						} else if(aChannel.port.equals("*") && aChannel.host.equals("*")) {
-							return aChannel;
-						}
-					} else if(remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && (aChannel.channel == null || !aChannel.channel.isOpen()) ) {
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(useAddressMask && (aChannel.host.equals("*") || aChannel.port.equals("*")) && direction.equals(aChannel.direction) && (aChannel.channel == null || !aChannel.channel.isOpen())) {
+					if(aChannel.host.equals("*") && aChannel.port.equals(Integer.toString(remoteAddress.getPort()))) {
+						return aChannel;
+					} else 	if(aChannel.port.equals("*") && aChannel.host.equals(remoteAddress.getHostString())) {
+						return aChannel;
+					} else if(aChannel.port.equals("*") && aChannel.host.equals("*")) {
 						return aChannel;
 					}
+				} else if(remoteAddress.equals(aChannel.remote) && direction.equals(aChannel.direction) && (aChannel.channel == null || !aChannel.channel.isOpen()) ) {
+					return aChannel;
 				}
+			}
+
+			return null;
+		}
 
-				return null;
+		public WriteBufferElement getFirstQueued(SocketChannel theSocketChannel) {
+			WriteBufferElement firstElement = null;
+
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theSocketChannel.equals(aChannel.channel)) {
+					WriteBufferElement anElement = aChannel.writeQueue.peek();
+					if(anElement != null && (firstElement == null || anElement.sequence < firstElement.sequence)) {
+						firstElement = anElement;
+					}
+				}
 			}
+			return firstElement;
 		}
 
 		public boolean isBlocking(SocketChannel theSocketChannel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theSocketChannel.equals(aChannel.channel) && aChannel.isBlocking) {
-						return true;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theSocketChannel.equals(aChannel.channel) && aChannel.isBlocking) {
+					return true;
 				}
-				return false;
 			}
+			return false;
 		}
 
 		public Channel getBlocking(SocketChannel theSocketChannel) {
-			synchronized(this) {
-				Iterator<C> it = iterator();
-				while(it.hasNext()) {
-					C aChannel = it.next();
-					if(theSocketChannel.equals(aChannel.channel) && aChannel.isBlocking) {
-						return aChannel;
-					}
+			Iterator<C> it = iterator();
+			while(it.hasNext()) {
+				C aChannel = it.next();
+				if(theSocketChannel.equals(aChannel.channel) && aChannel.isBlocking) {
+					return aChannel;
 				}
-				return null;
 			}
+			return null;
 		}
 
 	}
@@ -633,12 +622,14 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 		public Channel channel;
 		public ByteBuffer buffer;
 		public boolean isBlocking;
+		public final long sequence;
 
 		public WriteBufferElement(Channel channel, ByteBuffer buffer, boolean isBlocking) {
 			super();
 			this.channel = channel;
 			this.buffer = buffer;
 			this.isBlocking = isBlocking;
+			this.sequence = writeSequence.incrementAndGet();
 		}
 
 		@Override
@@ -676,7 +667,7 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 
 			logger.info("Listening for incoming connections on {}",listenerChannel.getLocalAddress());
 
-			synchronized(selector) {
+			synchronized(selectorGuard) {
 				selector.wakeup();
 				try {
 					listenerKey = listenerChannel.register(selector, SelectionKey.OP_ACCEPT);
@@ -698,6 +689,7 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 		//register the selectors
 		try {
 			selector = Selector.open();
+			startSelectorThread();
 		} catch (IOException e) {
 			logger.error("An exception occurred while registering the selector: {}",e.getMessage());
 		}	
@@ -708,14 +700,18 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 	 */
 	public void deactivate() {
 
+		selectorThreadRunning = false;
 		try {
+			// this also wakes up the selector thread
 			selector.close();
 		} catch (IOException e) {
 			logger.error("An exception occurred while closing the selector: {}",e.getMessage());
 		}
 
 		try {
-			listenerChannel.close();
+			if(listenerChannel != null) {
+				listenerChannel.close();
+			}
 		} catch (IOException e) {
 			logger.error("An exception occurred while closing the Listener Channel on port number {} ({})",listenerPort,e.getMessage());
 
@@ -1023,18 +1019,22 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 		if(isBlockingWriteRead) {
 
 			if(theBuffer != null) {
-				if(theSocketChannel.isConnected() || queueUntilConnected) {
-					writeQueue.add(new WriteBufferElement(theChannel,theBuffer,true));
+				if(!theSocketChannel.isConnected() && !queueUntilConnected) {
+					// nothing is sent, so there will be no response to wait for
+					return null;
 				}
 
-				long currentElapsedTimeMillis = System.currentTimeMillis();
+				CountDownLatch responseLatch = new CountDownLatch(1);
+				theChannel.responseLatch = responseLatch;
+				theChannel.writeQueue.add(new WriteBufferElement(theChannel,theBuffer,true));
+				selector.wakeup();
 
-				while(theChannel.buffer==null && (System.currentTimeMillis()-currentElapsedTimeMillis)<timeOut ) {
-					try {
-						Thread.sleep(100);
-					} catch (InterruptedException e) {
-						logger.warn("Exception occurred while waiting waiting during a blocking buffer write");
-					}
+				// wait until the selector thread has received the response
+				try {
+					responseLatch.await(timeOut, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					logger.warn("Exception occurred while waiting waiting during a blocking buffer write");
+					Thread.currentThread().interrupt();
 				}
 
 				ByteBuffer responseBuffer = null;
@@ -1042,8 +1042,11 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 					responseBuffer = theChannel.buffer;
 					theChannel.buffer = null;
 					theChannel.isBlocking = false;
+					theChannel.responseLatch = null;
 				}
-				return responseBuffer;
+				// data queued for this channel in the meantime can be written now
+				selector.wakeup();
+				return copyResponse(responseBuffer);
 			} else {
 				return theBuffer;
 			}
@@ -1052,7 +1055,8 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 
 			if(theBuffer != null) {
 				if(theSocketChannel.isConnected() || queueUntilConnected) {
-					writeQueue.add(new WriteBufferElement(theChannel,theBuffer,false));
+					theChannel.writeQueue.add(new WriteBufferElement(theChannel,theBuffer,false));
+					selector.wakeup();
 				}
 			}
 
@@ -1110,9 +1114,18 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 					}
 
 
-					synchronized(theBinding.selector) {
+					try {
+						if(theChannel.channel != null ) {							
+							theChannel.channel.connect(theChannel.remote);
+							logger.info("Attempting to reconnect the channel for {}",theChannel.remote);
+						}
+					} catch (Exception e) {
+						logger.error("An exception occurred while connecting a channel: {}",e.getMessage());
+					}
+
+					synchronized(theBinding.selectorGuard) {
 						theBinding.selector.wakeup();
-						int interestSet = SelectionKey.OP_READ | SelectionKey.OP_WRITE | SelectionKey.OP_CONNECT;    
+						int interestSet = SelectionKey.OP_READ | SelectionKey.OP_CONNECT;    
 						try {
 							if(theChannel.channel != null) {
 								theChannel.channel.register(theBinding.selector, interestSet);
@@ -1121,15 +1134,6 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 							logger.error("An exception occurred while registering a selector: {}",e1.getMessage());
 						}
 					}
-
-					try {
-						if(theChannel.channel != null ) {							
-							theChannel.channel.connect(theChannel.remote);
-							logger.info("Attempting to reconnect the channel for {}",theChannel.remote);
-						}
-					} catch (Exception e) {
-						logger.error("An exception occurred while connecting a channel: {}",e.getMessage());
-					}
 				} else {
 					logger.debug("I cannot proceed without remote address");
 				}
@@ -1169,6 +1173,7 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 	@Override
 	protected void execute() {
 
+		// the network events are handled by the selector thread, here we only set up the channels
 		// Cycle through the Items and setup channels if required
 		for (P provider : providers) {
 			for (String itemName : provider.getItemNames()) {
@@ -1301,16 +1306,6 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 												logger.error("An exception occurred while configuring a channel: {}",e.getMessage());
 											}
 
-											synchronized(selector) {
-												selector.wakeup();
-												int interestSet = SelectionKey.OP_READ | SelectionKey.OP_WRITE | SelectionKey.OP_CONNECT;    
-												try {
-													newSocketChannel.register(selector, interestSet);
-												} catch (ClosedChannelException e1) {
-													logger.error("An exception occurred while registering a selector: {}",e1.getMessage());
-												}
-											}
-
 											newChannel.channel = newSocketChannel;
 											logger.debug("Setting up the outbound channel {}", newChannel);
 
@@ -1320,6 +1315,18 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 											} catch (IOException e) {
 												logger.error("An exception occurred while connecting a channel: {}",e.getMessage());
 											}
+
+											// the channel is registered once the connection is pending, otherwise the selector thread 
+											// would try to finish a connection that has not been initiated yet
+											synchronized(selectorGuard) {
+												selector.wakeup();
+												int interestSet = SelectionKey.OP_READ | SelectionKey.OP_CONNECT;    
+												try {
+													newSocketChannel.register(selector, interestSet);
+												} catch (ClosedChannelException e1) {
+													logger.error("An exception occurred while registering a selector: {}",e1.getMessage());
+												}
+											}
 										}
 									}
 								} 
@@ -1333,15 +1340,103 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 			}
 		}
 
-		// Check on channels for which we have to process data
-		synchronized(selector) {
-			try {
-				// Wait for an event
-				selector.selectNow();
-			} catch (IOException e) {
-				logger.error("An exception occurred while Selecting ({})",e.getMessage());
+	}
+
+	/**
+	 * Starts the thread which waits for the events of the selector and handles them as soon as they occur
+	 */
+	private void startSelectorThread() {
+		String threadName = "openHAB " + getName() + " selector";
+		selectorThreadRunning = true;
+		selectorThread = new Thread(threadName) {
+			@Override
+			public void run() {
+				while (selectorThreadRunning) {
+					try {
+						registerPendingWrites();
+
+						// registrations wake up the selector while holding the guard, so wait until they are done
+						synchronized(selectorGuard) {
+						}
+						selector.select();
+
+						processSelectedKeys();
+					} catch (ClosedSelectorException e) {
+						break;
+					} catch (IOException e) {
+						logger.error("An exception occurred while Selecting ({})",e.getMessage());
+					} catch (RuntimeException e) {
+						logger.error("An exception occurred while processing the selected keys", e);
+					}
+				}
+			}
+		};
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+	}
+
+	/**
+	 * Adds the interest to write to the selection keys of all channels with queued data, unless the channel
+	 * waits for the response of a blocking write/read operation. The interest is removed again as soon as the 
+	 * channel has been writable, otherwise the selector would not block as long as a channel is idle.
+	 */
+	private void registerPendingWrites() {
+		for (Channel aChannel : channels) {
+			SocketChannel theChannel = aChannel.channel;
+			if(!aChannel.writeQueue.isEmpty() && theChannel != null && !channels.isBlocking(theChannel)) {
+				SelectionKey selKey = theChannel.keyFor(selector);
+				if(selKey != null && selKey.isValid()) {
+					selKey.interestOps(selKey.interestOps() | SelectionKey.OP_WRITE);
+				}
 			}
 		}
+	}
+
+	/**
+	 * Takes a buffer to read data from the network into from the pool, or allocates a new one if the pool is empty
+	 */
+	private ByteBuffer acquireReadBuffer() {
+		ByteBuffer theBuffer = readBufferPool.poll();
+		if(theBuffer == null || theBuffer.capacity() != maximumBufferSize) {
+			theBuffer = ByteBuffer.allocate(maximumBufferSize);
+		}
+		return theBuffer;
+	}
+
+	/**
+	 * Returns a read buffer to the pool once the data has been parsed, or once the response of a blocking write/read
+	 * operation has been copied out of it. The data is zeroed, as the implementation classes might use the whole array()
+	 */
+	private void releaseReadBuffer(ByteBuffer theBuffer, int numberBytesRead) {
+		if(numberBytesRead > 0) {
+			Arrays.fill(theBuffer.array(), 0, Math.min(numberBytesRead, theBuffer.capacity()), (byte) 0);
+		}
+		theBuffer.clear();
+		readBufferPool.add(theBuffer);
+	}
+
+	/**
+	 * Copies the response of a blocking write/read operation out of the read buffer it has been
+	 * received in, so that the read buffer can be returned to the pool
+	 */
+	private ByteBuffer copyResponse(ByteBuffer theReadBuffer) {
+		if(theReadBuffer == null) {
+			return null;
+		}
+		try {
+			ByteBuffer theResponse = ByteBuffer.allocate(theReadBuffer.remaining());
+			theResponse.put(theReadBuffer.duplicate());
+			theResponse.flip();
+			return theResponse;
+		} finally {
+			releaseReadBuffer(theReadBuffer, theReadBuffer.limit());
+		}
+	}
+
+	/**
+	 * Handles the keys selected by the selector thread
+	 */
+	private void processSelectedKeys() {
 
 		// Get list of selection keys with pending events
 		Iterator<SelectionKey> it = selector.selectedKeys().iterator();
@@ -1396,10 +1491,10 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 											logger.error("An exception occurred while configuring a channel: {}",e.getMessage());
 										}
 
-										synchronized(selector) {
+										synchronized(selectorGuard) {
 											selector.wakeup();
 											try {
-												newChannel.register(selector, newChannel.validOps());
+												newChannel.register(selector, SelectionKey.OP_READ);
 											} catch (ClosedChannelException e1) {
 												logger.error("An exception occurred while registering a selector: {}",e1.getMessage());
 											}										
@@ -1524,6 +1619,9 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 
 								logger.info("The channel for {} is now connected",remote);
 
+								// the connection is established, from now on we only wait for data (and for queued data to write)
+								selKey.interestOps(SelectionKey.OP_READ);
+
 								if(itemShareChannels) {
 									channels.replace(theChannel.item, theChannel.direction, remote, theChannel.channel);		
 								}
@@ -1588,9 +1686,10 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 
 					} else if (selKey.isReadable()) {
 
-						ByteBuffer readBuffer = ByteBuffer.allocate(maximumBufferSize);
+						ByteBuffer readBuffer = acquireReadBuffer();
 						int numberBytesRead = 0;
 						boolean error = false;
+						boolean handedOver = false;
 
 						try {
 							//TODO: Additional code to split readBuffer in multiple parts, in case the data send by the remote end is not correctly fragemented. Could be handed of to implementation class if for example, the buffer needs to be split based on a special character like line feed or carriage return
@@ -1672,6 +1771,11 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 
 									theChannel = channels.getBlocking(theSocketChannel);
 									theChannel.buffer = readBuffer;
+									handedOver = true;
+									CountDownLatch responseLatch = theChannel.responseLatch;
+									if(responseLatch != null) {
+										responseLatch.countDown();
+									}
 									theChannel.isBlocking = false;
 
 								} else {
@@ -1689,8 +1793,15 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 							}
 						}	
 
+						if(!handedOver) {
+							releaseReadBuffer(readBuffer, numberBytesRead);
+						}
+
 					} else if (selKey.isWritable()) {
 
+						// the interest is registered again by the selector thread as long as there is queued data for this channel
+						selKey.interestOps(selKey.interestOps() & ~SelectionKey.OP_WRITE);
+
 						boolean isBlocking = channels.isBlocking(theSocketChannel);
 
 						if(isBlocking) {
@@ -1698,19 +1809,7 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 						} else { 
 
 							// pick up a QueueElement for this channel, if any
-
-							WriteBufferElement theElement = null;		
-
-
-							Iterator<WriteBufferElement> iterator = writeQueue.iterator();
-							while (iterator.hasNext()) {
-								WriteBufferElement anElement = iterator.next();
-								if(anElement.channel.channel.equals(theSocketChannel)) {
-									theElement = anElement;
-									break;
-								}
-							}
-
+							WriteBufferElement theElement = channels.getFirstQueued(theSocketChannel);
 
 							if(theElement != null && theElement.buffer != null) {
 
@@ -1782,7 +1881,7 @@ public abstract class AbstractSocketChannelBinding<P extends ChannelBindingProvi
 									}
 								} else {
 									if(theElement != null ) {
-										writeQueue.remove(theElement);
+										theElement.channel.writeQueue.remove(theElement);
 									}
 
 								}
@@ -87,8 +87,8 @@ public class TCPBinding extends AbstractSocketChannelBinding<TCPBindingProvider>
 			}
 
 			if(result!=null && blocking) {
-				logger.info("Received {} from the remote end {}",new String(result.array()),sChannel.toString());
-				String transformedResponse = transformResponse(provider.getProtocolCommand(itemName, command),new String(result.array()));
+				logger.info("Received {} from the remote end {}",new String(result.array(),0,result.limit()),sChannel.toString());
+				String transformedResponse = transformResponse(provider.getProtocolCommand(itemName, command),new String(result.array(),0,result.limit()));
 
 				// if the remote-end does not send a reply in response to the string we just sent, then the abstract superclass will update
 				// the openhab status of the item for us. If it does reply, then an additional update is done via parseBuffer.
@@ -126,7 +126,7 @@ public class TCPBinding extends AbstractSocketChannelBinding<TCPBindingProvider>
 	@Override
 	protected void parseBuffer(String itemName, Command aCommand, Direction theDirection,ByteBuffer byteBuffer){
 
-		String theUpdate = new String(byteBuffer.array());
+		String theUpdate = new String(byteBuffer.array(),0,byteBuffer.limit());
 		ProtocolBindingProvider provider = findFirstMatchingBindingProvider(itemName);
 
 		List<Class<? extends State>> stateTypeList = provider.getAcceptedDataTypes(itemName,aCommand);
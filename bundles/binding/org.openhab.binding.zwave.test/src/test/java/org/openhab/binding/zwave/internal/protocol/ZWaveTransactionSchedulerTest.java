@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageType;
+
+/**
+ * Runs transactions through a {@link ZWaveTransactionScheduler} whose time is
+ * advanced by the test, with reply time-outs between 1 and 5 seconds.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class ZWaveTransactionSchedulerTest {
+
+	private static final long MIN_TIMEOUT = 1000;
+	private static final long MAX_TIMEOUT = 5000;
+
+	private static final int NODE_ID = 5;
+
+	private TestScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		scheduler = new TestScheduler();
+	}
+
+	@Test
+	public void testTimeoutOfNewNodeIsMaximum() {
+		scheduler.add(getMessage(NODE_ID, 1));
+		assertEquals(MAX_TIMEOUT, scheduler.getStatistics(NODE_ID).getTimeout());
+		assertEquals(-1, scheduler.getStatistics(NODE_ID).getReplyTime());
+	}
+
+	@Test
+	public void testTimeoutIsClampedToMinimum() throws InterruptedException {
+		completeTransaction(getMessage(NODE_ID, 1), 200);
+
+		// 200 ms + 4 * 100 ms variance
+		assertEquals(200, scheduler.getStatistics(NODE_ID).getReplyTime());
+		assertEquals(MIN_TIMEOUT, scheduler.getStatistics(NODE_ID).getTimeout());
+	}
+
+	@Test
+	public void testTimeoutIsClampedToMaximum() throws InterruptedException {
+		completeTransaction(getMessage(NODE_ID, 1), 2000);
+
+		// 2000 ms + 4 * 1000 ms variance
+		assertEquals(2000, scheduler.getStatistics(NODE_ID).getReplyTime());
+		assertEquals(MAX_TIMEOUT, scheduler.getStatistics(NODE_ID).getTimeout());
+	}
+
+	@Test
+	public void testTimeoutFollowsSmoothedReplyTimeAndVariance() throws InterruptedException {
+		completeTransaction(getMessage(NODE_ID, 1), 1200);
+		// 1200 ms + 4 * 600 ms variance
+		assertEquals(3600, scheduler.getStatistics(NODE_ID).getTimeout());
+
+		completeTransaction(getMessage(NODE_ID, 2), 1200);
+		// the variance decreases to (3 * 600 ms + 0 ms) / 4
+		assertEquals(1200, scheduler.getStatistics(NODE_ID).getReplyTime());
+		assertEquals(3000, scheduler.getStatistics(NODE_ID).getTimeout());
+
+		completeTransaction(getMessage(NODE_ID, 3), 2000);
+		// reply time (7 * 1200 ms + 2000 ms) / 8, variance (3 * 450 ms + 800 ms) / 4
+		assertEquals(1300, scheduler.getStatistics(NODE_ID).getReplyTime());
+		assertEquals(3448, scheduler.getStatistics(NODE_ID).getTimeout());
+	}
+
+	@Test
+	public void testFailureDoublesTimeoutUpToMaximum() throws InterruptedException {
+		completeTransaction(getMessage(NODE_ID, 1), 200);
+
+		SerialMessage message = getMessage(NODE_ID, 2);
+		scheduler.add(message);
+		assertSame(message, scheduler.take());
+		assertTrue(scheduler.failed(message));
+		assertEquals(2000, scheduler.getStatistics(NODE_ID).getTimeout());
+
+		// the node is not sent messages until the time-out has passed
+		scheduler.add(message);
+		scheduler.time += 2000;
+		assertSame(message, scheduler.take());
+		assertTrue(scheduler.failed(message));
+		assertEquals(4000, scheduler.getStatistics(NODE_ID).getTimeout());
+
+		scheduler.add(message);
+		scheduler.time += 4000;
+		assertSame(message, scheduler.take());
+		assertTrue(scheduler.failed(message));
+		assertEquals(MAX_TIMEOUT, scheduler.getStatistics(NODE_ID).getTimeout());
+		assertEquals(3, scheduler.getStatistics(NODE_ID).getFailedCount());
+	}
+
+	@Test
+	public void testRetransmissionDoesNotChangeReplyTime() throws InterruptedException {
+		completeTransaction(getMessage(NODE_ID, 1), 200);
+
+		SerialMessage message = getMessage(NODE_ID, 2);
+		scheduler.add(message);
+		assertSame(message, scheduler.take());
+		assertTrue(scheduler.delivered(message));
+		scheduler.time += MIN_TIMEOUT;
+		assertNull(scheduler.take());
+		assertSame(message, scheduler.pollExpired());
+		assertEquals(1, scheduler.getStatistics(NODE_ID).getTimeoutCount());
+		assertEquals(2000, scheduler.getStatistics(NODE_ID).getTimeout());
+
+		// the reply to the retransmission may belong to the first transmission
+		scheduler.add(message);
+		scheduler.time += 2000;
+		assertSame(message, scheduler.take());
+		assertTrue(scheduler.delivered(message));
+		scheduler.time += 100;
+		assertTrue(scheduler.completed(message));
+		assertEquals(200, scheduler.getStatistics(NODE_ID).getReplyTime());
+		assertEquals(2000, scheduler.getStatistics(NODE_ID).getTimeout());
+	}
+
+	@Test
+	public void testDuplicateMessageIsDropped() throws InterruptedException {
+		SerialMessage message = getMessage(NODE_ID, 1);
+		assertTrue(scheduler.add(message));
+		assertFalse(scheduler.add(getMessage(NODE_ID, 1)));
+
+		assertEquals(1, scheduler.size());
+		assertEquals(1, scheduler.getStatistics(NODE_ID).getCoalescedCount());
+		assertSame(message, scheduler.take());
+	}
+
+	@Test
+	public void testMessagesForOtherNodesAreNotCoalesced() {
+		assertTrue(scheduler.add(getMessage(NODE_ID, 1)));
+		assertTrue(scheduler.add(getMessage(NODE_ID + 1, 1)));
+		assertTrue(scheduler.add(getSetMessage(NODE_ID, 0x00)));
+		assertTrue(scheduler.add(getSetMessage(NODE_ID + 1, 0xFF)));
+
+		assertEquals(4, scheduler.size());
+		assertEquals(0, scheduler.getStatistics(NODE_ID).getCoalescedCount());
+	}
+
+	@Test
+	public void testSetMessageReplacesValueOfQueuedSetMessage() throws InterruptedException {
+		SerialMessage message = getSetMessage(NODE_ID, 0x00);
+		assertTrue(scheduler.add(message));
+		assertFalse(scheduler.add(getSetMessage(NODE_ID, 0x63)));
+		assertFalse(scheduler.add(getSetMessage(NODE_ID, 0xFF)));
+
+		assertEquals(1, scheduler.size());
+		assertEquals(2, scheduler.getStatistics(NODE_ID).getCoalescedCount());
+		assertSame(message, scheduler.take());
+		assertEquals(0xFF, message.getMessagePayloadByte(4));
+	}
+
+	@Test
+	public void testDiscardDeadNode() throws InterruptedException {
+		scheduler.add(getMessage(NODE_ID, 1));
+		scheduler.add(getMessage(NODE_ID, 2));
+		scheduler.add(getSetMessage(NODE_ID, 0xFF));
+		SerialMessage other = getMessage(NODE_ID + 1, 1);
+		scheduler.add(other);
+
+		assertEquals(3, scheduler.discard(NODE_ID));
+		assertEquals(1, scheduler.size());
+		assertEquals(0, scheduler.getStatistics(NODE_ID).getQueueLength());
+		assertEquals(3, scheduler.getStatistics(NODE_ID).getDiscardedCount());
+		assertFalse(scheduler.hasQueued(SerialMessagePriority.Set));
+		assertSame(other, scheduler.take());
+
+		assertEquals(0, scheduler.discard(NODE_ID));
+		assertEquals(0, scheduler.discard(NODE_ID + 2));
+	}
+
+	/**
+	 * Sends a message which the node replies to after the given time.
+	 */
+	private void completeTransaction(SerialMessage message, long replyTime) throws InterruptedException {
+		assertTrue(scheduler.add(message));
+		assertSame(message, scheduler.take());
+		assertTrue(scheduler.delivered(message));
+		scheduler.time += replyTime;
+		assertTrue(scheduler.completed(message));
+	}
+
+	private static SerialMessage getMessage(int nodeId, int command) {
+		SerialMessage message = new SerialMessage(nodeId, SerialMessageClass.SendData, SerialMessageType.Request,
+				SerialMessageClass.ApplicationCommandHandler, SerialMessagePriority.Get);
+		message.setMessagePayload(new byte[] { (byte) nodeId, 2, 0x25, (byte) command });
+		return message;
+	}
+
+	private static SerialMessage getSetMessage(int nodeId, int value) {
+		SerialMessage message = new SerialMessage(nodeId, SerialMessageClass.SendData, SerialMessageType.Request,
+				SerialMessageClass.SendData, SerialMessagePriority.Set);
+		message.setMessagePayload(new byte[] { (byte) nodeId, 3, 0x25, 0x01, (byte) value });
+		return message;
+	}
+
+	/**
+	 * A scheduler whose time only changes when the test advances it, which
+	 * orders the messages by priority and then by the order of creation.
+	 */
+	private static class TestScheduler extends ZWaveTransactionScheduler {
+
+		long time = 1000000;
+
+		TestScheduler() {
+			super(new Comparator<SerialMessage>() {
+				public int compare(SerialMessage arg0, SerialMessage arg1) {
+					return arg0.getPriority().compareTo(arg1.getPriority());
+				}
+			}, MIN_TIMEOUT, MAX_TIMEOUT);
+		}
+
+		@Override
+		long currentTimeMillis() {
+			return time;
+		}
+	}
+
+}
@@ -141,6 +141,17 @@ public enum ZWaveBindingAction {
 	 */
 	REPORT_BATTERY_LEVEL("BATTERY_LEVEL"),
 	
+	/**
+	 * Reports the number of messages waiting to be sent to the node.
+	 */
+	REPORT_QUEUE_LENGTH("QUEUE_LENGTH"),
+	
+	/**
+	 * Reports the average time in milliseconds between queueing a message
+	 * for the node and completing its transaction.
+	 */
+	REPORT_LATENCY("LATENCY"),
+	
 	/**
 	 * Enables Z-Wave dimmers to restore to the last value, instead of the maximum level;
 	 */
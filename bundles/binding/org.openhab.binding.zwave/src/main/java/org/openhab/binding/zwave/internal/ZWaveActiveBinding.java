@@ -25,6 +25,7 @@ import org.openhab.binding.zwave.internal.protocol.ZWaveEvent;
 import org.openhab.binding.zwave.internal.protocol.ZWaveEvent.ZWaveEventType;
 import org.openhab.binding.zwave.internal.protocol.ZWaveEventListener;
 import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNodeStatistics;
 import org.openhab.core.binding.AbstractActiveBinding;
 import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.library.types.IncreaseDecreaseType;
@@ -201,6 +202,15 @@ public class ZWaveActiveBinding extends AbstractActiveBinding<ZWaveBindingProvid
 						if (wakeUpCommandClass != null)
 							value = new StringType(String.format("%d", wakeUpCommandClass.getInterval()));
 						break;
+					case REPORT_QUEUE_LENGTH:
+						ZWaveNodeStatistics queueStatistics = this.zController.getNodeStatistics(nodeId);
+						value = new StringType(String.format("%d", queueStatistics != null ? queueStatistics.getQueueLength() : 0));
+						break;
+					case REPORT_LATENCY:
+						ZWaveNodeStatistics latencyStatistics = this.zController.getNodeStatistics(nodeId);
+						if (latencyStatistics != null && latencyStatistics.getAverageLatency() >= 0)
+							value = new StringType(String.format("%d", latencyStatistics.getAverageLatency()));
+						break;
 					default:
 						logger.warn("ZWave Binding Action not supported! ZWave Binding Action = {}", action);
 						continue; // next item
@@ -22,7 +22,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -60,8 +59,8 @@ public class ZWaveController {
 	private static final int QUERY_STAGE_TIMEOUT = 120000;
 	private static final int ZWAVE_RESPONSE_TIMEOUT = 5000; // 5000 ms ZWAVE_RESPONSE TIMEOUT
 	private static final int ZWAVE_RECEIVE_TIMEOUT = 1000; // 1000 ms ZWAVE_RECEIVE_TIMEOUT
+	private static final int ZWAVE_MIN_REPLY_TIMEOUT = 1000; // 1000 ms minimum time-out for the reply of a node
 	private static final int NODE_BYTES = 29; // 29 bytes = 232 bits, one for each supported node by Z-Wave;
-	private static final int INITIAL_QUEUE_SIZE = 128; 
 	private static final long WATCHDOG_TIMER_PERIOD = 10000; // 10 seconds watchdog timer
 
 	private static final int TRANSMIT_OPTION_ACK = 0x01;
@@ -70,7 +69,7 @@ public class ZWaveController {
 	
 	private final Map<Integer, ZWaveNode> zwaveNodes = new HashMap<Integer, ZWaveNode>();
 	private final ArrayList<ZWaveEventListener> zwaveEventListeners = new ArrayList<ZWaveEventListener>();
-	private final PriorityBlockingQueue<SerialMessage> sendQueue = new PriorityBlockingQueue<SerialMessage>(INITIAL_QUEUE_SIZE, new SerialMessage.SerialMessageComparator(this));
+	private final ZWaveTransactionScheduler sendScheduler = new ZWaveTransactionScheduler(new SerialMessage.SerialMessageComparator(this), ZWAVE_MIN_REPLY_TIMEOUT, ZWAVE_RESPONSE_TIMEOUT);
 	private ZWaveSendThread sendThread;
 	private ZWaveReceiveThread receiveThread;
 	
@@ -201,10 +200,23 @@ public class ZWaveController {
 		logger.trace("Found Command Class {}, passing to handleApplicationCommandRequest", zwaveCommandClass.getCommandClass().getLabel());
 		zwaveCommandClass.handleApplicationCommandRequest(incomingMessage, 4, 1);
 
-		if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && nodeId == this.lastSentMessage.getMessageNode() && !incomingMessage.isTransActionCanceled()) {
-				notifyEventListeners(new ZWaveEvent(ZWaveEventType.TRANSACTION_COMPLETED_EVENT, this.lastSentMessage.getMessageNode(), 1, this.lastSentMessage));
-				transactionCompleted.release();
-				logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
+		SerialMessage originalMessage = sendScheduler.getTransaction(nodeId);
+		if (originalMessage != null && incomingMessage.getMessageClass() == originalMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled())
+			completeTransaction(originalMessage);
+	}
+	
+	/**
+	 * Completes the transaction of a message and notifies the event listeners.
+	 * The send thread is released if it still waits for this transaction.
+	 * @param originalMessage the original message that was sent
+	 */
+	private void completeTransaction(SerialMessage originalMessage) {
+		if (sendScheduler.completed(originalMessage))
+			notifyEventListeners(new ZWaveEvent(ZWaveEventType.TRANSACTION_COMPLETED_EVENT, originalMessage.getMessageNode(), 1, originalMessage));
+		
+		if (originalMessage == this.lastSentMessage) {
+			transactionCompleted.release();
+			logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
 		}
 	}
 	
@@ -243,7 +255,9 @@ public class ZWaveController {
 					node.advanceNodeStage();
 				}
 				if (incomingMessage.getMessageClass() == originalMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled()) {
-					notifyEventListeners(new ZWaveEvent(ZWaveEventType.TRANSACTION_COMPLETED_EVENT, this.lastSentMessage.getMessageNode(), 1, this.lastSentMessage));
+					completeTransaction(originalMessage);
+				} else if (sendScheduler.delivered(originalMessage)) {
+					// the node still has to reply. Meanwhile, messages can be sent to other nodes.
 					transactionCompleted.release();
 					logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
 				}
@@ -253,6 +267,7 @@ public class ZWaveController {
 			case COMPLETE_NOT_IDLE:
 			case COMPLETE_NOROUTE:
 				try {
+					sendScheduler.failed(originalMessage);
 					handleFailedSendDataRequest(originalMessage);
 				} finally {
 					transactionCompleted.release();
@@ -286,10 +301,45 @@ public class ZWaveController {
 		
 		node.incrementResendCount();
 		
+		if (node.getNodeStage() == NodeStage.NODEBUILDINFO_DEAD) {
+			logger.error("Got an error while sending data to node {}. Node is dead, discarding message.", node.getNodeId());
+			discardQueuedMessages(node.getNodeId());
+			return;
+		}
+		
 		logger.error("Got an error while sending data to node {}. Resending message.", node.getNodeId());
 		this.sendData(originalMessage);
 	}
 	
+	/**
+	 * Handles a transaction that timed out. Either the controller did not
+	 * finish sending the message or the node did not reply in time.
+	 * @param originalMessage the original message that was sent
+	 */
+	private void handleTransactionTimeout(SerialMessage originalMessage) {
+		if (--originalMessage.attempts >= 0) {
+			logger.error("Timeout while sending message to node {}. Requeueing", originalMessage.getMessageNode());
+			if (originalMessage.getMessageClass() == SerialMessageClass.SendData)
+				handleFailedSendDataRequest(originalMessage);
+			else
+				enqueue(originalMessage);
+		} else
+		{
+			logger.warn("Discarding message: {}", originalMessage.toString());
+		}
+	}
+	
+	/**
+	 * Discards the queued messages for a dead node, so that they
+	 * do not have to time out one by one.
+	 * @param nodeId the node id of the dead node.
+	 */
+	private void discardQueuedMessages(int nodeId) {
+		int discarded = sendScheduler.discard(nodeId);
+		if (discarded > 0)
+			logger.warn("Discarded {} queued messages for dead node {}.", discarded, nodeId);
+	}
+	
 	/**
 	 * Handles incoming Application Update Request.
 	 * @param incomingMessage the request message to process.
@@ -324,11 +374,8 @@ public class ZWaveController {
 				// advance node stage.
 				node.advanceNodeStage();
 				
-				if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled()) {
-					notifyEventListeners(new ZWaveEvent(ZWaveEventType.TRANSACTION_COMPLETED_EVENT, this.lastSentMessage.getMessageNode(), 1, this.lastSentMessage));
-					transactionCompleted.release();
-					logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
-				}
+				if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled())
+					completeTransaction(this.lastSentMessage);
 				break;
 			case NODE_INFO_REQ_FAILED:
 				logger.debug("Application update request, Node Info Request Failed, re-request node info.");
@@ -339,6 +386,8 @@ public class ZWaveController {
 					logger.warn("Got application update request without node info request, ignoring.");
 					return;
 				}
+				
+				sendScheduler.failed(requestInfoMessage);
 					
 				if (--requestInfoMessage.attempts >= 0) {
 					logger.error("Got Node Info Request Failed while sending this serial message. Requeueing");
@@ -364,46 +413,31 @@ public class ZWaveController {
 		switch (incomingMessage.getMessageClass()) {
 			case GetVersion:
 				handleGetVersionResponse(incomingMessage);
-				if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled()) {
-					notifyEventListeners(new ZWaveEvent(ZWaveEventType.TRANSACTION_COMPLETED_EVENT, this.lastSentMessage.getMessageNode(), 1, this.lastSentMessage));
-					transactionCompleted.release();
-					logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
-				}
+				if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled())
+					completeTransaction(this.lastSentMessage);
 				break;
 			case MemoryGetId:
 				handleMemoryGetId(incomingMessage);
-				if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled()) {
-					notifyEventListeners(new ZWaveEvent(ZWaveEventType.TRANSACTION_COMPLETED_EVENT, this.lastSentMessage.getMessageNode(), 1, this.lastSentMessage));
-					transactionCompleted.release();
-					logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
-				}
+				if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled())
+					completeTransaction(this.lastSentMessage);
 				break;
 			case SerialApiGetInitData:
 				handleSerialApiGetInitDataResponse(incomingMessage);
-				if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled()) {
-					notifyEventListeners(new ZWaveEvent(ZWaveEventType.TRANSACTION_COMPLETED_EVENT, this.lastSentMessage.getMessageNode(), 1, this.lastSentMessage));
-					transactionCompleted.release();
-					logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
-				}
+				if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled())
+					completeTransaction(this.lastSentMessage);
 				break;
 			case IdentifyNode:
 				handleIdentifyNodeResponse(incomingMessage);
-				if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled()) {
-					notifyEventListeners(new ZWaveEvent(ZWaveEventType.TRANSACTION_COMPLETED_EVENT, this.lastSentMessage.getMessageNode(), 1, this.lastSentMessage));
-					transactionCompleted.release();
-					logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
-				}
+				if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled())
+					completeTransaction(this.lastSentMessage);
 				break;
 			case RequestNodeInfo:
 				handleRequestNodeInfoResponse(incomingMessage);
 				break;
 			case SerialApiGetCapabilities:
 				handleSerialAPIGetCapabilitiesResponse(incomingMessage);
-				if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled()) {
-					notifyEventListeners(new ZWaveEvent(ZWaveEventType.TRANSACTION_COMPLETED_EVENT, this.lastSentMessage.getMessageNode(), 1, this.lastSentMessage));
-					transactionCompleted.release();
-					logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
-				}
+				if (incomingMessage.getMessageClass() == this.lastSentMessage.getExpectedReply() && !incomingMessage.isTransActionCanceled())
+					completeTransaction(this.lastSentMessage);
 				break;
 			case SendData:
 				handleSendDataResponse(incomingMessage);
@@ -651,7 +685,7 @@ public class ZWaveController {
 		}
 		
 		this.zwaveNodes.clear();
-		this.sendQueue.clear();
+		this.sendScheduler.clear();
 		
 		logger.info("Stopped Z-Wave controller");
 	}
@@ -694,8 +728,8 @@ public class ZWaveController {
 	 * @param serialMessage the serial message to enqueue.
 	 */
 	public void enqueue(SerialMessage serialMessage) {
-		this.sendQueue.add(serialMessage);
-		logger.debug("Enqueueing message. Queue length = {}", this.sendQueue.size());
+		if (this.sendScheduler.add(serialMessage))
+			logger.debug("Enqueueing message. Queue length = {}", this.sendScheduler.size());
 	}
 		
 	/**
@@ -755,10 +789,8 @@ public class ZWaveController {
 		
 		// There are still nodes waiting to get a ping.
 		// So skip the dead node checking.
-		for (SerialMessage serialMessage : sendQueue) {
-			if (serialMessage.getPriority() == SerialMessagePriority.Low)
-				return;
-		}
+		if (sendScheduler.hasQueued(SerialMessagePriority.Low))
+			return;
 		
 		logger.trace("Checking for Dead or Sleeping Nodes.");
 		for (Map.Entry<Integer, ZWaveNode> entry : zwaveNodes.entrySet()){
@@ -779,6 +811,7 @@ public class ZWaveController {
 			
 			logger.warn(String.format("Node %d may be dead, setting stage to DEAD.", entry.getKey()));
 			entry.getValue().setNodeStage(ZWaveNode.NodeStage.NODEBUILDINFO_DEAD);
+			discardQueuedMessages(entry.getKey());
 
 			completeCount++;
 		}
@@ -1032,6 +1065,16 @@ public class ZWaveController {
 		return this.zwaveNodes.get(nodeId);
 	}
 	
+	/**
+	 * Gets the send queue and transaction statistics of a node.
+	 * Returns null if no message was sent to the node yet.
+	 * @param nodeId the Node ID of the node to get the statistics for.
+	 * @return the node statistics
+	 */
+	public ZWaveNodeStatistics getNodeStatistics(int nodeId) {
+		return this.sendScheduler.getStatistics(nodeId);
+	}
+	
 	/**
 	 * Indicates a working connection to the
 	 * Z-Wave controller stick.
@@ -1086,6 +1129,8 @@ public class ZWaveController {
 	/**
 	 * Z-Wave controller Send Thread. Takes care of sending all messages.
 	 * It uses a semaphore to synchronize communication with the receiving thread.
+	 * The transaction scheduler decides which message to send next and reports
+	 * the transactions of which the node did not reply in time.
 	 * @author Jan-Willem Spuij
 	 * @since 1.3.0
 	 */
@@ -1101,16 +1146,22 @@ public class ZWaveController {
 			logger.debug("Starting Z-Wave send thread");
 			while (!interrupted()) {
 				
+				SerialMessage serialMessage;
 				try {
-					lastSentMessage = sendQueue.take();
-					logger.debug("Took message from queue for sending. Queue length = {}", sendQueue.size());
+					while ((serialMessage = sendScheduler.pollExpired()) != null)
+						handleTransactionTimeout(serialMessage);
+					
+					serialMessage = sendScheduler.take();
 				} catch (InterruptedException e1) {
 					break;
 				}
 				
-				if (lastSentMessage == null)
+				if (serialMessage == null)
 					continue;
 				
+				lastSentMessage = serialMessage;
+				logger.debug("Took message from queue for sending. Queue length = {}", sendScheduler.size());
+				
 				transactionCompleted.drainPermits();
 				
 				byte[] buffer = lastSentMessage.getMessageBuffer();
@@ -1119,21 +1170,15 @@ public class ZWaveController {
 					serialPort.getOutputStream().write(buffer);
 				} catch (IOException e) {
 					logger.error("Got I/O exception {} during sending. exiting thread.", e.getLocalizedMessage());
+					if (sendScheduler.aborted(lastSentMessage))
+						enqueue(lastSentMessage);
 					break;
 				}
 				
 				try {
 					if (!transactionCompleted.tryAcquire(1, ZWAVE_RESPONSE_TIMEOUT, TimeUnit.MILLISECONDS)) {
-						if (--lastSentMessage.attempts >= 0) {
-							logger.error("Timeout while sending message to node {}. Requeueing", lastSentMessage.getMessageNode());
-							if (lastSentMessage.getMessageClass() == SerialMessageClass.SendData)
-								handleFailedSendDataRequest(lastSentMessage);
-							else
-								enqueue(lastSentMessage);
-						} else
-						{
-							logger.warn("Discarding message: {}", lastSentMessage.toString());
-						}
+						if (sendScheduler.timedOut(lastSentMessage))
+							handleTransactionTimeout(lastSentMessage);
 						continue;
 					}
 					logger.trace("Acquired. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
@@ -1249,6 +1294,7 @@ public class ZWaveController {
 						break;
 					case NAK:
     					logger.error("Message not acklowledged by controller (NAK), discarding");
+    					sendScheduler.aborted(lastSentMessage);
     					transactionCompleted.release();
     					logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
 						NAKCount++;
@@ -1260,7 +1306,8 @@ public class ZWaveController {
 						} catch (InterruptedException e) {
 							break;
 						}
-    					enqueue(lastSentMessage);
+    					if (sendScheduler.aborted(lastSentMessage))
+    						enqueue(lastSentMessage);
     					transactionCompleted.release();
     					logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
 						CANCount++;
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+/**
+ * Z-Wave node statistics class. Holds a snapshot of the send queue and
+ * transaction statistics of a single node, as collected by the
+ * {@link ZWaveTransactionScheduler}.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class ZWaveNodeStatistics {
+
+	private final int nodeId;
+	private final int queueLength;
+	private final int maxQueueLength;
+	private final long completedCount;
+	private final long failedCount;
+	private final long timeoutCount;
+	private final long coalescedCount;
+	private final long discardedCount;
+	private final long averageLatency;
+	private final long maxLatency;
+	private final long replyTime;
+	private final long timeout;
+
+	ZWaveNodeStatistics(int nodeId, int queueLength, int maxQueueLength, long completedCount, long failedCount,
+			long timeoutCount, long coalescedCount, long discardedCount, long averageLatency, long maxLatency,
+			long replyTime, long timeout) {
+		this.nodeId = nodeId;
+		this.queueLength = queueLength;
+		this.maxQueueLength = maxQueueLength;
+		this.completedCount = completedCount;
+		this.failedCount = failedCount;
+		this.timeoutCount = timeoutCount;
+		this.coalescedCount = coalescedCount;
+		this.discardedCount = discardedCount;
+		this.averageLatency = averageLatency;
+		this.maxLatency = maxLatency;
+		this.replyTime = replyTime;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Gets the node ID of the node. Node ID 0 holds the statistics
+	 * of the messages for the controller itself.
+	 * @return the nodeId
+	 */
+	public int getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Gets the number of messages waiting to be sent to the node.
+	 * @return the queueLength
+	 */
+	public int getQueueLength() {
+		return queueLength;
+	}
+
+	/**
+	 * Gets the highest number of messages that have been waiting to
+	 * be sent to the node at the same time.
+	 * @return the maxQueueLength
+	 */
+	public int getMaxQueueLength() {
+		return maxQueueLength;
+	}
+
+	/**
+	 * Gets the number of completed transactions.
+	 * @return the completedCount
+	 */
+	public long getCompletedCount() {
+		return completedCount;
+	}
+
+	/**
+	 * Gets the number of failed transactions, including time-outs.
+	 * @return the failedCount
+	 */
+	public long getFailedCount() {
+		return failedCount;
+	}
+
+	/**
+	 * Gets the number of transactions that timed out.
+	 * @return the timeoutCount
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount;
+	}
+
+	/**
+	 * Gets the number of messages that were merged with a message
+	 * already waiting in the queue.
+	 * @return the coalescedCount
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount;
+	}
+
+	/**
+	 * Gets the number of messages discarded because the node is dead.
+	 * @return the discardedCount
+	 */
+	public long getDiscardedCount() {
+		return discardedCount;
+	}
+
+	/**
+	 * Gets the average time in milliseconds between queueing a message
+	 * and completing its transaction, or -1 if no transaction completed yet.
+	 * @return the averageLatency
+	 */
+	public long getAverageLatency() {
+		return averageLatency;
+	}
+
+	/**
+	 * Gets the longest time in milliseconds between queueing a message
+	 * and completing its transaction.
+	 * @return the maxLatency
+	 */
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+	/**
+	 * Gets the smoothed time in milliseconds between delivering a message to
+	 * the node and receiving its reply, or -1 if the node did not reply yet.
+	 * @return the replyTime
+	 */
+	public long getReplyTime() {
+		return replyTime;
+	}
+
+	/**
+	 * Gets the current time-out in milliseconds to wait for a reply of the node.
+	 * @return the timeout
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("Node %d: queue = %d (max %d), completed = %d, failed = %d, timeouts = %d, coalesced = %d, discarded = %d, latency = %d ms (max %d ms), reply time = %d ms, timeout = %d ms",
+				nodeId, queueLength, maxQueueLength, completedCount, failedCount, timeoutCount, coalescedCount, discardedCount,
+				averageLatency, maxLatency, replyTime, timeout);
+	}
+}
@@ -0,0 +1,481 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Z-Wave transaction scheduler. Queues the messages to send per node and
+ * allows a single transaction per node at a time. A transaction starts when
+ * its message is taken from the queue and ends when the expected reply is
+ * received, or when it fails or times out.
+ *
+ * Messages that expect an application command from the node are delivered
+ * by the controller first. Once delivered, the controller is free to send
+ * messages to other nodes while the node prepares its reply. This way a
+ * slow or unresponsive node only delays its own messages.
+ *
+ * The time the controller waits for the reply of a node adapts to the
+ * measured reply times of the node. After a failure this time-out is doubled
+ * and the node is not sent any messages until it has passed.
+ *
+ * Messages that equal a queued message for the same node are dropped. A
+ * set message replaces the value of a queued set message for the same
+ * command class and command.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class ZWaveTransactionScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(ZWaveTransactionScheduler.class);
+
+	/**
+	 * The node ID to queue messages for the controller itself under.
+	 */
+	public static final int CONTROLLER_NODE_ID = 0;
+
+	private final Comparator<Transaction> transactionComparator;
+	private final long minTimeout;
+	private final long maxTimeout;
+
+	private final Map<Integer, NodeQueue> nodeQueues = new TreeMap<Integer, NodeQueue>();
+	private int size = 0;
+
+	/**
+	 * Constructor. Creates a new instance of the Z-Wave transaction scheduler.
+	 * @param messageComparator the comparator to order the messages with.
+	 * @param minTimeout the minimum reply time-out in milliseconds.
+	 * @param maxTimeout the maximum reply time-out in milliseconds. This
+	 * is also the time-out of nodes that did not reply yet.
+	 */
+	public ZWaveTransactionScheduler(final Comparator<SerialMessage> messageComparator, long minTimeout, long maxTimeout) {
+		this.transactionComparator = new Comparator<Transaction>() {
+			@Override
+			public int compare(Transaction arg0, Transaction arg1) {
+				return messageComparator.compare(arg0.message, arg1.message);
+			}
+		};
+		this.minTimeout = minTimeout;
+		this.maxTimeout = maxTimeout;
+	}
+
+	/**
+	 * Adds a message to the queue of its node.
+	 * @param serialMessage the message to add.
+	 * @return false if the message was merged with a queued message.
+	 */
+	public synchronized boolean add(SerialMessage serialMessage) {
+		NodeQueue nodeQueue = getNodeQueue(getNodeId(serialMessage));
+
+		for (Transaction queued : nodeQueue.queue) {
+			if (queued.message.equals(serialMessage)) {
+				logger.debug("Message already queued for node {}, dropping duplicate.", nodeQueue.nodeId);
+				nodeQueue.coalescedCount++;
+				return false;
+			}
+			if (isSameSetCommand(queued.message, serialMessage)) {
+				logger.debug("Set message queued for node {}, replacing its value.", nodeQueue.nodeId);
+				queued.message.setMessagePayload(serialMessage.getMessagePayload());
+				nodeQueue.coalescedCount++;
+				return false;
+			}
+		}
+
+		// keep the statistics of a message that is retried.
+		Transaction transaction = nodeQueue.lastTransaction;
+		if (transaction == null || transaction.message != serialMessage)
+			transaction = new Transaction(serialMessage, currentTimeMillis());
+		nodeQueue.lastTransaction = null;
+
+		nodeQueue.queue.add(transaction);
+		nodeQueue.maxQueueLength = Math.max(nodeQueue.maxQueueLength, nodeQueue.queue.size());
+		size++;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Takes the message to send next from the queues. Only nodes without an
+	 * ongoing transaction, that are not waiting to retry a failed transaction,
+	 * are taken into account. Waits until such a message is available or a
+	 * delivered transaction times out. The returned message starts a
+	 * transaction for its node.
+	 * @return the message to send or null if a delivered transaction timed
+	 * out. Use {@link #pollExpired()} to get it.
+	 * @throws InterruptedException when interrupted while waiting.
+	 */
+	public synchronized SerialMessage take() throws InterruptedException {
+		while (true) {
+			long now = currentTimeMillis();
+			long wakeUp = Long.MAX_VALUE;
+			NodeQueue next = null;
+
+			for (NodeQueue nodeQueue : nodeQueues.values()) {
+				Transaction transaction = nodeQueue.transaction;
+				if (transaction != null) {
+					if (transaction.delivered) {
+						if (transaction.deadline <= now)
+							return null;
+						wakeUp = Math.min(wakeUp, transaction.deadline);
+					}
+					continue;
+				}
+				if (nodeQueue.queue.isEmpty())
+					continue;
+				if (nodeQueue.retryTime > now) {
+					wakeUp = Math.min(wakeUp, nodeQueue.retryTime);
+					continue;
+				}
+				if (next == null || transactionComparator.compare(nodeQueue.queue.peek(), next.queue.peek()) < 0)
+					next = nodeQueue;
+			}
+
+			if (next != null) {
+				Transaction transaction = next.queue.poll();
+				size--;
+				transaction.transmissions++;
+				transaction.delivered = false;
+				next.transaction = transaction;
+				return transaction.message;
+			}
+
+			if (wakeUp == Long.MAX_VALUE)
+				wait();
+			else
+				wait(wakeUp - now);
+		}
+	}
+
+	/**
+	 * Gets the message of the ongoing transaction for a node.
+	 * @param nodeId the node ID to get the message for.
+	 * @return the message or null if there is no transaction ongoing.
+	 */
+	public synchronized SerialMessage getTransaction(int nodeId) {
+		NodeQueue nodeQueue = nodeQueues.get(nodeId);
+		if (nodeQueue == null || nodeQueue.transaction == null)
+			return null;
+		return nodeQueue.transaction.message;
+	}
+
+	/**
+	 * Indicates that the message of a transaction was delivered to the node and
+	 * the transaction waits for the reply of the node, at most for the time-out
+	 * of the node. Other nodes can be sent messages meanwhile.
+	 * @param serialMessage the message that was delivered.
+	 * @return true if the message belongs to an ongoing transaction.
+	 */
+	public synchronized boolean delivered(SerialMessage serialMessage) {
+		NodeQueue nodeQueue = getOngoing(serialMessage);
+		if (nodeQueue == null)
+			return false;
+		Transaction transaction = nodeQueue.transaction;
+		transaction.delivered = true;
+		transaction.deliveryTime = currentTimeMillis();
+		transaction.deadline = transaction.deliveryTime + nodeQueue.timeout;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Completes the transaction of a message.
+	 * @param serialMessage the message to complete the transaction for.
+	 * @return true if the message belonged to an ongoing transaction.
+	 */
+	public synchronized boolean completed(SerialMessage serialMessage) {
+		NodeQueue nodeQueue = getOngoing(serialMessage);
+		if (nodeQueue == null)
+			return false;
+
+		Transaction transaction = nodeQueue.transaction;
+		long now = currentTimeMillis();
+		nodeQueue.transaction = null;
+		nodeQueue.retryTime = 0;
+		nodeQueue.completedCount++;
+
+		// only replies to messages sent once tell the reply time.
+		if (transaction.delivered && transaction.transmissions == 1)
+			nodeQueue.addReplyTime(now - transaction.deliveryTime);
+
+		long latency = now - transaction.queueTime;
+		nodeQueue.averageLatency = nodeQueue.averageLatency < 0 ? latency : (7 * nodeQueue.averageLatency + latency) / 8;
+		nodeQueue.maxLatency = Math.max(nodeQueue.maxLatency, latency);
+
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Ends the transaction of a message that failed. The time-out of the node
+	 * is doubled and the node is not sent messages until it has passed.
+	 * @param serialMessage the message that failed.
+	 * @return true if the message belonged to an ongoing transaction.
+	 */
+	public synchronized boolean failed(SerialMessage serialMessage) {
+		NodeQueue nodeQueue = getOngoing(serialMessage);
+		if (nodeQueue == null)
+			return false;
+		fail(nodeQueue, false);
+		return true;
+	}
+
+	/**
+	 * Ends the transaction of a message that timed out. See
+	 * {@link #failed(SerialMessage)}.
+	 * @param serialMessage the message that timed out.
+	 * @return true if the message belonged to an ongoing transaction.
+	 */
+	public synchronized boolean timedOut(SerialMessage serialMessage) {
+		NodeQueue nodeQueue = getOngoing(serialMessage);
+		if (nodeQueue == null)
+			return false;
+		fail(nodeQueue, true);
+		return true;
+	}
+
+	/**
+	 * Ends the transaction of a message without counting it as completed or failed,
+	 * e.g. because the controller refused it.
+	 * @param serialMessage the message to end the transaction for.
+	 * @return true if the message belonged to an ongoing transaction.
+	 */
+	public synchronized boolean aborted(SerialMessage serialMessage) {
+		NodeQueue nodeQueue = getOngoing(serialMessage);
+		if (nodeQueue == null)
+			return false;
+		nodeQueue.lastTransaction = nodeQueue.transaction;
+		nodeQueue.transaction = null;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Ends the first delivered transaction that did not get a reply from its
+	 * node in time. See {@link #failed(SerialMessage)}.
+	 * @return the message of the transaction or null if no transaction timed out.
+	 */
+	public synchronized SerialMessage pollExpired() {
+		long now = currentTimeMillis();
+		for (NodeQueue nodeQueue : nodeQueues.values()) {
+			Transaction transaction = nodeQueue.transaction;
+			if (transaction != null && transaction.delivered && transaction.deadline <= now) {
+				fail(nodeQueue, true);
+				return transaction.message;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Discards all queued messages for a node, e.g. because it is dead.
+	 * @param nodeId the node ID to discard the messages for.
+	 * @return the number of discarded messages.
+	 */
+	public synchronized int discard(int nodeId) {
+		NodeQueue nodeQueue = nodeQueues.get(nodeId);
+		if (nodeQueue == null)
+			return 0;
+		int count = nodeQueue.queue.size();
+		nodeQueue.queue.clear();
+		nodeQueue.discardedCount += count;
+		size -= count;
+		return count;
+	}
+
+	/**
+	 * Checks whether messages with a specified priority are waiting to be sent.
+	 * @param priority the priority to look for.
+	 * @return true if a message with this priority is queued.
+	 */
+	public synchronized boolean hasQueued(SerialMessagePriority priority) {
+		for (NodeQueue nodeQueue : nodeQueues.values()) {
+			for (Transaction transaction : nodeQueue.queue) {
+				if (transaction.message.getPriority() == priority)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the number of messages waiting to be sent.
+	 * @return the number of queued messages.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Discards all queued messages and ongoing transactions, and resets the statistics.
+	 */
+	public synchronized void clear() {
+		nodeQueues.clear();
+		size = 0;
+		notifyAll();
+	}
+
+	/**
+	 * Gets the statistics for a node.
+	 * @param nodeId the node ID to get the statistics for.
+	 * @return the statistics or null if no message was queued for the node yet.
+	 */
+	public synchronized ZWaveNodeStatistics getStatistics(int nodeId) {
+		NodeQueue nodeQueue = nodeQueues.get(nodeId);
+		if (nodeQueue == null)
+			return null;
+		return new ZWaveNodeStatistics(nodeId, nodeQueue.queue.size(), nodeQueue.maxQueueLength,
+				nodeQueue.completedCount, nodeQueue.failedCount, nodeQueue.timeoutCount,
+				nodeQueue.coalescedCount, nodeQueue.discardedCount, nodeQueue.averageLatency,
+				nodeQueue.maxLatency, nodeQueue.replyTime, nodeQueue.timeout);
+	}
+
+	/**
+	 * Gets the current time. Tests override this to control the time.
+	 * @return the current time in milliseconds.
+	 */
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Gets the node ID to queue a message under. Messages that are handled by
+	 * the controller itself are queued under {@link #CONTROLLER_NODE_ID}.
+	 * @param serialMessage the message to get the node ID for.
+	 * @return the node ID.
+	 */
+	private int getNodeId(SerialMessage serialMessage) {
+		if (serialMessage.getMessageClass() == SerialMessageClass.SendData ||
+				serialMessage.getMessageClass() == SerialMessageClass.RequestNodeInfo)
+			return serialMessage.getMessageNode();
+		return CONTROLLER_NODE_ID;
+	}
+
+	private NodeQueue getNodeQueue(int nodeId) {
+		NodeQueue nodeQueue = nodeQueues.get(nodeId);
+		if (nodeQueue == null) {
+			nodeQueue = new NodeQueue(nodeId);
+			nodeQueues.put(nodeId, nodeQueue);
+		}
+		return nodeQueue;
+	}
+
+	private NodeQueue getOngoing(SerialMessage serialMessage) {
+		if (serialMessage == null)
+			return null;
+		NodeQueue nodeQueue = nodeQueues.get(getNodeId(serialMessage));
+		if (nodeQueue == null || nodeQueue.transaction == null || nodeQueue.transaction.message != serialMessage)
+			return null;
+		return nodeQueue;
+	}
+
+	private void fail(NodeQueue nodeQueue, boolean timeout) {
+		nodeQueue.failedCount++;
+		if (timeout)
+			nodeQueue.timeoutCount++;
+		nodeQueue.timeout = Math.min(nodeQueue.timeout * 2, maxTimeout);
+		nodeQueue.retryTime = currentTimeMillis() + nodeQueue.timeout;
+		nodeQueue.lastTransaction = nodeQueue.transaction;
+		nodeQueue.transaction = null;
+		logger.debug("Transaction for node {} failed, time-out is now {} ms.", nodeQueue.nodeId, nodeQueue.timeout);
+		notifyAll();
+	}
+
+	/**
+	 * Checks whether two messages set a value using the same command class and
+	 * command. The value is the last byte of the payload of a set message.
+	 */
+	private boolean isSameSetCommand(SerialMessage queued, SerialMessage serialMessage) {
+		if (queued.getMessageClass() != SerialMessageClass.SendData || serialMessage.getMessageClass() != SerialMessageClass.SendData)
+			return false;
+		if (queued.getPriority() != SerialMessagePriority.Set || serialMessage.getPriority() != SerialMessagePriority.Set)
+			return false;
+		if (queued.getExpectedReply() != serialMessage.getExpectedReply())
+			return false;
+
+		byte[] queuedPayload = queued.getMessagePayload();
+		byte[] payload = serialMessage.getMessagePayload();
+
+		// node ID, length, command class, command and value
+		if (payload.length < 5 || payload.length != queuedPayload.length)
+			return false;
+		for (int i = 0; i < payload.length - 1; i++) {
+			if (payload[i] != queuedPayload[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * A message and the times of its transaction.
+	 */
+	private static class Transaction {
+		private final SerialMessage message;
+		private final long queueTime;
+		private long deliveryTime;
+		private long deadline;
+		private int transmissions = 0;
+		private boolean delivered = false;
+
+		private Transaction(SerialMessage message, long queueTime) {
+			this.message = message;
+			this.queueTime = queueTime;
+		}
+	}
+
+	/**
+	 * The queued messages, ongoing transaction and statistics of a node.
+	 */
+	private class NodeQueue {
+		private final int nodeId;
+		private final PriorityQueue<Transaction> queue = new PriorityQueue<Transaction>(8, transactionComparator);
+		private Transaction transaction;
+		private Transaction lastTransaction;
+		private long retryTime = 0;
+		private long timeout = maxTimeout;
+		private long replyTime = -1;
+		private long replyTimeVariance = 0;
+
+		private int maxQueueLength = 0;
+		private long completedCount = 0;
+		private long failedCount = 0;
+		private long timeoutCount = 0;
+		private long coalescedCount = 0;
+		private long discardedCount = 0;
+		private long averageLatency = -1;
+		private long maxLatency = 0;
+
+		private NodeQueue(int nodeId) {
+			this.nodeId = nodeId;
+		}
+
+		/**
+		 * Adds a reply time measurement and sets the time-out to the smoothed reply
+		 * time plus four times its variance, like TCP does for round trip times.
+		 */
+		private void addReplyTime(long sample) {
+			if (replyTime < 0) {
+				replyTime = sample;
+				replyTimeVariance = sample / 2;
+			} else {
+				replyTimeVariance = (3 * replyTimeVariance + Math.abs(replyTime - sample)) / 4;
+				replyTime = (7 * replyTime + sample) / 8;
+			}
+			timeout = Math.max(minTimeout, Math.min(maxTimeout, replyTime + 4 * replyTimeVariance));
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.library.items;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.openhab.core.items.GroupItem;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.UnDefType;
+
+
+/**
+ * @author agent
+ * @since 1.4.0
+ */
+public class AcceptedStateTest {
+
+	@Test
+	public void testAcceptedState() {
+		NumberItem item = new NumberItem("number");
+
+		Assert.assertTrue(item.isAcceptedState(new DecimalType(1)));
+		Assert.assertTrue(item.isAcceptedState(UnDefType.UNDEF));
+		Assert.assertFalse(item.isAcceptedState(new StringType("1")));
+		Assert.assertFalse(item.isAcceptedState(null));
+	}
+
+	@Test
+	public void testAcceptedState_subclass() {
+		NumberItem item = new NumberItem("number");
+
+		// PercentType is accepted as a subclass of DecimalType
+		Assert.assertTrue(item.isAcceptedState(new PercentType(50)));
+		Assert.assertFalse(new SwitchItem("switch").isAcceptedState(new PercentType(50)));
+	}
+
+	@Test
+	public void testAcceptedState_groupMembersChanged() {
+		GroupItem group = new GroupItem("group");
+		group.addMember(new DimmerItem("dimmer"));
+
+		Assert.assertTrue(group.isAcceptedState(new PercentType(50)));
+		Assert.assertTrue(group.isAcceptedState(OnOffType.ON));
+
+		group.addMember(new NumberItem("number"));
+
+		Assert.assertFalse(group.getAcceptedDataTypes().contains(OnOffType.class));
+		Assert.assertFalse(group.isAcceptedState(OnOffType.ON));
+		Assert.assertTrue(group.isAcceptedState(UnDefType.NULL));
+	}
+
+	@Test
+	public void testAcceptedState_nestedGroupMembersChanged() {
+		GroupItem subGroup = new GroupItem("subGroup");
+		subGroup.addMember(new SwitchItem("switch"));
+		GroupItem group = new GroupItem("group");
+		group.addMember(subGroup);
+
+		Assert.assertTrue(group.isAcceptedState(OnOffType.ON));
+
+		subGroup.addMember(new StringItem("string"));
+
+		Assert.assertFalse(group.isAcceptedState(OnOffType.ON));
+	}
+
+}
@@ -17,6 +17,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.openhab.core.items.GenericItem;
 import org.openhab.core.items.GroupFunction;
+import org.openhab.core.items.GroupItem;
+import org.openhab.core.items.IncrementalGroupFunction;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.items.DimmerItem;
 import org.openhab.core.library.items.SwitchItem;
@@ -205,6 +207,119 @@ public class ArithmeticGroupFunctionTest {
 		Assert.assertEquals(new DecimalType("234.95"), state);
 	}
 	
+	@Test
+	public void testSumFunction_incremental() {
+		TestItem item1 = new TestItem("TestItem1", new DecimalType("23.54"));
+		TestItem item2 = new TestItem("TestItem2", UnDefType.NULL);
+		TestItem item3 = new TestItem("TestItem3", new DecimalType("89"));
+		items.add(item1);
+		items.add(item2);
+		items.add(item3);
+		
+		IncrementalGroupFunction sum = new ArithmeticGroupFunction.Sum();
+		Assert.assertEquals(new DecimalType("112.54"), sum.calculate(items, item1));
+		
+		item1.setState(new DecimalType("1"));
+		assertIncrementalResult(sum, item1, "90");
+		item2.setState(new DecimalType("0.5"));
+		assertIncrementalResult(sum, item2, "90.5");
+		item3.setState(UnDefType.UNDEF);
+		assertIncrementalResult(sum, item3, "1.5");
+		
+		// the scale must not depend on states which have been replaced
+		Assert.assertEquals("1.5", sum.calculate(items, item3).toString());
+	}
+	
+	@Test
+	public void testAvgFunction_incremental() {
+		TestItem item1 = new TestItem("TestItem1", new DecimalType("1.50"));
+		TestItem item2 = new TestItem("TestItem2", new DecimalType("2"));
+		items.add(item1);
+		items.add(item2);
+		
+		IncrementalGroupFunction avg = new ArithmeticGroupFunction.Avg();
+		assertIncrementalResult(avg, item1, "1.75");
+		
+		item1.setState(new DecimalType("1"));
+		assertIncrementalResult(avg, item1, "2");
+		item2.setState(UnDefType.NULL);
+		assertIncrementalResult(avg, item2, "1");
+		item1.setState(UnDefType.NULL);
+		Assert.assertEquals(UnDefType.UNDEF, avg.calculate(items, item1));
+	}
+	
+	@Test
+	public void testMinMaxFunction_incremental() {
+		TestItem item1 = new TestItem("TestItem1", new DecimalType("10"));
+		TestItem item2 = new TestItem("TestItem2", new DecimalType("20"));
+		TestItem item3 = new TestItem("TestItem3", new DecimalType("20"));
+		items.add(item1);
+		items.add(item2);
+		items.add(item3);
+		
+		IncrementalGroupFunction min = new ArithmeticGroupFunction.Min();
+		IncrementalGroupFunction max = new ArithmeticGroupFunction.Max();
+		Assert.assertEquals(new DecimalType("10"), min.calculate(items, item1));
+		Assert.assertEquals(new DecimalType("20"), max.calculate(items, item1));
+		
+		item1.setState(new DecimalType("30"));
+		Assert.assertEquals(new DecimalType("20"), min.calculate(items, item1));
+		Assert.assertEquals(new DecimalType("30"), max.calculate(items, item1));
+		
+		item1.setState(UnDefType.UNDEF);
+		item2.setState(new DecimalType("5"));
+		Assert.assertEquals(new DecimalType("20"), min.calculate(items, item1));
+		Assert.assertEquals(new DecimalType("5"), min.calculate(items, item2));
+		Assert.assertEquals(new DecimalType("20"), max.calculate(items, item1));
+		Assert.assertEquals(new DecimalType("20"), max.calculate(items, item2));
+	}
+	
+	@Test
+	public void testIncrementalFunction_membersChanged() {
+		TestItem item1 = new TestItem("TestItem1", new DecimalType("1"));
+		items.add(item1);
+		
+		IncrementalGroupFunction sum = new ArithmeticGroupFunction.Sum();
+		Assert.assertEquals(new DecimalType("1"), sum.calculate(items, item1));
+		
+		TestItem item2 = new TestItem("TestItem2", new DecimalType("2"));
+		items.add(item2);
+		sum.invalidate();
+		Assert.assertEquals(new DecimalType("3"), sum.calculate(items, item1));
+		
+		items.remove(item1);
+		sum.invalidate();
+		Assert.assertEquals(new DecimalType("2"), sum.calculate(items, item2));
+	}
+	
+	@Test
+	public void testGroupItem_incremental() {
+		GroupItem group = new GroupItem("TestGroup", null, new ArithmeticGroupFunction.Avg());
+		TestItem item1 = new TestItem("TestItem1", new DecimalType("10"));
+		TestItem item2 = new TestItem("TestItem2", new DecimalType("20"));
+		group.addMember(item1);
+		group.addMember(item2);
+		
+		item1.setState(new DecimalType("12"));
+		Assert.assertEquals(new DecimalType("16"), group.getState());
+		
+		TestItem item3 = new TestItem("TestItem3", new DecimalType("40"));
+		group.addMember(item3);
+		item3.setState(new DecimalType("43"));
+		Assert.assertEquals(new DecimalType("25"), group.getState());
+		
+		group.removeMember(item3);
+		item2.setState(new DecimalType("14"));
+		Assert.assertEquals(new DecimalType("13"), group.getState());
+	}
+	
+	private void assertIncrementalResult(IncrementalGroupFunction function, Item changedItem, String expected) {
+		State fullState = function.calculate(items);
+		State incrementalState = function.calculate(items, changedItem);
+		Assert.assertEquals(new DecimalType(expected), incrementalState);
+		Assert.assertEquals(fullState.toString(), incrementalState.toString());
+	}
+	
 	class TestItem extends GenericItem {
 
 		public TestItem(String name, State state) {
@@ -10,9 +10,13 @@ package org.openhab.core.library.types;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.openhab.core.items.GroupFunction;
+import org.openhab.core.items.IncrementalGroupFunction;
 import org.openhab.core.items.Item;
 import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
@@ -217,6 +221,145 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 		
 	}
 	
+	/**
+	 * This is the base class of the numeric functions. Besides the full calculation
+	 * it keeps the decimal states of all members of its group, so that the group
+	 * state can be updated from a single member change without iterating over all
+	 * members again.
+	 * 
+	 * @author agent
+	 * @since 1.4.0
+	 *
+	 */
+	abstract static class NumericAggregation implements IncrementalGroupFunction {
+		
+		/** the decimal state of each member or null, if it has none; items are mutable, so they are compared by identity */
+		private final Map<Item, BigDecimal> values = new IdentityHashMap<Item, BigDecimal>();
+		
+		/** the number of members for each decimal state, ordered by value */
+		private final TreeMap<BigDecimal, Integer> sortedValues = new TreeMap<BigDecimal, Integer>();
+		
+		/** the number of members for each scale of their decimal states */
+		private final TreeMap<Integer, Integer> scales = new TreeMap<Integer, Integer>();
+		
+		private BigDecimal sum = BigDecimal.ZERO;
+		
+		private int count = 0;
+		
+		private boolean valid = false;
+
+		/**
+		 * @{inheritDoc
+		 */
+		public synchronized State calculate(List<Item> items, Item changedItem) {
+			if(!valid || !values.containsKey(changedItem)) {
+				rebuild(items);
+			} else {
+				BigDecimal oldValue = values.get(changedItem);
+				BigDecimal newValue = getValue(changedItem);
+				if(oldValue==null ? newValue!=null : !oldValue.equals(newValue)) {
+					remove(oldValue);
+					add(newValue);
+					values.put(changedItem, newValue);
+				}
+			}
+			return aggregate();
+		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public synchronized void invalidate() {
+			valid = false;
+		}
+
+		/**
+		 * Determines the group state from the aggregated member states.
+		 * 
+		 * @return the calculated group state
+		 */
+		protected abstract State aggregate();
+		
+		/**
+		 * @return the number of members with a decimal state
+		 */
+		protected int getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the sum of all decimal member states, having the same scale as if
+		 * it had been added up from scratch
+		 */
+		protected BigDecimal getSum() {
+			int scale = scales.isEmpty() ? 0 : Math.max(0, scales.lastKey());
+			return sum.setScale(scale);
+		}
+		
+		/**
+		 * @return the smallest decimal member state or null, if there is none
+		 */
+		protected BigDecimal getMin() {
+			return sortedValues.isEmpty() ? null : sortedValues.firstKey();
+		}
+		
+		/**
+		 * @return the largest decimal member state or null, if there is none
+		 */
+		protected BigDecimal getMax() {
+			return sortedValues.isEmpty() ? null : sortedValues.lastKey();
+		}
+		
+		private void rebuild(List<Item> items) {
+			values.clear();
+			sortedValues.clear();
+			scales.clear();
+			sum = BigDecimal.ZERO;
+			count = 0;
+			if(items!=null) {
+				for(Item item : items) {
+					BigDecimal value = getValue(item);
+					values.put(item, value);
+					add(value);
+				}
+			}
+			valid = true;
+		}
+		
+		private void add(BigDecimal value) {
+			if(value!=null) {
+				sum = sum.add(value);
+				count++;
+				increment(sortedValues, value, 1);
+				increment(scales, value.scale(), 1);
+			}
+		}
+		
+		private void remove(BigDecimal value) {
+			if(value!=null) {
+				sum = sum.subtract(value);
+				count--;
+				increment(sortedValues, value, -1);
+				increment(scales, value.scale(), -1);
+			}
+		}
+		
+		private static <K> void increment(Map<K, Integer> counts, K key, int delta) {
+			Integer current = counts.get(key);
+			int newCount = (current==null ? 0 : current) + delta;
+			if(newCount > 0) {
+				counts.put(key, newCount);
+			} else {
+				counts.remove(key);
+			}
+		}
+		
+		private static BigDecimal getValue(Item item) {
+			DecimalType itemState = (DecimalType) item.getStateAs(DecimalType.class);
+			return itemState!=null ? itemState.toBigDecimal() : null;
+		}
+	}
+	
 	/**
 	 * This calculates the numeric average over all item states of decimal type.
 	 * 
@@ -224,10 +367,22 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Avg implements GroupFunction {
+	static class Avg extends NumericAggregation {
 		
 		public Avg() {}
 
+		/**
+		 * @{inheritDoc
+		 */
+		@Override
+		protected State aggregate() {
+			if(getCount()>0) {
+				return new DecimalType(getSum().divide(new BigDecimal(getCount()), RoundingMode.HALF_UP));
+			} else {
+				return UnDefType.UNDEF;
+			}
+		}
+
 		/**
 		 * @{inheritDoc
 		 */
@@ -270,10 +425,18 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 1.1.0
 	 *
 	 */
-	static class Sum implements GroupFunction {
+	static class Sum extends NumericAggregation {
 		
 		public Sum() {}
 
+		/**
+		 * @{inheritDoc
+		 */
+		@Override
+		protected State aggregate() {
+			return new DecimalType(getSum());
+		}
+
 		/**
 		 * @{inheritDoc
 		 */
@@ -310,10 +473,19 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Min implements GroupFunction {
+	static class Min extends NumericAggregation {
 		
 		public Min() {}
 
+		/**
+		 * @{inheritDoc
+		 */
+		@Override
+		protected State aggregate() {
+			BigDecimal min = getMin();
+			return min!=null ? new DecimalType(min) : UnDefType.UNDEF;
+		}
+
 		/**
 		 * @{inheritDoc
 		 */
@@ -355,10 +527,19 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Max implements GroupFunction {
+	static class Max extends NumericAggregation {
 		
 		public Max() {}
 
+		/**
+		 * @{inheritDoc
+		 */
+		@Override
+		protected State aggregate() {
+			BigDecimal max = getMax();
+			return max!=null ? new DecimalType(max) : UnDefType.UNDEF;
+		}
+
 		/**
 		 * @{inheritDoc
 		 */
@@ -9,8 +9,11 @@
 package org.openhab.core.persistence.extensions;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Iterator;
 import java.util.List;
 
 import org.joda.time.DateMidnight;
@@ -19,8 +22,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.openhab.core.items.GenericItem;
 import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceService;
+import org.openhab.core.persistence.test.TestAggregatingPersistenceService;
+import org.openhab.core.persistence.test.TestCursorPersistenceService;
 import org.openhab.core.persistence.test.TestPersistenceService;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.State;
@@ -33,6 +39,8 @@ import org.openhab.core.types.State;
 public class PersistenceExtensionsTest {
 
 	private PersistenceService testPersistenceService = new TestPersistenceService();
+	private TestAggregatingPersistenceService testAggregatingPersistenceService = new TestAggregatingPersistenceService();
+	private TestCursorPersistenceService testCursorPersistenceService = new TestCursorPersistenceService();
 	private PersistenceExtensions ext;
 	private GenericItem item;
 	
@@ -40,6 +48,8 @@ public class PersistenceExtensionsTest {
 	public void setUp() {
 		ext = new PersistenceExtensions();
 		ext.addPersistenceService(testPersistenceService);
+		ext.addPersistenceService(testAggregatingPersistenceService);
+		ext.addPersistenceService(testCursorPersistenceService);
 		item = new GenericItem("Test") {
 			@Override
 			public List<Class<? extends State>> getAcceptedDataTypes() {
@@ -56,6 +66,8 @@ public class PersistenceExtensionsTest {
 	@After
 	public void tearDown() {
 		ext.removePersistenceService(testPersistenceService);	
+		ext.removePersistenceService(testAggregatingPersistenceService);	
+		ext.removePersistenceService(testCursorPersistenceService);	
 	}
 	
 	@Test
@@ -103,4 +115,67 @@ public class PersistenceExtensionsTest {
 		DecimalType average = PersistenceExtensions.averageSince(item, new DateMidnight(2003, 1, 1), "test");
 		assertEquals("2100", average.toString());
 	}
+
+	@Test
+	public void testChangedSince() {
+		assertTrue(PersistenceExtensions.changedSince(item, new DateMidnight(2005, 1, 1), "test"));
+		assertFalse(PersistenceExtensions.changedSince(item, new DateMidnight(2012, 1, 1), "test"));
+	}
+
+	@Test
+	public void testAggregatingService() {
+		item.setState(new DecimalType(5000));
+		HistoricItem historicItem = PersistenceExtensions.minimumSince(item, new DateMidnight(2005, 1, 1), "testaggregating");
+		assertEquals("2005", historicItem.getState().toString());
+		assertEquals(new DateMidnight(2005, 1, 1).toDate(), historicItem.getTimestamp());
+		historicItem = PersistenceExtensions.maximumSince(item, new DateMidnight(2005, 1, 1), "testaggregating");
+		assertEquals("5000", historicItem.getState().toString());
+
+		item.setState(new DecimalType(1));
+		historicItem = PersistenceExtensions.minimumSince(item, new DateMidnight(2005, 1, 1), "testaggregating");
+		assertEquals("1", historicItem.getState().toString());
+		historicItem = PersistenceExtensions.maximumSince(item, new DateMidnight(2005, 1, 1), "testaggregating");
+		assertEquals("2012", historicItem.getState().toString());
+		assertEquals(new DateMidnight(2012, 1, 1).toDate(), historicItem.getTimestamp());
+
+		item.setState(new DecimalType(3025));
+		DecimalType average = PersistenceExtensions.averageSince(item, new DateMidnight(2003, 1, 1), "testaggregating");
+		assertEquals(2100, average.doubleValue(), 0.0001);
+
+		assertTrue(PersistenceExtensions.changedSince(item, new DateMidnight(2005, 1, 1), "testaggregating"));
+		assertFalse(PersistenceExtensions.changedSince(item, new DateMidnight(2012, 1, 1), "testaggregating"));
+
+		// the states must not have been queried one by one
+		assertEquals(0, testAggregatingPersistenceService.rangeQueries);
+	}
+
+	@Test
+	public void testCursorsAreClosed() {
+		item.setState(new DecimalType(3025));
+		assertEquals("2011", PersistenceExtensions.historicState(item, new DateMidnight(2011, 12, 31), "testcursor").getState().toString());
+		assertEquals("2005", PersistenceExtensions.minimumSince(item, new DateMidnight(2005, 1, 1), "testcursor").getState().toString());
+		assertEquals("3025", PersistenceExtensions.maximumSince(item, new DateMidnight(2005, 1, 1), "testcursor").getState().toString());
+		assertEquals("2100", PersistenceExtensions.averageSince(item, new DateMidnight(2003, 1, 1), "testcursor").toString());
+		assertTrue(PersistenceExtensions.changedSince(item, new DateMidnight(2005, 1, 1), "testcursor"));
+		assertTrue(PersistenceExtensions.updatedSince(item, new DateMidnight(2005, 1, 1), "testcursor"));
+
+		assertEquals(0, testCursorPersistenceService.openCursors);
+		assertEquals(1, testCursorPersistenceService.maxOpenCursors);
+	}
+
+	@Test
+	public void testQueryOfCursorServiceIsReusable() {
+		FilterCriteria filter = new FilterCriteria().setItemName(item.getName());
+		Iterable<HistoricItem> result = testCursorPersistenceService.query(filter);
+		
+		// the result of a query can be iterated more than once and holds no cursor
+		Iterator<HistoricItem> first = result.iterator();
+		Iterator<HistoricItem> second = result.iterator();
+		while(first.hasNext()) {
+			assertTrue(second.hasNext());
+			assertEquals(first.next().getState(), second.next().getState());
+		}
+		assertFalse(second.hasNext());
+		assertEquals(0, testCursorPersistenceService.maxOpenCursors);
+	}
 }
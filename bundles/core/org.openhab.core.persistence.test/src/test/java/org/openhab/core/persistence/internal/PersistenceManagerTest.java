@@ -0,0 +1,396 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.GroupItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemNotFoundException;
+import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.BulkQueryablePersistenceService;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.PersistenceService;
+import org.openhab.core.persistence.QueryablePersistenceService;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+import org.openhab.model.core.EventType;
+import org.openhab.model.core.ModelRepository;
+import org.openhab.model.persistence.persistence.GroupConfig;
+import org.openhab.model.persistence.persistence.ItemConfig;
+import org.openhab.model.persistence.persistence.PersistenceConfiguration;
+import org.openhab.model.persistence.persistence.PersistenceFactory;
+import org.openhab.model.persistence.persistence.PersistenceModel;
+import org.openhab.model.persistence.persistence.Strategy;
+import org.openhab.model.persistence.scoping.GlobalStrategies;
+
+/**
+ * Tests restoring the item states on startup from several persistence services
+ * and routing the state events of the items to the persistence services.
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public class PersistenceManagerTest {
+
+	private PersistenceManager manager;
+
+	private Map<String, GenericItem> pendingItems;
+
+	@Before
+	public void setup() {
+		manager = new PersistenceManager();
+		pendingItems = new HashMap<String, GenericItem>();
+	}
+
+	@After
+	public void tearDown() {
+		manager.deactivate();
+	}
+
+	@Test
+	public void testFirstServiceWithStateWins() {
+		GenericItem a = addPendingItem("A");
+		GenericItem b = addPendingItem("B");
+		GenericItem c = addPendingItem("C");
+		TestBulkService bulkService = new TestBulkService("bulk");
+		bulkService.states.put("A", new DecimalType(1));
+		TestService service = new TestService("single");
+		service.states.put("A", new DecimalType(2));
+		service.states.put("B", new DecimalType(3));
+
+		List<String> itemNames = Arrays.asList("A", "B", "C");
+		assertEquals(1, manager.restoreStates(bulkService, itemNames, pendingItems));
+		assertEquals(1, manager.restoreStates(service, itemNames, pendingItems));
+
+		// A is restored from the bulk service, B is not returned by it and falls through
+		assertEquals(new DecimalType(1), a.getState());
+		assertEquals(new DecimalType(3), b.getState());
+		assertEquals(UnDefType.NULL, c.getState());
+		assertEquals(Collections.singleton("C"), pendingItems.keySet());
+		assertEquals(1, bulkService.queries);
+	}
+
+	@Test
+	public void testBatchesAreRestoredInParallel() {
+		TestService service = new TestService("single");
+		Set<String> itemNames = new HashSet<String>();
+		for (int i = 0; i < 120; i++) {
+			String itemName = "Item" + i;
+			addPendingItem(itemName);
+			itemNames.add(itemName);
+			service.states.put(itemName, new DecimalType(i));
+		}
+
+		assertEquals(120, manager.restoreStates(service, itemNames, pendingItems));
+
+		assertTrue(pendingItems.isEmpty());
+		// the 120 items are queried in three batches on the restore threads of the manager
+		assertTrue(!service.threadNames.isEmpty());
+		for (String threadName : service.threadNames) {
+			assertTrue(threadName, threadName.startsWith("openHAB persistence restore "));
+		}
+	}
+
+	@Test
+	public void testStateEventsAreRoutedByStrategy() {
+		GenericItem a = new TestItem("A");
+		GenericItem b = new TestItem("B");
+		FakeRegistry registry = new FakeRegistry(a, b);
+		PersistenceModel model = PersistenceFactory.eINSTANCE.createPersistenceModel();
+		model.getConfigs().add(createItemConfig("A", GlobalStrategies.UPDATE));
+		model.getConfigs().add(createItemConfig("B", GlobalStrategies.CHANGE));
+		RecordingService service = startService("db", model, registry);
+
+		manager.stateUpdated(a, new DecimalType(1));
+		manager.stateUpdated(b, new DecimalType(1));
+		manager.stateChanged(a, UnDefType.NULL, new DecimalType(1));
+		manager.stateChanged(b, UnDefType.NULL, new DecimalType(1));
+		assertEquals(Arrays.asList("A", "B"), service.stored);
+	}
+
+	@Test
+	public void testRoutesAreInvalidatedWhenTheModelChanges() {
+		GenericItem a = new TestItem("A");
+		GenericItem b = new TestItem("B");
+		FakeRegistry registry = new FakeRegistry(a, b);
+		PersistenceModel model = PersistenceFactory.eINSTANCE.createPersistenceModel();
+		model.getConfigs().add(createItemConfig("A", GlobalStrategies.UPDATE));
+		RecordingService service = startService("db", model, registry);
+		manager.stateUpdated(a, new DecimalType(1));
+
+		PersistenceModel newModel = PersistenceFactory.eINSTANCE.createPersistenceModel();
+		newModel.getConfigs().add(createItemConfig("B", GlobalStrategies.UPDATE));
+		registry.models.put("db.persist", newModel);
+		manager.modelChanged("db.persist", EventType.MODIFIED);
+		manager.stateUpdated(a, new DecimalType(2));
+		manager.stateUpdated(b, new DecimalType(2));
+
+		manager.modelChanged("db.persist", EventType.REMOVED);
+		manager.stateUpdated(b, new DecimalType(3));
+		assertEquals(Arrays.asList("A", "B"), service.stored);
+	}
+
+	@Test
+	public void testRoutesAreInvalidatedWhenTheServiceIsRemoved() {
+		GenericItem a = new TestItem("A");
+		FakeRegistry registry = new FakeRegistry(a);
+		PersistenceModel model = PersistenceFactory.eINSTANCE.createPersistenceModel();
+		model.getConfigs().add(createItemConfig("A", GlobalStrategies.UPDATE));
+		RecordingService service = startService("db", model, registry);
+		manager.stateUpdated(a, new DecimalType(1));
+
+		manager.removePersistenceService(service);
+		manager.stateUpdated(a, new DecimalType(2));
+
+		manager.addPersistenceService(service);
+		manager.stateUpdated(a, new DecimalType(3));
+		assertEquals(Arrays.asList("A", "A"), service.stored);
+	}
+
+	@Test
+	public void testRoutesAreInvalidatedWhenTheItemsChange() {
+		GenericItem a = new TestItem("A");
+		GroupItem group = new GroupItem("G");
+		FakeRegistry registry = new FakeRegistry(a, group);
+		PersistenceModel model = PersistenceFactory.eINSTANCE.createPersistenceModel();
+		PersistenceConfiguration config = PersistenceFactory.eINSTANCE.createPersistenceConfiguration();
+		GroupConfig groupConfig = PersistenceFactory.eINSTANCE.createGroupConfig();
+		groupConfig.setGroup("G");
+		config.getItems().add(groupConfig);
+		config.getStrategies().add(GlobalStrategies.UPDATE);
+		model.getConfigs().add(config);
+		RecordingService service = startService("db", model, registry);
+		manager.stateUpdated(a, new DecimalType(1));
+		assertTrue(service.stored.isEmpty());
+
+		// the group members change when the item registry reloads the items
+		group.addMember(a);
+		manager.allItemsChanged(Arrays.asList("A", "G"));
+		manager.stateUpdated(a, new DecimalType(2));
+
+		GenericItem b = new TestItem("B");
+		group.addMember(b);
+		registry.items.put("B", b);
+		manager.itemAdded(b);
+		manager.stateUpdated(b, new DecimalType(3));
+		assertEquals(Arrays.asList("A", "B"), service.stored);
+	}
+
+	private RecordingService startService(String name, PersistenceModel model, FakeRegistry registry) {
+		registry.models.put(name + ".persist", model);
+		manager.setItemRegistry(registry.itemRegistry);
+		manager.setModelRepository(registry.modelRepository);
+		RecordingService service = new RecordingService(name);
+		manager.addPersistenceService(service);
+		return service;
+	}
+
+	private static PersistenceConfiguration createItemConfig(String itemName, Strategy strategy) {
+		PersistenceConfiguration config = PersistenceFactory.eINSTANCE.createPersistenceConfiguration();
+		ItemConfig itemConfig = PersistenceFactory.eINSTANCE.createItemConfig();
+		itemConfig.setItem(itemName);
+		config.getItems().add(itemConfig);
+		config.getStrategies().add(strategy);
+		return config;
+	}
+
+	private GenericItem addPendingItem(String name) {
+		GenericItem item = new TestItem(name);
+		pendingItems.put(name, item);
+		return item;
+	}
+
+	private static HistoricItem createHistoricItem(final String name, final State state) {
+		return new HistoricItem() {
+			public Date getTimestamp() {
+				return new Date();
+			}
+
+			public State getState() {
+				return state;
+			}
+
+			public String getName() {
+				return name;
+			}
+		};
+	}
+
+	/**
+	 * A persistence service which has to be queried item by item.
+	 */
+	private static class TestService implements QueryablePersistenceService {
+
+		final Map<String, State> states = new HashMap<String, State>();
+
+		final Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+
+		private final String name;
+
+		TestService(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void store(Item item) {
+		}
+
+		public void store(Item item, String alias) {
+		}
+
+		public Iterable<HistoricItem> query(FilterCriteria filter) {
+			threadNames.add(Thread.currentThread().getName());
+			State state = states.get(filter.getItemName());
+			if (state == null) {
+				return Collections.emptyList();
+			}
+			return Collections.singletonList(createHistoricItem(filter.getItemName(), state));
+		}
+	}
+
+	/**
+	 * A persistence service which returns the states of many items at once.
+	 */
+	private static class TestBulkService extends TestService implements BulkQueryablePersistenceService {
+
+		int queries = 0;
+
+		TestBulkService(String name) {
+			super(name);
+		}
+
+		public Map<String, HistoricItem> queryLatest(Collection<String> itemNames) {
+			queries++;
+			Map<String, HistoricItem> historicItems = new HashMap<String, HistoricItem>();
+			for (String itemName : itemNames) {
+				State state = states.get(itemName);
+				if (state != null) {
+					historicItems.put(itemName, createHistoricItem(itemName, state));
+				}
+			}
+			return historicItems;
+		}
+
+		@Override
+		public Iterable<HistoricItem> query(FilterCriteria filter) {
+			throw new AssertionError("bulk services are not queried item by item");
+		}
+	}
+
+	/**
+	 * A persistence service which records the names of the stored items.
+	 */
+	private static class RecordingService implements PersistenceService {
+
+		final List<String> stored = new ArrayList<String>();
+
+		private final String name;
+
+		RecordingService(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void store(Item item) {
+			stored.add(item.getName());
+		}
+
+		public void store(Item item, String alias) {
+			stored.add(item.getName());
+		}
+	}
+
+	/**
+	 * Implements the methods of the item registry and the model repository
+	 * which are used by the persistence manager.
+	 */
+	private static class FakeRegistry implements InvocationHandler {
+
+		final Map<String, Item> items = new HashMap<String, Item>();
+
+		final Map<String, PersistenceModel> models = new HashMap<String, PersistenceModel>();
+
+		final ItemRegistry itemRegistry = (ItemRegistry) Proxy.newProxyInstance(
+				FakeRegistry.class.getClassLoader(), new Class<?>[] { ItemRegistry.class }, this);
+
+		final ModelRepository modelRepository = (ModelRepository) Proxy.newProxyInstance(
+				FakeRegistry.class.getClassLoader(), new Class<?>[] { ModelRepository.class }, this);
+
+		FakeRegistry(Item... items) {
+			for (Item item : items) {
+				this.items.put(item.getName(), item);
+			}
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("getItem")) {
+				Item item = items.get(args[0]);
+				if (item == null) {
+					throw new ItemNotFoundException((String) args[0]);
+				}
+				return item;
+			} else if (name.equals("getItems") && args == null) {
+				return new ArrayList<Item>(items.values());
+			} else if (name.equals("getModel")) {
+				return models.get(args[0]);
+			} else if (name.equals("getAllModelNamesOfType")) {
+				return new ArrayList<String>(models.keySet());
+			} else if (name.endsWith("ChangeListener")) {
+				return null;
+			}
+			throw new UnsupportedOperationException(name);
+		}
+	}
+
+	private static class TestItem extends GenericItem {
+
+		TestItem(String name) {
+			super(name);
+		}
+
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return null;
+		}
+
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.test;
+
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.AggregatingPersistenceService;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.HistoricItem;
+
+/**
+ * A simple aggregating persistence service used for unit tests. It holds the
+ * same states as the {@link TestPersistenceService}, but calculates the
+ * aggregations without querying the states.
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public class TestAggregatingPersistenceService extends TestPersistenceService implements AggregatingPersistenceService {
+
+	/** the number of queries for all states since a date */
+	public int rangeQueries = 0;
+
+	@Override
+	public String getName() {
+		return "testaggregating";
+	}
+
+	@Override
+	public Iterable<HistoricItem> query(FilterCriteria filter) {
+		if(filter.getBeginDate()!=null) rangeQueries++;
+		return super.query(filter);
+	}
+
+	@Override
+	public HistoricItem minimum(FilterCriteria filter) {
+		int[] range = getRange(filter);
+		return range==null ? null : createHistoricItem(range[0]);
+	}
+
+	@Override
+	public HistoricItem maximum(FilterCriteria filter) {
+		int[] range = getRange(filter);
+		return range==null ? null : createHistoricItem(range[1]);
+	}
+
+	@Override
+	public DecimalType average(FilterCriteria filter) {
+		int[] range = getRange(filter);
+		return range==null ? null : new DecimalType((range[0] + range[1]) / 2.0);
+	}
+
+	@Override
+	public DecimalType sum(FilterCriteria filter) {
+		int[] range = getRange(filter);
+		return range==null ? null : new DecimalType((range[0] + range[1]) * (range[1] - range[0] + 1) / 2);
+	}
+
+	@Override
+	public long count(FilterCriteria filter) {
+		int[] range = getRange(filter);
+		return range==null ? 0 : range[1] - range[0] + 1;
+	}
+
+	@Override
+	public boolean changed(FilterCriteria filter) {
+		return getRange(filter)!=null;
+	}
+
+	@SuppressWarnings("deprecation")
+	private int[] getRange(FilterCriteria filter) {
+		int startValue = 1950;
+		int endValue = 2012;
+		
+		if(filter.getBeginDate()!=null) startValue = filter.getBeginDate().getYear() + 1900;
+		if(filter.getEndDate()!=null) endValue = filter.getEndDate().getYear() + 1900;
+		
+		if(endValue<=startValue || startValue<1950) return null;
+		return new int[] { startValue, endValue };
+	}
+
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.test;
+
+import java.util.Iterator;
+
+import org.openhab.core.persistence.CursorQueryablePersistenceService;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.HistoricItemCursor;
+
+/**
+ * A simple persistence service used for unit tests. It holds the same states
+ * as the {@link TestPersistenceService}, but can also return them as cursors and
+ * keeps track of the cursors which have not been closed.
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public class TestCursorPersistenceService extends TestPersistenceService implements CursorQueryablePersistenceService {
+
+	/** the number of cursors which are open */
+	public int openCursors = 0;
+
+	/** the highest number of cursors which have been open at the same time */
+	public int maxOpenCursors = 0;
+
+	@Override
+	public String getName() {
+		return "testcursor";
+	}
+
+	public HistoricItemCursor queryCursor(FilterCriteria filter) {
+		final Iterable<HistoricItem> result = query(filter);
+		openCursors++;
+		maxOpenCursors = Math.max(maxOpenCursors, openCursors);
+		return new HistoricItemCursor() {
+			private boolean closed = false;
+
+			public Iterator<HistoricItem> iterator() {
+				return result.iterator();
+			}
+
+			public void close() {
+				if (!closed) {
+					closed = true;
+					openCursors--;
+				}
+			}
+		};
+	}
+
+}
@@ -54,22 +54,7 @@ public class TestPersistenceService implements QueryablePersistenceService {
 		
 		ArrayList<HistoricItem> results = new ArrayList<HistoricItem>(endValue - startValue);
 		for(int i = startValue; i <= endValue; i++) {
-			final int year = i;
-			results.add(new HistoricItem() {
-				public Date getTimestamp() {
-					return new Date(year-1900, 0, 1);
-				}
-				
-				@Override
-				public State getState() {
-					return new DecimalType(year);
-				}
-				
-				@Override
-				public String getName() {
-					return "Test";
-				}
-			});
+			results.add(createHistoricItem(i));
 		}
 		if(filter.getOrdering()==Ordering.DESCENDING) {
 			Collections.reverse(results);
@@ -77,4 +62,23 @@ public class TestPersistenceService implements QueryablePersistenceService {
 		return results;
 	}
 
+	@SuppressWarnings("deprecation")
+	protected static HistoricItem createHistoricItem(final int year) {
+		return new HistoricItem() {
+			public Date getTimestamp() {
+				return new Date(year-1900, 0, 1);
+			}
+			
+			@Override
+			public State getState() {
+				return new DecimalType(year);
+			}
+			
+			@Override
+			public String getName() {
+				return "Test";
+			}
+		};
+	}
+
 }
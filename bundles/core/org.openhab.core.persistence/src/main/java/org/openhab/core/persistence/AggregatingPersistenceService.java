@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+import org.openhab.core.library.types.DecimalType;
+
+/**
+ * A queryable persistence service which can aggregate the stored states itself,
+ * so that they do not need to be queried and aggregated one by one.
+ *
+ * <p>Only the item name, begin and end date of the filter criteria are regarded,
+ * ordering and paging are ignored. Except for {@link #changed(FilterCriteria)}, only
+ * states with a decimal value are taken into account.</p>
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public interface AggregatingPersistenceService extends QueryablePersistenceService {
+
+	/**
+	 * Finds the state with the minimum value.
+	 *
+	 * @param filter the filter to apply
+	 * @return the historic item with the minimum value, or <code>null</code> if there is none
+	 */
+	HistoricItem minimum(FilterCriteria filter);
+
+	/**
+	 * Finds the state with the maximum value.
+	 *
+	 * @param filter the filter to apply
+	 * @return the historic item with the maximum value, or <code>null</code> if there is none
+	 */
+	HistoricItem maximum(FilterCriteria filter);
+
+	/**
+	 * Calculates the average value of the states.
+	 *
+	 * @param filter the filter to apply
+	 * @return the average value, or <code>null</code> if there are no states
+	 */
+	DecimalType average(FilterCriteria filter);
+
+	/**
+	 * Calculates the sum of the values of the states.
+	 *
+	 * @param filter the filter to apply
+	 * @return the sum of the values, or <code>null</code> if there are no states
+	 */
+	DecimalType sum(FilterCriteria filter);
+
+	/**
+	 * Counts the states.
+	 *
+	 * @param filter the filter to apply
+	 * @return the number of states with a decimal value
+	 */
+	long count(FilterCriteria filter);
+
+	/**
+	 * Checks if the state has changed, i.e. if any state differs from the state before it.
+	 * The state before the first one is the last state before the begin date. If there is
+	 * no such state, any state is regarded as a change.
+	 *
+	 * @param filter the filter to apply
+	 * @return true, if the state has changed
+	 */
+	boolean changed(FilterCriteria filter);
+
+}
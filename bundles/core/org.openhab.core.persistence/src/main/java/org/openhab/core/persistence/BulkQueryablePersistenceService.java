@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A queryable persistence service which can return the latest states of many items
+ * at once, e.g. to restore the item states on startup without a query per item.
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public interface BulkQueryablePersistenceService extends QueryablePersistenceService {
+
+	/**
+	 * Queries the {@link PersistenceService} for the latest persisted state of each
+	 * of the given items.
+	 * 
+	 * @param itemNames the names of the items to query the states for
+	 * @return the latest historic item by item name, which does not contain items without
+	 *         a persisted state
+	 */
+	Map<String, HistoricItem> queryLatest(Collection<String> itemNames);
+
+}
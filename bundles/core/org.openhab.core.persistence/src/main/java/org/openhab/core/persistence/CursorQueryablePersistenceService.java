@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+/**
+ * A queryable persistence service which can also return the result of a query
+ * as a {@link HistoricItemCursor}, which reads the historic items while it is
+ * iterated instead of holding all of them in memory.
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public interface CursorQueryablePersistenceService extends QueryablePersistenceService {
+
+	/**
+	 * Queries the {@link PersistenceService} for data with a given filter criteria
+	 * and returns a cursor over the result. The caller must close the cursor when
+	 * it is done with it, even if it does not iterate it to its end.
+	 * 
+	 * @param filter the filter to apply to the query
+	 * @return a cursor over the time series of items, never <code>null</code>
+	 */
+	HistoricItemCursor queryCursor(FilterCriteria filter);
+
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+/**
+ * A query result which reads the historic items one by one while it is iterated,
+ * e.g. from a database cursor, instead of holding all of them in memory. It is
+ * returned by {@link CursorQueryablePersistenceService#queryCursor(FilterCriteria)}.
+ * 
+ * <p>A cursor can only be iterated once. It holds resources of the persistence
+ * service until it is closed, so callers must call {@link #close()} when they
+ * are done with it. A cursor closes itself when the iteration reaches its end.</p>
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public interface HistoricItemCursor extends Iterable<HistoricItem> {
+
+	/**
+	 * Releases the resources held by this cursor. Calling this method more than
+	 * once has no effect.
+	 */
+	void close();
+
+}
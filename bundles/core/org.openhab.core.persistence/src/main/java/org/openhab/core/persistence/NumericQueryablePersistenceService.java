@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+/**
+ * A queryable persistence service which can return the decimal values of an item
+ * as a {@link NumericSeries}, e.g. for charts.
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public interface NumericQueryablePersistenceService extends QueryablePersistenceService {
+
+	/**
+	 * Queries the {@link PersistenceService} for the decimal values of an item with a
+	 * given filter criteria. States without a decimal value are left out.
+	 * 
+	 * @param filter the filter to apply to the query
+	 * @return the time series of the values, which is empty if there are none
+	 */
+	NumericSeries queryNumeric(FilterCriteria filter);
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+/**
+ * A time series of the decimal values of an item, which is held in two parallel
+ * arrays of primitives instead of one {@link HistoricItem} per value.
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public class NumericSeries {
+
+	private final String name;
+	private final long[] timestamps;
+	private final double[] values;
+	private final int size;
+
+	/**
+	 * Creates a new series.
+	 * 
+	 * @param name the name of the item
+	 * @param timestamps the timestamps in milliseconds, in the order of the query
+	 * @param values the values at the timestamps
+	 * @param size the number of entries of the arrays which are used
+	 */
+	public NumericSeries(String name, long[] timestamps, double[] values, int size) {
+		if (size > timestamps.length || size > values.length) {
+			throw new IllegalArgumentException("The size must not exceed the length of the arrays");
+		}
+		this.name = name;
+		this.timestamps = timestamps;
+		this.values = values;
+		this.size = size;
+	}
+
+	/**
+	 * @return the name of the item
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of values
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index the index of the value
+	 * @return the timestamp of the value in milliseconds
+	 */
+	public long getTimestamp(int index) {
+		checkIndex(index);
+		return timestamps[index];
+	}
+
+	/**
+	 * @param index the index of the value
+	 * @return the value
+	 */
+	public double getValue(int index) {
+		checkIndex(index);
+		return values[index];
+	}
+
+	/**
+	 * @return a copy of the timestamps in milliseconds
+	 */
+	public long[] getTimestamps() {
+		long[] result = new long[size];
+		System.arraycopy(timestamps, 0, result, 0, size);
+		return result;
+	}
+
+	/**
+	 * @return a copy of the values
+	 */
+	public double[] getValues() {
+		double[] result = new double[size];
+		System.arraycopy(values, 0, result, 0, size);
+		return result;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Collects the values of a series, whose size is not known in advance.
+	 */
+	public static class Builder {
+
+		private final String name;
+		private long[] timestamps;
+		private double[] values;
+		private int size = 0;
+
+		public Builder(String name) {
+			this(name, 64);
+		}
+
+		public Builder(String name, int initialCapacity) {
+			this.name = name;
+			this.timestamps = new long[Math.max(1, initialCapacity)];
+			this.values = new double[timestamps.length];
+		}
+
+		public Builder add(long timestamp, double value) {
+			if (size == timestamps.length) {
+				long[] newTimestamps = new long[size * 2];
+				double[] newValues = new double[size * 2];
+				System.arraycopy(timestamps, 0, newTimestamps, 0, size);
+				System.arraycopy(values, 0, newValues, 0, size);
+				timestamps = newTimestamps;
+				values = newValues;
+			}
+			timestamps[size] = timestamp;
+			values[size] = value;
+			size++;
+			return this;
+		}
+
+		public NumericSeries build() {
+			return new NumericSeries(name, timestamps, values, size);
+		}
+	}
+
+}
@@ -19,8 +19,11 @@ import java.util.Map;
 import org.joda.time.base.AbstractInstant;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.AggregatingPersistenceService;
+import org.openhab.core.persistence.CursorQueryablePersistenceService;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.HistoricItemCursor;
 import org.openhab.core.persistence.PersistenceService;
 import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
@@ -34,6 +37,10 @@ import org.slf4j.LoggerFactory;
  * This class provides static methods that can be used in automation rules
  * for using persistence services
  * 
+ * If a persistence service implements {@link AggregatingPersistenceService}, the
+ * aggregations are done by the service, otherwise the states are aggregated here
+ * one by one while iterating over the query result.
+ * 
  * @author Thomas.Eichstaedt-Engelen
  * @author Kai Kreuzer
  * @author Chris Jackson
@@ -120,11 +127,16 @@ public class PersistenceExtensions implements ManagedService {
 			filter.setItemName(item.getName());
 			filter.setPageSize(1);
 			filter.setOrdering(Ordering.DESCENDING);
-			Iterable<HistoricItem> result = qService.query(filter);
-			if(result.iterator().hasNext()) {
-				return result.iterator().next();
-			} else {
-				return null;
+			Iterable<HistoricItem> result = query(qService, filter);
+			try {
+				Iterator<HistoricItem> it = result.iterator();
+				if(it.hasNext()) {
+					return it.next();
+				} else {
+					return null;
+				}
+			} finally {
+				close(result);
 			}
 		} else {
 			logger.warn("There is no queryable persistence service registered with the name '{}'", serviceName);
@@ -158,24 +170,34 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return true, if item state had changed
 	 */
 	static public Boolean changedSince(Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-		Iterator<HistoricItem> it = result.iterator();
-		HistoricItem itemThen = historicState(item, timestamp);
-		if(itemThen == null) {
-			// Can't get the state at the start time
-			// If we've got results more recent that this, it must have changed
-			return(it.hasNext());
+		AggregatingPersistenceService aService = getAggregatingService(serviceName);
+		if (aService != null) {
+			return aService.changed(getFilterSince(item, timestamp));
 		}
 
-		State state = itemThen.getState();
-		while(it.hasNext()) {
-			HistoricItem hItem = it.next();
-			if(state!=null && !hItem.getState().equals(state)) {
-				return true;
+		// query the state at the start time first, so that only one result is open at a time
+		HistoricItem itemThen = historicState(item, timestamp, serviceName);
+		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
+		try {
+			Iterator<HistoricItem> it = result.iterator();
+			if(itemThen == null) {
+				// Can't get the state at the start time
+				// If we've got results more recent that this, it must have changed
+				return(it.hasNext());
+			}
+	
+			State state = itemThen.getState();
+			while(it.hasNext()) {
+				HistoricItem hItem = it.next();
+				if(state!=null && !hItem.getState().equals(state)) {
+					return true;
+				}
+				state = hItem.getState();
 			}
-			state = hItem.getState();
+			return false;
+		} finally {
+			close(result);
 		}
-		return false;
 	} 
 
 	/**
@@ -205,10 +227,14 @@ public class PersistenceExtensions implements ManagedService {
 	 */
 	static public Boolean updatedSince(Item item, AbstractInstant timestamp, String serviceName) {
 		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-		if(result.iterator().hasNext()) {
-			return true;
-		} else {
-			return false;
+		try {
+			if(result.iterator().hasNext()) {
+				return true;
+			} else {
+				return false;
+			}
+		} finally {
+			close(result);
 		}
 	} 
 
@@ -240,20 +266,30 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return a historic item with the maximum state value since the given point in time
 	 */
 	static public HistoricItem maximumSince(final Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-		Iterator<HistoricItem> it = result.iterator();
+		Iterable<HistoricItem> result;
+		AggregatingPersistenceService aService = getAggregatingService(serviceName);
+		if (aService != null) {
+			result = asIterable(aService.maximum(getFilterSince(item, timestamp)));
+		} else {
+			result = getAllStatesSince(item, timestamp, serviceName);
+		}
 		HistoricItem maximumHistoricItem = null;
 		DecimalType maximum = (DecimalType) item.getStateAs(DecimalType.class);
-		while(it.hasNext()) {
-			HistoricItem historicItem = it.next();
-			State state = historicItem.getState();
-			if (state instanceof DecimalType) {
-				DecimalType value = (DecimalType) state;
-				if(maximum==null || value.compareTo(maximum)>0) {
-					maximum = value;
-					maximumHistoricItem = historicItem;
+		try {
+			Iterator<HistoricItem> it = result.iterator();
+			while(it.hasNext()) {
+				HistoricItem historicItem = it.next();
+				State state = historicItem.getState();
+				if (state instanceof DecimalType) {
+					DecimalType value = (DecimalType) state;
+					if(maximum==null || value.compareTo(maximum)>0) {
+						maximum = value;
+						maximumHistoricItem = historicItem;
+					}
 				}
 			}
+		} finally {
+			close(result);
 		}
 		if(maximumHistoricItem==null && maximum!=null) {
 			// the maximum state is the current one, so construct a historic item on the fly
@@ -305,20 +341,30 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return the historic item with the minimum state value since the given point in time
 	 */
 	static public HistoricItem minimumSince(final Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-		Iterator<HistoricItem> it = result.iterator();
+		Iterable<HistoricItem> result;
+		AggregatingPersistenceService aService = getAggregatingService(serviceName);
+		if (aService != null) {
+			result = asIterable(aService.minimum(getFilterSince(item, timestamp)));
+		} else {
+			result = getAllStatesSince(item, timestamp, serviceName);
+		}
 		HistoricItem minimumHistoricItem = null;
 		DecimalType minimum = (DecimalType) item.getStateAs(DecimalType.class);
-		while(it.hasNext()) {
-			HistoricItem historicItem = it.next();
-			State state = historicItem.getState();
-			if (state instanceof DecimalType) {
-				DecimalType value = (DecimalType) state;
-				if(minimum==null || value.compareTo(minimum)<0) {
-					minimum = value;
-					minimumHistoricItem = historicItem;
+		try {
+			Iterator<HistoricItem> it = result.iterator();
+			while(it.hasNext()) {
+				HistoricItem historicItem = it.next();
+				State state = historicItem.getState();
+				if (state instanceof DecimalType) {
+					DecimalType value = (DecimalType) state;
+					if(minimum==null || value.compareTo(minimum)<0) {
+						minimum = value;
+						minimumHistoricItem = historicItem;
+					}
 				}
 			}
+		} finally {
+			close(result);
 		}
 		if(minimumHistoricItem==null && minimum!=null) {
 			// the minimal state is the current one, so construct a historic item on the fly
@@ -368,23 +414,39 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return the average state value since the given point in time
 	 */
 	static public DecimalType averageSince(Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-		Iterator<HistoricItem> it = result.iterator();
-		
 		DecimalType value = (DecimalType) item.getStateAs(DecimalType.class);
 		if (value == null) {
 			value = DecimalType.ZERO;
 		}
 		
+		AggregatingPersistenceService aService = getAggregatingService(serviceName);
+		if (aService != null) {
+			// the current state counts as one more value, just like below
+			FilterCriteria filter = getFilterSince(item, timestamp);
+			long quantity = aService.count(filter);
+			DecimalType historicAverage = quantity > 0 ? aService.average(filter) : null;
+			if (historicAverage == null) {
+				return new DecimalType(value.doubleValue());
+			}
+			return new DecimalType((historicAverage.doubleValue() * quantity + value.doubleValue()) / (quantity + 1));
+		}
+
+		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
+		
 		double average = value.doubleValue();
 		int quantity = 1;
-		while(it.hasNext()) {
-			State state = it.next().getState();
-			if (state instanceof DecimalType) {
-				value = (DecimalType) state;
-				average += value.doubleValue();
-				quantity++;
+		try {
+			Iterator<HistoricItem> it = result.iterator();
+			while(it.hasNext()) {
+				State state = it.next().getState();
+				if (state instanceof DecimalType) {
+					value = (DecimalType) state;
+					average += value.doubleValue();
+					quantity++;
+				}
 			}
+		} finally {
+			close(result);
 		}
 		average /= quantity;
 		
@@ -395,17 +457,64 @@ public class PersistenceExtensions implements ManagedService {
 		PersistenceService service = services.get(serviceName);
 		if (service instanceof QueryablePersistenceService) {
 			QueryablePersistenceService qService = (QueryablePersistenceService) service;
-			FilterCriteria filter = new FilterCriteria();
-			filter.setBeginDate(timestamp.toDate());
-			filter.setItemName(item.getName());
-			filter.setOrdering(Ordering.ASCENDING);
-			return qService.query(filter);
+			return query(qService, getFilterSince(item, timestamp));
 		} else {
 			logger.warn("There is no queryable persistence service registered with the name '{}'", serviceName);
 			return Collections.emptySet();
 		}
 	}
 	
+	static private FilterCriteria getFilterSince(Item item, AbstractInstant timestamp) {
+		FilterCriteria filter = new FilterCriteria();
+		filter.setBeginDate(timestamp.toDate());
+		filter.setItemName(item.getName());
+		filter.setOrdering(Ordering.ASCENDING);
+		return filter;
+	}
+	
+	/**
+	 * Returns the {@link AggregatingPersistenceService} identified by the <code>serviceName</code>.
+	 * @return the service or <code>null</code>, if the service does not aggregate itself
+	 */
+	static private AggregatingPersistenceService getAggregatingService(String serviceName) {
+		PersistenceService service = services.get(serviceName);
+		if (service instanceof AggregatingPersistenceService) {
+			return (AggregatingPersistenceService) service;
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * Queries the given service for a cursor, if it supports cursors, so that the
+	 * historic items are not held in memory. The result must be released by
+	 * {@link #close(Iterable)}.
+	 */
+	static private Iterable<HistoricItem> query(QueryablePersistenceService qService, FilterCriteria filter) {
+		if (qService instanceof CursorQueryablePersistenceService) {
+			return ((CursorQueryablePersistenceService) qService).queryCursor(filter);
+		} else {
+			return qService.query(filter);
+		}
+	}
+	
+	/**
+	 * Releases the resources of a query result, if it is a {@link HistoricItemCursor}.
+	 */
+	static private void close(Iterable<HistoricItem> result) {
+		if (result instanceof HistoricItemCursor) {
+			((HistoricItemCursor) result).close();
+		}
+	}
+	
+	static private Iterable<HistoricItem> asIterable(HistoricItem historicItem) {
+		if (historicItem == null) {
+			return Collections.emptySet();
+		} else {
+			return Collections.singleton(historicItem);
+		}
+	}
+	
 	/**
 	 * Returns <code>true</code>, if a default service is configured and returns <code>false</code> and logs a warning otherwise.
 	 * @return true, if a default service is available
@@ -12,6 +12,7 @@ import static org.quartz.JobBuilder.newJob;
 import static org.quartz.TriggerBuilder.newTrigger;
 
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -21,7 +22,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.emf.ecore.EObject;
 import org.openhab.core.events.AbstractEventSubscriber;
@@ -32,6 +40,7 @@ import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
 import org.openhab.core.items.ItemRegistryChangeListener;
 import org.openhab.core.items.StateChangeListener;
+import org.openhab.core.persistence.BulkQueryablePersistenceService;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceService;
@@ -73,6 +82,15 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	
 	private static final Logger logger = LoggerFactory.getLogger(PersistenceManager.class);
 
+	/** the number of items whose states are restored by a single query of a {@link BulkQueryablePersistenceService} */
+	private static final int RESTORE_BULK_BATCH_SIZE = 500;
+
+	/** the number of items whose states are restored one after the other by other persistence services */
+	private static final int RESTORE_BATCH_SIZE = 50;
+
+	/** the number of batches which are restored in parallel */
+	private static final int RESTORE_THREADS = 4;
+
 	private static PersistenceManager instance;
 	
 	// the scheduler used for timer events
@@ -82,7 +100,7 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 
 	private ItemRegistry itemRegistry;
 
-	/*default */ Map<String, PersistenceService> persistenceServices = new HashMap<String, PersistenceService>();
+	/*default */ Map<String, PersistenceService> persistenceServices = new ConcurrentHashMap<String, PersistenceService>();
 	
 	/** keeps a list of configurations for each persistence service */
 	protected Map<String, List<PersistenceConfiguration>> persistenceConfigurations = new ConcurrentHashMap<String, List<PersistenceConfiguration>>();
@@ -91,6 +109,15 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	protected Map<String, List<Strategy>> defaultStrategies = 
 			Collections.synchronizedMap(new HashMap<String, List<Strategy>>());
 	
+	/** caches the persistence targets of each item, so that state events do not need to evaluate the configurations */
+	private Map<String, ItemRoutes> routingTable = new ConcurrentHashMap<String, ItemRoutes>();
+	
+	/** is increased whenever the routing table is invalidated */
+	private final AtomicInteger routingTableVersion = new AtomicInteger();
+	
+	/** queries the latest states of the items to restore in parallel, see {@link #getRestoreExecutor()} */
+	private ExecutorService restoreExecutor;
+	
 	
 	public PersistenceManager() {
 		PersistenceManager.instance = this;
@@ -110,6 +137,12 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	}
 	
 	public void deactivate() {
+		synchronized(this) {
+			if(restoreExecutor!=null) {
+				restoreExecutor.shutdownNow();
+				restoreExecutor = null;
+			}
+		}
 	}
 	
 	
@@ -180,13 +213,16 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 		if(model!=null) {
 			persistenceConfigurations.put(modelName, model.getConfigs());
 			defaultStrategies.put(modelName, model.getDefaults());
+			invalidateRoutingTable();
+			Set<Item> restoreItems = new HashSet<Item>();
 			for(PersistenceConfiguration config : model.getConfigs()) {
 				if(hasStrategy(modelName, config, GlobalStrategies.RESTORE)) {
 					for(Item item : getAllItems(config)) {
-						initialize(item);
+						restoreItems.add(item);
 					}
 				}
 			}
+			restoreStates(restoreItems);
 			createTimers(modelName);
 		}
 	}
@@ -199,6 +235,7 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	private void stopEventHandling(String modelName) {
 		persistenceConfigurations.remove(modelName);
 		defaultStrategies.remove(modelName);
+		invalidateRoutingTable();
 		removeTimers(modelName);
 	}
 
@@ -217,20 +254,56 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	 * @param onlyChanges true, if it has the change strategy, false otherwise
 	 */
 	private void handleStateEvent(Item item, boolean onlyChanges) {
-		synchronized (persistenceConfigurations) {
+		ItemRoutes routes = getRoutes(item);
+		for(PersistenceTarget target : onlyChanges ? routes.onChange : routes.onUpdate) {
+			PersistenceService service = persistenceServices.get(target.serviceName);
+			if(service!=null) {
+				service.store(item, target.alias);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the persistence targets for the change and update events of an item.
+	 * The result is cached until the persistence models, the persistence services
+	 * or the items are changed.
+	 * 
+	 * @param item the item to get the persistence targets for
+	 * @return the persistence targets of <code>item</code>
+	 */
+	private ItemRoutes getRoutes(Item item) {
+		ItemRoutes routes = routingTable.get(item.getName());
+		if(routes==null) {
+			int version = routingTableVersion.get();
+			List<PersistenceTarget> onUpdate = new ArrayList<PersistenceTarget>();
+			List<PersistenceTarget> onChange = new ArrayList<PersistenceTarget>();
 			for(Entry<String, List<PersistenceConfiguration>> entry : persistenceConfigurations.entrySet()) {
 				String serviceName = entry.getKey();
-				if(persistenceServices.containsKey(serviceName)) {				
+				if(persistenceServices.containsKey(serviceName)) {
 					for(PersistenceConfiguration config : entry.getValue()) {
-						if(hasStrategy(serviceName, config, onlyChanges ? GlobalStrategies.CHANGE : GlobalStrategies.UPDATE)) {
-							if(appliesToItem(config, item)) {
-								persistenceServices.get(serviceName).store(item, config.getAlias());
-							}
+						boolean update = hasStrategy(serviceName, config, GlobalStrategies.UPDATE);
+						boolean change = hasStrategy(serviceName, config, GlobalStrategies.CHANGE);
+						if((update || change) && appliesToItem(config, item)) {
+							PersistenceTarget target = new PersistenceTarget(serviceName, config.getAlias());
+							if(update) onUpdate.add(target);
+							if(change) onChange.add(target);
 						}
 					}
 				}
 			}
+			routes = new ItemRoutes(onUpdate, onChange);
+			routingTable.put(item.getName(), routes);
+			// the configuration might have changed while we were resolving the routes
+			if(version != routingTableVersion.get()) {
+				routingTable.remove(item.getName());
+			}
 		}
+		return routes;
+	}
+	
+	private void invalidateRoutingTable() {
+		routingTableVersion.incrementAndGet();
+		routingTable.clear();
 	}
 	
 	/**
@@ -333,13 +406,21 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	}
 
 	public void allItemsChanged(Collection<String> oldItemNames) {
-		for(Item item : itemRegistry.getItems()) {
-			itemAdded(item);
+		invalidateRoutingTable();
+		Collection<Item> items = itemRegistry.getItems();
+		restoreStates(items);
+		for(Item item : items) {
+			if (item instanceof GenericItem) {
+				GenericItem genericItem = (GenericItem) item;
+				genericItem.addStateChangeListener(this);
+			}
 		}
 	}
 
 	public void itemAdded(Item item) {
-		initialize(item);
+		// the item might be a member of a group that is referenced by a configuration
+		invalidateRoutingTable();
+		restoreStates(Collections.singleton(item));
 		if (item instanceof GenericItem) {
 			GenericItem genericItem = (GenericItem) item;
 			genericItem.addStateChangeListener(this);
@@ -347,46 +428,149 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	}
 
 	/**
-	 * Handles the "restoreOnStartup" strategy for the item.
-	 * If the item state is still undefined when entering this method, all persistence configurations are checked,
-	 * if they have the "restoreOnStartup" strategy configured for the item. If so, the item state will be set
-	 * to its last persisted value.
+	 * Handles the "restoreOnStartup" strategy for the items.
+	 * For all items whose state is still undefined when entering this method, the persistence configurations are
+	 * checked, if they have the "restoreOnStartup" strategy configured for the item. If so, the item state will be
+	 * set to its last persisted value. Each persistence service is asked for the states of all its items at once,
+	 * and the first service which has a state for an item wins.
 	 * 
-	 * @param item the item to restore the state for
+	 * @param items the items to restore the states for
 	 */
-	protected void initialize(Item item) {
-		// get the last persisted state from the persistence service if no state is yet set
-		if(item.getState().equals(UnDefType.NULL) && item instanceof GenericItem) {
-			for(Entry<String, List<PersistenceConfiguration>> entry : persistenceConfigurations.entrySet()) {
-				String serviceName = entry.getKey();
-				for(PersistenceConfiguration config : entry.getValue()) {
-					if(hasStrategy(serviceName, config, GlobalStrategies.RESTORE)) {
+	protected void restoreStates(Collection<Item> items) {
+		long start = System.currentTimeMillis();
+		
+		// get the last persisted states from the persistence services for items that have no state yet
+		Map<String, GenericItem> pendingItems = new HashMap<String, GenericItem>();
+		for(Item item : items) {
+			if(item.getState().equals(UnDefType.NULL) && item instanceof GenericItem) {
+				pendingItems.put(item.getName(), (GenericItem) item);
+			}
+		}
+		
+		int restored = 0;
+		for(Entry<String, List<PersistenceConfiguration>> entry : persistenceConfigurations.entrySet()) {
+			if(pendingItems.isEmpty()) {
+				break;
+			}
+			String serviceName = entry.getKey();
+			Set<String> itemNames = new HashSet<String>();
+			for(PersistenceConfiguration config : entry.getValue()) {
+				if(hasStrategy(serviceName, config, GlobalStrategies.RESTORE)) {
+					for(GenericItem item : pendingItems.values()) {
 						if(appliesToItem(config, item)) {
-							PersistenceService service = persistenceServices.get(serviceName);
-							if(service instanceof QueryablePersistenceService) {
-								QueryablePersistenceService queryService = (QueryablePersistenceService) service;
-								FilterCriteria filter = new FilterCriteria().setItemName(item.getName()).setPageSize(1);
-								Iterable<HistoricItem> result = queryService.query(filter);
-								Iterator<HistoricItem> it = result.iterator();
-								if(it.hasNext()) {
-									HistoricItem historicItem = it.next();
-									GenericItem genericItem = (GenericItem) item;
-									genericItem.removeStateChangeListener(this);
-									genericItem.setState(historicItem.getState());
-									genericItem.addStateChangeListener(this);
-									logger.debug("Restored item state from '{}' for item '{}' -> '{}'", 
-											new Object[] { DateFormat.getDateTimeInstance().format(historicItem.getTimestamp()), 
-											item.getName(), historicItem.getState().toString() } );
-									return;
-								}
-							} else if(service!=null) {
-								logger.warn("Failed to restore item states as persistence service '{}' can not be queried.", serviceName);
-							}
+							itemNames.add(item.getName());
 						}
 					}
 				}
-			}	
-		}		
+			}
+			if(itemNames.isEmpty()) {
+				continue;
+			}
+			
+			PersistenceService service = persistenceServices.get(serviceName);
+			if(service instanceof QueryablePersistenceService) {
+				restored += restoreStates((QueryablePersistenceService) service, itemNames, pendingItems);
+			} else if(service!=null) {
+				logger.warn("Failed to restore item states as persistence service '{}' can not be queried.", serviceName);
+			}
+		}
+		
+		if(restored > 0) {
+			logger.info("Restored the states of {} items in {}ms", restored, System.currentTimeMillis() - start);
+		}
+	}
+	
+	/**
+	 * Restores the states of the pending items from a single persistence service. The items whose
+	 * states have been restored are removed from the pending items, so that they are not restored
+	 * again from the next service.
+	 * 
+	 * @param service the persistence service to query
+	 * @param itemNames the names of the items to query the states for
+	 * @param pendingItems the items which have no state yet by their names
+	 * @return the number of restored items
+	 */
+	/* default */ int restoreStates(QueryablePersistenceService service, Collection<String> itemNames, Map<String, GenericItem> pendingItems) {
+		int restored = 0;
+		Map<String, HistoricItem> historicItems = queryLatest(service, itemNames);
+		for(Entry<String, HistoricItem> historicEntry : historicItems.entrySet()) {
+			HistoricItem historicItem = historicEntry.getValue();
+			GenericItem genericItem = pendingItems.remove(historicEntry.getKey());
+			if(genericItem!=null) {
+				genericItem.removeStateChangeListener(this);
+				genericItem.setState(historicItem.getState());
+				genericItem.addStateChangeListener(this);
+				restored++;
+				logger.debug("Restored item state from '{}' for item '{}' -> '{}'", 
+						new Object[] { DateFormat.getDateTimeInstance().format(historicItem.getTimestamp()), 
+						genericItem.getName(), historicItem.getState().toString() } );
+			}
+		}
+		return restored;
+	}
+	
+	/**
+	 * Queries the latest persisted states of items. The items are split into batches, which are queried
+	 * in parallel. Services which cannot return the states of many items at once are queried item by item.
+	 * 
+	 * @param service the persistence service to query
+	 * @param itemNames the names of the items to query the states for
+	 * @return the latest historic items by item name
+	 */
+	private Map<String, HistoricItem> queryLatest(QueryablePersistenceService service, Collection<String> itemNames) {
+		int batchSize = service instanceof BulkQueryablePersistenceService ? RESTORE_BULK_BATCH_SIZE : RESTORE_BATCH_SIZE;
+		List<RestoreTask> tasks = new ArrayList<RestoreTask>();
+		List<String> batch = new ArrayList<String>(batchSize);
+		for(String itemName : itemNames) {
+			batch.add(itemName);
+			if(batch.size()==batchSize) {
+				tasks.add(new RestoreTask(service, batch));
+				batch = new ArrayList<String>(batchSize);
+			}
+		}
+		if(!batch.isEmpty()) {
+			tasks.add(new RestoreTask(service, batch));
+		}
+		
+		Map<String, HistoricItem> historicItems = new HashMap<String, HistoricItem>();
+		if(tasks.size()==1) {
+			historicItems.putAll(tasks.get(0).call());
+			return historicItems;
+		}
+		
+		try {
+			for(Future<Map<String, HistoricItem>> future : getRestoreExecutor().invokeAll(tasks)) {
+				try {
+					historicItems.putAll(future.get());
+				} catch (ExecutionException e) {
+					logger.warn("Failed to restore item states from persistence service '{}': {}", 
+							service.getName(), e.getCause().getMessage());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return historicItems;
+	}
+	
+	/**
+	 * Returns the executor which queries the batches of items to restore. It is created on first
+	 * access and shut down when the persistence manager is deactivated.
+	 * 
+	 * @return the executor
+	 */
+	private synchronized ExecutorService getRestoreExecutor() {
+		if(restoreExecutor==null) {
+			restoreExecutor = Executors.newFixedThreadPool(RESTORE_THREADS, new ThreadFactory() {
+				private final AtomicInteger threadNumber = new AtomicInteger(1);
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "openHAB persistence restore " + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return restoreExecutor;
 	}
 
 	public void itemRemoved(Item item) {
@@ -394,6 +578,7 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 			GenericItem genericItem = (GenericItem) item;
 			genericItem.removeStateChangeListener(this);
 		}
+		invalidateRoutingTable();
 	}
 	
 	/**
@@ -458,6 +643,63 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 			logger.warn("Failed to delete cron jobs of group '{}'", persistModelName);
 		}
 	}
+	
+	/**
+	 * Queries the latest persisted states of a batch of items.
+	 */
+	private static class RestoreTask implements Callable<Map<String, HistoricItem>> {
+		
+		final QueryablePersistenceService service;
+		final List<String> itemNames;
+		
+		RestoreTask(QueryablePersistenceService service, List<String> itemNames) {
+			this.service = service;
+			this.itemNames = itemNames;
+		}
+		
+		public Map<String, HistoricItem> call() {
+			if(service instanceof BulkQueryablePersistenceService) {
+				return ((BulkQueryablePersistenceService) service).queryLatest(itemNames);
+			}
+			Map<String, HistoricItem> historicItems = new HashMap<String, HistoricItem>();
+			for(String itemName : itemNames) {
+				FilterCriteria filter = new FilterCriteria().setItemName(itemName).setPageSize(1);
+				Iterator<HistoricItem> it = service.query(filter).iterator();
+				if(it.hasNext()) {
+					historicItems.put(itemName, it.next());
+				}
+			}
+			return historicItems;
+		}
+	}
+	
+	/**
+	 * A persistence service together with the alias under which an item is stored.
+	 */
+	private static class PersistenceTarget {
+		
+		final String serviceName;
+		final String alias;
+		
+		PersistenceTarget(String serviceName, String alias) {
+			this.serviceName = serviceName;
+			this.alias = alias;
+		}
+	}
+	
+	/**
+	 * The persistence targets of a single item, separated by the event which triggers them.
+	 */
+	private static class ItemRoutes {
+		
+		final PersistenceTarget[] onUpdate;
+		final PersistenceTarget[] onChange;
+		
+		ItemRoutes(List<PersistenceTarget> onUpdate, List<PersistenceTarget> onChange) {
+			this.onUpdate = onUpdate.toArray(new PersistenceTarget[onUpdate.size()]);
+			this.onChange = onChange.toArray(new PersistenceTarget[onChange.size()]);
+		}
+	}
 		
 
 }
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.binding;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Checks that the schedule of an {@link AbstractItemPollingBinding} follows the
+ * changes of the bindings and the configuration without a refresh thread.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class AbstractItemPollingBindingTest {
+
+	private TestBinding binding;
+
+	private TestBindingProvider provider;
+
+	@Before
+	public void init() {
+		binding = new TestBinding();
+		provider = new TestBindingProvider();
+		binding.activate();
+	}
+
+	@After
+	public void tearDown() {
+		binding.deactivate();
+	}
+
+	@Test
+	public void testItemsAreScheduledOnceConfigured() {
+		provider.itemNames.add("item1");
+		binding.addBindingProvider(provider);
+		Assert.assertTrue(getScheduledItemNames().isEmpty());
+
+		binding.setProperlyConfigured(true);
+		Assert.assertEquals(set("item1"), getScheduledItemNames());
+
+		binding.setProperlyConfigured(false);
+		Assert.assertTrue(getScheduledItemNames().isEmpty());
+	}
+
+	@Test
+	public void testScheduleFollowsBindingChanges() {
+		binding.setProperlyConfigured(true);
+		binding.addBindingProvider(provider);
+		Assert.assertTrue(getScheduledItemNames().isEmpty());
+
+		provider.addItem("item1");
+		provider.addItem("item2");
+		Assert.assertEquals(set("item1", "item2"), getScheduledItemNames());
+
+		provider.removeItem("item1");
+		Assert.assertEquals(set("item2"), getScheduledItemNames());
+
+		binding.removeBindingProvider(provider);
+		Assert.assertTrue(getScheduledItemNames().isEmpty());
+	}
+
+	@Test
+	public void testScheduleIsRestoredAfterReactivation() {
+		provider.itemNames.add("item1");
+		binding.addBindingProvider(provider);
+		binding.setProperlyConfigured(true);
+
+		binding.deactivate();
+		Assert.assertTrue(getScheduledItemNames().isEmpty());
+		binding.activate();
+		Assert.assertEquals(set("item1"), getScheduledItemNames());
+	}
+
+	private Set<String> getScheduledItemNames() {
+		return binding.pollingScheduler.getScheduledItemNames();
+	}
+
+	private Set<String> set(String... values) {
+		return new HashSet<String>(Arrays.asList(values));
+	}
+
+	/**
+	 * Polls every item of its providers once an hour, so that the tests only see
+	 * the schedule.
+	 */
+	private static class TestBinding extends AbstractItemPollingBinding<TestBindingProvider> {
+
+		TestBinding() {
+			super("test", 1);
+		}
+
+		@Override
+		protected void scheduleItems() {
+			Set<String> itemNames = new HashSet<String>();
+			for (TestBindingProvider provider : providers) {
+				for (String itemName : provider.getItemNames()) {
+					pollingScheduler.schedule(itemName, null, 3600000L);
+					itemNames.add(itemName);
+				}
+			}
+			pollingScheduler.retainAll(itemNames);
+		}
+
+		public boolean poll(String itemName) {
+			return true;
+		}
+	}
+
+	private static class TestBindingProvider implements BindingProvider {
+
+		final Set<String> itemNames = new CopyOnWriteArraySet<String>();
+
+		private final Set<BindingChangeListener> listeners = new CopyOnWriteArraySet<BindingChangeListener>();
+
+		void addItem(String itemName) {
+			itemNames.add(itemName);
+			for (BindingChangeListener listener : listeners) {
+				listener.bindingChanged(this, itemName);
+			}
+		}
+
+		void removeItem(String itemName) {
+			itemNames.remove(itemName);
+			for (BindingChangeListener listener : listeners) {
+				listener.bindingChanged(this, itemName);
+			}
+		}
+
+		public void addBindingChangeListener(BindingChangeListener listener) {
+			listeners.add(listener);
+		}
+
+		public void removeBindingChangeListener(BindingChangeListener listener) {
+			listeners.remove(listener);
+		}
+
+		public boolean providesBindingFor(String itemName) {
+			return itemNames.contains(itemName);
+		}
+
+		public boolean providesBinding() {
+			return !itemNames.isEmpty();
+		}
+
+		public Collection<String> getItemNames() {
+			return itemNames;
+		}
+	}
+
+}
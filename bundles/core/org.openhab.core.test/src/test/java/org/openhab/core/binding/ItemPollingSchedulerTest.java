@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.binding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+
+/**
+ * Most tests run the scheduler on a {@link VirtualClock}, so that the times
+ * of the polls can be checked exactly. The tests which need concurrent polls
+ * run on the system clock and only wait for the polls with generous timeouts.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class ItemPollingSchedulerTest {
+
+	private static final long TIMEOUT = 10;
+
+	private static final long START_TIME = 1000000L;
+
+	private ItemPollingScheduler scheduler;
+
+	private RecordingPoller poller;
+
+	@After
+	public void tearDown() {
+		if (poller != null) {
+			poller.release.countDown();
+		}
+		if (scheduler != null) {
+			scheduler.stop();
+		}
+	}
+
+	@Test
+	public void testPollsItemsRepeatedly() throws InterruptedException {
+		poller = new RecordingPoller(new VirtualClock(), 6);
+		scheduler = new ItemPollingScheduler("test", poller, 1, poller.clock);
+		scheduler.schedule("item1", "host1", 20);
+		scheduler.schedule("item2", "host2", 30);
+		scheduler.start();
+
+		poller.awaitPolls();
+
+		// at 60 both items are due, item2 has been due first
+		Assert.assertEquals(Arrays.asList(0L, 20L, 40L), poller.getPollOffsets("item1"));
+		Assert.assertEquals(Arrays.asList(0L, 30L, 60L), poller.getPollOffsets("item2"));
+	}
+
+	@Test
+	public void testOnlyOnePollPerHost() throws InterruptedException {
+		final AtomicInteger runningPolls = new AtomicInteger();
+		final AtomicInteger maxRunningPolls = new AtomicInteger();
+		poller = new RecordingPoller(null, 9) {
+			@Override
+			protected void onPoll(String itemName, int count) {
+				int running = runningPolls.incrementAndGet();
+				if (running > maxRunningPolls.get()) {
+					maxRunningPolls.set(running);
+				}
+				// give the other pool threads the chance to start a poll of the same host
+				Thread.yield();
+				runningPolls.decrementAndGet();
+			}
+		};
+		scheduler = new ItemPollingScheduler("test", poller, 4);
+		scheduler.schedule("item1", "host1", 1);
+		scheduler.schedule("item2", "host1", 1);
+		scheduler.schedule("item3", "host1", 1);
+		scheduler.start();
+
+		poller.awaitPolls();
+
+		Assert.assertEquals(1, maxRunningPolls.get());
+		Assert.assertFalse(poller.getPollTimes("item3").isEmpty());
+	}
+
+	@Test
+	public void testSlowHostDoesNotBlockOthers() throws InterruptedException {
+		final CountDownLatch slowPollStarted = new CountDownLatch(1);
+		final CountDownLatch slowPollReleased = new CountDownLatch(1);
+		poller = new RecordingPoller(null, 3) {
+			@Override
+			protected void onPoll(String itemName, int count) throws InterruptedException {
+				if (itemName.equals("slow")) {
+					slowPollStarted.countDown();
+					slowPollReleased.await(TIMEOUT, TimeUnit.SECONDS);
+				}
+			}
+		};
+		scheduler = new ItemPollingScheduler("test", poller, 2);
+		scheduler.schedule("slow", "host1", 1);
+		scheduler.schedule("fast", "host2", 1);
+		scheduler.start();
+
+		Assert.assertTrue(slowPollStarted.await(TIMEOUT, TimeUnit.SECONDS));
+		try {
+			// the fast item is polled three times while the slow poll, which is
+			// only counted once it is finished, is blocked
+			poller.awaitPolls();
+		} finally {
+			slowPollReleased.countDown();
+		}
+
+		Assert.assertEquals(1, poller.getPollTimes("slow").size());
+		Assert.assertEquals(3, poller.getPollTimes("fast").size());
+	}
+
+	@Test
+	public void testBackoffOnFailure() throws InterruptedException {
+		poller = new RecordingPoller(new VirtualClock(), 7);
+		poller.failingPolls = 4;
+		scheduler = new ItemPollingScheduler("test", poller, 1, poller.clock);
+		scheduler.schedule("item1", null, 10);
+		scheduler.start();
+
+		poller.awaitPolls();
+
+		// the delay doubles with every failure and is reset by the first successful poll
+		Assert.assertEquals(Arrays.asList(0L, 20L, 60L, 140L, 300L, 310L, 320L), poller.getPollOffsets("item1"));
+	}
+
+	@Test
+	public void testBackoffIsLimited() throws InterruptedException {
+		poller = new RecordingPoller(new VirtualClock(), 5);
+		poller.failingPolls = Integer.MAX_VALUE;
+		scheduler = new ItemPollingScheduler("test", poller, 1, poller.clock);
+		scheduler.schedule("item1", null, 100000);
+		scheduler.start();
+
+		poller.awaitPolls();
+
+		long maxBackoff = ItemPollingScheduler.MAX_BACKOFF;
+		Assert.assertEquals(Arrays.asList(0L, 200000L, 200000L + maxBackoff, 200000L + 2 * maxBackoff,
+				200000L + 3 * maxBackoff), poller.getPollOffsets("item1"));
+	}
+
+	@Test
+	public void testUnschedule() throws InterruptedException {
+		poller = new RecordingPoller(new VirtualClock(), 8) {
+			@Override
+			protected void onPoll(String itemName, int count) {
+				if (itemName.equals("item1") && count == 2) {
+					scheduler.retainAll(Arrays.asList("item2"));
+				}
+			}
+		};
+		scheduler = new ItemPollingScheduler("test", poller, 1, poller.clock);
+		scheduler.schedule("item1", null, 10);
+		scheduler.schedule("item2", null, 10);
+		scheduler.start();
+
+		poller.awaitPolls();
+
+		// the poll which was running while unscheduling is finished, but not repeated
+		Assert.assertEquals(Arrays.asList(0L, 10L), poller.getPollOffsets("item1"));
+		Assert.assertEquals(6, poller.getPollTimes("item2").size());
+		Assert.assertEquals(1, scheduler.getScheduledItemNames().size());
+	}
+
+	@Test
+	public void testRescheduleWithSameIntervalKeepsSchedule() throws InterruptedException {
+		poller = new RecordingPoller(new VirtualClock(), 6) {
+			@Override
+			protected void onPoll(String itemName, int count) {
+				if (itemName.equals("item2")) {
+					scheduler.schedule("item1", null, 1000);
+				}
+			}
+		};
+		scheduler = new ItemPollingScheduler("test", poller, 1, poller.clock);
+		scheduler.schedule("item1", null, 1000);
+		scheduler.schedule("item2", null, 300);
+		scheduler.start();
+
+		poller.awaitPolls();
+
+		Assert.assertEquals(Arrays.asList(0L, 1000L), poller.getPollOffsets("item1"));
+		Assert.assertEquals(Arrays.asList(0L, 300L, 600L, 900L), poller.getPollOffsets("item2"));
+	}
+
+	@Test
+	public void testRescheduleWithOtherIntervalKeepsLastPoll() throws InterruptedException {
+		poller = new RecordingPoller(new VirtualClock(), 4) {
+			@Override
+			protected void onPoll(String itemName, int count) {
+				if (itemName.equals("item2") && count == 2) {
+					scheduler.schedule("item1", null, 500);
+				}
+			}
+		};
+		scheduler = new ItemPollingScheduler("test", poller, 1, poller.clock);
+		scheduler.schedule("item1", null, 1000);
+		scheduler.schedule("item2", null, 300);
+		scheduler.start();
+
+		poller.awaitPolls();
+
+		// the new interval is counted from the last poll of the item
+		Assert.assertEquals(Arrays.asList(0L, 500L), poller.getPollOffsets("item1"));
+	}
+
+
+	/**
+	 * A clock whose time only advances when the scheduler waits for the next
+	 * due poll, and which wakes the scheduler up at once. As the polls do not
+	 * advance the time, every poll starts exactly at the time it is due, as long
+	 * as only one poll runs at a time.
+	 */
+	private static class VirtualClock implements ItemPollingScheduler.Clock {
+
+		private final AtomicLong time = new AtomicLong(START_TIME);
+
+		public long currentTimeMillis() {
+			return time.get();
+		}
+
+		public ScheduledFuture<?> schedule(ScheduledExecutorService executor, Runnable task, long delay) {
+			time.addAndGet(delay);
+			return executor.schedule(task, 0, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Records the times of the polls and blocks all polls after the expected
+	 * number, so that the schedule does not advance any further.
+	 */
+	private static class RecordingPoller implements ItemPoller {
+
+		final VirtualClock clock;
+
+		final CountDownLatch release = new CountDownLatch(1);
+
+		volatile int failingPolls = 0;
+
+		private final CountDownLatch polls;
+
+		private final Map<String, List<Long>> pollTimes = new HashMap<String, List<Long>>();
+
+		RecordingPoller(VirtualClock clock, int expectedPolls) {
+			this.clock = clock;
+			this.polls = new CountDownLatch(expectedPolls);
+		}
+
+		public boolean poll(String itemName) {
+			try {
+				if (polls.getCount() == 0) {
+					release.await(TIMEOUT, TimeUnit.SECONDS);
+					return true;
+				}
+				int count;
+				synchronized (pollTimes) {
+					List<Long> times = pollTimes.get(itemName);
+					if (times == null) {
+						times = new ArrayList<Long>();
+						pollTimes.put(itemName, times);
+					}
+					times.add(clock != null ? clock.currentTimeMillis() : System.currentTimeMillis());
+					count = times.size();
+				}
+				onPoll(itemName, count);
+				polls.countDown();
+				return count > failingPolls;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		/**
+		 * Is called on every recorded poll.
+		 *
+		 * @param itemName the name of the polled item
+		 * @param count the number of polls of this item including this one
+		 */
+		protected void onPoll(String itemName, int count) throws InterruptedException {
+		}
+
+		void awaitPolls() throws InterruptedException {
+			Assert.assertTrue("items have not been polled often enough", polls.await(TIMEOUT, TimeUnit.SECONDS));
+		}
+
+		List<Long> getPollTimes(String itemName) {
+			synchronized (pollTimes) {
+				List<Long> times = pollTimes.get(itemName);
+				return times == null ? new ArrayList<Long>() : new ArrayList<Long>(times);
+			}
+		}
+
+		List<Long> getPollOffsets(String itemName) {
+			List<Long> offsets = new ArrayList<Long>();
+			for (Long time : getPollTimes(itemName)) {
+				offsets.add(time - START_TIME);
+			}
+			return offsets;
+		}
+	}
+
+}
@@ -0,0 +1,376 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.internal.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.events.EventSubscriber;
+import org.openhab.core.events.ItemEventSubscriber;
+import org.openhab.core.events.SubscriptionChangeListener;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.EventType;
+import org.openhab.core.types.State;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+
+/**
+ * @author agent
+ * @since 1.4.0
+ */
+public class EventPublisherImplTest {
+
+	private EventPublisherImpl publisher;
+
+	@Before
+	public void setUp() {
+		publisher = new EventPublisherImpl();
+		publisher.activate();
+	}
+
+	@After
+	public void tearDown() {
+		publisher.deactivate();
+	}
+
+	@Test
+	public void testEventsOnlyReachSubscribedSubscribers() {
+		RecordingItemSubscriber subscriberA = new RecordingItemSubscriber("A");
+		RecordingItemSubscriber subscriberB = new RecordingItemSubscriber("B");
+		RecordingSubscriber all = new RecordingSubscriber();
+		publisher.addEventSubscriber(subscriberA);
+		publisher.addEventSubscriber(subscriberB);
+		publisher.addEventSubscriber(all);
+
+		publisher.sendCommand("A", new TestType(1));
+		publisher.sendCommand("C", new TestType(2));
+
+		assertEquals(Arrays.asList("A:1"), subscriberA.events);
+		assertEquals(Collections.emptyList(), subscriberB.events);
+		assertEquals(Arrays.asList("A:1", "C:2"), all.events);
+	}
+
+	@Test
+	public void testPostedEventsKeepTheirOrder() throws InterruptedException {
+		int count = 1000;
+		RecordingSubscriber subscriber = new RecordingSubscriber(count);
+		publisher.addEventSubscriber(subscriber);
+
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			if (i % 2 == 0) {
+				publisher.postUpdate("A", new TestType(i));
+			} else {
+				publisher.postCommand("A", new TestType(i));
+			}
+			expected.add("A:" + i);
+		}
+
+		assertTrue(subscriber.latch.await(10, TimeUnit.SECONDS));
+		assertEquals(expected, subscriber.events);
+	}
+
+	@Test
+	public void testIndexIsUpdatedOnSubscriptionChange() {
+		RecordingItemSubscriber subscriber = new RecordingItemSubscriber("A");
+		publisher.addEventSubscriber(subscriber);
+
+		publisher.sendCommand("B", new TestType(1));
+		assertEquals(Collections.emptyList(), subscriber.events);
+
+		subscriber.subscribe("B");
+		publisher.sendCommand("B", new TestType(2));
+		assertEquals(Arrays.asList("B:2"), subscriber.events);
+
+		subscriber.unsubscribe("B");
+		publisher.sendCommand("B", new TestType(3));
+		assertEquals(Arrays.asList("B:2"), subscriber.events);
+
+		// a removed subscriber is neither called nor notifies the publisher anymore
+		publisher.removeEventSubscriber(subscriber);
+		assertTrue(subscriber.listeners.isEmpty());
+		publisher.sendCommand("A", new TestType(4));
+		assertEquals(Arrays.asList("B:2"), subscriber.events);
+	}
+
+	@Test
+	public void testEventAdminBridge() throws InterruptedException {
+		RecordingEventAdmin eventAdmin = new RecordingEventAdmin();
+		publisher.setEventAdmin(eventAdmin);
+		publisher.addEventHandler(new TestHandlerReference("openhab/*"));
+
+		// the bridge is used even if there are no direct subscribers
+		publisher.sendCommand("A", new TestType(1));
+		publisher.postUpdate("B", new TestType(2));
+		publisher.postCommand("C", new TestType(3));
+
+		eventAdmin.awaitEvents(3);
+		assertEvent(eventAdmin.events.get(0), "openhab/command/A", "command", "1");
+		assertEvent(eventAdmin.events.get(1), "openhab/update/B", "state", "2");
+		assertEvent(eventAdmin.events.get(2), "openhab/command/C", "command", "3");
+		assertEquals(Arrays.asList(true, false, false), eventAdmin.synchronous);
+
+		publisher.unsetEventAdmin(eventAdmin);
+		publisher.sendCommand("A", new TestType(4));
+		assertEquals(3, eventAdmin.events.size());
+	}
+
+	@Test
+	public void testEventAdminOnlyReceivesEventsWithHandlers() throws InterruptedException {
+		RecordingEventAdmin eventAdmin = new RecordingEventAdmin();
+		publisher.setEventAdmin(eventAdmin);
+
+		publisher.sendCommand("A", new TestType(1));
+		publisher.postUpdate("A", new TestType(2));
+		assertTrue(eventAdmin.events.isEmpty());
+
+		TestHandlerReference commandHandler = new TestHandlerReference("openhab/command/*");
+		publisher.addEventHandler(commandHandler);
+		publisher.addEventHandler(new TestHandlerReference("openhab/update/B"));
+		publisher.postUpdate("A", new TestType(3));
+		publisher.postCommand("A", new TestType(4));
+		publisher.postUpdate("B", new TestType(5));
+		eventAdmin.awaitEvents(2);
+		assertEvent(eventAdmin.events.get(0), "openhab/command/A", "command", "4");
+		assertEvent(eventAdmin.events.get(1), "openhab/update/B", "state", "5");
+
+		publisher.removeEventHandler(commandHandler);
+		publisher.sendCommand("A", new TestType(6));
+		assertEquals(2, eventAdmin.events.size());
+	}
+
+	@Test
+	public void testTopicMatches() {
+		assertTrue(EventPublisherImpl.topicMatches("*", EventType.UPDATE, "A"));
+		assertTrue(EventPublisherImpl.topicMatches("openhab/*", EventType.UPDATE, "A"));
+		assertTrue(EventPublisherImpl.topicMatches("openhab/command/*", EventType.COMMAND, "A"));
+		assertTrue(EventPublisherImpl.topicMatches("openhab/update/Light", EventType.UPDATE, "Light"));
+		assertFalse(EventPublisherImpl.topicMatches("openhab/command/*", EventType.UPDATE, "A"));
+		assertFalse(EventPublisherImpl.topicMatches("openhab/comm/*", EventType.COMMAND, "A"));
+		assertFalse(EventPublisherImpl.topicMatches("openhab/update/Light", EventType.UPDATE, "Lights"));
+		assertFalse(EventPublisherImpl.topicMatches("openhab/update/Lights", EventType.UPDATE, "Light"));
+		assertFalse(EventPublisherImpl.topicMatches("openhab/update/Light/*", EventType.UPDATE, "Light"));
+		assertFalse(EventPublisherImpl.topicMatches("org/osgi/framework/*", EventType.UPDATE, "A"));
+	}
+
+	@Test
+	public void testSubscribersReceiveEventsBeforeEventAdmin() throws InterruptedException {
+		final List<String> deliveries = new CopyOnWriteArrayList<String>();
+		publisher.addEventSubscriber(new RecordingSubscriber() {
+			@Override
+			public void receiveUpdate(String itemName, State newStatus) {
+				deliveries.add("subscriber:" + itemName + ":" + newStatus);
+			}
+		});
+		RecordingEventAdmin eventAdmin = new RecordingEventAdmin() {
+			@Override
+			public synchronized void postEvent(Event event) {
+				deliveries.add("eventAdmin:" + event.getProperty("item") + ":" + event.getProperty("state"));
+				super.postEvent(event);
+			}
+		};
+		publisher.setEventAdmin(eventAdmin);
+		publisher.addEventHandler(new TestHandlerReference("openhab/update/*"));
+
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			publisher.postUpdate("A", new TestType(i));
+			expected.add("subscriber:A:" + i);
+			expected.add("eventAdmin:A:" + i);
+		}
+
+		eventAdmin.awaitEvents(100);
+		assertEquals(expected, deliveries);
+	}
+
+	@Test
+	public void testEventsAreDeliveredDirectlyAfterDeactivation() {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		publisher.addEventSubscriber(subscriber);
+		publisher.deactivate();
+
+		publisher.postUpdate("A", new TestType(1));
+		publisher.postCommand("A", new TestType(2));
+		assertEquals(Arrays.asList("A:1", "A:2"), subscriber.events);
+	}
+
+	private void assertEvent(Event event, String topic, String property, String value) {
+		assertEquals(topic, event.getTopic());
+		assertEquals(topic.substring(topic.lastIndexOf('/') + 1), event.getProperty("item"));
+		assertEquals(value, event.getProperty(property).toString());
+	}
+
+	private static class TestType implements State, Command {
+
+		private final int value;
+
+		TestType(int value) {
+			this.value = value;
+		}
+
+		public String format(String pattern) {
+			return String.format(pattern, value);
+		}
+
+		@Override
+		public String toString() {
+			return String.valueOf(value);
+		}
+	}
+
+	private static class RecordingSubscriber implements EventSubscriber {
+
+		final List<String> events = new CopyOnWriteArrayList<String>();
+		final CountDownLatch latch;
+
+		RecordingSubscriber() {
+			this(0);
+		}
+
+		RecordingSubscriber(int expectedEvents) {
+			latch = new CountDownLatch(expectedEvents);
+		}
+
+		public void receiveCommand(String itemName, Command command) {
+			record(itemName, command);
+		}
+
+		public void receiveUpdate(String itemName, State newStatus) {
+			record(itemName, newStatus);
+		}
+
+		private void record(String itemName, Object value) {
+			events.add(itemName + ":" + value);
+			latch.countDown();
+		}
+	}
+
+	private static class RecordingItemSubscriber extends RecordingSubscriber implements ItemEventSubscriber {
+
+		private final Set<String> itemNames = new HashSet<String>();
+		final List<SubscriptionChangeListener> listeners = new CopyOnWriteArrayList<SubscriptionChangeListener>();
+
+		RecordingItemSubscriber(String itemName) {
+			itemNames.add(itemName);
+		}
+
+		void subscribe(String itemName) {
+			itemNames.add(itemName);
+			notifyListeners();
+		}
+
+		void unsubscribe(String itemName) {
+			itemNames.remove(itemName);
+			notifyListeners();
+		}
+
+		private void notifyListeners() {
+			for (SubscriptionChangeListener listener : listeners) {
+				listener.subscriptionChanged(this);
+			}
+		}
+
+		public boolean isSubscribedTo(String itemName) {
+			return itemNames.contains(itemName);
+		}
+
+		public void addSubscriptionChangeListener(SubscriptionChangeListener listener) {
+			listeners.add(listener);
+		}
+
+		public void removeSubscriptionChangeListener(SubscriptionChangeListener listener) {
+			listeners.remove(listener);
+		}
+	}
+
+	private static class RecordingEventAdmin implements EventAdmin {
+
+		final List<Event> events = new CopyOnWriteArrayList<Event>();
+		final List<Boolean> synchronous = new CopyOnWriteArrayList<Boolean>();
+
+		/**
+		 * Waits until the given number of events has been received.
+		 */
+		void awaitEvents(int count) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (events.size() < count) {
+				if (System.currentTimeMillis() > deadline) {
+					fail("only " + events.size() + " of " + count + " events have been received");
+				}
+				Thread.sleep(10);
+			}
+		}
+
+		public synchronized void postEvent(Event event) {
+			events.add(event);
+			synchronous.add(false);
+		}
+
+		public synchronized void sendEvent(Event event) {
+			events.add(event);
+			synchronous.add(true);
+		}
+	}
+
+	/**
+	 * The service reference of an event handler, which only provides its topic.
+	 */
+	private static class TestHandlerReference implements ServiceReference<EventHandler> {
+
+		private final String topic;
+
+		TestHandlerReference(String topic) {
+			this.topic = topic;
+		}
+
+		public Object getProperty(String key) {
+			return EventConstants.EVENT_TOPIC.equals(key) ? topic : null;
+		}
+
+		public String[] getPropertyKeys() {
+			return new String[] { EventConstants.EVENT_TOPIC };
+		}
+
+		public Bundle getBundle() {
+			return null;
+		}
+
+		public Bundle[] getUsingBundles() {
+			return null;
+		}
+
+		public boolean isAssignableTo(Bundle bundle, String className) {
+			return true;
+		}
+
+		public int compareTo(Object reference) {
+			return 0;
+		}
+	}
+
+}
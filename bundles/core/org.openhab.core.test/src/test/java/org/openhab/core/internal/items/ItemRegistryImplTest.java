@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.internal.items;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemNotFoundException;
+import org.openhab.core.items.ItemProvider;
+import org.openhab.core.items.ItemsChangeListener;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+
+
+/**
+ * @author agent
+ * @since 1.4.0
+ */
+public class ItemRegistryImplTest {
+	
+	private ItemRegistryImpl registry;
+	
+	private TestItemProvider provider;
+	
+	@Before
+	public void setup() {
+		provider = new TestItemProvider();
+		provider.items.add(new TestItem("Light_Kitchen"));
+		provider.items.add(new TestItem("Light_Bath"));
+		provider.items.add(new TestItem("Temperature"));
+		
+		registry = new ItemRegistryImpl();
+		registry.addItemProvider(provider);
+	}
+	
+	@Test
+	public void testGetItem() throws ItemNotFoundException {
+		assertEquals("Light_Bath", registry.getItem("Light_Bath").getName());
+	}
+
+	@Test(expected=ItemNotFoundException.class)
+	public void testGetItemIsNoPatternSearch() throws ItemNotFoundException {
+		registry.getItem("Light_.*");
+	}
+
+	@Test(expected=ItemNotFoundException.class)
+	public void testGetItemUnknownName() throws ItemNotFoundException {
+		registry.getItem("Unknown");
+	}
+	
+	@Test
+	public void testGetItemsByPattern() {
+		assertEquals(2, registry.getItems("Light_*").size());
+		assertEquals(2, registry.getItems("Light_*").size());
+		assertEquals(1, registry.getItems("Temp*").size());
+	}
+
+	@Test
+	public void testItemAddedAndRemoved() throws ItemNotFoundException {
+		Item item = new TestItem("Switch");
+		registry.itemAdded(provider, item);
+		assertSame(item, registry.getItem("Switch"));
+		
+		registry.itemRemoved(provider, item);
+		try {
+			registry.getItem("Switch");
+			fail("item should have been removed from the registry");
+		} catch (ItemNotFoundException e) {
+			// expected
+		}
+	}
+	
+	@Test(expected=ItemNotFoundException.class)
+	public void testAllItemsChanged() throws ItemNotFoundException {
+		provider.items.remove(0);
+		registry.allItemsChanged(provider, null);
+		assertEquals(2, registry.getItems().size());
+		registry.getItem("Light_Kitchen");
+	}
+	
+	@Test(expected=ItemNotFoundException.class)
+	public void testRemoveItemProvider() throws ItemNotFoundException {
+		registry.removeItemProvider(provider);
+		registry.getItem("Temperature");
+	}
+
+	
+	class TestItemProvider implements ItemProvider {
+		
+		List<Item> items = new ArrayList<Item>();
+
+		public Collection<Item> getItems() {
+			return new ArrayList<Item>(items);
+		}
+
+		public void addItemChangeListener(ItemsChangeListener listener) {
+		}
+
+		public void removeItemChangeListener(ItemsChangeListener listener) {
+		}
+		
+	}
+	
+	class TestItem extends GenericItem {
+
+		public TestItem(String name) {
+			super(name);
+		}
+
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return new ArrayList<Class<? extends State>>();
+		}
+
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return new ArrayList<Class<? extends Command>>();
+		}
+		
+	}
+
+}
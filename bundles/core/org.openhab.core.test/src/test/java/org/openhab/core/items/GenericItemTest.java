@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.items;
+
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+
+
+/**
+ * @author agent
+ * @since 1.4.0
+ */
+public class GenericItemTest {
+
+	private TestItem item;
+
+	@Before
+	public void setup() {
+		item = new TestItem("item");
+	}
+
+	@Test
+	public void testNotifyListeners() {
+		CountingListener listener1 = new CountingListener();
+		CountingListener listener2 = new CountingListener();
+		item.addStateChangeListener(listener1);
+		item.addStateChangeListener(listener2);
+
+		item.setState(UnDefType.UNDEF);
+		item.setState(UnDefType.UNDEF);
+
+		Assert.assertEquals(2, listener1.updates);
+		Assert.assertEquals(1, listener1.changes);
+		Assert.assertEquals(2, listener2.updates);
+		Assert.assertEquals(1, listener2.changes);
+	}
+
+	@Test
+	public void testAddListenerTwice() {
+		CountingListener listener = new CountingListener();
+		item.addStateChangeListener(listener);
+		item.addStateChangeListener(listener);
+
+		item.setState(UnDefType.UNDEF);
+
+		Assert.assertEquals(1, listener.updates);
+	}
+
+	@Test
+	public void testRemoveListener() {
+		CountingListener listener1 = new CountingListener();
+		CountingListener listener2 = new CountingListener();
+		CountingListener listener3 = new CountingListener();
+		item.addStateChangeListener(listener1);
+		item.addStateChangeListener(listener2);
+		item.addStateChangeListener(listener3);
+
+		item.removeStateChangeListener(listener2);
+		item.removeStateChangeListener(new CountingListener());
+		item.setState(UnDefType.UNDEF);
+
+		Assert.assertEquals(1, listener1.updates);
+		Assert.assertEquals(0, listener2.updates);
+		Assert.assertEquals(1, listener3.updates);
+	}
+
+	@Test
+	public void testRemoveListenerDuringNotification() {
+		final CountingListener listener = new CountingListener();
+		item.addStateChangeListener(new CountingListener() {
+			@Override
+			public void stateUpdated(Item item, State state) {
+				super.stateUpdated(item, state);
+				((GenericItem) item).removeStateChangeListener(listener);
+			}
+		});
+		item.addStateChangeListener(listener);
+
+		// the listener is removed during the first notification, but still receives it
+		item.setState(UnDefType.UNDEF);
+		item.setState(UnDefType.NULL);
+
+		Assert.assertEquals(1, listener.updates);
+		Assert.assertEquals(1, listener.changes);
+	}
+
+
+	class CountingListener implements StateChangeListener {
+
+		int updates;
+		int changes;
+
+		public void stateChanged(Item item, State oldState, State newState) {
+			changes++;
+		}
+
+		public void stateUpdated(Item item, State state) {
+			updates++;
+		}
+
+	}
+
+	class TestItem extends GenericItem {
+
+		public TestItem(String name) {
+			super(name);
+		}
+
+		@Override
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return null;
+		}
+
+		@Override
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return null;
+		}
+
+	}
+
+}
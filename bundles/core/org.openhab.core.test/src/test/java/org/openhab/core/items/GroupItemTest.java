@@ -53,6 +53,27 @@ public class GroupItemTest {
 		}
 	}
 	
+	@Test
+	public void testGetAllMembers_afterMembershipChange() {
+		GroupItem subGroup = new GroupItem("subGroup2");
+		rootGroupItem.addMember(subGroup);
+		Assert.assertEquals(5, rootGroupItem.getAllMembers().size());
+		
+		// changes of nested groups must be reflected as well
+		subGroup.addMember(new TestItem("subGroup2 member 1"));
+		Assert.assertEquals(6, rootGroupItem.getAllMembers().size());
+		
+		rootGroupItem.removeMember(subGroup);
+		Assert.assertEquals(5, rootGroupItem.getAllMembers().size());
+	}
+	
+	@Test
+	public void testGetAllMembers_returnsCopy() {
+		List<Item> allMembers = rootGroupItem.getAllMembers();
+		allMembers.clear();
+		Assert.assertEquals(5, rootGroupItem.getAllMembers().size());
+	}
+	
 	
 	class TestItem extends GenericItem {
 
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Checks that {@link AbstractActiveService}s on the shared {@link ActiveServiceScheduler}
+ * are run with a fixed delay or at a fixed rate.
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public class ActiveServiceSchedulerTest {
+
+	private static final long EXECUTION_TIME = 100;
+
+	private static final long REFRESH_INTERVAL = 100;
+
+	private static final int EXECUTIONS = 5;
+
+	private String previousScheduler;
+
+	@Before
+	public void setup() {
+		previousScheduler = System.getProperty(ActiveServiceScheduler.SCHEDULER_PROPERTY);
+		System.setProperty(ActiveServiceScheduler.SCHEDULER_PROPERTY, ActiveServiceScheduler.SHARED_SCHEDULER);
+	}
+
+	@After
+	public void tearDown() {
+		if (previousScheduler == null) {
+			System.clearProperty(ActiveServiceScheduler.SCHEDULER_PROPERTY);
+		} else {
+			System.setProperty(ActiveServiceScheduler.SCHEDULER_PROPERTY, previousScheduler);
+		}
+	}
+
+	@Test
+	public void testFixedDelay() throws InterruptedException {
+		TestService service = new TestService(false);
+		List<Long> starts = service.run();
+
+		// the delay is measured from the end of an execution, so the start 
+		// times are at least the execution time plus the refresh interval apart
+		for (int i = 1; i < starts.size(); i++) {
+			long gap = starts.get(i) - starts.get(i - 1);
+			assertTrue("gap was " + gap + "ms", gap >= EXECUTION_TIME + REFRESH_INTERVAL);
+		}
+		assertEquals(EXECUTIONS, starts.size());
+	}
+
+	@Test
+	public void testFixedRate() throws InterruptedException {
+		TestService service = new TestService(true);
+		List<Long> starts = service.run();
+
+		// at a fixed rate the executions start one refresh interval apart; the
+		// bound is what a fixed delay would need at least, so the check does
+		// not depend on the exact timing of the machine the test runs on
+		long span = starts.get(starts.size() - 1) - starts.get(0);
+		assertTrue("span was " + span + "ms", span < (EXECUTIONS - 1) * (EXECUTION_TIME + REFRESH_INTERVAL));
+		assertEquals(EXECUTIONS, starts.size());
+	}
+
+	@Test
+	public void testOverrunsAreRecorded() throws InterruptedException {
+		TestService service = new TestService(false, 2 * REFRESH_INTERVAL);
+		service.run();
+
+		ExecutionStatistics statistics = service.getExecutionStatistics();
+		assertTrue(statistics.getExecutionCount() >= EXECUTIONS);
+		assertEquals(EXECUTIONS, statistics.getOverrunCount());
+		assertTrue(statistics.getMaxExecutionTime() >= 2 * REFRESH_INTERVAL);
+	}
+
+	private static class TestService extends AbstractActiveService {
+
+		private final boolean fixedRate;
+
+		private final long executionTime;
+
+		private final List<Long> starts = new ArrayList<Long>();
+
+		// counts the measured executions plus one more, which proves that the
+		// statistics of the measured executions have been recorded
+		private final CountDownLatch latch = new CountDownLatch(EXECUTIONS + 1);
+
+		TestService(boolean fixedRate) {
+			this(fixedRate, EXECUTION_TIME);
+		}
+
+		TestService(boolean fixedRate, long executionTime) {
+			this.fixedRate = fixedRate;
+			this.executionTime = executionTime;
+		}
+
+		/**
+		 * Runs the service until it has been executed {@link #EXECUTIONS} times.
+		 * 
+		 * @return the start times of the executions
+		 */
+		List<Long> run() throws InterruptedException {
+			setProperlyConfigured(true);
+			try {
+				assertTrue("service has not been executed often enough", latch.await(10, TimeUnit.SECONDS));
+			} finally {
+				shutdown();
+			}
+			synchronized (starts) {
+				return new ArrayList<Long>(starts);
+			}
+		}
+
+		@Override
+		protected void execute() {
+			if (latch.getCount() > 1) {
+				synchronized (starts) {
+					starts.add(System.currentTimeMillis());
+				}
+				try {
+					Thread.sleep(executionTime);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			latch.countDown();
+		}
+
+		@Override
+		protected long getRefreshInterval() {
+			return REFRESH_INTERVAL;
+		}
+
+		@Override
+		protected boolean isFixedRate() {
+			return fixedRate;
+		}
+
+		@Override
+		protected String getName() {
+			return "Test Service";
+		}
+
+	}
+
+}
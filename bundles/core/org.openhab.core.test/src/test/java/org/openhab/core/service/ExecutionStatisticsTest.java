@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.service;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+/**
+ * @author agent
+ * @since 1.4.0
+ */
+public class ExecutionStatisticsTest {
+
+	@Test
+	public void testEmptyStatistics() {
+		ExecutionStatistics statistics = new ExecutionStatistics();
+		assertEquals(0, statistics.getExecutionCount());
+		assertEquals(0, statistics.getOverrunCount());
+		assertEquals(0, statistics.getLastExecutionTime());
+		assertEquals(0, statistics.getMaxExecutionTime());
+		assertEquals(0, statistics.getAverageExecutionTime());
+	}
+
+	@Test
+	public void testRecord() {
+		ExecutionStatistics statistics = new ExecutionStatistics();
+		statistics.record(10, false);
+		statistics.record(50, true);
+		statistics.record(30, false);
+
+		assertEquals(3, statistics.getExecutionCount());
+		assertEquals(1, statistics.getOverrunCount());
+		assertEquals(30, statistics.getLastExecutionTime());
+		assertEquals(50, statistics.getMaxExecutionTime());
+		assertEquals(30, statistics.getAverageExecutionTime());
+		assertEquals("executions=3, overruns=1, last=30ms, avg=30ms, max=50ms", statistics.toString());
+	}
+
+}
@@ -119,6 +119,16 @@ public abstract class AbstractActiveBinding<P extends BindingProvider> extends A
 	 * @return the refresh interval
 	 */
 	protected abstract long getRefreshInterval();
+	
+	/**
+	 * Defines whether the execute method is called at a fixed rate or with a
+	 * fixed delay of one refresh interval between two executions (default).
+	 * 
+	 * @return <code>true</code> if the execute method should be called at a fixed rate
+	 */
+	protected boolean isFixedRate() {
+		return false;
+	}
 
 	/**
 	 * Returns the name of the Refresh thread.
@@ -161,6 +171,11 @@ public abstract class AbstractActiveBinding<P extends BindingProvider> extends A
 			return AbstractActiveBinding.this.getRefreshInterval();
 		}
 
+		@Override
+		protected boolean isFixedRate() {
+			return AbstractActiveBinding.this.isFixedRate();
+		}
+
 		@Override
 		protected String getName() {
 			return AbstractActiveBinding.this.getName();
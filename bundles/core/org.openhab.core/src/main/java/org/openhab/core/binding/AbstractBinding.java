@@ -13,6 +13,8 @@ import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.openhab.core.events.AbstractEventSubscriber;
 import org.openhab.core.events.EventPublisher;
+import org.openhab.core.events.ItemEventSubscriber;
+import org.openhab.core.events.SubscriptionChangeListener;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.State;
 
@@ -24,12 +26,28 @@ import org.openhab.core.types.State;
  * @author Kai Kreuzer
  * @since 1.0.0
  */
-public abstract class AbstractBinding<P extends BindingProvider> extends AbstractEventSubscriber implements BindingChangeListener {
+public abstract class AbstractBinding<P extends BindingProvider> extends AbstractEventSubscriber implements BindingChangeListener, ItemEventSubscriber {
 	
 	/** to keep track of all binding providers */
 
 	protected Collection<P> providers = new CopyOnWriteArraySet<P>();
 	
+	/** to keep track of all listeners which are interested in changes of our item subscriptions */
+	private Collection<SubscriptionChangeListener> subscriptionListeners = new CopyOnWriteArraySet<SubscriptionChangeListener>();
+	
+	/** 
+	 * notifies the subscription listeners about binding changes; this is a separate listener
+	 * as subclasses are free to override {@link #bindingChanged(BindingProvider, String)} 
+	 */
+	private final BindingChangeListener subscriptionNotifier = new BindingChangeListener() {
+		public void bindingChanged(BindingProvider provider, String itemName) {
+			notifySubscriptionListeners();
+		}
+		public void allBindingsChanged(BindingProvider provider) {
+			notifySubscriptionListeners();
+		}
+	};
+	
 	protected EventPublisher eventPublisher = null;
 	
 	
@@ -56,7 +74,9 @@ public abstract class AbstractBinding<P extends BindingProvider> extends Abstrac
 	public void addBindingProvider(P provider) {
 		this.providers.add(provider);
         provider.addBindingChangeListener(this);
+        provider.addBindingChangeListener(subscriptionNotifier);
         allBindingsChanged(provider);
+        notifySubscriptionListeners();
     }
 
 	/**
@@ -68,6 +88,8 @@ public abstract class AbstractBinding<P extends BindingProvider> extends Abstrac
 	public void removeBindingProvider(P provider) {
 		this.providers.remove(provider);
 		provider.removeBindingChangeListener(this);
+		provider.removeBindingChangeListener(subscriptionNotifier);
+		notifySubscriptionListeners();
 	}
 	
 	
@@ -143,6 +165,33 @@ public abstract class AbstractBinding<P extends BindingProvider> extends Abstrac
 		return false;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isSubscribedTo(String itemName) {
+		return providesBindingFor(itemName);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void addSubscriptionChangeListener(SubscriptionChangeListener listener) {
+		subscriptionListeners.add(listener);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void removeSubscriptionChangeListener(SubscriptionChangeListener listener) {
+		subscriptionListeners.remove(listener);
+	}
+	
+	private void notifySubscriptionListeners() {
+		for (SubscriptionChangeListener listener : subscriptionListeners) {
+			listener.subscriptionChanged(this);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
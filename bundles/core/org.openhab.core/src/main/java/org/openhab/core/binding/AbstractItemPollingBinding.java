@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.binding;
+
+
+/**
+ * Base class for bindings which refresh their items in individual intervals by
+ * an {@link ItemPollingScheduler}. Unlike an {@link AbstractActiveBinding}, it
+ * has no refresh thread of its own. The schedule is updated whenever the
+ * bindings or the configuration change, and the polls are run by the executor
+ * which is shared by all polling schedulers.
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public abstract class AbstractItemPollingBinding<P extends BindingProvider> extends AbstractBinding<P> implements ItemPoller {
+
+	/** refreshes the items in their individual intervals */
+	protected final ItemPollingScheduler pollingScheduler;
+
+	/** <code>true</code> if this binding is configured properly which means that all necessary data is available */
+	private volatile boolean properlyConfigured = false;
+
+
+	/**
+	 * @param name the name of the binding, which is used in the log
+	 * @param maxConcurrentPolls the maximum number of items which are polled at the same time
+	 */
+	protected AbstractItemPollingBinding(String name, int maxConcurrentPolls) {
+		pollingScheduler = new ItemPollingScheduler(name, this, maxConcurrentPolls);
+	}
+
+	/**
+	 * Starts polling the items. Subclasses which override this method must call it.
+	 */
+	@Override
+	public void activate() {
+		pollingScheduler.start();
+		updateSchedule();
+	}
+
+	/**
+	 * Stops polling the items. Subclasses which override this method must call it.
+	 */
+	@Override
+	public void deactivate() {
+		pollingScheduler.stop();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removeBindingProvider(P provider) {
+		super.removeBindingProvider(provider);
+		updateSchedule();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void bindingChanged(BindingProvider provider, String itemName) {
+		super.bindingChanged(provider, itemName);
+		updateSchedule();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void allBindingsChanged(BindingProvider provider) {
+		super.allBindingsChanged(provider);
+		updateSchedule();
+	}
+
+	/**
+	 * Used to define whether this binding is fully configured so that its items
+	 * can be polled. The items are scheduled as soon as <code>true</code> is
+	 * passed, and removed from the schedule if <code>false</code> is passed.
+	 * 
+	 * @param properlyConfigured
+	 */
+	protected void setProperlyConfigured(boolean properlyConfigured) {
+		this.properlyConfigured = properlyConfigured;
+		updateSchedule();
+	}
+
+	/**
+	 * @return <code>true</code> if this binding is configured properly which means
+	 * that all necessary data is available
+	 */
+	protected boolean isProperlyConfigured() {
+		return properlyConfigured;
+	}
+
+	/**
+	 * Brings the schedule in line with the current bindings and configuration.
+	 * Subclasses call this method if their schedule depends on anything else
+	 * which has changed.
+	 */
+	protected synchronized void updateSchedule() {
+		if (properlyConfigured) {
+			scheduleItems();
+		} else {
+			pollingScheduler.clear();
+		}
+	}
+
+	/**
+	 * Schedules every item to be polled by {@link ItemPollingScheduler#schedule(String, String, long)}
+	 * and removes all others by {@link ItemPollingScheduler#retainAll(java.util.Collection)}.
+	 * Items which are already scheduled with the same host and interval keep their schedule.
+	 */
+	protected abstract void scheduleItems();
+
+}
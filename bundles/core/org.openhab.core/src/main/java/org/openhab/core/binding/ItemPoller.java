@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.binding;
+
+/**
+ * An item poller refreshes the state of a single item on behalf of an
+ * {@link ItemPollingScheduler}.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public interface ItemPoller {
+
+	/**
+	 * Refreshes the state of the given item, e.g. by querying the device it is
+	 * bound to. Implementations must be thread-safe, as polls of items on
+	 * different hosts are executed concurrently.
+	 *
+	 * @param itemName the name of the item to poll
+	 * @return <code>true</code>, if the poll was successful, <code>false</code>
+	 * if it failed and should be retried with a backoff
+	 */
+	public boolean poll(String itemName);
+
+}
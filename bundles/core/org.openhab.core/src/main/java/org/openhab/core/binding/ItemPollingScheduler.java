@@ -0,0 +1,527 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.binding;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openhab.core.service.ExecutionStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Polls items with individual refresh intervals on behalf of a binding. This
+ * replaces the common pattern of iterating over all items in the
+ * <code>execute()</code> method of an {@link AbstractActiveBinding} and
+ * comparing their last update time against their refresh interval.
+ *
+ * <p>The items are kept in a queue ordered by the time their next poll is due,
+ * so that the scheduler only wakes up if there is actually something to do.
+ * Due polls are executed concurrently up to a configurable limit, but only one
+ * poll per host is running at a time, so that a slow or unreachable host does
+ * not block the polls of all other hosts. If a poll fails, the next poll of the
+ * item is delayed exponentially up to {@link #MAX_BACKOFF}.</p>
+ *
+ * <p>All schedulers share a single thread pool, which runs the polls as well as
+ * the wake-ups at the time the next poll is due. Its size can be set by the
+ * system property <code>openhab.itempolling.poolsize</code>.</p>
+ *
+ * <p>The next poll of an item is due one refresh interval after its previous
+ * poll has finished.</p>
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class ItemPollingScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(ItemPollingScheduler.class);
+
+	/** the maximum delay in milliseconds between two polls of a failing item */
+	public static final long MAX_BACKOFF = 300000L;
+
+	private static final int MAX_BACKOFF_EXPONENT = 16;
+
+	static final String POOL_SIZE_PROPERTY = "openhab.itempolling.poolsize";
+
+	private static final int DEFAULT_POOL_SIZE = 10;
+
+	/** the executor which is shared by all schedulers, see {@link #getSharedExecutor()} */
+	private static ScheduledExecutorService sharedExecutor;
+
+	private final String name;
+
+	private final ItemPoller poller;
+
+	private final int maxConcurrentPolls;
+
+	private final Clock clock;
+
+	/** guards all fields below */
+	private final Object lock = new Object();
+
+	/** all scheduled items by their name */
+	private final Map<String, PollEntry> entries = new HashMap<String, PollEntry>();
+
+	/** the scheduled items ordered by the time their next poll is due */
+	private final PriorityQueue<PollEntry> dueQueue = new PriorityQueue<PollEntry>(11, new Comparator<PollEntry>() {
+		public int compare(PollEntry entry1, PollEntry entry2) {
+			if (entry1.nextDue != entry2.nextDue) {
+				return entry1.nextDue < entry2.nextDue ? -1 : 1;
+			}
+			return entry1.sequence < entry2.sequence ? -1 : (entry1.sequence == entry2.sequence ? 0 : 1);
+		}
+	});
+
+	/** the due items which wait for the running poll of the same host to finish */
+	private final Map<String, LinkedList<PollEntry>> waitingEntries = new HashMap<String, LinkedList<PollEntry>>();
+
+	/** the hosts which are currently polled */
+	private final Set<String> busyHosts = new HashSet<String>();
+
+	private int runningPolls = 0;
+
+	private long sequence = 0;
+
+	private boolean running = false;
+
+	/** the task which dispatches the polls which are due next or <code>null</code>, if there is none */
+	private ScheduledFuture<?> wakeup = null;
+
+	/** the time the {@link #wakeup} is due */
+	private long wakeupTime;
+
+	private final ScheduledExecutorService executor;
+
+	private final ExecutionStatistics pollStatistics = new ExecutionStatistics();
+
+	private final ExecutionStatistics latenessStatistics = new ExecutionStatistics();
+
+
+	/**
+	 * Creates a new scheduler, which needs to be started by {@link #start()}.
+	 *
+	 * @param name the name of the scheduler, which is used in the log
+	 * @param poller the poller which is called for each due item
+	 * @param maxConcurrentPolls the maximum number of polls which may run at the same time
+	 */
+	public ItemPollingScheduler(String name, ItemPoller poller, int maxConcurrentPolls) {
+		this(name, poller, maxConcurrentPolls, SYSTEM_CLOCK);
+	}
+
+	/**
+	 * Creates a new scheduler which takes the time from the given clock.
+	 *
+	 * @param name the name of the scheduler, which is used in the log
+	 * @param poller the poller which is called for each due item
+	 * @param maxConcurrentPolls the maximum number of polls which may run at the same time
+	 * @param clock the clock which provides the current time and schedules the wake-ups
+	 */
+	ItemPollingScheduler(String name, ItemPoller poller, int maxConcurrentPolls, Clock clock) {
+		if (poller == null) {
+			throw new IllegalArgumentException("Poller must not be null!");
+		}
+		this.name = name;
+		this.poller = poller;
+		this.maxConcurrentPolls = Math.max(1, maxConcurrentPolls);
+		this.clock = clock;
+		this.executor = getSharedExecutor();
+	}
+
+	/**
+	 * Starts polling the scheduled items. Does nothing, if the scheduler is already running.
+	 */
+	public void start() {
+		synchronized (lock) {
+			if (running) {
+				return;
+			}
+			running = true;
+			dispatch();
+		}
+		logger.debug("{} polling scheduler has been started", name);
+	}
+
+	/**
+	 * Stops polling and discards all scheduled items. Polls which are currently
+	 * running are not interrupted.
+	 */
+	public void stop() {
+		synchronized (lock) {
+			if (!running) {
+				return;
+			}
+			running = false;
+			if (wakeup != null) {
+				wakeup.cancel(false);
+				wakeup = null;
+			}
+			clear();
+		}
+		logger.debug("{} polling scheduler has been stopped", name);
+	}
+
+	/**
+	 * @return <code>true</code>, if the scheduler has been started and not been stopped yet
+	 */
+	public boolean isRunning() {
+		synchronized (lock) {
+			return running;
+		}
+	}
+
+	/**
+	 * Schedules an item to be polled in the given interval. If the item has not
+	 * been scheduled before, it is polled as soon as possible. If it is already
+	 * scheduled with the same host and interval, nothing is changed, so that this
+	 * method can be called repeatedly to keep the schedule in line with the
+	 * binding configuration.
+	 *
+	 * @param itemName the name of the item to poll
+	 * @param host the host the item is polled from or <code>null</code>, if the
+	 * item should not take part in the per-host limitation
+	 * @param refreshInterval the time in milliseconds between the end of a poll
+	 * and the start of the next one
+	 */
+	public void schedule(String itemName, String host, long refreshInterval) {
+		synchronized (lock) {
+			PollEntry existingEntry = entries.get(itemName);
+			if (existingEntry != null) {
+				if (existingEntry.interval == refreshInterval && equals(existingEntry.host, host)) {
+					return;
+				}
+				cancel(existingEntry);
+			}
+			PollEntry entry = new PollEntry(itemName, host, refreshInterval);
+			if (existingEntry != null) {
+				entry.lastCompleted = existingEntry.lastCompleted;
+			}
+			entry.nextDue = entry.lastCompleted + refreshInterval;
+			entries.put(itemName, entry);
+			enqueue(entry);
+		}
+	}
+
+	/**
+	 * Removes an item from the schedule. A poll of the item which is currently
+	 * running is finished, but the item is not polled again.
+	 *
+	 * @param itemName the name of the item to remove
+	 */
+	public void unschedule(String itemName) {
+		synchronized (lock) {
+			PollEntry entry = entries.remove(itemName);
+			if (entry != null) {
+				cancel(entry);
+			}
+		}
+	}
+
+	/**
+	 * Removes all items from the schedule, which are not contained in the given names.
+	 *
+	 * @param itemNames the names of the items to keep
+	 */
+	public void retainAll(Collection<String> itemNames) {
+		synchronized (lock) {
+			List<String> removedItemNames = new ArrayList<String>();
+			for (String itemName : entries.keySet()) {
+				if (!itemNames.contains(itemName)) {
+					removedItemNames.add(itemName);
+				}
+			}
+			for (String itemName : removedItemNames) {
+				unschedule(itemName);
+			}
+		}
+	}
+
+	/**
+	 * Removes all items from the schedule.
+	 */
+	public void clear() {
+		synchronized (lock) {
+			for (PollEntry entry : entries.values()) {
+				entry.cancelled = true;
+			}
+			entries.clear();
+			dueQueue.clear();
+			waitingEntries.clear();
+		}
+	}
+
+	/**
+	 * @return the names of all scheduled items
+	 */
+	public Set<String> getScheduledItemNames() {
+		synchronized (lock) {
+			return new HashSet<String>(entries.keySet());
+		}
+	}
+
+	/**
+	 * Returns the statistics about the time the polls took. A poll is counted
+	 * as overrun, if it took longer than the refresh interval of its item.
+	 *
+	 * @return the poll statistics
+	 */
+	public ExecutionStatistics getPollStatistics() {
+		return pollStatistics;
+	}
+
+	/**
+	 * Returns the statistics about the time polls have been started after they
+	 * were due. A poll is counted as overrun, if it has been late by more than
+	 * the refresh interval of its item.
+	 *
+	 * @return the lateness statistics
+	 */
+	public ExecutionStatistics getLatenessStatistics() {
+		return latenessStatistics;
+	}
+
+	private void enqueue(PollEntry entry) {
+		entry.sequence = sequence++;
+		dueQueue.add(entry);
+		dispatch();
+	}
+
+	private void cancel(PollEntry entry) {
+		entry.cancelled = true;
+		dueQueue.remove(entry);
+		LinkedList<PollEntry> waiting = waitingEntries.get(entry.host);
+		if (waiting != null) {
+			waiting.remove(entry);
+		}
+	}
+
+	/**
+	 * Passes the due entries whose host is not busy to the executor, as long as
+	 * the limit of concurrent polls allows it. If the next entry is not due yet,
+	 * a wake-up is scheduled for the time it is due. Must be called with the
+	 * lock held.
+	 */
+	private void dispatch() {
+		if (!running) {
+			return;
+		}
+		while (runningPolls < maxConcurrentPolls) {
+			PollEntry entry = dueQueue.peek();
+			if (entry == null) {
+				return;
+			}
+			long delay = entry.nextDue - clock.currentTimeMillis();
+			if (delay > 0) {
+				scheduleWakeup(entry.nextDue, delay);
+				return;
+			}
+			dueQueue.poll();
+			if (entry.host != null && busyHosts.contains(entry.host)) {
+				LinkedList<PollEntry> waiting = waitingEntries.get(entry.host);
+				if (waiting == null) {
+					waiting = new LinkedList<PollEntry>();
+					waitingEntries.put(entry.host, waiting);
+				}
+				waiting.add(entry);
+				continue;
+			}
+			if (entry.host != null) {
+				busyHosts.add(entry.host);
+			}
+			runningPolls++;
+			executor.execute(new PollTask(entry));
+		}
+	}
+
+	/**
+	 * Schedules a wake-up at the given time, unless there already is one which
+	 * is due earlier.
+	 */
+	private void scheduleWakeup(long dueTime, long delay) {
+		if (wakeup != null) {
+			if (wakeupTime <= dueTime) {
+				return;
+			}
+			wakeup.cancel(false);
+		}
+		wakeupTime = dueTime;
+		wakeup = clock.schedule(executor, new Runnable() {
+			public void run() {
+				synchronized (lock) {
+					wakeup = null;
+					dispatch();
+				}
+			}
+		}, delay);
+	}
+
+	private void pollCompleted(PollEntry entry, boolean success, long completionTime) {
+		synchronized (lock) {
+			runningPolls--;
+			if (entry.host != null) {
+				busyHosts.remove(entry.host);
+				LinkedList<PollEntry> waiting = waitingEntries.get(entry.host);
+				if (waiting != null) {
+					// the waiting entries are already due, so they are taken next
+					PollEntry nextEntry = waiting.poll();
+					if (waiting.isEmpty()) {
+						waitingEntries.remove(entry.host);
+					}
+					if (nextEntry != null) {
+						dueQueue.add(nextEntry);
+					}
+				}
+			}
+			if (!entry.cancelled) {
+				entry.failures = success ? 0 : entry.failures + 1;
+				entry.lastCompleted = completionTime;
+				entry.nextDue = completionTime + getDelay(entry);
+				enqueue(entry);
+			} else {
+				dispatch();
+			}
+		}
+	}
+
+	private static long getDelay(PollEntry entry) {
+		if (entry.failures == 0) {
+			return entry.interval;
+		}
+		long delay = entry.interval << Math.min(entry.failures, MAX_BACKOFF_EXPONENT);
+		return Math.min(delay, Math.max(entry.interval, MAX_BACKOFF));
+	}
+
+	private static boolean equals(String value1, String value2) {
+		return value1 == null ? value2 == null : value1.equals(value2);
+	}
+
+
+	/**
+	 * Returns the executor which is shared by all schedulers. It is created on
+	 * first access.
+	 *
+	 * @return the shared executor
+	 */
+	static synchronized ScheduledExecutorService getSharedExecutor() {
+		if (sharedExecutor == null) {
+			int poolSize = DEFAULT_POOL_SIZE;
+			String poolSizeString = System.getProperty(POOL_SIZE_PROPERTY);
+			if (poolSizeString != null) {
+				try {
+					poolSize = Integer.parseInt(poolSizeString.trim());
+				} catch (NumberFormatException e) {
+					logger.warn("Invalid value '{}' for system property '{}', using default pool size {}",
+							new Object[] { poolSizeString, POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE });
+				}
+			}
+			sharedExecutor = new ScheduledThreadPoolExecutor(Math.max(1, poolSize), new ThreadFactory() {
+				private final AtomicInteger threadNumber = new AtomicInteger(1);
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "openHAB item poller " + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			logger.debug("Created shared executor for item polling with {} threads", poolSize);
+		}
+		return sharedExecutor;
+	}
+
+
+	/** provides the time, so that tests can run the scheduler on a virtual time */
+	interface Clock {
+
+		/**
+		 * @return the current time in milliseconds
+		 */
+		long currentTimeMillis();
+
+		/**
+		 * Runs the given task on the given executor once the given time has elapsed.
+		 *
+		 * @param executor the executor to run the task on
+		 * @param task the task to run
+		 * @param delay the time to wait in milliseconds, always greater than zero
+		 * @return the future of the task, which can be used to cancel it
+		 */
+		ScheduledFuture<?> schedule(ScheduledExecutorService executor, Runnable task, long delay);
+	}
+
+	private static final Clock SYSTEM_CLOCK = new Clock() {
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+
+		public ScheduledFuture<?> schedule(ScheduledExecutorService executor, Runnable task, long delay) {
+			return executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+		}
+	};
+
+	/** the scheduling state of a single item */
+	private static class PollEntry {
+
+		final String itemName;
+		final String host;
+		final long interval;
+
+		long nextDue;
+		long lastCompleted = 0;
+		long sequence;
+		int failures = 0;
+		boolean cancelled = false;
+
+		PollEntry(String itemName, String host, long interval) {
+			this.itemName = itemName;
+			this.host = host;
+			this.interval = interval;
+		}
+	}
+
+	/** polls a single item and reschedules it afterwards */
+	private class PollTask implements Runnable {
+
+		private final PollEntry entry;
+
+		PollTask(PollEntry entry) {
+			this.entry = entry;
+		}
+
+		public void run() {
+			long startTime = clock.currentTimeMillis();
+			long lateness = Math.max(0, startTime - entry.nextDue);
+			boolean success = false;
+			try {
+				success = poller.poll(entry.itemName);
+			} catch (RuntimeException e) {
+				logger.error("Polling item '" + entry.itemName + "' of " + name + " failed", e);
+			} finally {
+				long completionTime = clock.currentTimeMillis();
+				long pollTime = completionTime - startTime;
+				pollStatistics.record(pollTime, pollTime > entry.interval);
+				latenessStatistics.record(lateness, lateness > entry.interval);
+				pollCompleted(entry, success, completionTime);
+			}
+		}
+	}
+
+}
@@ -19,25 +19,32 @@ import org.osgi.service.event.EventHandler;
 
 abstract public class AbstractEventSubscriber implements EventSubscriber, EventHandler {
 	
+	private static final String UPDATE_OPERATION = EventType.UPDATE.toString();
+
+	private static final String COMMAND_OPERATION = EventType.COMMAND.toString();
+	
 	/**
 	 * {@inheritDoc}
 	 */
 	public void handleEvent(Event event) {  
 		String itemName = (String) event.getProperty("item");
 		
+		// we do not split the topic here as this is done for every single event
 		String topic = event.getTopic();
-		String[] topicParts = topic.split(TOPIC_SEPERATOR);
+		int operationStart = TOPIC_PREFIX.length() + TOPIC_SEPERATOR.length();
+		int operationEnd = topic.indexOf(TOPIC_SEPERATOR, operationStart);
 		
-		if(!(topicParts.length > 2) || !topicParts[0].equals(TOPIC_PREFIX)) {
+		if(operationEnd < 0 || !topic.startsWith(TOPIC_PREFIX + TOPIC_SEPERATOR)) {
 			return; // we have received an event with an invalid topic
 		}
-		String operation = topicParts[1];
 		
-		if(operation.equals(EventType.UPDATE.toString())) {
+		int operationLength = operationEnd - operationStart;
+		
+		if(operationLength==UPDATE_OPERATION.length() && topic.startsWith(UPDATE_OPERATION, operationStart)) {
 			State newState = (State) event.getProperty("state");
 			if(newState!=null) receiveUpdate(itemName, newState);
 		}
-		if(operation.equals(EventType.COMMAND.toString())) {
+		if(operationLength==COMMAND_OPERATION.length() && topic.startsWith(COMMAND_OPERATION, operationStart)) {
 			Command command = (Command) event.getProperty("command");
 			if(command!=null) receiveCommand(itemName, command);
 		}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.events;
+
+/**
+ * An ItemEventSubscriber is an {@link EventSubscriber} which is only interested
+ * in events of a certain set of items. The event bus uses this information to 
+ * deliver events only to those subscribers which are subscribed to the item
+ * in question.
+ * 
+ * Whenever the set of subscribed items changes, the subscriber has to notify
+ * all registered {@link SubscriptionChangeListener}s, so that the event bus 
+ * can update its subscriber index.
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public interface ItemEventSubscriber extends EventSubscriber {
+
+	/**
+	 * Indicates whether this subscriber wants to receive events for the given item.
+	 * 
+	 * @param itemName the name of the item to check
+	 * @return <code>true</code> if events for <code>itemName</code> should be delivered
+	 */
+	public boolean isSubscribedTo(String itemName);
+
+	/**
+	 * Adds a listener, which gets notified whenever the set of subscribed items changes
+	 * 
+	 * @param listener the listener to add
+	 */
+	public void addSubscriptionChangeListener(SubscriptionChangeListener listener);
+
+	/**
+	 * Removes a subscription change listener again.
+	 * Does nothing, if this listener has not been added before.
+	 * 
+	 * @param listener the listener to remove
+	 */
+	public void removeSubscriptionChangeListener(SubscriptionChangeListener listener);
+
+}
@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.events;
+
+/**
+ * This is a listener interface which should be implemented where ever the 
+ * subscriptions of {@link ItemEventSubscriber}s need to be tracked.
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public interface SubscriptionChangeListener {
+
+	/**
+	 * Called whenever the set of items a subscriber is subscribed to has changed.
+	 * 
+	 * @param subscriber the subscriber whose subscriptions have changed
+	 */
+	public void subscriptionChanged(ItemEventSubscriber subscriber);
+
+}
@@ -11,34 +11,104 @@ package org.openhab.core.internal.events;
 import static org.openhab.core.events.EventConstants.TOPIC_PREFIX;
 import static org.openhab.core.events.EventConstants.TOPIC_SEPERATOR;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.openhab.core.events.EventPublisher;
+import org.openhab.core.events.EventSubscriber;
+import org.openhab.core.events.ItemEventSubscriber;
+import org.openhab.core.events.SubscriptionChangeListener;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.EventType;
 import org.openhab.core.types.State;
+import org.osgi.framework.ServiceReference;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This is the main implementation of the {@link EventPublisher} interface.
- * Through it, openHAB events can be sent to the OSGi EventAdmin service
- * in order to broadcast them.
- * 
+ *
+ * Events are delivered directly to all registered {@link EventSubscriber}s.
+ * For {@link ItemEventSubscriber}s, a per-item index of the interested
+ * subscribers is kept, so that events are only passed to subscribers which
+ * are subscribed to the item in question. Asynchronous events are delivered
+ * by a single dispatcher thread, which preserves their order.
+ *
+ * If an OSGi EventAdmin service is available, the events are additionally
+ * sent through it in order to broadcast them to all other event handlers.
+ * The topics of the registered {@link EventHandler}s are tracked, so that an
+ * OSGi event is only created if there is a handler for its topic.
+ *
+ * The direct subscribers always receive an event before it is passed to the
+ * EventAdmin. Thus the {@link org.openhab.core.internal.items.ItemUpdater} has
+ * set the new state of an item before the rule engine or any other event
+ * handler is notified of the update. Asynchronous events are passed to the
+ * EventAdmin by the dispatcher thread as well, so that they keep their order
+ * across all items.
+ *
  * @author Kai Kreuzer
  *
  */
-public class EventPublisherImpl implements EventPublisher {
+public class EventPublisherImpl implements EventPublisher, SubscriptionChangeListener {
 
-	private static final Logger logger = 
+	private static final Logger logger =
 		LoggerFactory.getLogger(EventPublisherImpl.class);
-		
-	private EventAdmin eventAdmin;
-	
-	
+
+	private static final EventSubscriber[] NO_SUBSCRIBERS = new EventSubscriber[0];
+
+	private volatile EventAdmin eventAdmin;
+
+	/** the topics of all registered event handlers, by their service reference */
+	private Map<ServiceReference<?>, String[]> eventHandlers = new ConcurrentHashMap<ServiceReference<?>, String[]>();
+
+	/** the topics of all registered event handlers */
+	private volatile String[] eventHandlerTopics = new String[0];
+
+	/** all subscribers which receive events directly from this publisher */
+	private List<EventSubscriber> subscribers = new CopyOnWriteArrayList<EventSubscriber>();
+
+	/** caches the subscribers which are interested in the events of a certain item */
+	private Map<String, EventSubscriber[]> subscriberIndex = new ConcurrentHashMap<String, EventSubscriber[]>();
+
+	/** is increased whenever the subscriber index is invalidated */
+	private final AtomicInteger subscriberIndexVersion = new AtomicInteger();
+
+	/** delivers all asynchronous events in the order they have been posted */
+	private volatile ExecutorService dispatcher;
+
+
+	public void activate() {
+		dispatcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "openHAB event dispatcher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public void deactivate() {
+		if (dispatcher != null) {
+			dispatcher.shutdown();
+			dispatcher = null;
+		}
+	}
+
 	public void setEventAdmin(EventAdmin eventAdmin) {
 		this.eventAdmin = eventAdmin;
 	}
@@ -46,13 +116,73 @@ public class EventPublisherImpl implements EventPublisher {
 	public void unsetEventAdmin(EventAdmin eventAdmin) {
 		this.eventAdmin = null;
 	}
-	
+
+	/**
+	 * Registers the topics of an event handler. Only the service reference is
+	 * bound, so that the handler itself is not activated by this publisher.
+	 */
+	public void addEventHandler(ServiceReference<EventHandler> reference) {
+		eventHandlers.put(reference, getTopics(reference.getProperty(EventConstants.EVENT_TOPIC)));
+		updateEventHandlerTopics();
+	}
+
+	public void removeEventHandler(ServiceReference<EventHandler> reference) {
+		eventHandlers.remove(reference);
+		updateEventHandlerTopics();
+	}
+
+	private static String[] getTopics(Object property) {
+		if (property instanceof String) {
+			return new String[] { (String) property };
+		} else if (property instanceof String[]) {
+			return (String[]) property;
+		} else if (property instanceof Collection) {
+			Collection<?> topics = (Collection<?>) property;
+			return topics.toArray(new String[topics.size()]);
+		}
+		return new String[0];
+	}
+
+	private synchronized void updateEventHandlerTopics() {
+		List<String> topics = new ArrayList<String>();
+		for (String[] handlerTopics : eventHandlers.values()) {
+			for (String topic : handlerTopics) {
+				topics.add(topic);
+			}
+		}
+		eventHandlerTopics = topics.toArray(new String[topics.size()]);
+	}
+
+	public void addEventSubscriber(EventSubscriber subscriber) {
+		subscribers.add(subscriber);
+		if (subscriber instanceof ItemEventSubscriber) {
+			((ItemEventSubscriber) subscriber).addSubscriptionChangeListener(this);
+		}
+		invalidateSubscriberIndex();
+	}
+
+	public void removeEventSubscriber(EventSubscriber subscriber) {
+		subscribers.remove(subscriber);
+		if (subscriber instanceof ItemEventSubscriber) {
+			((ItemEventSubscriber) subscriber).removeSubscriptionChangeListener(this);
+		}
+		invalidateSubscriberIndex();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void subscriptionChanged(ItemEventSubscriber subscriber) {
+		invalidateSubscriberIndex();
+	}
 
 	/* (non-Javadoc)
 	 * @see org.openhab.core.internal.events.EventPublisher#sendCommand(org.openhab.core.items.GenericItem, org.openhab.core.datatypes.DataType)
 	 */
 	public void sendCommand(String itemName, Command command) {
 		if (command != null) {
+			dispatchCommand(itemName, command);
+			EventAdmin eventAdmin = getEventAdmin(EventType.COMMAND, itemName);
 			if(eventAdmin!=null) eventAdmin.sendEvent(createCommandEvent(itemName, command));
 		} else {
 			logger.warn("given command is NULL, couldn't send command to '{}'", itemName);
@@ -62,9 +192,17 @@ public class EventPublisherImpl implements EventPublisher {
 	/* (non-Javadoc)
 	 * @see org.openhab.core.internal.events.EventPublisher#postCommand(org.openhab.core.items.GenericItem, org.openhab.core.datatypes.DataType)
 	 */
-	public void postCommand(String itemName, Command command) {
+	public void postCommand(final String itemName, final Command command) {
 		if (command != null) {
-			if(eventAdmin!=null) eventAdmin.postEvent(createCommandEvent(itemName, command));
+			if (hasSubscribers(itemName) || getEventAdmin(EventType.COMMAND, itemName) != null) {
+				dispatch(new Runnable() {
+					public void run() {
+						dispatchCommand(itemName, command);
+						EventAdmin eventAdmin = getEventAdmin(EventType.COMMAND, itemName);
+						if(eventAdmin!=null) eventAdmin.postEvent(createCommandEvent(itemName, command));
+					}
+				});
+			}
 		} else {
 			logger.warn("given command is NULL, couldn't post command to '{}'", itemName);
 		}
@@ -73,14 +211,154 @@ public class EventPublisherImpl implements EventPublisher {
 	/* (non-Javadoc)
 	 * @see org.openhab.core.internal.events.EventPublisher#postUpdate(org.openhab.core.items.GenericItem, org.openhab.core.datatypes.DataType)
 	 */
-	public void postUpdate(String itemName, State newState) {
+	public void postUpdate(final String itemName, final State newState) {
 		if (newState != null) {
-			if(eventAdmin!=null) eventAdmin.postEvent(createUpdateEvent(itemName, newState));
+			if (hasSubscribers(itemName) || getEventAdmin(EventType.UPDATE, itemName) != null) {
+				dispatch(new Runnable() {
+					public void run() {
+						dispatchUpdate(itemName, newState);
+						EventAdmin eventAdmin = getEventAdmin(EventType.UPDATE, itemName);
+						if(eventAdmin!=null) eventAdmin.postEvent(createUpdateEvent(itemName, newState));
+					}
+				});
+			}
 		} else {
 			logger.warn("given new state is NULL, couldn't post update for '{}'", itemName);
 		}
 	}
-	
+
+	private void dispatch(Runnable delivery) {
+		ExecutorService executor = dispatcher;
+		if (executor != null) {
+			try {
+				executor.execute(delivery);
+				return;
+			} catch (RejectedExecutionException e) {
+				// the publisher has been deactivated in the meantime
+			}
+		}
+		delivery.run();
+	}
+
+	private void dispatchCommand(String itemName, Command command) {
+		for (EventSubscriber subscriber : getSubscribers(itemName)) {
+			try {
+				subscriber.receiveCommand(itemName, command);
+			} catch (RuntimeException e) {
+				logger.error("Subscriber " + subscriber.getClass().getName() + " threw an exception while handling command '" + command + "' for item '" + itemName + "'", e);
+			}
+		}
+	}
+
+	private void dispatchUpdate(String itemName, State newState) {
+		for (EventSubscriber subscriber : getSubscribers(itemName)) {
+			try {
+				subscriber.receiveUpdate(itemName, newState);
+			} catch (RuntimeException e) {
+				logger.error("Subscriber " + subscriber.getClass().getName() + " threw an exception while handling update '" + newState + "' for item '" + itemName + "'", e);
+			}
+		}
+	}
+
+	private boolean hasSubscribers(String itemName) {
+		return getSubscribers(itemName).length > 0;
+	}
+
+	/**
+	 * Returns all subscribers which are interested in events of the given item.
+	 * The result is cached until the subscriptions change.
+	 *
+	 * @param itemName the name of the item
+	 * @return all subscribers for <code>itemName</code>
+	 */
+	private EventSubscriber[] getSubscribers(String itemName) {
+		if (itemName == null) {
+			return NO_SUBSCRIBERS;
+		}
+		EventSubscriber[] itemSubscribers = subscriberIndex.get(itemName);
+		if (itemSubscribers == null) {
+			int version = subscriberIndexVersion.get();
+			List<EventSubscriber> resolved = new ArrayList<EventSubscriber>();
+			for (EventSubscriber subscriber : subscribers) {
+				if (!(subscriber instanceof ItemEventSubscriber) ||
+						((ItemEventSubscriber) subscriber).isSubscribedTo(itemName)) {
+					resolved.add(subscriber);
+				}
+			}
+			itemSubscribers = resolved.isEmpty() ? NO_SUBSCRIBERS : resolved.toArray(new EventSubscriber[resolved.size()]);
+			subscriberIndex.put(itemName, itemSubscribers);
+			// the subscriptions might have changed while we were resolving them
+			if (version != subscriberIndexVersion.get()) {
+				subscriberIndex.remove(itemName);
+			}
+		}
+		return itemSubscribers;
+	}
+
+	private void invalidateSubscriberIndex() {
+		subscriberIndexVersion.incrementAndGet();
+		subscriberIndex.clear();
+	}
+
+	/**
+	 * @return the EventAdmin, if it is available and has a handler for events
+	 * of the given type and item, otherwise <code>null</code>
+	 */
+	private EventAdmin getEventAdmin(EventType type, String itemName) {
+		EventAdmin eventAdmin = this.eventAdmin;
+		if (eventAdmin != null && itemName != null) {
+			for (String topic : eventHandlerTopics) {
+				if (topicMatches(topic, type, itemName)) {
+					return eventAdmin;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the topic of an event handler, which may end with a
+	 * wildcard, matches the topic of an item event. The topic of the event is
+	 * not built for this.
+	 *
+	 * @param handlerTopic the topic of the event handler
+	 * @param type the type of the event
+	 * @param itemName the name of the item
+	 * @return <code>true</code> if the handler receives the event
+	 */
+	static boolean topicMatches(String handlerTopic, EventType type, String itemName) {
+		if (handlerTopic.equals("*")) {
+			return true;
+		}
+		boolean wildcard = handlerTopic.endsWith(TOPIC_SEPERATOR + "*");
+		int length = wildcard ? handlerTopic.length() - 1 : handlerTopic.length();
+		String typeName = type.toString();
+		int offset = matchSegment(handlerTopic, length, 0, TOPIC_PREFIX);
+		offset = matchSegment(handlerTopic, length, offset, TOPIC_SEPERATOR);
+		offset = matchSegment(handlerTopic, length, offset, typeName);
+		offset = matchSegment(handlerTopic, length, offset, TOPIC_SEPERATOR);
+		offset = matchSegment(handlerTopic, length, offset, itemName);
+		if (wildcard) {
+			return offset == length;
+		}
+		int topicLength = TOPIC_PREFIX.length() + typeName.length() + itemName.length() + 2 * TOPIC_SEPERATOR.length();
+		return offset == length && length == topicLength;
+	}
+
+	/**
+	 * Compares the next segment of an event topic with the topic of a handler.
+	 *
+	 * @return the offset in the handler topic behind the segment, or -1 if it
+	 * does not match
+	 */
+	private static int matchSegment(String handlerTopic, int length, int offset, String segment) {
+		if (offset < 0) {
+			return -1;
+		}
+		int count = Math.min(segment.length(), length - offset);
+		return handlerTopic.regionMatches(offset, segment, 0, count) ? offset + count : -1;
+	}
+
 	private Event createUpdateEvent(String itemName, State newState) {
 		Dictionary<String, Object> properties = new Hashtable<String, Object>();
 		properties.put("item", itemName);
@@ -98,6 +376,6 @@ public class EventPublisherImpl implements EventPublisher {
 	private String createTopic(EventType type, String itemName) {
 		return TOPIC_PREFIX + TOPIC_SEPERATOR + type + TOPIC_SEPERATOR + itemName;
 	}
-	
-	
+
+
 }
@@ -15,6 +15,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.regex.Pattern;
 
 import org.openhab.core.events.EventPublisher;
 import org.openhab.core.items.GenericItem;
@@ -44,12 +45,24 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 	
 	private static final Logger logger = LoggerFactory.getLogger(ItemRegistryImpl.class);
 
+	/** the pattern all item names have to comply with */
+	private static final Pattern VALID_ITEM_NAME_PATTERN = Pattern.compile("[a-zA-Z0-9_]*");
+	
+	/** the maximum number of compiled search patterns which are kept in the pattern cache */
+	private static final int MAX_CACHED_PATTERNS = 100;
+
 	/** if an EventPublisher service is available, we provide it to all items, so that they can communicate over the bus */
 	protected EventPublisher eventPublisher;
 	
 	/** this is our local map in which we store all our items */
 	protected Map<ItemProvider, Collection<Item>> itemMap = new ConcurrentHashMap<ItemProvider, Collection<Item>>();
 	
+	/** an index of all registered items by their name, which allows constant time lookups */
+	protected Map<String, Item> itemsByName = new ConcurrentHashMap<String, Item>();
+	
+	/** a cache for the compiled regular expressions of the search patterns passed to {@link #getItems(String)} */
+	protected Map<String, Pattern> patternCache = new ConcurrentHashMap<String, Pattern>();
+	
 	/** to keep track of all item change listeners */
 	protected Collection<ItemRegistryChangeListener> listeners = new CopyOnWriteArraySet<ItemRegistryChangeListener>();
 
@@ -63,6 +76,7 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 		}
 		// then release all items
 		itemMap.clear();
+		itemsByName.clear();
     }
 
 	/* (non-Javadoc)
@@ -70,14 +84,11 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 	 */
     @Override
 	public Item getItem(String name) throws ItemNotFoundException {
-		for(Collection<Item> items : itemMap.values()) {
-			for(Item item : items) {
-				if(item.getName().matches(name)) {
-					return item;
-				}
-			}
+		Item item = name!=null ? itemsByName.get(name) : null;
+		if(item==null) {
+			throw new ItemNotFoundException(name);
 		}
-		throw new ItemNotFoundException(name);
+		return item;
 	}
 
 	/* (non-Javadoc)
@@ -116,17 +127,37 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 	 */
     @Override
 	public Collection<Item> getItems(String pattern) {
-		String regex = pattern.replace("?", ".?").replace("*", ".*?");
+		Pattern regex = getCompiledPattern(pattern);
 		Collection<Item> matchedItems = new ArrayList<Item>();
 		for(Collection<Item> items : itemMap.values()) {
 			for(Item item : items) {
-				if(item.getName().matches(regex)) {
+				if(regex.matcher(item.getName()).matches()) {
 					matchedItems.add(item);
 				}
 			}
 		}
         return matchedItems;
 	}
+	
+	/**
+	 * Returns the compiled regular expression for the given search pattern. 
+	 * Compiled patterns are cached, so that repeated searches do not have
+	 * to compile them again.
+	 * 
+	 * @param pattern the search pattern, which may contain '?' and '*' as wildcards
+	 * @return the compiled regular expression for <code>pattern</code>
+	 */
+	private Pattern getCompiledPattern(String pattern) {
+		Pattern regex = patternCache.get(pattern);
+		if(regex==null) {
+			regex = Pattern.compile(pattern.replace("?", ".?").replace("*", ".*?"));
+			if(patternCache.size() >= MAX_CACHED_PATTERNS) {
+				patternCache.clear();
+			}
+			patternCache.put(pattern, regex);
+		}
+		return regex;
+	}
 
 	public void addItemProvider(ItemProvider itemProvider) {
 		// only add this provider if it does not already exist
@@ -141,19 +172,20 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 
     @Override
 	public boolean isValidItemName(String name) {
-		return name.matches("[a-zA-Z0-9_]*");
+		return VALID_ITEM_NAME_PATTERN.matcher(name).matches();
 	}
 
 	public void removeItemProvider(ItemProvider itemProvider) {
 		if(itemMap.containsKey(itemProvider)) {
 			allItemsChanged(itemProvider, null);
 
-			for(Item item : itemMap.get(itemProvider)) {
+			Collection<Item> items = itemMap.remove(itemProvider);
+			for(Item item : items) {
 				if(item instanceof GenericItem) {
 					((GenericItem) item).dispose();
 				}
+				unindexItem(item);
 			}
-			itemMap.remove(itemProvider);
 
 			itemProvider.removeItemChangeListener(this);
 			logger.debug("Item provider '{}' has been removed.", itemProvider.getClass().getSimpleName());
@@ -190,10 +222,16 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 		}
 
 		Collection<Item> items = new CopyOnWriteArrayList<Item>();
-    	itemMap.put(provider, items);
+		Collection<Item> oldItems = itemMap.put(provider, items);
+		if(oldItems!=null) {
+			for(Item oldItem : oldItems) {
+				unindexItem(oldItem);
+			}
+		}
 		for(Item item : provider.getItems()) {
 			if(initializeItem(item)) {
 				items.add(item);
+				itemsByName.put(item.getName(), item);
 			}
 		}
 
@@ -209,6 +247,7 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 		if(items!=null) {
 			if(initializeItem(item)) {
 				items.add(item);
+				itemsByName.put(item.getName(), item);
 			} else {
 				return;
 			}
@@ -224,6 +263,7 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
         items = itemMap.get(provider);
 		if(items!=null) {
 			items.remove(item);
+			unindexItem(item);
 		}
 		for(ItemRegistryChangeListener listener : listeners) {
 			listener.itemRemoved(item);
@@ -240,6 +280,27 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 		listeners.remove(listener);
 	}
 
+	/**
+	 * Removes the given item from the name index. If another provider still
+	 * provides an item with the same name, this one takes its place in the index.
+	 * 
+	 * @param item the item to remove from the index
+	 */
+	private void unindexItem(Item item) {
+		String name = item.getName();
+		if(itemsByName.get(name)==item) {
+			itemsByName.remove(name);
+			for(Collection<Item> items : itemMap.values()) {
+				for(Item otherItem : items) {
+					if(otherItem!=item && name.equals(otherItem.getName())) {
+						itemsByName.put(name, otherItem);
+						return;
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * an item should be initialized, which means that the event publisher is
 	 * injected and its implementation is notified that it has just been created,
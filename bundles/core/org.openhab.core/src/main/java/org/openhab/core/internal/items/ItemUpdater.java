@@ -21,7 +21,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * The ItemUpdater listens on the event bus and passes any received status update
- * to the item registry.
+ * to the item registry. As a direct subscriber of the event publisher, it
+ * receives every update before the handlers of the EventAdmin, so that the
+ * rules already see the new state of the item.
  * 
  * @author Kai Kreuzer
  * @since 0.1.0
@@ -49,25 +51,7 @@ public class ItemUpdater extends AbstractEventSubscriber {
 		if (itemRegistry != null) {
 			try {
 				GenericItem item = (GenericItem) itemRegistry.getItem(itemName);
-				boolean isAccepted = false;
-				if (item.getAcceptedDataTypes().contains(newStatus.getClass())) {
-					isAccepted = true;
-				} else {
-					// Look for class hierarchy
-					for (Class<? extends State> state : item.getAcceptedDataTypes()) {
-						try {
-							if (!state.isEnum() && state.newInstance().getClass().isAssignableFrom(newStatus.getClass())) {
-								isAccepted = true;
-								break;
-							}
-						} catch (InstantiationException e) {
-							logger.warn("InstantiationException on {}", e.getMessage()); // Should never happen
-						} catch (IllegalAccessException e) {
-							logger.warn("IllegalAccessException on {}", e.getMessage()); // Should never happen
-						}
-					}
-				}				
-				if (isAccepted) {
+				if (item.isAcceptedState(newStatus)) {
 					item.setState(newStatus);
 				} else {
 					logger.debug("Received update of a not accepted type ("	+ newStatus.getClass().getSimpleName() + ") for item " + itemName);
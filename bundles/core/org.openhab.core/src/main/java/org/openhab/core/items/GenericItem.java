@@ -9,11 +9,10 @@
 package org.openhab.core.items;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-import java.util.WeakHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.openhab.core.events.EventPublisher;
 import org.openhab.core.types.Command;
@@ -31,9 +30,22 @@ import org.openhab.core.types.UnDefType;
  */
 abstract public class GenericItem implements Item {
 	
+	private static final StateChangeListener[] NO_LISTENERS = new StateChangeListener[0];
+	
+	/** caches for each item class, whether a certain state class is accepted by it */
+	private static final ConcurrentMap<Class<?>, Map<Class<? extends State>, Boolean>> acceptedStateCache =
+		new ConcurrentHashMap<Class<?>, Map<Class<? extends State>, Boolean>>();
+	
 	protected EventPublisher eventPublisher;
 
-	protected Set<StateChangeListener> listeners = new CopyOnWriteArraySet<StateChangeListener>(Collections.newSetFromMap(new WeakHashMap<StateChangeListener, Boolean>()));
+	/** 
+	 * an immutable snapshot of all registered listeners; it is replaced as a whole
+	 * whenever a listener is added or removed, so that notifications can iterate it
+	 * without copying or locking
+	 */
+	private volatile StateChangeListener[] listeners = NO_LISTENERS;
+	
+	private final Object listenerLock = new Object();
 	
 	protected List<String> groupNames = new ArrayList<String>();
 	
@@ -101,14 +113,15 @@ abstract public class GenericItem implements Item {
 	}
 
 	private void notifyListeners(State oldState, State newState) {
+		// listeners which are added or removed during the notification
+		// do not affect the snapshot we are iterating
+		StateChangeListener[] currentListeners = listeners;
 		// if nothing has changed, we send update notifications
-		Set<StateChangeListener> clonedListeners = null;
-		clonedListeners = new CopyOnWriteArraySet<StateChangeListener>(listeners);
-		for(StateChangeListener listener : clonedListeners) {
+		for(StateChangeListener listener : currentListeners) {
 			listener.stateUpdated(this, newState);
 		}
 		if(!oldState.equals(newState)) {
-			for(StateChangeListener listener : clonedListeners) {
+			for(StateChangeListener listener : currentListeners) {
 				listener.stateChanged(this, oldState, newState);
 			}
 		}
@@ -124,16 +137,101 @@ abstract public class GenericItem implements Item {
 			"State=" + getState() + ")";
 	}
 
+	/**
+	 * Checks whether the given state is accepted by this item, i.e. whether its
+	 * class or one of its super classes is contained in the accepted data types.
+	 * The result is cached per state class, so that the accepted data types do
+	 * not need to be searched for every state update.
+	 * 
+	 * @param state the state to check
+	 * @return true, if the state can be set on this item
+	 */
+	public boolean isAcceptedState(State state) {
+		if(state==null) {
+			return false;
+		}
+		Class<? extends State> stateClass = state.getClass();
+		Map<Class<? extends State>, Boolean> acceptedStates = getAcceptedStateCache();
+		Boolean accepted = acceptedStates.get(stateClass);
+		if(accepted==null) {
+			accepted = isAcceptedDataType(getAcceptedDataTypes(), stateClass);
+			acceptedStates.put(stateClass, accepted);
+		}
+		return accepted;
+	}
+	
+	/**
+	 * Returns the cache used by {@link #isAcceptedState(State)}. By default, the
+	 * cache is shared by all items of the same class, as their accepted data
+	 * types are expected to be the same. Subclasses whose accepted data types
+	 * differ from instance to instance must override this method.
+	 * 
+	 * @return a map from state classes to whether they are accepted by this item
+	 */
+	protected Map<Class<? extends State>, Boolean> getAcceptedStateCache() {
+		Map<Class<? extends State>, Boolean> acceptedStates = acceptedStateCache.get(getClass());
+		if(acceptedStates==null) {
+			acceptedStates = new ConcurrentHashMap<Class<? extends State>, Boolean>();
+			Map<Class<? extends State>, Boolean> existingStates = acceptedStateCache.putIfAbsent(getClass(), acceptedStates);
+			if(existingStates!=null) {
+				acceptedStates = existingStates;
+			}
+		}
+		return acceptedStates;
+	}
+	
+	private static boolean isAcceptedDataType(List<Class<? extends State>> acceptedDataTypes, Class<? extends State> stateClass) {
+		if(acceptedDataTypes==null) {
+			return false;
+		}
+		if(acceptedDataTypes.contains(stateClass)) {
+			return true;
+		}
+		// look for class hierarchy
+		for(Class<? extends State> acceptedDataType : acceptedDataTypes) {
+			if(!acceptedDataType.isEnum() && acceptedDataType.isAssignableFrom(stateClass)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public void addStateChangeListener(StateChangeListener listener) {
-		synchronized(listeners) {
-			listeners.add(listener);
+		synchronized(listenerLock) {
+			if(listener==null || indexOf(listeners, listener) >= 0) {
+				return;
+			}
+			StateChangeListener[] newListeners = new StateChangeListener[listeners.length + 1];
+			System.arraycopy(listeners, 0, newListeners, 0, listeners.length);
+			newListeners[listeners.length] = listener;
+			listeners = newListeners;
 		}
 	}
 	
 	public void removeStateChangeListener(StateChangeListener listener) {
-		synchronized(listeners) {
-			listeners.remove(listener);
+		synchronized(listenerLock) {
+			int index = indexOf(listeners, listener);
+			if(index < 0) {
+				return;
+			}
+			if(listeners.length == 1) {
+				listeners = NO_LISTENERS;
+			} else {
+				StateChangeListener[] newListeners = new StateChangeListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, newListeners, 0, index);
+				System.arraycopy(listeners, index + 1, newListeners, index, listeners.length - index - 1);
+				listeners = newListeners;
+			}
+		}
+	}
+	
+	private static int indexOf(StateChangeListener[] listeners, StateChangeListener listener) {
+		for(int i = 0; i < listeners.length; i++) {
+			if(listeners[i].equals(listener)) {
+				return i;
+			}
 		}
+		return -1;
 	}
 	
 
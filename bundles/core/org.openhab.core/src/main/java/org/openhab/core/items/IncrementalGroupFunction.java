@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.items;
+
+import java.util.List;
+
+import org.openhab.core.types.State;
+
+/**
+ * Group functions implementing this interface are able to update the group state
+ * from the change of a single member instead of recalculating it from all members.
+ * To do so, they keep an aggregate of the member states which belongs to exactly
+ * one {@link GroupItem}, i.e. an instance must not be shared between groups.
+ *
+ * @author agent
+ * @since 1.4.0
+ *
+ */
+public interface IncrementalGroupFunction extends GroupFunction {
+
+	/**
+	 * Determines the current state of a group after the state of a single member
+	 * has been changed. If no aggregate is available yet, it is built from all
+	 * <code>items</code>.
+	 *
+	 * @param items all items to calculate a group state for
+	 * @param changedItem the item whose state has been changed
+	 * @return the calculated group state
+	 */
+	public State calculate(List<Item> items, Item changedItem);
+
+	/**
+	 * Discards the current aggregate, so that it is rebuilt on the next calculation.
+	 * This must be called whenever the members of the group have been changed.
+	 */
+	public void invalidate();
+
+}
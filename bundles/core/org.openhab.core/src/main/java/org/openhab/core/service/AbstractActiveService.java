@@ -8,6 +8,10 @@
  */
 package org.openhab.core.service;
 
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,6 +20,11 @@ import org.slf4j.LoggerFactory;
  * Base class for services that frequently run some action in a separate thread in the 
  * background.
  * 
+ * Depending on the scheduler backend (see {@link ActiveServiceScheduler}), the action 
+ * is either run by a dedicated refresh thread or by a thread pool which is shared by
+ * all active services. The action is either run with a fixed delay between the end of
+ * an execution and the start of the next one or at a fixed rate (see {@link #isFixedRate()}).
+ * 
  * @author Kai Kreuzer
  * @since 0.7.0
  */
@@ -38,6 +47,21 @@ public abstract class AbstractActiveService {
 	 */
 	private Thread refreshThread;
 	
+	/**
+	 * holds the scheduled refresh task if the shared scheduler is used or is
+	 * <code>null</code> if there is no task scheduled at the moment
+	 */
+	private ScheduledFuture<?> refreshTask;
+	
+	/** guards against overlapping executions, e.g. after a quick restart of the service */
+	private final AtomicBoolean executing = new AtomicBoolean(false);
+	
+	/** keeps track of the execution times of this service */
+	private final ExecutionStatistics statistics = new ExecutionStatistics();
+	
+	/** the time in milliseconds at which the execution statistics have been logged the last time */
+	private volatile long lastStatisticsLog = System.currentTimeMillis();
+	
 	
 	public AbstractActiveService() {
 		super();
@@ -64,8 +88,12 @@ public abstract class AbstractActiveService {
 				
 		shutdown = false;
 		if (!isRunning()) {
-			this.refreshThread = new RefreshThread(getName(), getRefreshInterval());
-			this.refreshThread.start();
+			if (ActiveServiceScheduler.isSharedSchedulerEnabled()) {
+				scheduleRefreshTask();
+			} else {
+				this.refreshThread = new RefreshThread(getName(), getRefreshInterval());
+				this.refreshThread.start();
+			}
 		} else {
 			logger.trace("{} is already started > calling start() changed nothing.", getName());
 		}
@@ -77,6 +105,12 @@ public abstract class AbstractActiveService {
 	 */
 	public void shutdown() {
 		this.shutdown = true;
+		ScheduledFuture<?> task = this.refreshTask;
+		if (task != null) {
+			task.cancel(false);
+			this.refreshTask = null;
+			logger.info(getName() + " has been shut down");
+		}
 	}
 	
 	/**
@@ -84,7 +118,15 @@ public abstract class AbstractActiveService {
 	 */
 	public void interrupt() {
 		if (isRunning()) {
-			this.refreshThread.interrupt();
+			Thread thread = this.refreshThread;
+			if (thread != null) {
+				thread.interrupt();
+			}
+			ScheduledFuture<?> task = this.refreshTask;
+			if (task != null) {
+				task.cancel(true);
+				this.refreshTask = null;
+			}
 			logger.trace("{} has been interrupted.", getName());
 		}
 	}
@@ -93,12 +135,24 @@ public abstract class AbstractActiveService {
 	 * {@inheritDoc}
 	 */
 	public boolean isRunning() {
-		if (this.refreshThread != null) {
-			return this.refreshThread.isAlive();
+		Thread thread = this.refreshThread;
+		if (thread != null) {
+			return thread.isAlive();
+		}
+		ScheduledFuture<?> task = this.refreshTask;
+		if (task != null) {
+			return !task.isDone();
 		}
 		return false;
 	}
 	
+	/**
+	 * @return the statistics about the execution times of this service
+	 */
+	public ExecutionStatistics getExecutionStatistics() {
+		return statistics;
+	}
+	
 	/**
 	 * @return <code>true</code> if this binding is configured properly which means
 	 * that all necessary data is available
@@ -138,6 +192,17 @@ public abstract class AbstractActiveService {
 	 * @return the refresh interval
 	 */
 	protected abstract long getRefreshInterval();
+	
+	/**
+	 * Defines whether the execute method is called at a fixed rate, i.e. every
+	 * refresh interval regardless of how long an execution takes, or with a
+	 * fixed delay of one refresh interval between two executions (default).
+	 * 
+	 * @return <code>true</code> if the execute method should be called at a fixed rate
+	 */
+	protected boolean isFixedRate() {
+		return false;
+	}
 
 	/**
 	 * Returns the name of the Refresh thread.
@@ -146,6 +211,83 @@ public abstract class AbstractActiveService {
 	 */
 	protected abstract String getName();
 	
+	/**
+	 * Schedules the periodic execution on the executor which is shared by all
+	 * active services.
+	 */
+	private void scheduleRefreshTask() {
+		// the executor does not accept intervals of zero
+		final long refreshInterval = Math.max(1, getRefreshInterval());
+		Runnable task = new Runnable() {
+			public void run() {
+				if (!shutdown) {
+					timedExecute(refreshInterval);
+				}
+			}
+		};
+		if (isFixedRate()) {
+			this.refreshTask = ActiveServiceScheduler.getExecutor().scheduleAtFixedRate(task, 0, refreshInterval, TimeUnit.MILLISECONDS);
+		} else {
+			this.refreshTask = ActiveServiceScheduler.getExecutor().scheduleWithFixedDelay(task, 0, refreshInterval, TimeUnit.MILLISECONDS);
+		}
+		logger.info(getName() + " has been started");
+	}
+	
+	/**
+	 * Calls the execute method, measures its execution time and detects overruns,
+	 * i.e. executions which take longer than the refresh interval.
+	 * 
+	 * @param refreshInterval the refresh interval to check the execution time against
+	 * @return the time in milliseconds the execution took
+	 */
+	private long timedExecute(long refreshInterval) {
+		if (!executing.compareAndSet(false, true)) {
+			logger.debug("{} is still executing, skipping this execution cycle", getName());
+			return 0;
+		}
+		long start = System.currentTimeMillis();
+		try {
+			execute();
+		} catch(RuntimeException e) {
+			logger.error("Error while executing background thread " + getName(), e);
+		} finally {
+			executing.set(false);
+		}
+		long executionTime = System.currentTimeMillis() - start;
+		boolean overrun = refreshInterval > 0 && executionTime > refreshInterval;
+		statistics.record(executionTime, overrun);
+		if (overrun && statistics.getOverrunCount() == 1) {
+			logger.warn("Execution of {} took {}ms, which is longer than its refresh interval of {}ms", 
+					new Object[] { getName(), executionTime, refreshInterval });
+		} else if (overrun) {
+			logger.debug("Execution of {} took {}ms, which is longer than its refresh interval of {}ms", 
+					new Object[] { getName(), executionTime, refreshInterval });
+		}
+		logger.trace("Execution of {} took {}ms ({})", new Object[] { getName(), executionTime, statistics });
+		logStatistics();
+		return executionTime;
+	}
+	
+	/**
+	 * Publishes the execution statistics to the log once per 
+	 * {@link ActiveServiceScheduler#getStatisticsLogInterval()}. Services which
+	 * overran their refresh interval are logged on level info, all others on
+	 * level debug.
+	 */
+	private void logStatistics() {
+		long interval = ActiveServiceScheduler.getStatisticsLogInterval();
+		long now = System.currentTimeMillis();
+		if (interval <= 0 || now - lastStatisticsLog < interval) {
+			return;
+		}
+		lastStatisticsLog = now;
+		if (statistics.getOverrunCount() > 0) {
+			logger.info("Execution statistics of {}: {}", getName(), statistics);
+		} else {
+			logger.debug("Execution statistics of {}: {}", getName(), statistics);
+		}
+	}
+	
 	/**
 	 * Worker thread which calls the execute method frequently.
 	 *  
@@ -169,12 +311,12 @@ public abstract class AbstractActiveService {
 			logger.info(getName() + " has been started");
 			
 			while (!shutdown) {
-				try {
-					execute();
-				} catch(RuntimeException e) {
-					logger.error("Error while executing background thread " + getName(), e);
+				long executionTime = timedExecute(refreshInterval);
+				if (isFixedRate()) {
+					pause(Math.max(0, refreshInterval - executionTime));
+				} else {
+					pause(refreshInterval);
 				}
-				pause(refreshInterval);
 			}
 			
 			refreshThread = null;
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Holds the scheduler backend configuration of all {@link AbstractActiveService}s 
+ * and the executor which is shared between them if the "shared" backend is used.
+ * 
+ * The backend is chosen by the system property <code>openhab.activeservice.scheduler</code>:
+ * <ul>
+ * <li><code>thread</code> (default): every service gets its own refresh thread</li>
+ * <li><code>shared</code>: all services are scheduled on a common thread pool, whose size
+ * can be set by the system property <code>openhab.activeservice.poolsize</code></li>
+ * </ul>
+ * 
+ * The execution statistics of all services are logged periodically. The interval 
+ * in minutes can be set by the system property <code>openhab.activeservice.statsinterval</code>
+ * (default 60, 0 disables the logging).
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+final class ActiveServiceScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(ActiveServiceScheduler.class);
+	
+	static final String SCHEDULER_PROPERTY = "openhab.activeservice.scheduler";
+
+	static final String POOL_SIZE_PROPERTY = "openhab.activeservice.poolsize";
+	
+	static final String STATISTICS_INTERVAL_PROPERTY = "openhab.activeservice.statsinterval";
+	
+	static final String SHARED_SCHEDULER = "shared";
+	
+	private static final long DEFAULT_STATISTICS_INTERVAL = 60;
+
+	private static final int DEFAULT_POOL_SIZE = 5;
+	
+	private static ScheduledExecutorService executor;
+	
+	private ActiveServiceScheduler() {
+		// only static access
+	}
+	
+	/**
+	 * @return <code>true</code>, if the services should be run on the shared executor
+	 */
+	static boolean isSharedSchedulerEnabled() {
+		return SHARED_SCHEDULER.equalsIgnoreCase(System.getProperty(SCHEDULER_PROPERTY));
+	}
+	
+	/**
+	 * @return the interval in milliseconds in which the execution statistics of
+	 * the services are logged or 0 if they should not be logged at all
+	 */
+	static long getStatisticsLogInterval() {
+		long interval = DEFAULT_STATISTICS_INTERVAL;
+		String intervalString = System.getProperty(STATISTICS_INTERVAL_PROPERTY);
+		if (intervalString != null) {
+			try {
+				interval = Long.parseLong(intervalString.trim());
+			} catch (NumberFormatException e) {
+				logger.debug("Invalid value '{}' for system property '{}', using default interval", 
+						intervalString, STATISTICS_INTERVAL_PROPERTY);
+			}
+		}
+		return TimeUnit.MINUTES.toMillis(Math.max(0, interval));
+	}
+	
+	/**
+	 * Returns the executor which is shared by all active services. It is
+	 * created on first access.
+	 * 
+	 * @return the shared executor
+	 */
+	static synchronized ScheduledExecutorService getExecutor() {
+		if (executor == null) {
+			int poolSize = DEFAULT_POOL_SIZE;
+			String poolSizeString = System.getProperty(POOL_SIZE_PROPERTY);
+			if (poolSizeString != null) {
+				try {
+					poolSize = Integer.parseInt(poolSizeString.trim());
+				} catch (NumberFormatException e) {
+					logger.warn("Invalid value '{}' for system property '{}', using default pool size {}", 
+							new Object[] { poolSizeString, POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE });
+				}
+			}
+			executor = new ScheduledThreadPoolExecutor(poolSize, new ThreadFactory() {
+				private final AtomicInteger threadNumber = new AtomicInteger(1);
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "openHAB active service " + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			logger.debug("Created shared scheduler for active services with {} threads", poolSize);
+		}
+		return executor;
+	}
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.service;
+
+
+/**
+ * Keeps track of the execution times of an {@link AbstractActiveService}, so
+ * that slow services can be identified.
+ * 
+ * @author agent
+ * @since 1.4.0
+ */
+public class ExecutionStatistics {
+	
+	private long executionCount = 0;
+	
+	private long overrunCount = 0;
+
+	private long totalExecutionTime = 0;
+	
+	private long lastExecutionTime = 0;
+	
+	private long maxExecutionTime = 0;
+	
+	/**
+	 * Records a single execution.
+	 * 
+	 * @param executionTime the time in milliseconds the execution took
+	 * @param overrun <code>true</code>, if the execution took longer than the refresh interval
+	 */
+	public synchronized void record(long executionTime, boolean overrun) {
+		executionCount++;
+		totalExecutionTime += executionTime;
+		lastExecutionTime = executionTime;
+		if (executionTime > maxExecutionTime) {
+			maxExecutionTime = executionTime;
+		}
+		if (overrun) {
+			overrunCount++;
+		}
+	}
+	
+	/**
+	 * @return the number of executions so far
+	 */
+	public synchronized long getExecutionCount() {
+		return executionCount;
+	}
+
+	/**
+	 * @return the number of executions which took longer than the refresh interval
+	 */
+	public synchronized long getOverrunCount() {
+		return overrunCount;
+	}
+
+	/**
+	 * @return the time in milliseconds the last execution took
+	 */
+	public synchronized long getLastExecutionTime() {
+		return lastExecutionTime;
+	}
+
+	/**
+	 * @return the maximum time in milliseconds an execution took
+	 */
+	public synchronized long getMaxExecutionTime() {
+		return maxExecutionTime;
+	}
+
+	/**
+	 * @return the average time in milliseconds an execution took or 0 if there was no execution yet
+	 */
+	public synchronized long getAverageExecutionTime() {
+		return executionCount > 0 ? totalExecutionTime / executionCount : 0;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized String toString() {
+		return "executions=" + executionCount + ", overruns=" + overrunCount + 
+				", last=" + lastExecutionTime + "ms, avg=" + getAverageExecutionTime() +
+				"ms, max=" + maxExecutionTime + "ms";
+	}
+
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.net.http;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.SimpleHttpConnectionManager;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Compares the request rate against a local HTTP server for the former
+ * execution of every request with a new {@link HttpClient} and thus a new
+ * connection, the pooled keep-alive connections of {@link HttpUtil} and
+ * conditional requests which are answered with <code>304 Not Modified</code>.
+ * The server answers with a body of 16 KB. This is no unit test, it is run
+ * manually by its main method.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class HttpUtilBenchmark {
+
+	private static final long DURATION = 3000;
+
+	private static final int TIMEOUT = 5000;
+
+	private static final int BODY_LENGTH = 16 * 1024;
+
+	public static void main(String[] args) throws Exception {
+		KeepAliveServer server = new KeepAliveServer();
+		server.start();
+		try {
+			String url = "http://127.0.0.1:" + server.getPort() + "/resource";
+			// warm up the JIT and the connection pool
+			measureNewClient(url, 500);
+			measurePooled(url, 500);
+			measureConditional(url, 500);
+
+			System.out.println("new client per request:  " + measureNewClient(url, DURATION) + " req/s");
+			System.out.println("pooled keep-alive:       " + measurePooled(url, DURATION) + " req/s");
+			System.out.println("conditional (304):       " + measureConditional(url, DURATION) + " req/s");
+			System.out.println("connections opened:      " + server.getConnectionCount());
+		} finally {
+			server.close();
+		}
+	}
+
+	/**
+	 * Executes the requests the way <code>HttpUtil</code> did before the connections were
+	 * pooled. The connection manager is shut down after each request, which closes the
+	 * connection that was left to the garbage collector before.
+	 */
+	private static long measureNewClient(String url, long duration) throws IOException {
+		long requests = 0;
+		long end = System.currentTimeMillis() + duration;
+		while (System.currentTimeMillis() < end) {
+			HttpClient client = new HttpClient();
+			GetMethod method = new GetMethod(url);
+			method.getParams().setSoTimeout(TIMEOUT);
+			try {
+				client.executeMethod(method);
+				check(IOUtils.toString(method.getResponseBodyAsStream()));
+			} finally {
+				method.releaseConnection();
+				((SimpleHttpConnectionManager) client.getHttpConnectionManager()).shutdown();
+			}
+			requests++;
+		}
+		return requests * 1000 / duration;
+	}
+
+	private static long measurePooled(String url, long duration) {
+		long requests = 0;
+		long end = System.currentTimeMillis() + duration;
+		while (System.currentTimeMillis() < end) {
+			check(HttpUtil.executeUrl("GET", url, TIMEOUT));
+			requests++;
+		}
+		return requests * 1000 / duration;
+	}
+
+	private static long measureConditional(String url, long duration) {
+		long requests = 0;
+		long end = System.currentTimeMillis() + duration;
+		while (System.currentTimeMillis() < end) {
+			check(HttpUtil.executeConditionalGet(url, null, TIMEOUT));
+			requests++;
+		}
+		return requests * 1000 / duration;
+	}
+
+	private static void check(String body) {
+		if (body == null || body.length() != BODY_LENGTH) {
+			throw new IllegalStateException("unexpected response body");
+		}
+	}
+
+	/**
+	 * A minimal HTTP/1.1 server which keeps the connections open and serves every
+	 * connection on its own thread. It answers every request with the same body and
+	 * <code>ETag</code>, or with <code>304 Not Modified</code> if the request carries
+	 * this tag in <code>If-None-Match</code>.
+	 */
+	private static class KeepAliveServer extends Thread {
+
+		private static final String ETAG = "\"benchmark\"";
+
+		private final ServerSocket serverSocket;
+
+		private final byte[] response;
+
+		private final byte[] notModified;
+
+		private volatile int connectionCount = 0;
+
+		KeepAliveServer() throws IOException {
+			super("HttpUtilBenchmark server");
+			setDaemon(true);
+			serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+			StringBuilder body = new StringBuilder(BODY_LENGTH);
+			for (int i = 0; i < BODY_LENGTH; i++) {
+				body.append((char) ('a' + i % 26));
+			}
+			response = ("HTTP/1.1 200 OK\r\nETag: " + ETAG + "\r\nContent-Type: text/plain\r\n" +
+					"Content-Length: " + BODY_LENGTH + "\r\n\r\n" + body).getBytes("ISO-8859-1");
+			notModified = ("HTTP/1.1 304 Not Modified\r\nETag: " + ETAG + "\r\n\r\n").getBytes("ISO-8859-1");
+		}
+
+		int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		int getConnectionCount() {
+			return connectionCount;
+		}
+
+		void close() throws IOException {
+			serverSocket.close();
+		}
+
+		@Override
+		public void run() {
+			while (!serverSocket.isClosed()) {
+				try {
+					final Socket socket = serverSocket.accept();
+					connectionCount++;
+					Thread connection = new Thread("HttpUtilBenchmark connection") {
+						@Override
+						public void run() {
+							try {
+								serve(socket);
+							} catch (IOException e) {
+								// the client has closed the connection
+							} finally {
+								IOUtils.closeQuietly(socket);
+							}
+						}
+					};
+					connection.setDaemon(true);
+					connection.start();
+				} catch (IOException e) {
+					// the server socket has been closed
+				}
+			}
+		}
+
+		private void serve(Socket socket) throws IOException {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+			OutputStream out = socket.getOutputStream();
+			while (reader.readLine() != null) {
+				boolean conditional = false;
+				String line;
+				while ((line = reader.readLine()) != null && line.length() > 0) {
+					if (line.toLowerCase().startsWith("if-none-match:")) {
+						conditional = ETAG.equals(line.substring("if-none-match:".length()).trim());
+					}
+				}
+				out.write(conditional ? notModified : response);
+				out.flush();
+			}
+		}
+	}
+
+}
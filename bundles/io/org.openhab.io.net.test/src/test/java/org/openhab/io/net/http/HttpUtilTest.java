@@ -8,6 +8,16 @@
  */
 package org.openhab.io.net.http;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
 import junit.framework.Assert;
 
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
@@ -15,6 +25,7 @@ import org.apache.commons.httpclient.methods.DeleteMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.PutMethod;
+import org.junit.After;
 import org.junit.Test;
 import org.openhab.io.net.http.HttpUtil;
 
@@ -24,6 +35,25 @@ import org.openhab.io.net.http.HttpUtil;
  */
 public class HttpUtilTest {
 
+	private static final int TIMEOUT = 5000;
+
+	private ConditionalServer server;
+
+	/**
+	 * Starts the local server for the tests which execute requests
+	 */
+	private void startServer() throws IOException {
+		server = new ConditionalServer();
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (server != null) {
+			server.close();
+		}
+	}
+
 	@Test
 	public void testExtractCredentials() {
 		
@@ -48,4 +78,165 @@ public class HttpUtilTest {
 		Assert.assertEquals(DeleteMethod.class, HttpUtil.createHttpMethod("DELETE", "").getClass());
 	}
 
+	@Test
+	public void testCacheKey() {
+		Properties headers = new Properties();
+		headers.setProperty("Accept", "text/xml");
+		headers.setProperty("Accept-Language", "de");
+		Properties sameHeaders = new Properties();
+		sameHeaders.setProperty("Accept-Language", "de");
+		sameHeaders.setProperty("Accept", "text/xml");
+		Properties otherHeaders = new Properties();
+		otherHeaders.setProperty("Accept", "application/json");
+
+		String url = "http://www.domain.org/feed";
+		Assert.assertEquals(url, HttpUtil.getCacheKey(url, null));
+		Assert.assertEquals(url, HttpUtil.getCacheKey(url, new Properties()));
+		Assert.assertEquals(HttpUtil.getCacheKey(url, headers), HttpUtil.getCacheKey(url, sameHeaders));
+		Assert.assertFalse(HttpUtil.getCacheKey(url, headers).equals(HttpUtil.getCacheKey(url, otherHeaders)));
+		Assert.assertFalse(HttpUtil.getCacheKey(url, headers).equals(HttpUtil.getCacheKey(url + "2", headers)));
+	}
+
+	@Test
+	public void testNotModifiedReusesCachedBody() throws IOException {
+		startServer();
+		String url = server.getUrl("/notmodified");
+
+		String body = HttpUtil.executeConditionalGet(url, null, TIMEOUT);
+		String cachedBody = HttpUtil.executeConditionalGet(url, null, TIMEOUT);
+
+		Assert.assertEquals("body of /notmodified #1", body);
+		// the server answered with 304, so the body of the first response is returned
+		Assert.assertEquals(body, cachedBody);
+		Assert.assertEquals(2, server.getRequestCount());
+		Assert.assertNull(server.getIfNoneMatch(0));
+		Assert.assertEquals("\"/notmodified\"", server.getIfNoneMatch(1));
+	}
+
+	@Test
+	public void testUnconditionalRequestsAreNotCached() throws IOException {
+		startServer();
+		String url = server.getUrl("/unconditional");
+
+		HttpUtil.executeUrl("GET", url, TIMEOUT);
+		String body = HttpUtil.executeUrl("GET", url, TIMEOUT);
+
+		Assert.assertEquals("body of /unconditional #2", body);
+		Assert.assertNull(server.getIfNoneMatch(1));
+	}
+
+	@Test
+	public void testRequestsWithOtherHeadersAreCachedSeparately() throws IOException {
+		startServer();
+		String url = server.getUrl("/headers");
+		Properties headers = new Properties();
+		headers.setProperty("Accept", "text/xml");
+
+		HttpUtil.executeConditionalGet(url, null, TIMEOUT);
+		String body = HttpUtil.executeConditionalGet(url, headers, TIMEOUT);
+
+		Assert.assertEquals("body of /headers #2", body);
+		Assert.assertNull(server.getIfNoneMatch(1));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedResponseIsEvicted() throws IOException {
+		startServer();
+		for (int i = 0; i < HttpUtil.MAX_CACHED_RESPONSES; i++) {
+			HttpUtil.executeConditionalGet(server.getUrl("/lru/" + i), null, TIMEOUT);
+		}
+		// use the eldest response again, so that the second one becomes the least recently used
+		HttpUtil.executeConditionalGet(server.getUrl("/lru/0"), null, TIMEOUT);
+		HttpUtil.executeConditionalGet(server.getUrl("/lru/" + HttpUtil.MAX_CACHED_RESPONSES), null, TIMEOUT);
+		int requestCount = server.getRequestCount();
+
+		HttpUtil.executeConditionalGet(server.getUrl("/lru/0"), null, TIMEOUT);
+		HttpUtil.executeConditionalGet(server.getUrl("/lru/1"), null, TIMEOUT);
+
+		Assert.assertEquals("\"/lru/0\"", server.getIfNoneMatch(requestCount));
+		Assert.assertNull(server.getIfNoneMatch(requestCount + 1));
+	}
+
+
+	/**
+	 * A minimal HTTP server which answers every request with an <code>ETag</code>
+	 * derived from the requested path and with <code>304 Not Modified</code> if
+	 * the request carries this tag in <code>If-None-Match</code>. The bodies are
+	 * numbered by the requests the server has received so far.
+	 */
+	private static class ConditionalServer extends Thread {
+
+		private final ServerSocket serverSocket;
+
+		private final List<String> ifNoneMatches = new ArrayList<String>();
+
+		ConditionalServer() throws IOException {
+			super("HttpUtilTest server");
+			setDaemon(true);
+			serverSocket = new ServerSocket(0);
+		}
+
+		String getUrl(String path) {
+			return "http://localhost:" + serverSocket.getLocalPort() + path;
+		}
+
+		synchronized int getRequestCount() {
+			return ifNoneMatches.size();
+		}
+
+		synchronized String getIfNoneMatch(int request) {
+			return ifNoneMatches.get(request);
+		}
+
+		void close() throws IOException {
+			serverSocket.close();
+		}
+
+		@Override
+		public void run() {
+			while (!serverSocket.isClosed()) {
+				try {
+					Socket socket = serverSocket.accept();
+					try {
+						handle(socket);
+					} finally {
+						socket.close();
+					}
+				} catch (IOException e) {
+					// the server socket has been closed
+				}
+			}
+		}
+
+		private void handle(Socket socket) throws IOException {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+			String path = reader.readLine().split(" ")[1];
+			String ifNoneMatch = null;
+			String line;
+			while ((line = reader.readLine()) != null && line.length() > 0) {
+				if (line.toLowerCase().startsWith("if-none-match:")) {
+					ifNoneMatch = line.substring("if-none-match:".length()).trim();
+				}
+			}
+			String etag = "\"" + path + "\"";
+			int requests;
+			synchronized (this) {
+				ifNoneMatches.add(ifNoneMatch);
+				requests = ifNoneMatches.size();
+			}
+
+			String response;
+			if (etag.equals(ifNoneMatch)) {
+				response = "HTTP/1.1 304 Not Modified\r\nETag: " + etag + "\r\nConnection: close\r\n\r\n";
+			} else {
+				String body = "body of " + path + " #" + requests;
+				response = "HTTP/1.1 200 OK\r\nETag: " + etag + "\r\nContent-Type: text/plain\r\n" +
+						"Content-Length: " + body.length() + "\r\nConnection: close\r\n\r\n" + body;
+			}
+			OutputStream out = socket.getOutputStream();
+			out.write(response.getBytes("ISO-8859-1"));
+			out.flush();
+		}
+	}
+
 }
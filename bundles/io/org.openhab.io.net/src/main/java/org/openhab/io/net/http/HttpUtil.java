@@ -12,7 +12,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -23,6 +33,7 @@ import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.URIException;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
@@ -32,6 +43,7 @@ import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.InputStreamRequestEntity;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -41,6 +53,12 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Some common methods to be used in both HTTP-In-Binding and HTTP-Out-Binding
+ * <p>
+ * All requests share one pool of keep-alive connections. Its size can be set
+ * by the system properties <code>openhab.http.maxconnections</code> (defaults
+ * to 20) and <code>openhab.http.maxconnectionsperhost</code> (defaults to 4).
+ * Asynchronous requests are executed on a thread pool whose size can be set by
+ * <code>openhab.http.asyncpoolsize</code> (defaults to 5).
  * 
  * @author Thomas.Eichstaedt-Engelen
  * @author Kai Kreuzer
@@ -53,6 +71,42 @@ public class HttpUtil {
 	/** {@link Pattern} which matches the credentials out of an URL */ 
 	private static final Pattern URL_CREDENTIALS_PATTERN = Pattern.compile("http://(.*?):(.*?)@.*");
 	
+	static final String MAX_CONNECTIONS_PROPERTY = "openhab.http.maxconnections";
+
+	static final String MAX_CONNECTIONS_PER_HOST_PROPERTY = "openhab.http.maxconnectionsperhost";
+
+	static final String ASYNC_POOL_SIZE_PROPERTY = "openhab.http.asyncpoolsize";
+
+	private static final int DEFAULT_MAX_CONNECTIONS = 20;
+
+	private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+
+	private static final int DEFAULT_ASYNC_POOL_SIZE = 5;
+
+	/** 
+	 * the time in milliseconds after which an idle pooled connection is closed, before
+	 * the server (typically after 5 seconds) might have closed it 
+	 */
+	private static final long MAX_IDLE_TIME = 4000;
+
+	/** the maximum number of responses which are kept for conditional requests */
+	static final int MAX_CACHED_RESPONSES = 100;
+
+	/** the connections which are shared (and kept alive) by all requests */
+	private static final MultiThreadedHttpConnectionManager connectionManager = createConnectionManager();
+
+	/** the last responses of conditional requests, by url and request headers */
+	private static final Map<String, CachedResponse> responseCache = Collections.synchronizedMap(
+		new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+				return size() > MAX_CACHED_RESPONSES;
+			}
+		});
+
+	private static ExecutorService asyncExecutor;
+	
 
 	/**
 	 * Executes the given <code>url</code> with the given <code>httpMethod</code>.
@@ -104,6 +158,69 @@ public class HttpUtil {
 	 * @return the response body or <code>NULL</code> when the request went wrong
 	 */
 	public static String executeUrl(String httpMethod, String url, Properties httpHeaders, InputStream content, String contentType, int timeout) {
+		return executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout, false);
+	}
+
+	/**
+	 * Executes a conditional GET request for the given <code>url</code>. If
+	 * the resource has been requested before and the server answered with an
+	 * <code>ETag</code> or a <code>Last-Modified</code> header, these values are
+	 * sent along and the server can answer with <code>304 Not Modified</code>
+	 * instead of transferring the resource again. In this case the previous
+	 * response body is returned. Only the last 100 responses are kept, so
+	 * this should only be used for urls which are requested repeatedly.
+	 * 
+	 * @param url the url to execute
+	 * @param httpHeaders optional http request headers which has to be sent within request 
+	 * @param timeout the socket timeout to wait for data (in milliseconds)
+	 * 
+	 * @return the (possibly cached) response body or <code>NULL</code> when the request went wrong
+	 */
+	public static String executeConditionalGet(String url, Properties httpHeaders, int timeout) {
+		return executeUrl("GET", url, httpHeaders, null, null, timeout, true);
+	}
+
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code>
+	 * on a background thread.
+	 * 
+	 * @param httpMethod the HTTP method to use
+	 * @param url the url to execute
+	 * @param timeout the socket timeout to wait for data (in milliseconds)
+	 * 
+	 * @return a {@link Future} of the response body, which is <code>NULL</code>
+	 * when the request went wrong
+	 */
+	public static Future<String> executeUrlAsync(String httpMethod, String url, int timeout) {
+		return executeUrlAsync(httpMethod, url, null, null, null, timeout);
+	}
+
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code>
+	 * on a background thread. Furthermore the <code>http.proxyXXX</code> System
+	 * variables are read and set into the {@link HttpClient}.
+	 * 
+	 * @param httpMethod the HTTP method to use
+	 * @param url the url to execute
+	 * @param httpHeaders optional http request headers which has to be sent within request 
+	 * @param content the content to be send to the given <code>url</code> or 
+	 * <code>null</code> if no content should be send.
+	 * @param contentType the content type of the given <code>content</code>
+	 * @param timeout the socket timeout to wait for data (in milliseconds)
+	 * 
+	 * @return a {@link Future} of the response body, which is <code>NULL</code>
+	 * when the request went wrong
+	 */
+	public static Future<String> executeUrlAsync(final String httpMethod, final String url, final Properties httpHeaders, 
+			final InputStream content, final String contentType, final int timeout) {
+		return getAsyncExecutor().submit(new Callable<String>() {
+			public String call() throws Exception {
+				return executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout);
+			}
+		});
+	}
+
+	private static String executeUrl(String httpMethod, String url, Properties httpHeaders, InputStream content, String contentType, int timeout, boolean conditional) {
 		String proxySet = System.getProperty("http.proxySet");
 		
 		String proxyHost = null;
@@ -127,7 +244,7 @@ public class HttpUtil {
 			nonProxyHosts = System.getProperty("http.nonProxyHosts");
 		}
 		
-		return executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout, proxyHost, proxyPort, proxyUser, proxyPassword, nonProxyHosts);
+		return executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout, proxyHost, proxyPort, proxyUser, proxyPassword, nonProxyHosts, conditional);
 
 	}
 	
@@ -149,8 +266,16 @@ public class HttpUtil {
 	 * @return the response body or <code>NULL</code> when the request went wrong
 	 */
 	public static String executeUrl(String httpMethod, String url, Properties httpHeaders, InputStream content, String contentType, int timeout, String proxyHost, Integer proxyPort, String proxyUser, String proxyPassword, String nonProxyHosts) {
+		return executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout, proxyHost, proxyPort, proxyUser, proxyPassword, nonProxyHosts, false);
+	}
+
+	private static String executeUrl(String httpMethod, String url, Properties httpHeaders, InputStream content, String contentType, int timeout, String proxyHost, Integer proxyPort, String proxyUser, String proxyPassword, String nonProxyHosts, boolean conditional) {
 		
-		HttpClient client = new HttpClient();
+		// the client itself is cheap, the expensive connections are kept by the shared manager
+		connectionManager.closeIdleConnections(MAX_IDLE_TIME);
+		HttpClient client = new HttpClient(connectionManager);
+		// don't wait forever if all pooled connections to the host are in use
+		client.getParams().setConnectionManagerTimeout(timeout);
 		
 		// only configure a proxy if a host is provided
 		if (StringUtils.isNotBlank(proxyHost) && proxyPort != null && shouldUseProxy(url, nonProxyHosts)) {
@@ -170,6 +295,20 @@ public class HttpUtil {
 				method.addRequestHeader(new Header(httpHeaderKey,httpHeaders.getProperty(httpHeaderKey)));
 			}
 		}
+		String cacheKey = null;
+		CachedResponse cachedResponse = null;
+		if (conditional) {
+			cacheKey = getCacheKey(url, httpHeaders);
+			cachedResponse = responseCache.get(cacheKey);
+			if (cachedResponse != null) {
+				if (cachedResponse.etag != null) {
+					method.setRequestHeader("If-None-Match", cachedResponse.etag);
+				}
+				if (cachedResponse.lastModified != null) {
+					method.setRequestHeader("If-Modified-Since", cachedResponse.lastModified);
+				}
+			}
+		}
 		// add content if a valid method is given ...
 		if (method instanceof EntityEnclosingMethod && content != null ) {
 			EntityEnclosingMethod eeMethod = (EntityEnclosingMethod) method;
@@ -193,6 +332,10 @@ public class HttpUtil {
 		try {
 			
 			int statusCode = client.executeMethod(method);
+			if (statusCode == HttpStatus.SC_NOT_MODIFIED && cachedResponse != null) {
+				logger.debug("'{}' has not been modified, using the previous response", url);
+				return cachedResponse.body;
+			}
 			if (statusCode != HttpStatus.SC_OK) {
 				logger.warn("Method failed: " + method.getStatusLine());
 			}
@@ -202,6 +345,19 @@ public class HttpUtil {
 				logger.debug(responseBody);
 			}
 			
+			if (conditional) {
+				Header etag = method.getResponseHeader("ETag");
+				Header lastModified = method.getResponseHeader("Last-Modified");
+				if (statusCode == HttpStatus.SC_OK && (etag != null || lastModified != null)) {
+					responseCache.put(cacheKey, new CachedResponse(
+						etag != null ? etag.getValue() : null,
+						lastModified != null ? lastModified.getValue() : null,
+						responseBody));
+				} else {
+					responseCache.remove(cacheKey);
+				}
+			}
+			
 			return responseBody;
 		}
 		catch (HttpException he) {
@@ -217,6 +373,67 @@ public class HttpUtil {
 		return null;
 	}
 
+	/**
+	 * Returns the key under which the response to a conditional request is
+	 * cached. Requests to the same url with different headers are cached
+	 * separately, as the headers might change the response.
+	 * 
+	 * @param url the requested url
+	 * @param httpHeaders the request headers or <code>null</code>
+	 * @return the cache key
+	 */
+	static String getCacheKey(String url, Properties httpHeaders) {
+		return httpHeaders == null || httpHeaders.isEmpty() ? url : url + new TreeMap<Object, Object>(httpHeaders);
+	}
+
+	/**
+	 * Creates the connection manager which is shared by all requests.
+	 * 
+	 * @return the connection manager
+	 */
+	private static MultiThreadedHttpConnectionManager createConnectionManager() {
+		MultiThreadedHttpConnectionManager manager = new MultiThreadedHttpConnectionManager();
+		HttpConnectionManagerParams params = manager.getParams();
+		params.setMaxTotalConnections(getIntProperty(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS));
+		params.setDefaultMaxConnectionsPerHost(getIntProperty(MAX_CONNECTIONS_PER_HOST_PROPERTY, DEFAULT_MAX_CONNECTIONS_PER_HOST));
+		// the stale check blocks every request for a millisecond, idle connections are closed instead
+		params.setStaleCheckingEnabled(false);
+		return manager;
+	}
+
+	/**
+	 * Returns the executor for asynchronous requests. It is created on first access.
+	 * 
+	 * @return the executor
+	 */
+	private static synchronized ExecutorService getAsyncExecutor() {
+		if (asyncExecutor == null) {
+			asyncExecutor = Executors.newFixedThreadPool(getIntProperty(ASYNC_POOL_SIZE_PROPERTY, DEFAULT_ASYNC_POOL_SIZE), 
+				new ThreadFactory() {
+					private final AtomicInteger threadNumber = new AtomicInteger(1);
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "openHAB HTTP request " + threadNumber.getAndIncrement());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		}
+		return asyncExecutor;
+	}
+
+	private static int getIntProperty(String name, int defaultValue) {
+		String value = System.getProperty(name);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				logger.warn("Invalid value '{}' for system property '{}', using default {}", 
+						new Object[] { value, name, defaultValue });
+			}
+		}
+		return defaultValue;
+	}
+
 	/**
 	 * Determines whether the list of <code>nonProxyHosts</code> contains the
 	 * host (which is part of the given <code>urlString</code> or not.
@@ -328,4 +545,21 @@ public class HttpUtil {
 		}
 	}
 
+	/**
+	 * The validators and the body of a response, which are needed to answer a
+	 * conditional request with <code>304 Not Modified</code>.
+	 */
+	private static class CachedResponse {
+
+		final String etag;
+		final String lastModified;
+		final String body;
+
+		CachedResponse(String etag, String lastModified, String body) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.body = body;
+		}
+	}
+
 }
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.mqtt.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Publishes messages through a {@link MqttOutboundQueue} to a fake client,
+ * which acknowledges every message at once while it is connected.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class MqttOutboundQueueTest {
+
+	private static final long TIMEOUT = 5000;
+
+	private FakeClient fakeClient = new FakeClient();
+
+	private MqttOutboundQueue queue;
+
+	@After
+	public void tearDown() {
+		if (queue != null) {
+			queue.stop();
+		}
+	}
+
+	@Test
+	public void testMessagesArePublishedInOrder() {
+		queue = createQueue(10, false);
+		queue.start();
+		for (int i = 1; i <= 5; i++) {
+			assertTrue(queue.offer("topic", payload(i)));
+		}
+
+		waitForPublished(5);
+		assertEquals(Arrays.asList("topic:1", "topic:2", "topic:3", "topic:4", "topic:5"), fakeClient.published);
+		assertEquals(0, queue.getFailedCount());
+		assertEquals(0, queue.getInFlightCount());
+	}
+
+	@Test
+	public void testQueuedMessagesAreCoalesced() {
+		queue = createQueue(10, true);
+		queue.offer("a", payload(1));
+		queue.offer("b", payload(1));
+		queue.offer("a", payload(2));
+		assertEquals(2, queue.getQueueSize());
+		assertEquals(1, queue.getCoalescedCount());
+
+		queue.start();
+		waitForPublished(2);
+		// the newer message replaced the queued one at its position
+		assertEquals(Arrays.asList("a:2", "b:1"), fakeClient.published);
+	}
+
+	@Test
+	public void testMessagesAreNotCoalescedByDefault() {
+		queue = createQueue(10, false);
+		queue.offer("a", payload(1));
+		queue.offer("a", payload(2));
+		assertEquals(2, queue.getQueueSize());
+		assertEquals(0, queue.getCoalescedCount());
+	}
+
+	@Test
+	public void testFullQueueRejectsMessages() {
+		queue = createQueue(2, true);
+		assertTrue(queue.offer("a", payload(1)));
+		assertTrue(queue.offer("b", payload(1)));
+		assertFalse(queue.offer("c", payload(1)));
+		// a message for a queued topic still fits
+		assertTrue(queue.offer("a", payload(2)));
+		assertEquals(1, queue.getRejectedCount());
+		assertEquals(2, queue.getMaxQueueSize());
+
+		queue.start();
+		waitForPublished(2);
+		assertEquals(Arrays.asList("a:2", "b:1"), fakeClient.published);
+
+		// the queue accepts messages again once it has been emptied
+		assertTrue(queue.offer("c", payload(2)));
+		waitForPublished(3);
+		assertEquals(1, queue.getRejectedCount());
+	}
+
+	@Test
+	public void testQueueIsDrainedAfterReconnect() throws InterruptedException {
+		fakeClient.connected = false;
+		queue = createQueue(10, false);
+		queue.start();
+		for (int i = 1; i <= 3; i++) {
+			queue.offer("topic", payload(i));
+		}
+		Thread.sleep(200);
+		assertTrue(fakeClient.published.isEmpty());
+
+		fakeClient.connected = true;
+		waitForPublished(3);
+		assertEquals(Arrays.asList("topic:1", "topic:2", "topic:3"), fakeClient.published);
+		assertEquals(3, queue.getPublishedCount());
+	}
+
+	@Test
+	public void testStopDiscardsUnsentMessages() {
+		fakeClient.connected = false;
+		queue = createQueue(10, false);
+		queue.offer("a", payload(1));
+		queue.offer("b", payload(1));
+		queue.stop();
+		assertEquals(0, queue.getQueueSize());
+		assertTrue(fakeClient.published.isEmpty());
+	}
+
+	private MqttOutboundQueue createQueue(int capacity, boolean coalesce) {
+		return new MqttOutboundQueue("test", fakeClient.proxy, 0, false, capacity, 1, coalesce);
+	}
+
+	private static byte[] payload(int value) {
+		return String.valueOf(value).getBytes();
+	}
+
+	private void waitForPublished(int count) {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (queue.getPublishedCount() < count) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("only " + queue.getPublishedCount() + " of " + count + " messages have been published");
+			}
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Implements the methods of the asynchronous client which are used by the
+	 * queue. Published messages are recorded as <code>topic:payload</code>.
+	 */
+	private static class FakeClient implements InvocationHandler {
+
+		final IMqttAsyncClient proxy = (IMqttAsyncClient) Proxy.newProxyInstance(
+				FakeClient.class.getClassLoader(), new Class<?>[] { IMqttAsyncClient.class }, this);
+
+		final List<String> published = new CopyOnWriteArrayList<String>();
+
+		volatile boolean connected = true;
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("isConnected")) {
+				return connected;
+			} else if (name.equals("publish") && args.length == 6) {
+				published.add(args[0] + ":" + new String((byte[]) args[1]));
+				IMqttToken token = createToken(args[4]);
+				((IMqttActionListener) args[5]).onSuccess(token);
+				return null;
+			}
+			throw new UnsupportedOperationException(name);
+		}
+
+		private IMqttToken createToken(final Object userContext) {
+			return (IMqttToken) Proxy.newProxyInstance(FakeClient.class.getClassLoader(),
+					new Class<?>[] { IMqttToken.class }, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							if (method.getName().equals("getUserContext")) {
+								return userContext;
+							}
+							throw new UnsupportedOperationException(method.getName());
+						}
+					});
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.mqtt.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Compares the dispatch rate of the {@link MqttTopicTrie} with the former
+ * matching of every received topic against the regex of every subscription.
+ * One in ten subscriptions has a wildcard. This is no unit test, it is run
+ * manually by its main method.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class MqttTopicTrieBenchmark {
+
+	private static final int[] SUBSCRIPTIONS = { 10, 800, 3000 };
+
+	private static final long DURATION = 2000;
+
+	public static void main(String[] args) {
+		System.out.println("subscriptions   regex loop    trie");
+		for (int subscriptions : SUBSCRIPTIONS) {
+			List<String> filters = createFilters(subscriptions);
+			List<String> topics = createTopics(subscriptions);
+			MqttTopicTrie<String> trie = new MqttTopicTrie<String>();
+			for (String filter : filters) {
+				trie.add(filter, filter);
+			}
+			long regexRate = measureRegexLoop(filters, topics);
+			long trieRate = measureTrie(trie, topics);
+			System.out.println(String.format("%-15d %-13s %s", subscriptions, format(regexRate), format(trieRate)));
+		}
+	}
+
+	private static List<String> createFilters(int count) {
+		List<String> filters = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			if (i % 20 == 0) {
+				filters.add("home/room" + i + "/+/state");
+			} else if (i % 10 == 0) {
+				filters.add("home/room" + i + "/#");
+			} else {
+				filters.add("home/room" + i + "/sensor/state");
+			}
+		}
+		return filters;
+	}
+
+	private static List<String> createTopics(int count) {
+		List<String> topics = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			topics.add("home/room" + i + "/sensor/state");
+		}
+		return topics;
+	}
+
+	private static long measureRegexLoop(List<String> filters, List<String> topics) {
+		long messages = 0;
+		int matches = 0;
+		long end = System.currentTimeMillis() + DURATION;
+		while (System.currentTimeMillis() < end) {
+			String topic = topics.get((int) (messages % topics.size()));
+			for (String filter : filters) {
+				if (isTopicMatch(topic, filter)) {
+					matches++;
+				}
+			}
+			messages++;
+		}
+		return check(messages, matches) * 1000 / DURATION;
+	}
+
+	private static long measureTrie(MqttTopicTrie<String> trie, List<String> topics) {
+		long messages = 0;
+		int matches = 0;
+		long end = System.currentTimeMillis() + DURATION;
+		while (System.currentTimeMillis() < end) {
+			for (int i = 0; i < 1000; i++) {
+				String topic = topics.get((int) (messages % topics.size()));
+				matches += trie.match(topic).size();
+				messages++;
+			}
+		}
+		return check(messages, matches) * 1000 / DURATION;
+	}
+
+	/** the matching of the previous version of MqttBrokerConnection */
+	private static boolean isTopicMatch(String source, String target) {
+		if (source.equals(target)) {
+			return true;
+		}
+		if (target.indexOf('+') == -1 && target.indexOf('#') == -1) {
+			return false;
+		}
+		String regex = target;
+		regex = StringUtils.replace(regex, "+", "[^/]*");
+		regex = StringUtils.replace(regex, "#", ".*");
+		return source.matches(regex);
+	}
+
+	/** keeps the results alive, so that the matching is not optimized away */
+	private static long check(long messages, int matches) {
+		if (matches < messages) {
+			throw new IllegalStateException("not every topic has been matched");
+		}
+		return messages;
+	}
+
+	private static String format(long rate) {
+		if (rate >= 1000000) {
+			return String.format("%.1fM msg/s", rate / 1000000.0);
+		}
+		return String.format("%.1fk msg/s", rate / 1000.0);
+	}
+
+}
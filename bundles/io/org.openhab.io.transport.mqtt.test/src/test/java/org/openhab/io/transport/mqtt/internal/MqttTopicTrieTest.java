@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.mqtt.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent
+ * @since 1.4.0
+ */
+public class MqttTopicTrieTest {
+
+	private MqttTopicTrie<String> trie;
+
+	@Before
+	public void setUp() {
+		trie = new MqttTopicTrie<String>();
+	}
+
+	@Test
+	public void testExactFilter() {
+		trie.add("a/b", "exact");
+
+		assertMatches("a/b", "exact");
+		assertMatches("a");
+		assertMatches("a/b/c");
+		assertMatches("a/bb");
+	}
+
+	@Test
+	public void testMultiLevelWildcardMatchesParentLevel() {
+		trie.add("a/#", "multi");
+
+		assertMatches("a", "multi");
+		assertMatches("a/b", "multi");
+		assertMatches("a/b/c", "multi");
+		assertMatches("b");
+		assertMatches("ab");
+	}
+
+	@Test
+	public void testSingleLevelWildcardMatchesOneLevel() {
+		trie.add("a/+/c", "single");
+		trie.add("a/+", "end");
+
+		assertMatches("a/b/c", "single");
+		assertMatches("a//c", "single");
+		assertMatches("a/b", "end");
+		assertMatches("a/b/c/d");
+		assertMatches("a");
+	}
+
+	@Test
+	public void testWildcardsDoNotMatchDollarTopics() {
+		trie.add("#", "all");
+		trie.add("+/info", "info");
+		trie.add("$SYS/#", "sys");
+
+		assertMatches("$SYS/info", "sys");
+		assertMatches("$SYS", "sys");
+		assertMatches("a/info", "all", "info");
+	}
+
+	@Test
+	public void testRegexCharactersAreNotInterpreted() {
+		trie.add("a/.*", "dot");
+
+		assertMatches("a/.*", "dot");
+		assertMatches("a/bc");
+	}
+
+	@Test
+	public void testAllMatchingFiltersAreFound() {
+		trie.add("a/b", "exact");
+		trie.add("a/+", "single");
+		trie.add("a/#", "multi");
+		trie.add("#", "all");
+		trie.add("+/b", "first");
+
+		assertMatches("a/b", "exact", "single", "multi", "all", "first");
+	}
+
+	@Test
+	public void testRemoveSharedFilter() {
+		trie.add("a/+", "consumer1");
+		trie.add("a/+", "consumer2");
+
+		assertTrue(trie.remove("a/+", "consumer1"));
+
+		// the filter is still used by the other consumer
+		assertTrue(trie.contains("a/+"));
+		assertMatches("a/b", "consumer2");
+
+		assertTrue(trie.remove("a/+", "consumer2"));
+		assertFalse(trie.contains("a/+"));
+		assertMatches("a/b");
+	}
+
+	@Test
+	public void testRemoveKeepsLongerFilters() {
+		trie.add("a", "short");
+		trie.add("a/b/c", "long");
+
+		assertTrue(trie.remove("a", "short"));
+
+		assertFalse(trie.contains("a"));
+		assertTrue(trie.contains("a/b/c"));
+		assertMatches("a/b/c", "long");
+	}
+
+	@Test
+	public void testRemoveUnknownValue() {
+		trie.add("a/b", "consumer");
+
+		assertFalse(trie.remove("a/b", "other"));
+		assertFalse(trie.remove("a/c", "consumer"));
+		assertFalse(trie.remove("a/b/c", "consumer"));
+		assertTrue(trie.contains("a/b"));
+	}
+
+	private void assertMatches(String topic, String... expected) {
+		List<String> matches = trie.match(topic);
+		assertEquals("duplicate matches for '" + topic + "': " + matches, new HashSet<String>(matches).size(),
+				matches.size());
+		Set<String> expectedSet = new HashSet<String>(Arrays.asList(expected));
+		assertEquals("matches for '" + topic + "'", expectedSet, new HashSet<String>(matches));
+	}
+
+}
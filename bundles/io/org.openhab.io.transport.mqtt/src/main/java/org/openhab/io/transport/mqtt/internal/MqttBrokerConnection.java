@@ -13,6 +13,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import java.util.Timer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
@@ -21,13 +27,11 @@ import javax.net.ssl.X509TrustManager;
 
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
-import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
-import org.eclipse.paho.client.mqttv3.MqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
-import org.eclipse.paho.client.mqttv3.MqttTopic;
 import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
 import org.openhab.io.transport.mqtt.MqttMessageConsumer;
 import org.openhab.io.transport.mqtt.MqttMessageProducer;
@@ -43,6 +47,16 @@ import org.slf4j.LoggerFactory;
  * When a connection to an MQTT broker is lost, it will try to reconnect every
  * 60 seconds.
  * 
+ * Received messages are dispatched to the consumers through a trie of their
+ * topics and processed by a small number of worker threads, so that the
+ * callback thread of the MQTT client is free to receive the next message.
+ * All messages of a topic are processed by the same worker, in the order
+ * they were received.
+ * 
+ * Unless the connection is configured to publish synchronously, outbound
+ * messages are put into a bounded {@link MqttOutboundQueue} and published
+ * from there by the asynchronous MQTT client.
+ * 
  * @author Davy Vanherbergen
  * @since 1.3.0
  */
@@ -52,6 +66,30 @@ public class MqttBrokerConnection implements MqttCallback {
 
 	private static final int RECONNECT_FREQUENCY = 60000;
 
+	private static final int DEFAULT_WORKER_THREADS = 2;
+
+	private static final int DEFAULT_QUEUE_SIZE = 1000;
+
+	/** maximum number of received messages waiting for each worker */
+	private static final int WORKER_QUEUE_SIZE = 1000;
+
+	/**
+	 * Makes the callback thread wait if the queue of a worker is full, so that
+	 * reading from the broker slows down instead of messages getting lost.
+	 */
+	private static final RejectedExecutionHandler WAIT_FOR_WORKER = new RejectedExecutionHandler() {
+		public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				return;
+			}
+			try {
+				executor.getQueue().put(task);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	};
+
 	private String name;
 
 	private String url;
@@ -66,16 +104,30 @@ public class MqttBrokerConnection implements MqttCallback {
 
 	private boolean async = true;
 
+	private int maxInFlight = MqttOutboundQueue.MAX_INFLIGHT_LIMIT;
+
+	private int queueSize = DEFAULT_QUEUE_SIZE;
+
+	private boolean coalesce = false;
+
 	private String clientId;
 
-	private MqttClient client;
+	private MqttAsyncClient client;
+
+	private volatile MqttOutboundQueue outboundQueue;
 
 	private boolean started;
 
-	private List<MqttMessageConsumer> consumers = new ArrayList<MqttMessageConsumer>();
+	private List<MqttMessageConsumer> consumers = new CopyOnWriteArrayList<MqttMessageConsumer>();
+
+	private MqttTopicTrie<MqttMessageConsumer> subscriptions = new MqttTopicTrie<MqttMessageConsumer>();
 
 	private List<MqttMessageProducer> producers = new ArrayList<MqttMessageProducer>();
 
+	private int workerThreads = DEFAULT_WORKER_THREADS;
+
+	private volatile ThreadPoolExecutor[] workers;
+
 	private Timer reconnectTimer;
 
 	/**
@@ -104,7 +156,10 @@ public class MqttBrokerConnection implements MqttCallback {
 		}
 
 		logger.info("Starting MQTT broker connection '{}'", name);
+		// throws if the broker could not be reached, so that the queue is only started with a connected client
 		openConnection();
+		startWorkers();
+		startOutboundQueue();
 
 		if (reconnectTimer != null) {
 			// we are active, so stop trying to reconnect
@@ -242,6 +297,99 @@ public class MqttBrokerConnection implements MqttCallback {
 		this.async = async;
 	}
 
+	/**
+	 * @return maximum number of published messages waiting for their
+	 *         acknowledgement.
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Set the maximum number of published messages waiting for their
+	 * acknowledgement by the broker. The MQTT client supports at most 10.
+	 * Takes effect when the connection is started the next time.
+	 * 
+	 * @param maxInFlight
+	 *            number of messages, between 1 and 10.
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		if (maxInFlight > 0 && maxInFlight <= MqttOutboundQueue.MAX_INFLIGHT_LIMIT) {
+			this.maxInFlight = maxInFlight;
+		}
+	}
+
+	/**
+	 * @return maximum number of messages waiting to be published.
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * Set the maximum number of messages waiting to be published, further
+	 * messages are rejected. Takes effect when the connection is started the
+	 * next time.
+	 * 
+	 * @param queueSize
+	 *            number of messages, at least 1.
+	 */
+	public void setQueueSize(int queueSize) {
+		if (queueSize > 0) {
+			this.queueSize = queueSize;
+		}
+	}
+
+	/**
+	 * @return true if a message waiting to be published is replaced by a newer
+	 *         message to the same topic.
+	 */
+	public boolean isCoalesce() {
+		return coalesce;
+	}
+
+	/**
+	 * Set whether a message waiting to be published should be replaced by a
+	 * newer message to the same topic, so that only the latest state is
+	 * published if the broker can't keep up. Takes effect when the connection
+	 * is started the next time.
+	 * 
+	 * @param coalesce
+	 *            true to replace queued messages.
+	 */
+	public void setCoalesce(boolean coalesce) {
+		this.coalesce = coalesce;
+	}
+
+	/**
+	 * @return queue of outbound messages, which also provides statistics on
+	 *         the published messages, or null if the connection has not been
+	 *         started.
+	 */
+	public MqttOutboundQueue getOutboundQueue() {
+		return outboundQueue;
+	}
+
+	/**
+	 * @return number of threads processing received messages.
+	 */
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+
+	/**
+	 * Set the number of threads which process received messages. Takes effect
+	 * when the connection is started the next time.
+	 * 
+	 * @param workerThreads
+	 *            number of threads, at least 1.
+	 */
+	public void setWorkerThreads(int workerThreads) {
+		if (workerThreads > 0) {
+			this.workerThreads = workerThreads;
+		}
+	}
+
 	/**
 	 * Set client id to use when connecting to the broker. If none is specified,
 	 * a default is generated.
@@ -271,14 +419,14 @@ public class MqttBrokerConnection implements MqttCallback {
 
 			if (client == null) {
 				if (StringUtils.isBlank(clientId) || clientId.length() > 23) {
-					clientId = MqttClient.generateClientId();
+					clientId = MqttAsyncClient.generateClientId();
 				}
 
 				String tmpDir = System.getProperty("java.io.tmpdir");
 				MqttDefaultFilePersistence dataStore = new MqttDefaultFilePersistence(tmpDir + "/" + name);
 				logger.debug("Creating new client for '{}' using id '{}' and file store '{}'", new Object[] { url, clientId,
 						tmpDir + "/" + name });
-				client = new MqttClient(url, clientId, dataStore);
+				client = new MqttAsyncClient(url, clientId, dataStore);
 				client.setCallback(this);
 			}
 
@@ -325,7 +473,7 @@ public class MqttBrokerConnection implements MqttCallback {
 				}
 			}
 
-			client.connect(options);
+			client.connect(options).waitForCompletion();
 
 		} catch (MqttException e) {
 			logger.error("Error connecting to broker '{}' : {} : ReasonCode {} : Cause : {}",
@@ -361,6 +509,65 @@ public class MqttBrokerConnection implements MqttCallback {
 
 	}
 
+	/**
+	 * Start the workers which process received messages, unless they are
+	 * already running.
+	 */
+	private synchronized void startWorkers() {
+		if (workers != null) {
+			return;
+		}
+		ThreadPoolExecutor[] newWorkers = new ThreadPoolExecutor[workerThreads];
+		for (int i = 0; i < newWorkers.length; i++) {
+			final String threadName = "MQTT " + name + " worker " + (i + 1);
+			newWorkers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(WORKER_QUEUE_SIZE), new ThreadFactory() {
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, threadName);
+							thread.setDaemon(true);
+							return thread;
+						}
+					}, WAIT_FOR_WORKER);
+		}
+		workers = newWorkers;
+	}
+
+	/**
+	 * Start the queue of outbound messages, unless it is already running or
+	 * there is no client yet. It keeps running while the connection is lost,
+	 * so that messages published in the meantime are sent after reconnecting.
+	 */
+	private synchronized void startOutboundQueue() {
+		if (outboundQueue == null && client != null) {
+			outboundQueue = new MqttOutboundQueue(name, client, qos, retain, queueSize, maxInFlight, coalesce);
+			outboundQueue.start();
+		}
+	}
+
+	/**
+	 * Stop the queue of outbound messages, messages which have not been sent
+	 * yet are discarded.
+	 */
+	private synchronized void stopOutboundQueue() {
+		if (outboundQueue != null) {
+			outboundQueue.stop();
+			outboundQueue = null;
+		}
+	}
+
+	/**
+	 * Stop the workers, messages which have not been processed yet are
+	 * discarded.
+	 */
+	private synchronized void stopWorkers() {
+		if (workers != null) {
+			for (ThreadPoolExecutor worker : workers) {
+				worker.shutdownNow();
+			}
+			workers = null;
+		}
+	}
+
 	private Properties addSystemProperty(String key, Properties props) {
 		String value = System.getProperty(key);
 		if (StringUtils.isNotBlank(value)) {
@@ -397,27 +604,29 @@ public class MqttBrokerConnection implements MqttCallback {
 			@Override
 			public void publish(String topic, byte[] payload) throws Exception {
 
-				if (!started) {
+				MqttOutboundQueue queue = outboundQueue;
+				if (queue == null) {
 					logger.warn("Broker connection not started. Cannot publish message to topic '{}'", topic);
 					return;
 				}
 
-				// Create and configure a message
-				MqttMessage message = new MqttMessage(payload);
-				message.setQos(qos);
-				message.setRetained(retain);
+				if (async) {
+					// the queue logs when it is full and counts the rejected messages
+					queue.offer(topic, payload);
+					return;
+				}
 
-				// publish message asynchronously
-				MqttTopic mqttTopic = client.getTopic(topic);
-				MqttDeliveryToken deliveryToken = mqttTopic.publish(message);
+				if (!started) {
+					logger.warn("Broker connection not started. Cannot publish message to topic '{}'", topic);
+					return;
+				}
 
+				// publish the message and wait for the confirmation
 				logger.debug("Publishing message to topic {} ", topic);
-				if (!async) {
-					// wait for publish confirmation
-					deliveryToken.waitForCompletion(10000);
-					if (!deliveryToken.isComplete()) {
-						logger.error("Did not receive completion message within timeout limit whilst publishing to topic {} ", topic);
-					}
+				IMqttDeliveryToken deliveryToken = client.publish(topic, payload, qos, retain);
+				deliveryToken.waitForCompletion(10000);
+				if (!deliveryToken.isComplete()) {
+					logger.error("Did not receive completion message within timeout limit whilst publishing to topic {} ", topic);
 				}
 
 			}
@@ -433,6 +642,7 @@ public class MqttBrokerConnection implements MqttCallback {
 	 */
 	public void addConsumer(MqttMessageConsumer subscriber) {
 		consumers.add(subscriber);
+		subscriptions.add(subscriber.getTopic(), subscriber);
 		if (started) {
 			startConsumer(subscriber);
 		}
@@ -450,7 +660,7 @@ public class MqttBrokerConnection implements MqttCallback {
 		logger.debug("Starting message consumer for broker {} on topic {}", name, topic);
 
 		try {
-			client.subscribe(topic, qos);
+			client.subscribe(topic, qos).waitForCompletion();
 		} catch (Exception e) {
 			logger.error("Error starting consumer : ", e);
 		}
@@ -476,9 +686,11 @@ public class MqttBrokerConnection implements MqttCallback {
 	 */
 	public void removeConsumer(MqttMessageConsumer subscriber) {
 		logger.debug("Removing message consumer for topic '{}' from '{}'", subscriber.getTopic(), name);
+		subscriptions.remove(subscriber.getTopic(), subscriber);
 		try {
-			if (started) {
-				client.unsubscribe(subscriber.getTopic());
+			// other consumers may still need the subscription
+			if (started && !subscriptions.contains(subscriber.getTopic())) {
+				client.unsubscribe(subscriber.getTopic()).waitForCompletion();
 			}
 		} catch (Exception e) {
 			logger.error("Error unsubscribing topic '{}' from '{}'", subscriber.getTopic(), name);
@@ -494,11 +706,13 @@ public class MqttBrokerConnection implements MqttCallback {
 		logger.debug("Closing connection to {}", name);
 		try {
 			if (started) {
-				client.disconnect();
+				client.disconnect().waitForCompletion();
 			}
 		} catch (MqttException e) {
 			logger.error("Error closing connection to {}.", name, e);
 		}
+		stopWorkers();
+		stopOutboundQueue();
 		started = false;
 	}
 
@@ -525,6 +739,9 @@ public class MqttBrokerConnection implements MqttCallback {
 
 	@Override
 	public void deliveryComplete(IMqttDeliveryToken token) {
+		if (!logger.isTraceEnabled()) {
+			return;
+		}
 		try {
 			logger.trace("Delivery completed for message : '{}'", new String(token.getMessage().getPayload()));
 		} catch (MqttException e) {
@@ -534,47 +751,37 @@ public class MqttBrokerConnection implements MqttCallback {
 	}
 
 	@Override
-	public void messageArrived(String topic, MqttMessage message) throws Exception {
+	public void messageArrived(final String topic, MqttMessage message) throws Exception {
 
-		logger.trace("Received message on topic '{}' : {}", topic, new String(message.getPayload()));
-		for (MqttMessageConsumer consumer : consumers) {
-			if (isTopicMatch(topic, consumer.getTopic())) {
-				consumer.processMessage(topic, message.getPayload());
-			}
+		final byte[] payload = message.getPayload();
+		if (logger.isTraceEnabled()) {
+			logger.trace("Received message on topic '{}' : {}", topic, new String(payload));
 		}
-	}
 
-	/**
-	 * Check if the topic on which a message was received matches provided
-	 * target topic. The matching will take into account the + and # wildcards.
-	 * 
-	 * @param source
-	 *            topic from received message
-	 * @param target
-	 *            topic as defined with possible wildcards.
-	 * @return true if both topics match.
-	 */
-	private boolean isTopicMatch(String source, String target) {
-		if (source.equals(target)) {
-			return true;
+		final List<MqttMessageConsumer> matchingConsumers = subscriptions.match(topic);
+		if (matchingConsumers.isEmpty()) {
+			return;
 		}
-		if (target.indexOf('+') == -1 && target.indexOf('#') == -1) {
-			return false;
-		} else {
 
-			String regex = target;
-			regex = StringUtils.replace(regex, "+", "[^/]*");
-			regex = StringUtils.replace(regex, "#", ".*");
-			boolean result = source.matches(regex);
-			if (result) {
-				logger.trace("Topic match for '{}' and '{}' using regex {}", new Object[] { source, target, regex });
-				return true;
-			} else {
-				logger.trace("No topic match for '{}' and '{}' using regex {}", new Object[] { source, target, regex });
-				return false;
+		Runnable task = new Runnable() {
+			public void run() {
+				for (MqttMessageConsumer consumer : matchingConsumers) {
+					try {
+						consumer.processMessage(topic, payload);
+					} catch (RuntimeException e) {
+						logger.error("Error processing message on topic '" + topic + "'", e);
+					}
+				}
 			}
-		}
+		};
 
+		ThreadPoolExecutor[] currentWorkers = workers;
+		if (currentWorkers == null) {
+			task.run();
+		} else {
+			// messages of the same topic always go to the same worker to keep their order
+			currentWorkers[(topic.hashCode() & Integer.MAX_VALUE) % currentWorkers.length].execute(task);
+		}
 	}
 
 }
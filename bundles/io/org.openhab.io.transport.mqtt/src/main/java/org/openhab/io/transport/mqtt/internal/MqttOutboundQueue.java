@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.mqtt.internal;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of outbound messages, which are published by a sender thread
+ * through the asynchronous MQTT client. Publishing a message only adds it to
+ * the queue, so that the publishing thread (usually the openHAB event bus)
+ * never waits for the broker.
+ *
+ * The sender keeps up to a configurable number of messages in flight, i.e.
+ * published but not yet acknowledged by the broker. While the broker is not
+ * reachable, messages are kept in the queue. If the queue is full, new
+ * messages are rejected. Optionally, a message replaces a queued message for
+ * the same topic which has not been sent yet, so that only the latest state of
+ * a topic is published when the broker can't keep up.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class MqttOutboundQueue implements Runnable, IMqttActionListener {
+
+	private static Logger logger = LoggerFactory.getLogger(MqttOutboundQueue.class);
+
+	/** the number of messages in flight the MQTT client supports */
+	public static final int MAX_INFLIGHT_LIMIT = 10;
+
+	private static final long RECONNECT_WAIT = 1000;
+
+	private final String name;
+
+	private final IMqttAsyncClient client;
+
+	private final int qos;
+
+	private final boolean retain;
+
+	private final int capacity;
+
+	private final boolean coalesce;
+
+	private final Semaphore inFlight;
+
+	private final int maxInFlight;
+
+	private final LinkedList<OutboundMessage> queue = new LinkedList<OutboundMessage>();
+
+	/** queued messages by topic, only used when coalescing */
+	private final Map<String, OutboundMessage> queuedTopics = new HashMap<String, OutboundMessage>();
+
+	private final AtomicLong publishedCount = new AtomicLong();
+
+	private final AtomicLong failedCount = new AtomicLong();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	private int maxQueueSize = 0;
+
+	/** true from the time the queue got full until it is half empty again */
+	private boolean full = false;
+
+	private Thread thread;
+
+	private volatile boolean running;
+
+	/**
+	 * Create a new outbound queue.
+	 *
+	 * @param name
+	 *            of the broker connection.
+	 * @param client
+	 *            to publish the messages with.
+	 * @param qos
+	 *            quality of service of the published messages.
+	 * @param retain
+	 *            true if the broker should retain the messages.
+	 * @param capacity
+	 *            maximum number of queued messages.
+	 * @param maxInFlight
+	 *            maximum number of messages waiting for their acknowledgement.
+	 * @param coalesce
+	 *            true if a queued message should be replaced by a newer one
+	 *            for the same topic.
+	 */
+	public MqttOutboundQueue(String name, IMqttAsyncClient client, int qos, boolean retain, int capacity,
+			int maxInFlight, boolean coalesce) {
+		this.name = name;
+		this.client = client;
+		this.qos = qos;
+		this.retain = retain;
+		this.capacity = capacity;
+		this.coalesce = coalesce;
+		this.maxInFlight = Math.max(1, Math.min(maxInFlight, MAX_INFLIGHT_LIMIT));
+		this.inFlight = new Semaphore(this.maxInFlight);
+	}
+
+	/**
+	 * Start the sender thread.
+	 */
+	public synchronized void start() {
+		if (thread == null) {
+			running = true;
+			thread = new Thread(this, "MQTT " + name + " publisher");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stop the sender thread. Messages which have not been sent yet are
+	 * discarded. The statistics of the queue are logged at debug level.
+	 */
+	public void stop() {
+		Thread oldThread;
+		synchronized (this) {
+			running = false;
+			oldThread = thread;
+			thread = null;
+		}
+		if (oldThread != null) {
+			oldThread.interrupt();
+		}
+		synchronized (queue) {
+			if (!queue.isEmpty()) {
+				logger.warn("Discarding {} unsent messages for broker '{}'", queue.size(), name);
+			}
+			queue.clear();
+			queuedTopics.clear();
+		}
+		logger.debug("Outbound queue for broker '{}' stopped: {} messages published, {} failed, {} rejected, "
+				+ "{} coalesced, at most {} queued", new Object[] { name, getPublishedCount(), getFailedCount(),
+				getRejectedCount(), getCoalescedCount(), getMaxQueueSize() });
+	}
+
+	/**
+	 * Add a message to the queue.
+	 *
+	 * @param topic
+	 *            to publish the message to.
+	 * @param payload
+	 *            of the message.
+	 * @return false if the queue is full and the message has been rejected.
+	 */
+	public boolean offer(String topic, byte[] payload) {
+		synchronized (queue) {
+			if (coalesce) {
+				OutboundMessage queued = queuedTopics.get(topic);
+				if (queued != null) {
+					queued.payload = payload;
+					coalescedCount.incrementAndGet();
+					return true;
+				}
+			}
+			if (queue.size() >= capacity) {
+				rejectedCount.incrementAndGet();
+				if (!full) {
+					full = true;
+					logger.warn("Outbound queue for broker '{}' is full, rejecting messages", name);
+				}
+				return false;
+			}
+			OutboundMessage message = new OutboundMessage(topic, payload);
+			queue.addLast(message);
+			if (coalesce) {
+				queuedTopics.put(topic, message);
+			}
+			if (queue.size() > maxQueueSize) {
+				maxQueueSize = queue.size();
+			}
+			queue.notifyAll();
+			return true;
+		}
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				OutboundMessage message = take();
+				inFlight.acquire();
+				while (running && (client == null || !client.isConnected())) {
+					Thread.sleep(RECONNECT_WAIT);
+				}
+				if (!running) {
+					break;
+				}
+				try {
+					client.publish(message.topic, message.payload, qos, retain, message, this);
+					logger.debug("Publishing message to topic {} ", message.topic);
+				} catch (MqttException e) {
+					inFlight.release();
+					failedCount.incrementAndGet();
+					logger.error("Error publishing message to topic '{}' on broker '{}' : {}",
+							new Object[] { message.topic, name, e.getMessage() });
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+	}
+
+	private OutboundMessage take() throws InterruptedException {
+		synchronized (queue) {
+			while (queue.isEmpty()) {
+				queue.wait();
+			}
+			OutboundMessage message = queue.removeFirst();
+			if (coalesce) {
+				queuedTopics.remove(message.topic);
+			}
+			if (full && queue.size() <= capacity / 2) {
+				full = false;
+				logger.info("Outbound queue for broker '{}' accepts messages again, {} have been rejected so far",
+						name, rejectedCount.get());
+			}
+			return message;
+		}
+	}
+
+	@Override
+	public void onSuccess(IMqttToken token) {
+		inFlight.release();
+		publishedCount.incrementAndGet();
+	}
+
+	@Override
+	public void onFailure(IMqttToken token, Throwable t) {
+		inFlight.release();
+		failedCount.incrementAndGet();
+		OutboundMessage message = (OutboundMessage) token.getUserContext();
+		logger.error("Error publishing message to topic '{}' on broker '{}' : {}",
+				new Object[] { message == null ? null : message.topic, name, t == null ? null : t.getMessage() });
+	}
+
+	/**
+	 * @return number of messages waiting to be sent.
+	 */
+	public int getQueueSize() {
+		synchronized (queue) {
+			return queue.size();
+		}
+	}
+
+	/**
+	 * @return highest number of messages which have been waiting at the same
+	 *         time.
+	 */
+	public int getMaxQueueSize() {
+		synchronized (queue) {
+			return maxQueueSize;
+		}
+	}
+
+	/**
+	 * @return number of messages sent but not yet acknowledged by the broker.
+	 */
+	public int getInFlightCount() {
+		return maxInFlight - inFlight.availablePermits();
+	}
+
+	/**
+	 * @return number of messages acknowledged by the broker.
+	 */
+	public long getPublishedCount() {
+		return publishedCount.get();
+	}
+
+	/**
+	 * @return number of messages which could not be published.
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * @return number of messages rejected because the queue was full.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * @return number of messages which replaced a queued message for the same
+	 *         topic.
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	private static class OutboundMessage {
+
+		private final String topic;
+
+		private byte[] payload;
+
+		OutboundMessage(String topic, byte[] payload) {
+			this.topic = topic;
+			this.payload = payload;
+		}
+	}
+
+}
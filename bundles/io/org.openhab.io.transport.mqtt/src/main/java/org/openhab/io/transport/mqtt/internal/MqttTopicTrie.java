@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.mqtt.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A trie of topic filters, which finds all values subscribed to a topic by
+ * walking down its levels instead of matching the topic against every
+ * filter. The + and # wildcards are nodes of their own: + matches exactly
+ * one level and # matches the parent level and any number of levels below
+ * it. As defined by MQTT, wildcards in the first level do not match topics
+ * starting with $.
+ *
+ * Lookups do not need a lock and can run concurrently with changes, which
+ * are synchronized.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class MqttTopicTrie<T> {
+
+	private static final String SINGLE_LEVEL_WILDCARD = "+";
+
+	private static final String MULTI_LEVEL_WILDCARD = "#";
+
+	private final Node<T> root = new Node<T>(null);
+
+	/**
+	 * Add a value for a topic filter.
+	 *
+	 * @param filter
+	 *            topic filter, may contain + or # wildcards.
+	 * @param value
+	 *            to return for all topics matching the filter.
+	 */
+	public synchronized void add(String filter, T value) {
+		Node<T> node = root;
+		for (String level : filter.split("/", -1)) {
+			Node<T> child = node.children.get(level);
+			if (child == null) {
+				child = new Node<T>(node);
+				node.children.put(level, child);
+			}
+			node = child;
+		}
+		node.values.add(value);
+	}
+
+	/**
+	 * Remove a value previously added for a topic filter.
+	 *
+	 * @param filter
+	 *            topic filter the value was added for.
+	 * @param value
+	 *            to remove.
+	 * @return true if the value was found.
+	 */
+	public synchronized boolean remove(String filter, T value) {
+		String[] levels = filter.split("/", -1);
+		Node<T> node = root;
+		for (String level : levels) {
+			node = node.children.get(level);
+			if (node == null) {
+				return false;
+			}
+		}
+		if (!node.values.remove(value)) {
+			return false;
+		}
+		// prune the nodes which are not needed anymore
+		for (int i = levels.length - 1; i >= 0 && node.isEmpty(); i--) {
+			node.parent.children.remove(levels[i]);
+			node = node.parent;
+		}
+		return true;
+	}
+
+	/**
+	 * @param filter
+	 *            topic filter.
+	 * @return true if any value has been added for exactly this filter.
+	 */
+	public boolean contains(String filter) {
+		Node<T> node = root;
+		for (String level : filter.split("/", -1)) {
+			node = node.children.get(level);
+			if (node == null) {
+				return false;
+			}
+		}
+		return !node.values.isEmpty();
+	}
+
+	/**
+	 * Find all values whose topic filter matches a topic.
+	 *
+	 * @param topic
+	 *            topic of a received message, without wildcards.
+	 * @return matching values, an empty list if there are none.
+	 */
+	public List<T> match(String topic) {
+		List<T> result = new ArrayList<T>(2);
+		String[] levels = topic.split("/", -1);
+		match(root, levels, 0, !topic.startsWith("$"), result);
+		return result;
+	}
+
+	private void match(Node<T> node, String[] levels, int index, boolean wildcards, List<T> result) {
+		if (wildcards) {
+			Node<T> multiLevel = node.children.get(MULTI_LEVEL_WILDCARD);
+			if (multiLevel != null) {
+				result.addAll(multiLevel.values);
+			}
+		}
+		if (index == levels.length) {
+			result.addAll(node.values);
+			return;
+		}
+		Node<T> child = node.children.get(levels[index]);
+		if (child != null) {
+			match(child, levels, index + 1, true, result);
+		}
+		if (wildcards) {
+			child = node.children.get(SINGLE_LEVEL_WILDCARD);
+			if (child != null) {
+				match(child, levels, index + 1, true, result);
+			}
+		}
+	}
+
+	private static class Node<T> {
+
+		private final Node<T> parent;
+
+		private final Map<String, Node<T>> children = new ConcurrentHashMap<String, Node<T>>(4);
+
+		private final List<T> values = new CopyOnWriteArrayList<T>();
+
+		Node(Node<T> parent) {
+			this.parent = parent;
+		}
+
+		boolean isEmpty() {
+			return values.isEmpty() && children.isEmpty();
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.model.rule.internal.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author agent
+ * @since 1.4.0
+ */
+public class RuleExecutorTest {
+
+	private static final long TIMEOUT = 5;
+
+	private RuleExecutor executor;
+
+	/** released at the end of each test, so that no execution blocks forever */
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testDifferentRulesAreExecutedConcurrently() throws InterruptedException {
+		executor = new RuleExecutor(2, 10, "true");
+		CountDownLatch started = new CountDownLatch(2);
+		executor.execute("A", "A", new BlockingExecution(started));
+		executor.execute("B", "B", new BlockingExecution(started));
+
+		// both rules run at the same time, although all rules are serialized
+		assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testSameRuleIsExecutedConcurrentlyIfNotSerialized() throws InterruptedException {
+		executor = new RuleExecutor(2, 10, null);
+		CountDownLatch started = new CountDownLatch(2);
+		executor.execute("A", "A", new BlockingExecution(started));
+		executor.execute("A", "A", new BlockingExecution(started));
+
+		assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testSerializedRuleNeverRunsConcurrently() throws InterruptedException {
+		executor = new RuleExecutor(4, 100, "true");
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final List<Integer> order = new CopyOnWriteArrayList<Integer>();
+		final CountDownLatch finished = new CountDownLatch(50);
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < 50; i++) {
+			final int number = i;
+			expected.add(number);
+			executor.execute("A", "A", new Runnable() {
+				public void run() {
+					int current = running.incrementAndGet();
+					if (current > maxRunning.get()) {
+						maxRunning.set(current);
+					}
+					order.add(number);
+					Thread.yield();
+					running.decrementAndGet();
+					finished.countDown();
+				}
+			});
+		}
+
+		assertTrue(finished.await(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(1, maxRunning.get());
+		assertEquals(expected, order);
+	}
+
+	@Test
+	public void testOnlyNamedRulesAreSerialized() throws InterruptedException {
+		executor = new RuleExecutor(4, 10, "Rule A, Rule B");
+		assertTrue(executor.isSerialized("Rule A"));
+		assertTrue(executor.isSerialized("Rule B"));
+		assertFalse(executor.isSerialized("Rule C"));
+
+		CountDownLatch serializedStarted = new CountDownLatch(2);
+		executor.execute("A", "Rule A", new BlockingExecution(serializedStarted));
+		executor.execute("A", "Rule A", new BlockingExecution(serializedStarted));
+		CountDownLatch otherStarted = new CountDownLatch(2);
+		executor.execute("C", "Rule C", new BlockingExecution(otherStarted));
+		executor.execute("C", "Rule C", new BlockingExecution(otherStarted));
+
+		assertTrue(otherStarted.await(TIMEOUT, TimeUnit.SECONDS));
+		// the second execution of the serialized rule waits for the first one
+		assertFalse(serializedStarted.await(100, TimeUnit.MILLISECONDS));
+		assertEquals(1, serializedStarted.getCount());
+	}
+
+	@Test
+	public void testExecutionsAreDroppedIfThePoolIsBusy() throws InterruptedException {
+		executor = new RuleExecutor(1, 1, null);
+		CountDownLatch started = new CountDownLatch(1);
+		executor.execute("A", "A", new BlockingExecution(started));
+		assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+		executor.execute("B", "B", new BlockingExecution(null));
+
+		// the calling thread neither blocks nor runs the rule itself
+		final Thread caller = Thread.currentThread();
+		final AtomicInteger calledByCaller = new AtomicInteger();
+		executor.execute("C", "C", new Runnable() {
+			public void run() {
+				if (Thread.currentThread() == caller) {
+					calledByCaller.incrementAndGet();
+				}
+			}
+		});
+		assertEquals(1, executor.getDroppedCount());
+		assertEquals(0, calledByCaller.get());
+	}
+
+	@Test
+	public void testSerializedRuleIsExecutedAgainAfterADrop() throws InterruptedException {
+		executor = new RuleExecutor(1, 1, "X");
+		CountDownLatch started = new CountDownLatch(1);
+		executor.execute("A", "A", new BlockingExecution(started));
+		assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+		final CountDownLatch queuedFinished = new CountDownLatch(1);
+		executor.execute("B", "B", new Runnable() {
+			public void run() {
+				queuedFinished.countDown();
+			}
+		});
+
+		executor.execute("X", "X", new BlockingExecution(null));
+		executor.execute("X", "X", new BlockingExecution(null));
+		assertEquals(2, executor.getDroppedCount());
+
+		release.countDown();
+		assertTrue(queuedFinished.await(TIMEOUT, TimeUnit.SECONDS));
+		CountDownLatch executed = new CountDownLatch(1);
+		executor.execute("X", "X", new BlockingExecution(executed));
+		assertTrue(executed.await(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Counts down a latch once it has been started and blocks until the test is
+	 * over.
+	 */
+	private class BlockingExecution implements Runnable {
+
+		private final CountDownLatch started;
+
+		BlockingExecution(CountDownLatch started) {
+			this.started = started;
+		}
+
+		public void run() {
+			if (started != null) {
+				started.countDown();
+			}
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.model.rule.internal.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.CHANGE;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.COMMAND;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.UPDATE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.model.rule.rules.ChangedEventTrigger;
+import org.openhab.model.rule.rules.CommandEventTrigger;
+import org.openhab.model.rule.rules.EventTrigger;
+import org.openhab.model.rule.rules.Rule;
+import org.openhab.model.rule.rules.RuleModel;
+import org.openhab.model.rule.rules.RulesFactory;
+import org.openhab.model.rule.rules.UpdateEventTrigger;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Matches events against the trigger tables of a {@link RuleTriggerManager}.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class RuleTriggerManagerTest {
+
+	private static final RulesFactory factory = RulesFactory.eINSTANCE;
+
+	private RuleTriggerManager triggerManager;
+
+	private SwitchItem item;
+
+	@Before
+	public void setUp() {
+		triggerManager = new RuleTriggerManager();
+		item = new SwitchItem("Switch");
+	}
+
+	@Test
+	public void testUpdateTriggers() {
+		Rule anyUpdate = createRule("any update", updateTrigger("Switch", null));
+		Rule onUpdate = createRule("ON update", updateTrigger("Switch", "ON"));
+		triggerManager.addRule(anyUpdate);
+		triggerManager.addRule(onUpdate);
+
+		assertRules(triggerManager.getRules(UPDATE, item, (State) OnOffType.ON), anyUpdate, onUpdate);
+		assertRules(triggerManager.getRules(UPDATE, item, (State) OnOffType.OFF), anyUpdate);
+		assertRules(triggerManager.getRules(UPDATE, new SwitchItem("Other"), (State) OnOffType.ON));
+	}
+
+	@Test
+	public void testChangedTriggers() {
+		Rule anyChange = createRule("any change", changedTrigger("Switch", null, null));
+		Rule toOn = createRule("changed to ON", changedTrigger("Switch", null, "ON"));
+		Rule fromOn = createRule("changed from ON to OFF", changedTrigger("Switch", "ON", "OFF"));
+		triggerManager.addRule(anyChange);
+		triggerManager.addRule(toOn);
+		triggerManager.addRule(fromOn);
+
+		assertRules(triggerManager.getRules(CHANGE, item, OnOffType.OFF, OnOffType.ON), anyChange, toOn);
+		assertRules(triggerManager.getRules(CHANGE, item, OnOffType.ON, OnOffType.OFF), anyChange, fromOn);
+	}
+
+	@Test
+	public void testCommandTriggers() {
+		Rule anyCommand = createRule("any command", commandTrigger("Switch", null));
+		Rule offCommand = createRule("OFF command", commandTrigger("Switch", "OFF"));
+		triggerManager.addRule(anyCommand);
+		triggerManager.addRule(offCommand);
+
+		assertRules(triggerManager.getRules(COMMAND, item, (Command) OnOffType.ON), anyCommand);
+		assertRules(triggerManager.getRules(COMMAND, item, (Command) OnOffType.OFF), anyCommand, offCommand);
+	}
+
+	@Test
+	public void testRuleIsReturnedOnlyOnce() {
+		Rule rule = createRule("rule", updateTrigger("Switch", null), updateTrigger("Switch", "ON"));
+		triggerManager.addRule(rule);
+
+		assertRules(triggerManager.getRules(UPDATE, item, (State) OnOffType.ON), rule);
+		assertRules(triggerManager.getRules(UPDATE), rule);
+	}
+
+	@Test
+	public void testRemovedRulesAreNotMatched() {
+		RuleModel model = factory.createRuleModel();
+		Rule removed = createRule("removed", updateTrigger("Switch", null), commandTrigger("Switch", null));
+		model.getRules().add(removed);
+		Rule kept = createRule("kept", updateTrigger("Switch", null));
+		triggerManager.addRuleModel(model);
+		triggerManager.addRule(kept);
+
+		triggerManager.removeRuleModel(model);
+		assertRules(triggerManager.getRules(UPDATE, item, (State) OnOffType.ON), kept);
+		assertRules(triggerManager.getRules(COMMAND, item, (Command) OnOffType.ON));
+
+		triggerManager.removeRule(UPDATE, kept);
+		assertRules(triggerManager.getRules(UPDATE, item, (State) OnOffType.ON));
+		assertRules(triggerManager.getRules(UPDATE));
+	}
+
+	@Test
+	public void testTriggerStateIsParsedAgainIfAcceptedTypesChange() {
+		TestItem testItem = new TestItem("Test");
+		testItem.acceptedDataTypes = Lists.<Class<? extends State>>newArrayList(DecimalType.class);
+		Rule rule = createRule("rule", updateTrigger("Test", "5"));
+		triggerManager.addRule(rule);
+
+		assertRules(triggerManager.getRules(UPDATE, testItem, new DecimalType(5)), rule);
+		assertRules(triggerManager.getRules(UPDATE, testItem, new StringType("5")));
+
+		testItem.acceptedDataTypes = Lists.<Class<? extends State>>newArrayList(StringType.class);
+		assertRules(triggerManager.getRules(UPDATE, testItem, new StringType("5")), rule);
+		assertRules(triggerManager.getRules(UPDATE, testItem, new DecimalType(5)));
+	}
+
+	private static void assertRules(Iterable<Rule> actual, Rule... expected) {
+		List<Rule> rules = new ArrayList<Rule>();
+		for (Rule rule : actual) {
+			rules.add(rule);
+		}
+		assertEquals(Arrays.asList(expected), rules);
+	}
+
+	private static Rule createRule(String name, EventTrigger... triggers) {
+		Rule rule = factory.createRule();
+		rule.setName(name);
+		rule.getEventtrigger().addAll(Arrays.asList(triggers));
+		return rule;
+	}
+
+	private static UpdateEventTrigger updateTrigger(String itemName, String state) {
+		UpdateEventTrigger trigger = factory.createUpdateEventTrigger();
+		trigger.setItem(itemName);
+		trigger.setState(state);
+		return trigger;
+	}
+
+	private static ChangedEventTrigger changedTrigger(String itemName, String oldState, String newState) {
+		ChangedEventTrigger trigger = factory.createChangedEventTrigger();
+		trigger.setItem(itemName);
+		trigger.setOldState(oldState);
+		trigger.setNewState(newState);
+		return trigger;
+	}
+
+	private static CommandEventTrigger commandTrigger(String itemName, String command) {
+		CommandEventTrigger trigger = factory.createCommandEventTrigger();
+		trigger.setItem(itemName);
+		trigger.setCommand(command);
+		return trigger;
+	}
+
+	/**
+	 * An item whose accepted data types can be changed by the test.
+	 */
+	private static class TestItem extends GenericItem {
+
+		List<Class<? extends State>> acceptedDataTypes;
+
+		TestItem(String name) {
+			super(name);
+		}
+
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return acceptedDataTypes;
+		}
+
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return Collections.emptyList();
+		}
+	}
+
+}
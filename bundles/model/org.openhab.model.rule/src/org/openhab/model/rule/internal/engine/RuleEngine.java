@@ -19,6 +19,8 @@ import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerT
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.xtext.naming.QualifiedName;
@@ -31,7 +33,6 @@ import org.openhab.core.items.StateChangeListener;
 import org.openhab.core.scriptengine.Script;
 import org.openhab.core.scriptengine.ScriptEngine;
 import org.openhab.core.scriptengine.ScriptExecutionException;
-import org.openhab.core.scriptengine.ScriptExecutionThread;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.EventType;
 import org.openhab.core.types.State;
@@ -52,6 +53,14 @@ import com.google.common.collect.Lists;
  * It listens to changes to the rules folder, evaluates the trigger conditions of the rules and
  * schedules them for execution dependent on their triggering conditions.
  * 
+ * Rules are executed by a bounded thread pool. Its size and the size of its queue can be 
+ * configured by the system properties <code>openhab.rules.poolsize</code> and 
+ * <code>openhab.rules.queuesize</code>; rule executions which do not fit into the queue
+ * are dropped and logged. The system property <code>openhab.rules.serialize</code> takes
+ * a comma separated list of rule names, or <code>true</code> for all rules. These rules are
+ * never executed concurrently with themselves, while different rules are still executed
+ * in parallel.
+ * 
  * @author Kai Kreuzer
  * @since 0.9.0
  *
@@ -61,14 +70,28 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 
 		static private final Logger logger = LoggerFactory.getLogger(RuleEngine.class);
 		
+		static private final int DEFAULT_POOL_SIZE = 10;
+
+		static private final int DEFAULT_QUEUE_SIZE = 1000;
+		
 		private ItemRegistry itemRegistry;
 		private ModelRepository modelRepository;
 		private ScriptEngine scriptEngine;
 
 		private RuleTriggerManager triggerManager;
+		
+		/** executes all triggered rules */
+		private RuleExecutor ruleExecutor;
+		
+		/** caches the scripts of the rules, so that they do not need to be created on every execution */
+		private Map<Rule, Script> scriptCache = new ConcurrentHashMap<Rule, Script>();
 						
 		public void activate() {
 			triggerManager = new RuleTriggerManager();
+			
+			int poolSize = getIntProperty("openhab.rules.poolsize", DEFAULT_POOL_SIZE);
+			int queueSize = getIntProperty("openhab.rules.queuesize", DEFAULT_QUEUE_SIZE);
+			ruleExecutor = new RuleExecutor(poolSize, queueSize, System.getProperty("openhab.rules.serialize"));
 
 			if(!isEnabled()) {
 				logger.info("Rule engine is disabled.");
@@ -100,6 +123,9 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 			executeRules(triggerManager.getRules(SHUTDOWN));
 			triggerManager.clearAll();
 			triggerManager = null;
+			// let the pending rule executions finish, but do not accept new ones
+			ruleExecutor.shutdown();
+			scriptCache.clear();
 		}
 		
 		public void setItemRegistry(ItemRegistry itemRegistry) {
@@ -228,6 +254,10 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 				if(isEnabled() && modelName.endsWith("rules")) {
 					RuleModel model = (RuleModel) modelRepository.getModel(modelName);
 	
+					// the cached scripts of the rules of the old model must not be used any longer
+					scriptCache.clear();
+					ruleExecutor.clearRules();
+	
 					// remove the rules from the trigger sets
 					if(type == org.openhab.model.core.EventType.REMOVED ||
 							type == org.openhab.model.core.EventType.MODIFIED) {
@@ -253,7 +283,7 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 				
 				for(Rule rule : startupRules) {
 					try {
-						Script script = scriptEngine.newScriptFromXExpression(rule.getScript());						
+						Script script = getScript(rule);
 						logger.debug("Executing startup rule '{}'", rule.getName());
 						RuleEvaluationContext context = new RuleEvaluationContext();
 						context.setGlobalContext(RuleContextHelper.getContext(rule));
@@ -275,30 +305,74 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 			}
 		}
 
-		protected synchronized void executeRule(Rule rule) {
+		protected void executeRule(Rule rule) {
 			executeRule(rule, new RuleEvaluationContext());
 		}
 			
-		protected synchronized void executeRule(Rule rule, RuleEvaluationContext context) {
-			Script script = scriptEngine.newScriptFromXExpression(rule.getScript());
+		protected void executeRule(final Rule rule, RuleEvaluationContext context) {
+			final Script script = getScript(rule);
 			
 			logger.debug("Executing rule '{}'", rule.getName());
 			
-			context.setGlobalContext(RuleContextHelper.getContext(rule));
+			// every execution gets its own context, as the same trigger context is passed to several rules
+			final RuleEvaluationContext ruleContext = new RuleEvaluationContext(context);
+			ruleContext.setGlobalContext(RuleContextHelper.getContext(rule));
 			
-			ScriptExecutionThread thread = new ScriptExecutionThread(rule.getName(), script, context);
-			thread.start();
+			Runnable execution = new Runnable() {
+				public void run() {
+					try {
+						script.execute(ruleContext);
+					} catch (ScriptExecutionException e) {
+						String msg = e.getCause().getMessage();
+						if (msg==null) {
+							logger.error("Error during the execution of rule '{}'", rule.getName(), e.getCause());
+						} else {
+							logger.error("Error during the execution of rule '{}': {}", new String[] { rule.getName(), msg });
+						}
+					}
+				}
+			};
+			
+			ruleExecutor.execute(rule, rule.getName(), execution);
 		}
 
-		protected synchronized void executeRules(Iterable<Rule> rules) {
+		protected void executeRules(Iterable<Rule> rules) {
 			executeRules(rules, new RuleEvaluationContext());
 		}
 		
-		protected synchronized void executeRules(Iterable<Rule> rules, RuleEvaluationContext context) {
+		protected void executeRules(Iterable<Rule> rules, RuleEvaluationContext context) {
 			for(Rule rule : rules) {
 				executeRule(rule, context);
 			}
 		}
+		
+		/**
+		 * Returns the script of a rule. Scripts are cached until the rule models change.
+		 * 
+		 * @param rule the rule to get the script for
+		 * @return the script of <code>rule</code>
+		 */
+		private Script getScript(Rule rule) {
+			Script script = scriptCache.get(rule);
+			if (script == null) {
+				script = scriptEngine.newScriptFromXExpression(rule.getScript());
+				scriptCache.put(rule, script);
+			}
+			return script;
+		}
+		
+		private int getIntProperty(String name, int defaultValue) {
+			String value = System.getProperty(name);
+			if (value != null) {
+				try {
+					return Integer.parseInt(value.trim());
+				} catch (NumberFormatException e) {
+					logger.warn("Invalid value '{}' for system property '{}', using default value {}", 
+							new Object[] { value, name, defaultValue });
+				}
+			}
+			return defaultValue;
+		}
 				
 		/**
 		 * we need to be able to deactivate the rule execution, otherwise the openHAB designer
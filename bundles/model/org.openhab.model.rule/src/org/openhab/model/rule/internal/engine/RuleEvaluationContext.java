@@ -21,6 +21,10 @@ public class RuleEvaluationContext extends DefaultEvaluationContext {
 		super(new DefaultEvaluationContext());
 	}
 	
+	public RuleEvaluationContext(IEvaluationContext parent) {
+		super(parent);
+	}
+	
 	public void setGlobalContext(IEvaluationContext context) {
 		this.globalContext = context;
 	}
@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.model.rule.internal.engine;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes the triggered rules on a bounded thread pool. If all threads are
+ * busy and the queue of the pool is full, further executions are dropped and
+ * logged, so that the thread which triggers a rule is never blocked.
+ *
+ * Rules can be serialized, which means that the executions of such a rule are
+ * run one after the other, while different rules are still executed in
+ * parallel. Either all rules or the rules with the given names are serialized.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class RuleExecutor {
+
+	static private final Logger logger = LoggerFactory.getLogger(RuleExecutor.class);
+
+	/** the thread pool which executes all rules */
+	private final ThreadPoolExecutor executor;
+
+	/** if <code>true</code>, all rules are serialized */
+	private final boolean serializeAll;
+
+	/** the names of the rules which are serialized */
+	private final Set<String> serializedRules;
+
+	/** holds the pending executions of every serialized rule */
+	private final Map<Object, RuleExecutionQueue> ruleQueues = new ConcurrentHashMap<Object, RuleExecutionQueue>();
+
+	/** the number of executions which have been dropped */
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	/**
+	 * @param poolSize the number of threads which execute rules
+	 * @param queueSize the number of executions which can wait for a thread
+	 * @param serialize <code>true</code> to serialize all rules, or a comma separated list
+	 *        of the names of the rules which are serialized, may be <code>null</code>
+	 */
+	public RuleExecutor(int poolSize, int queueSize, String serialize) {
+		executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), new RuleThreadFactory(), new DropPolicy());
+		serializeAll = "true".equalsIgnoreCase(StringUtils.trim(serialize));
+		Set<String> ruleNames = new HashSet<String>();
+		if (!serializeAll && serialize != null) {
+			for (String ruleName : serialize.split(",")) {
+				if (StringUtils.isNotBlank(ruleName)) {
+					ruleNames.add(ruleName.trim());
+				}
+			}
+		}
+		serializedRules = Collections.unmodifiableSet(ruleNames);
+	}
+
+	/**
+	 * Executes a rule.
+	 *
+	 * @param rule the rule, which identifies the executions to serialize
+	 * @param ruleName the name of the rule
+	 * @param execution the execution of the rule
+	 */
+	public void execute(Object rule, String ruleName, Runnable execution) {
+		if (isSerialized(ruleName)) {
+			getRuleQueue(rule).execute(new RuleExecution(ruleName, execution));
+		} else {
+			executor.execute(new RuleExecution(ruleName, execution));
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the executions of the rule with the given name are serialized
+	 */
+	public boolean isSerialized(String ruleName) {
+		return serializeAll || serializedRules.contains(ruleName);
+	}
+
+	/**
+	 * @return the number of executions which have been dropped because the pool was busy
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Forgets the rules, e.g. because their model has changed. Pending
+	 * executions are still run.
+	 */
+	public void clearRules() {
+		ruleQueues.clear();
+	}
+
+	/**
+	 * Lets the pending executions finish, but does not accept new ones.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+		ruleQueues.clear();
+		if (droppedCount.get() > 0) {
+			logger.info("{} rule executions have been dropped as the rule engine was busy", droppedCount.get());
+		}
+	}
+
+	private synchronized RuleExecutionQueue getRuleQueue(Object rule) {
+		RuleExecutionQueue queue = ruleQueues.get(rule);
+		if (queue == null) {
+			queue = new RuleExecutionQueue();
+			ruleQueues.put(rule, queue);
+		}
+		return queue;
+	}
+
+	/**
+	 * A single execution of a rule, which continues with the next execution of
+	 * its rule if the rule is serialized.
+	 */
+	private static class RuleExecution implements Runnable {
+
+		final String ruleName;
+
+		private final Runnable execution;
+
+		RuleExecutionQueue queue = null;
+
+		RuleExecution(String ruleName, Runnable execution) {
+			this.ruleName = ruleName;
+			this.execution = execution;
+		}
+
+		public void run() {
+			try {
+				execution.run();
+			} finally {
+				if (queue != null) {
+					queue.scheduleNext();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Executes the executions of a single rule one after the other on the
+	 * thread pool, so that the rule never runs concurrently with itself.
+	 */
+	private class RuleExecutionQueue {
+
+		private final Queue<RuleExecution> executions = new LinkedList<RuleExecution>();
+
+		private boolean active = false;
+
+		void execute(RuleExecution execution) {
+			execution.queue = this;
+			RuleExecution next = null;
+			synchronized (this) {
+				executions.offer(execution);
+				if (!active) {
+					next = executions.poll();
+					active = true;
+				}
+			}
+			if (next != null) {
+				executor.execute(next);
+			}
+		}
+
+		void scheduleNext() {
+			RuleExecution next;
+			synchronized (this) {
+				next = executions.poll();
+				active = next != null;
+			}
+			if (next != null) {
+				executor.execute(next);
+			}
+		}
+
+		/**
+		 * Drops the pending executions after the pool has rejected the next
+		 * one, which would otherwise block the queue forever.
+		 *
+		 * @return the number of dropped executions
+		 */
+		synchronized int rejected() {
+			int count = executions.size();
+			executions.clear();
+			active = false;
+			return count;
+		}
+	}
+
+	/**
+	 * Logs and drops the executions which are rejected by the thread pool.
+	 */
+	private class DropPolicy implements RejectedExecutionHandler {
+
+		public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+			RuleExecution execution = (RuleExecution) runnable;
+			int count = 1;
+			if (execution.queue != null) {
+				count += execution.queue.rejected();
+			}
+			if (executor.isShutdown()) {
+				logger.debug("Rule '{}' is not executed as the rule engine has been stopped", execution.ruleName);
+			} else {
+				droppedCount.addAndGet(count);
+				logger.warn("Dropped {} executions of rule '{}' as {} rule executions are pending already",
+						new Object[] { count, execution.ruleName, executor.getQueue().size() });
+			}
+		}
+	}
+
+	/**
+	 * Creates the named daemon threads of the rule executor.
+	 */
+	private static class RuleThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Rule execution " + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
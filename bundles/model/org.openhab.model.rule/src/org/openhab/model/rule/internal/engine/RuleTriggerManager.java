@@ -17,12 +17,15 @@ import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerT
 import static org.quartz.JobBuilder.newJob;
 import static org.quartz.TriggerBuilder.newTrigger;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.openhab.core.items.Item;
@@ -51,9 +54,7 @@ import org.quartz.impl.matchers.GroupMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
@@ -61,6 +62,12 @@ import com.google.common.collect.Sets;
  * It keeps lists of which rule must be executed for which trigger and takes
  * over the evaluation of states and trigger conditions for the rule engine.
  * 
+ * The event triggers of all rules are compiled into per-item matcher tables when
+ * the rules are added. The states and commands of the triggers are parsed only once
+ * for the accepted types of the item, so that matching an event is a simple lookup
+ * followed by some equality checks. The tables are modified under a lock, but
+ * are safe to be read concurrently without locking.
+ * 
  * @author Kai Kreuzer
  * @since 0.9.0
  *
@@ -79,12 +86,12 @@ public class RuleTriggerManager {
 	}
 	
 	// lookup maps for different triggering conditions
-	private Map<String, Set<Rule>> updateEventTriggeredRules = Maps.newHashMap();
-	private Map<String, Set<Rule>> changedEventTriggeredRules = Maps.newHashMap();
-	private Map<String, Set<Rule>> commandEventTriggeredRules = Maps.newHashMap();
-	private List<Rule> systemStartupTriggeredRules = Lists.newArrayList();
-	private List<Rule> systemShutdownTriggeredRules = Lists.newArrayList();
-	private List<Rule> timerEventTriggeredRules = Lists.newArrayList();
+	private Map<String, TriggerMatcher[]> updateEventTriggers = new ConcurrentHashMap<String, TriggerMatcher[]>();
+	private Map<String, TriggerMatcher[]> changedEventTriggers = new ConcurrentHashMap<String, TriggerMatcher[]>();
+	private Map<String, TriggerMatcher[]> commandEventTriggers = new ConcurrentHashMap<String, TriggerMatcher[]>();
+	private List<Rule> systemStartupTriggeredRules = new CopyOnWriteArrayList<Rule>();
+	private List<Rule> systemShutdownTriggeredRules = new CopyOnWriteArrayList<Rule>();
+	private List<Rule> timerEventTriggeredRules = new CopyOnWriteArrayList<Rule>();
 
 	// the scheduler used for timer events
 	private Scheduler scheduler;
@@ -109,9 +116,9 @@ public class RuleTriggerManager {
 			case STARTUP:  result = systemStartupTriggeredRules; break;
 			case SHUTDOWN: result = systemShutdownTriggeredRules; break;
 			case TIMER:    result = timerEventTriggeredRules; break;
-			case UPDATE:   result = Iterables.concat(updateEventTriggeredRules.values()); break;
-			case CHANGE:   result = Iterables.concat(changedEventTriggeredRules.values()); break;
-			case COMMAND:  result = Iterables.concat(commandEventTriggeredRules.values()); break;
+			case UPDATE:   result = getRules(updateEventTriggers); break;
+			case CHANGE:   result = getRules(changedEventTriggers); break;
+			case COMMAND:  result = getRules(commandEventTriggers); break;
 			default:       result = Sets.newHashSet();
 		}
 		return result;
@@ -154,23 +161,17 @@ public class RuleTriggerManager {
 		return internalGetRules(triggerType, item, null, command);
 	}
 
-	private Iterable<Rule> getAllRules(TriggerTypes type, String itemName) {
-		switch(type) {
-			case STARTUP:  return systemStartupTriggeredRules;
-			case SHUTDOWN: return systemShutdownTriggeredRules;
-			case UPDATE:   return updateEventTriggeredRules.get(itemName);
-			case CHANGE:   return changedEventTriggeredRules.get(itemName);
-			case COMMAND:  return commandEventTriggeredRules.get(itemName);
-			default:       return Sets.newHashSet();
+	private Iterable<Rule> getRules(Map<String, TriggerMatcher[]> triggers) {
+		Set<Rule> rules = new LinkedHashSet<Rule>();
+		for(TriggerMatcher[] matchers : triggers.values()) {
+			for(TriggerMatcher matcher : matchers) {
+				rules.add(matcher.rule);
+			}
 		}
+		return rules;
 	}
 
 	private Iterable<Rule> internalGetRules(TriggerTypes triggerType, Item item, Type oldType, Type newType) {
-		List<Rule> result = Lists.newArrayList();
-		Iterable<Rule> rules = getAllRules(triggerType, item.getName());
-		if(rules==null) {
-			rules = Lists.newArrayList();
-		}
 		switch(triggerType) {
 		case STARTUP:  return systemStartupTriggeredRules;
 		case SHUTDOWN: return systemShutdownTriggeredRules;
@@ -178,71 +179,67 @@ public class RuleTriggerManager {
 		case UPDATE:   
 			if(newType instanceof State) {
 				State state = (State) newType;
-				for(Rule rule : rules) {
-					for(EventTrigger t : rule.getEventtrigger()) {
-						if (t instanceof UpdateEventTrigger) {
-							UpdateEventTrigger ut = (UpdateEventTrigger) t;
-							if(ut.getItem().equals(item.getName())) {
-								if(ut.getState()!=null) {
-									State triggerState = TypeParser.parseState(item.getAcceptedDataTypes(), ut.getState());
-									if(!state.equals(triggerState)) {
-										continue;
-									}
-								}
-								result.add(rule);
-							}
+				List<Rule> result = Lists.newArrayList();
+				TriggerMatcher[] matchers = updateEventTriggers.get(item.getName());
+				if(matchers!=null) {
+					for(TriggerMatcher matcher : matchers) {
+						if(matcher.newState!=null && !state.equals(matcher.newState.getState(item))) {
+							continue;
 						}
+						addToResult(result, matcher.rule);
 					}
 				}
+				return result;
 			}
 			break;
 		case CHANGE:
 			if(newType instanceof State && oldType instanceof State) {
 				State newState = (State) newType;
 				State oldState = (State) oldType;
-				for(Rule rule : rules) {
-					for(EventTrigger t : rule.getEventtrigger()) {
-						if (t instanceof ChangedEventTrigger) {
-							ChangedEventTrigger ct = (ChangedEventTrigger) t;						
-							if(ct.getItem().equals(item.getName())) {
-								if(ct.getOldState()!=null) {
-									State triggerOldState = TypeParser.parseState(item.getAcceptedDataTypes(), ct.getOldState());
-									if(!oldState.equals(triggerOldState)) {
-										continue;
-									}								
-								}
-								if(ct.getNewState()!=null) {
-									State triggerNewState = TypeParser.parseState(item.getAcceptedDataTypes(), ct.getNewState());
-									if(!newState.equals(triggerNewState)) {
-										continue;
-									}								
-								}
-								result.add(rule);
-							}
+				List<Rule> result = Lists.newArrayList();
+				TriggerMatcher[] matchers = changedEventTriggers.get(item.getName());
+				if(matchers!=null) {
+					for(TriggerMatcher matcher : matchers) {
+						if(matcher.oldState!=null && !oldState.equals(matcher.oldState.getState(item))) {
+							continue;
 						}
+						if(matcher.newState!=null && !newState.equals(matcher.newState.getState(item))) {
+							continue;
+						}
+						addToResult(result, matcher.rule);
 					}
 				}
+				return result;
 			}
 			break;
 		case COMMAND:  
 			if(newType instanceof Command) {
 				Command command = (Command) newType;
-				for(Rule rule : rules) {
-					for(EventTrigger t : rule.getEventtrigger()) {
-						if (t instanceof CommandEventTrigger) {
-							CommandEventTrigger ct = (CommandEventTrigger) t;
-							Command triggerCommand = TypeParser.parseCommand(item.getAcceptedCommandTypes(), ct.getCommand());
-							if(ct.getItem().equals(item.getName()) &&
-									(triggerCommand==null || command.equals(triggerCommand))) {
-								result.add(rule);
+				List<Rule> result = Lists.newArrayList();
+				TriggerMatcher[] matchers = commandEventTriggers.get(item.getName());
+				if(matchers!=null) {
+					for(TriggerMatcher matcher : matchers) {
+						if(matcher.command!=null) {
+							Command triggerCommand = matcher.command.getCommand(item);
+							if(triggerCommand!=null && !command.equals(triggerCommand)) {
+								continue;
 							}
 						}
+						addToResult(result, matcher.rule);
 					}
 				}
+				return result;
 			}
 			break;
 		}
-		return result;
+		return Collections.emptyList();
+	}
+	
+	private void addToResult(List<Rule> result, Rule rule) {
+		// a rule is executed only once, even if several of its triggers match
+		if(!result.contains(rule)) {
+			result.add(rule);
+		}
 	}
 
 	/**
@@ -250,13 +247,13 @@ public class RuleTriggerManager {
 	 * 
 	 * @param type the trigger type 
 	 */
-	public void clear(TriggerTypes type) {
+	public synchronized void clear(TriggerTypes type) {
 		switch(type) {
 			case STARTUP:  	systemStartupTriggeredRules.clear(); break;
 			case SHUTDOWN: 	systemShutdownTriggeredRules.clear(); break;
-			case UPDATE:   	updateEventTriggeredRules.clear(); break;
-			case CHANGE:   	changedEventTriggeredRules.clear(); break;
-			case COMMAND:  	commandEventTriggeredRules.clear(); break;
+			case UPDATE:   	updateEventTriggers.clear(); break;
+			case CHANGE:   	changedEventTriggers.clear(); break;
+			case COMMAND:  	commandEventTriggers.clear(); break;
 			case TIMER:    	for(Rule rule : timerEventTriggeredRules) {
 								removeTimerRule(rule);
 							}
@@ -290,28 +287,20 @@ public class RuleTriggerManager {
 				systemShutdownTriggeredRules.add(rule);
 			} else if(t instanceof CommandEventTrigger) {
 				CommandEventTrigger ceTrigger = (CommandEventTrigger) t;
-				Set<Rule> rules = commandEventTriggeredRules.get(ceTrigger.getItem());
-				if(rules==null) {
-					rules = new HashSet<Rule>();
-					commandEventTriggeredRules.put(ceTrigger.getItem(), rules);
-				}
-				rules.add(rule);
+				TriggerMatcher matcher = new TriggerMatcher(rule);
+				matcher.command = TriggerValue.create(ceTrigger.getCommand());
+				addMatcher(commandEventTriggers, ceTrigger.getItem(), matcher);
 			} else if(t instanceof UpdateEventTrigger) {
 				UpdateEventTrigger ueTrigger = (UpdateEventTrigger) t;
-				Set<Rule> rules = updateEventTriggeredRules.get(ueTrigger.getItem());
-				if(rules==null) {
-					rules = new HashSet<Rule>();
-					updateEventTriggeredRules.put(ueTrigger.getItem(), rules);
-				}
-				rules.add(rule);
+				TriggerMatcher matcher = new TriggerMatcher(rule);
+				matcher.newState = TriggerValue.create(ueTrigger.getState());
+				addMatcher(updateEventTriggers, ueTrigger.getItem(), matcher);
 			} else if(t instanceof ChangedEventTrigger) {
 				ChangedEventTrigger ceTrigger = (ChangedEventTrigger) t;
-				Set<Rule> rules = changedEventTriggeredRules.get(ceTrigger.getItem());
-				if(rules==null) {
-					rules = new HashSet<Rule>();
-					changedEventTriggeredRules.put(ceTrigger.getItem(), rules);
-				}
-				rules.add(rule);
+				TriggerMatcher matcher = new TriggerMatcher(rule);
+				matcher.oldState = TriggerValue.create(ceTrigger.getOldState());
+				matcher.newState = TriggerValue.create(ceTrigger.getNewState());
+				addMatcher(changedEventTriggers, ceTrigger.getItem(), matcher);
 			} else if(t instanceof TimerTrigger) {
 				timerEventTriggeredRules.add(rule);
 				try {
@@ -323,19 +312,32 @@ public class RuleTriggerManager {
 		}
 	}
 		
+	private void addMatcher(Map<String, TriggerMatcher[]> triggers, String itemName, TriggerMatcher matcher) {
+		TriggerMatcher[] matchers = triggers.get(itemName);
+		if(matchers==null) {
+			triggers.put(itemName, new TriggerMatcher[] { matcher });
+		} else {
+			// the arrays are never modified once they are published, as they are read without locking
+			TriggerMatcher[] newMatchers = new TriggerMatcher[matchers.length + 1];
+			System.arraycopy(matchers, 0, newMatchers, 0, matchers.length);
+			newMatchers[matchers.length] = matcher;
+			triggers.put(itemName, newMatchers);
+		}
+	}
+		
 	/**
 	 * Removes a given rule from the mapping tables of a certain trigger type
 	 * 
 	 * @param type the trigger type for which the rule should be removed
 	 * @param rule the rule to add
 	 */
-	public void removeRule(TriggerTypes type, Rule rule) {
+	public synchronized void removeRule(TriggerTypes type, Rule rule) {
 		switch(type) {
 			case STARTUP:  	systemStartupTriggeredRules.remove(rule); break;
 			case SHUTDOWN: 	systemShutdownTriggeredRules.remove(rule); break;
-			case UPDATE:   	updateEventTriggeredRules.remove(rule); break;
-			case CHANGE:   	changedEventTriggeredRules.remove(rule); break;
-			case COMMAND:  	commandEventTriggeredRules.remove(rule); break;
+			case UPDATE:   	removeMatchers(updateEventTriggers, Collections.singleton(rule)); break;
+			case CHANGE:   	removeMatchers(changedEventTriggers, Collections.singleton(rule)); break;
+			case COMMAND:  	removeMatchers(commandEventTriggers, Collections.singleton(rule)); break;
 			case TIMER:    	timerEventTriggeredRules.remove(rule); 
 							removeTimerRule(rule);
 							break;
@@ -347,7 +349,7 @@ public class RuleTriggerManager {
 	 * 
 	 * @param model the rule model
 	 */
-	public void addRuleModel(RuleModel model) {
+	public synchronized void addRuleModel(RuleModel model) {
 		for(Rule rule : model.getRules()) {
 			addRule(rule);
 		}
@@ -358,37 +360,47 @@ public class RuleTriggerManager {
 	 * 
 	 * @param ruleModel the rule model
 	 */
-	public void removeRuleModel(RuleModel ruleModel) {
-		removeRules(UPDATE, updateEventTriggeredRules.values(), ruleModel);
-		removeRules(CHANGE, changedEventTriggeredRules.values(), ruleModel);
-		removeRules(COMMAND, commandEventTriggeredRules.values(), ruleModel);
-		removeRules(STARTUP, Collections.singletonList(systemStartupTriggeredRules), ruleModel);
-		removeRules(SHUTDOWN, Collections.singletonList(systemShutdownTriggeredRules), ruleModel);		
-		removeRules(TIMER, Collections.singletonList(timerEventTriggeredRules), ruleModel);		
+	public synchronized void removeRuleModel(RuleModel ruleModel) {
+		Collection<Rule> rules = ruleModel!=null ? ruleModel.getRules() : Collections.<Rule>emptyList();
+		removeMatchers(updateEventTriggers, rules);
+		removeMatchers(changedEventTriggers, rules);
+		removeMatchers(commandEventTriggers, rules);
+		removeRules(STARTUP, systemStartupTriggeredRules, rules);
+		removeRules(SHUTDOWN, systemShutdownTriggeredRules, rules);		
+		removeRules(TIMER, timerEventTriggeredRules, rules);		
 	}
 
-	private void removeRules(TriggerTypes type, Collection<? extends Collection<Rule>> ruleSets, RuleModel model) {
-		for(Collection<Rule> ruleSet : ruleSets) {
-			// first remove all rules of the model, if not null (=non-existent)
-			if(model!=null) {
-				for(Rule rule : model.getRules()) {
-					ruleSet.remove(rule);
-					if(type==TIMER) {
-						removeTimerRule(rule);
-					}
+	private void removeRules(TriggerTypes type, Collection<Rule> ruleSet, Collection<Rule> rules) {
+		// remove all given rules and also all proxified rules from the set
+		for(Rule rule : new ArrayList<Rule>(ruleSet)) {
+			if(rules.contains(rule) || rule.eIsProxy()) {
+				ruleSet.remove(rule);
+				if(type==TIMER && !rules.contains(rule)) {
+					removeTimerRule(rule);
 				}
 			}
+		}
+		if(type==TIMER) {
+			for(Rule rule : rules) {
+				removeTimerRule(rule);
+			}
+		}
+	}
 
-			// now also remove all proxified rules from the set
-			Set<Rule> clonedSet = new HashSet<Rule>(ruleSet);
-			for(Rule rule : clonedSet) {
-				if(rule.eIsProxy()) {
-					ruleSet.remove(rule);
-					if(type==TIMER) {
-						removeTimerRule(rule);
-					}
+	private void removeMatchers(Map<String, TriggerMatcher[]> triggers, Collection<Rule> rules) {
+		for(Map.Entry<String, TriggerMatcher[]> entry : triggers.entrySet()) {
+			List<TriggerMatcher> remainingMatchers = new ArrayList<TriggerMatcher>();
+			for(TriggerMatcher matcher : entry.getValue()) {
+				// remove all given rules and also all proxified rules
+				if(!rules.contains(matcher.rule) && !matcher.rule.eIsProxy()) {
+					remainingMatchers.add(matcher);
 				}
 			}
+			if(remainingMatchers.isEmpty()) {
+				triggers.remove(entry.getKey());
+			} else if(remainingMatchers.size() < entry.getValue().length) {
+				triggers.put(entry.getKey(), remainingMatchers.toArray(new TriggerMatcher[remainingMatchers.size()]));
+			}
 		}
 	}
 
@@ -474,4 +486,83 @@ public class RuleTriggerManager {
 		}
 		return jobIdentity;
 	}
+
+	/**
+	 * Holds the conditions of a single event trigger of a rule.
+	 * A condition which is <code>null</code> is always fulfilled.
+	 */
+	private static class TriggerMatcher {
+		
+		final Rule rule;
+		TriggerValue oldState;
+		TriggerValue newState;
+		TriggerValue command;
+		
+		TriggerMatcher(Rule rule) {
+			this.rule = rule;
+		}
+	}
+	
+	/**
+	 * Holds a state or command of a trigger as it is defined in the rule and 
+	 * caches its parsed value. As the parsed value depends on the types, which
+	 * are accepted by the item, the value is parsed again if these types change.
+	 */
+	private static class TriggerValue {
+		
+		private final String value;
+		
+		private volatile ParsedValue<State> parsedState;
+		
+		private volatile ParsedValue<Command> parsedCommand;
+		
+		private TriggerValue(String value) {
+			this.value = value;
+		}
+		
+		static TriggerValue create(String value) {
+			return value!=null ? new TriggerValue(value) : null;
+		}
+		
+		State getState(Item item) {
+			List<Class<? extends State>> types = item.getAcceptedDataTypes();
+			ParsedValue<State> parsed = parsedState;
+			if(parsed==null || !parsed.isParsedFor(types)) {
+				parsed = new ParsedValue<State>(types, TypeParser.parseState(types, value));
+				parsedState = parsed;
+			}
+			return parsed.value;
+		}
+
+		Command getCommand(Item item) {
+			List<Class<? extends Command>> types = item.getAcceptedCommandTypes();
+			ParsedValue<Command> parsed = parsedCommand;
+			if(parsed==null || !parsed.isParsedFor(types)) {
+				parsed = new ParsedValue<Command>(types, TypeParser.parseCommand(types, value));
+				parsedCommand = parsed;
+			}
+			return parsed.value;
+		}
+	}
+	
+	/**
+	 * An immutable pair of the accepted types and the value which was parsed for them.
+	 */
+	private static class ParsedValue<T> {
+		
+		final List<?> sourceTypes;
+		final List<?> types;
+		final T value;
+		
+		ParsedValue(List<?> types, T value) {
+			this.sourceTypes = types;
+			this.types = new ArrayList<Object>(types);
+			this.value = value;
+		}
+		
+		boolean isParsedFor(List<?> types) {
+			// most items return the same list instance on every call
+			return sourceTypes==types || this.types.equals(types);
+		}
+	}
 }
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.model.script.internal.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.xbase.XExpression;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.scriptengine.ScriptParsingException;
+
+/**
+ * Checks that parsed scripts are cached and that the synthetic resources
+ * created for parsing do not stay in the resource set.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class ScriptEngineImplTest {
+
+	private static final String CACHE_SIZE_PROPERTY = "openhab.scripts.cachesize";
+
+	private ScriptEngineImpl scriptEngine;
+
+	@Before
+	public void setUp() {
+		System.setProperty(CACHE_SIZE_PROPERTY, "2");
+		scriptEngine = new ScriptEngineImpl();
+		scriptEngine.activate();
+	}
+
+	@After
+	public void tearDown() {
+		scriptEngine.deactivate();
+		System.clearProperty(CACHE_SIZE_PROPERTY);
+	}
+
+	@Test
+	public void testScriptIsParsedOnlyOnce() throws ScriptParsingException {
+		XExpression expression = parse("1 + 1");
+		assertSame(expression, parse("1 + 1"));
+		assertEquals(Arrays.asList("__synthetic1"), getSyntheticResources());
+	}
+
+	@Test
+	public void testResourceOfInvalidScriptIsRemoved() {
+		try {
+			parse("1 +");
+			fail("the script must not be parsed");
+		} catch (ScriptParsingException e) {
+			// expected
+		}
+		assertEquals(0, getSyntheticResources().size());
+	}
+
+	@Test
+	public void testResourceOfEvictedScriptIsRemoved() throws ScriptParsingException {
+		XExpression expression = parse("1");
+		parse("2");
+		parse("3");
+		assertEquals(Arrays.asList("__synthetic2", "__synthetic3"), getSyntheticResources());
+
+		// the evicted script is parsed again
+		assertNotSame(expression, parse("1"));
+		assertEquals(Arrays.asList("__synthetic3", "__synthetic4"), getSyntheticResources());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedScriptIsEvicted() throws ScriptParsingException {
+		XExpression expression = parse("1");
+		parse("2");
+		assertSame(expression, parse("1"));
+		parse("3");
+
+		assertSame(expression, parse("1"));
+		assertEquals(Arrays.asList("__synthetic1", "__synthetic3"), getSyntheticResources());
+	}
+
+	private XExpression parse(String script) throws ScriptParsingException {
+		return ((ScriptImpl) scriptEngine.newScriptFromString(script)).getXExpression();
+	}
+
+	/**
+	 * Returns the names of the synthetic resources in the resource set, which
+	 * also holds the resources of the Java types used by the scripts.
+	 */
+	private List<String> getSyntheticResources() {
+		List<String> names = new ArrayList<String>();
+		for (Resource resource : scriptEngine.resourceSet.getResources()) {
+			String name = resource.getURI().trimFileExtension().lastSegment();
+			if (name != null && name.startsWith("__synthetic")) {
+				names.add(name);
+			}
+		}
+		return names;
+	}
+
+}
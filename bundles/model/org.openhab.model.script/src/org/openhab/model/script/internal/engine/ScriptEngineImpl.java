@@ -11,7 +11,10 @@ package org.openhab.model.script.internal.engine;
 import static com.google.common.collect.Iterables.filter;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.URI;
@@ -33,6 +36,8 @@ import org.openhab.core.scriptengine.ScriptEngine;
 import org.openhab.core.scriptengine.ScriptExecutionException;
 import org.openhab.core.scriptengine.ScriptParsingException;
 import org.openhab.model.script.ScriptStandaloneSetup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Predicate;
 import com.google.inject.Injector;
@@ -40,6 +45,11 @@ import com.google.inject.Injector;
 /**
  * This is the implementation of a {@link ScriptEngine} which is made available as an OSGi service.
  * 
+ * Parsed scripts are kept in a cache with LRU eviction, whose size can be set by the system 
+ * property <code>openhab.scripts.cachesize</code>. The synthetic resources, which are created
+ * for parsing, are removed from the resource set as soon as they are no longer needed, i.e.
+ * on parsing errors or when the script is evicted from the cache.
+ * 
  * @author Kai Kreuzer
  * @since 0.9.0
  *
@@ -47,8 +57,18 @@ import com.google.inject.Injector;
 @SuppressWarnings("restriction")
 public class ScriptEngineImpl implements ScriptEngine {
 
+	private static final Logger logger = LoggerFactory.getLogger(ScriptEngineImpl.class);
+
+	private static final int DEFAULT_CACHE_SIZE = 100;
+	
 	protected Injector guiceInjector;
 	protected XtextResourceSet resourceSet;
+	
+	/** counter to create unique names for the synthetic resources */
+	private final AtomicLong resourceCounter = new AtomicLong();
+	
+	/** the parsed scripts by their script text in access order, guarded by the resource set */
+	private Map<String, XExpression> parsedScripts;
 
 	public ScriptEngineImpl() {}
 	
@@ -56,11 +76,28 @@ public class ScriptEngineImpl implements ScriptEngine {
 		this.guiceInjector = new ScriptStandaloneSetup().createInjectorAndDoEMFRegistration();
 		this.resourceSet = guiceInjector.getInstance(XtextResourceSet.class);
 		resourceSet.addLoadOption(XtextResource.OPTION_RESOLVE_ALL, Boolean.TRUE);
+		this.parsedScripts = createScriptCache(getCacheSize());
 	}
 	
 	public void deactivate() {
 		this.guiceInjector = null;
 		this.resourceSet = null;
+		this.parsedScripts = null;
+	}
+	
+	/**
+	 * Returns the number of resources which are currently held in the resource set.
+	 * 
+	 * @return the number of live resources
+	 */
+	public int getResourceCount() {
+		XtextResourceSet resourceSet = this.resourceSet;
+		if (resourceSet == null) {
+			return 0;
+		}
+		synchronized (resourceSet) {
+			return resourceSet.getResources().size();
+		}
 	}
 		
 	/**
@@ -68,7 +105,7 @@ public class ScriptEngineImpl implements ScriptEngine {
 	 */
 	public Script newScriptFromString(String scriptAsString)
 			throws ScriptParsingException {
-		return newScriptFromXExpression(parseScriptIntoXTextEObject(scriptAsString));
+		return newScriptFromXExpression(getParsedScript(scriptAsString));
 	}
 
 	/**
@@ -88,43 +125,106 @@ public class ScriptEngineImpl implements ScriptEngine {
 		return newScriptFromString(scriptAsString).execute();
 	}
 
+	/**
+	 * Returns the parsed expression of a script, either from the cache or by parsing it.
+	 * 
+	 * @param scriptAsString the script to parse
+	 * @return the parsed expression
+	 * @throws ScriptParsingException if the script cannot be parsed
+	 */
+	private XExpression getParsedScript(String scriptAsString) throws ScriptParsingException {
+		// the resource set is not thread-safe, so all access to it is serialized
+		synchronized (resourceSet) {
+			XExpression expression = parsedScripts.get(scriptAsString);
+			if (expression == null) {
+				expression = parseScriptIntoXTextEObject(scriptAsString);
+				if (expression != null) {
+					parsedScripts.put(scriptAsString, expression);
+				}
+				logger.debug("Parsed script, {} resources are held in the resource set", resourceSet.getResources().size());
+			}
+			return expression;
+		}
+	}
+
 	private XExpression parseScriptIntoXTextEObject(String scriptAsString) throws ScriptParsingException {
 		Resource resource = resourceSet.createResource(computeUnusedUri(resourceSet)); // IS-A XtextResource
+		boolean keepResource = false;
 		try {
-			resource.load(new StringInputStream(scriptAsString), resourceSet.getLoadOptions());
-		} catch (IOException e) {
-			throw new ScriptParsingException("Unexpected IOException; from close() of a String-based ByteArrayInputStream, no real I/O; how is that possible???", scriptAsString, e);
-		}
-		
-		List<Diagnostic> errors = resource.getErrors();
-		if (errors.size() != 0) {
-			throw new ScriptParsingException("Failed to parse expression (due to managed SyntaxError/s)", scriptAsString).addDiagnosticErrors(errors);
-		}
-		
-		EList<EObject> contents = resource.getContents();
-
-		if (!contents.isEmpty()) {
-			Iterable<Issue> validationErrors = getValidationErrors(contents.get(0));
-			if(!validationErrors.iterator().hasNext()) {
-				return (XExpression) contents.get(0);
+			try {
+				resource.load(new StringInputStream(scriptAsString), resourceSet.getLoadOptions());
+			} catch (IOException e) {
+				throw new ScriptParsingException("Unexpected IOException; from close() of a String-based ByteArrayInputStream, no real I/O; how is that possible???", scriptAsString, e);
+			}
+			
+			List<Diagnostic> errors = resource.getErrors();
+			if (errors.size() != 0) {
+				throw new ScriptParsingException("Failed to parse expression (due to managed SyntaxError/s)", scriptAsString).addDiagnosticErrors(errors);
+			}
+			
+			EList<EObject> contents = resource.getContents();
+	
+			if (!contents.isEmpty()) {
+				Iterable<Issue> validationErrors = getValidationErrors(contents.get(0));
+				if(!validationErrors.iterator().hasNext()) {
+					keepResource = true;
+					return (XExpression) contents.get(0);
+				} else {
+					throw new ScriptParsingException("Failed to parse expression (due to managed ValidationError/s)", scriptAsString).addValidationIssues(validationErrors);
+				}
 			} else {
-				throw new ScriptParsingException("Failed to parse expression (due to managed ValidationError/s)", scriptAsString).addValidationIssues(validationErrors);
+				return null;
+			}
+		} finally {
+			if (!keepResource) {
+				// the resource is not needed anymore, so we make sure that it does not stay in the resource set
+				resource.unload();
+				resourceSet.getResources().remove(resource);
 			}
-		} else {
-			return null;
 		}
 	}
 
 	protected URI computeUnusedUri(ResourceSet resourceSet) {
 		String name = "__synthetic";
-		final int MAX_TRIES=1000;
-		for(int i=0; i<MAX_TRIES; i++) {
-			// NOTE: The "filename extension" (".script") must match the file.extensions in the *.mwe2
-			URI syntheticUri = URI.createURI(name+Math.random()+ "." + Script.SCRIPT_FILEEXT);
-			if (resourceSet.getResource(syntheticUri, false)==null)
-				return syntheticUri;
-		} 
-		throw new IllegalStateException();
+		// NOTE: The "filename extension" (".script") must match the file.extensions in the *.mwe2
+		return URI.createURI(name + resourceCounter.incrementAndGet() + "." + Script.SCRIPT_FILEEXT);
+	}
+	
+	private int getCacheSize() {
+		String cacheSize = System.getProperty("openhab.scripts.cachesize");
+		if (cacheSize != null) {
+			try {
+				return Integer.parseInt(cacheSize.trim());
+			} catch (NumberFormatException e) {
+				logger.warn("Invalid value '{}' for system property 'openhab.scripts.cachesize', using default value {}", cacheSize, DEFAULT_CACHE_SIZE);
+			}
+		}
+		return DEFAULT_CACHE_SIZE;
+	}
+	
+	/**
+	 * Creates the LRU cache for parsed scripts. When a script is evicted, its resource 
+	 * is removed from the resource set. The resource is not unloaded, as the script 
+	 * might still be in use; it is garbage collected once it is not referenced anymore.
+	 * 
+	 * @param maxSize the maximum number of scripts to cache
+	 * @return the script cache
+	 */
+	@SuppressWarnings("serial")
+	private Map<String, XExpression> createScriptCache(final int maxSize) {
+		return new LinkedHashMap<String, XExpression>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, XExpression> eldest) {
+				if (size() > maxSize) {
+					Resource resource = eldest.getValue().eResource();
+					if (resource != null) {
+						resourceSet.getResources().remove(resource);
+					}
+					return true;
+				}
+				return false;
+			}
+		};
 	}
 
 	protected List<Issue> validate(EObject model) {
@@ -21,16 +21,24 @@ import java.io.FilenameFilter;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.openhab.core.items.Item;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.AggregatingPersistenceService;
+import org.openhab.core.persistence.BulkQueryablePersistenceService;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
 import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.NumericQueryablePersistenceService;
+import org.openhab.core.persistence.NumericSeries;
 import org.openhab.core.persistence.PersistenceService;
-import org.openhab.core.persistence.QueryablePersistenceService;
+import org.openhab.core.types.State;
 import org.quartz.CronScheduleBuilder;
 import org.quartz.CronTrigger;
 import org.quartz.DisallowConcurrentExecution;
@@ -52,16 +60,21 @@ import com.db4o.ObjectSet;
 import com.db4o.ext.DatabaseClosedException;
 import com.db4o.ext.Db4oException;
 import com.db4o.ext.ExtObjectContainer;
+import com.db4o.query.Constraint;
 import com.db4o.query.Query;
 
 
 /**
  * This is a {@link PersistenceService} implementation using the db4o database.
  * 
+ * As db4o does not provide aggregate functions, aggregations are done while
+ * iterating over the lazily activated result of a query, so that the stored
+ * items do not need to be held in memory at the same time.
+ * 
  * @author Kai Kreuzer
  * @since 1.0.0
  */
-public class Db4oPersistenceService implements QueryablePersistenceService {
+public class Db4oPersistenceService implements AggregatingPersistenceService, NumericQueryablePersistenceService, BulkQueryablePersistenceService {
 
 	private static final Logger logger = LoggerFactory.getLogger(Db4oPersistenceService.class);
 	
@@ -163,6 +176,7 @@ public class Db4oPersistenceService implements QueryablePersistenceService {
 				if(endIndex > results.size()) {
 					endIndex = results.size();
 				}
+				// the sub list is a view, whose items are only activated when they are read
 				return results.subList(startIndex, endIndex);
 			}
 		}
@@ -170,6 +184,157 @@ public class Db4oPersistenceService implements QueryablePersistenceService {
 		return Collections.emptyList();
 	}
 	
+	public NumericSeries queryNumeric(FilterCriteria filter) {
+		String itemName = filter==null ? null : filter.getItemName();
+		NumericSeries.Builder series = new NumericSeries.Builder(itemName);
+		for (HistoricItem historicItem : query(filter)) {
+			if (historicItem.getState() instanceof DecimalType) {
+				series.add(historicItem.getTimestamp().getTime(), ((DecimalType) historicItem.getState()).doubleValue());
+			}
+		}
+		return series.build();
+	}
+	
+	public Map<String, HistoricItem> queryLatest(Collection<String> itemNames) {
+		Map<String, HistoricItem> items = new HashMap<String, HistoricItem>();
+		Query query = queryWithReconnect();
+		if (query == null || itemNames.isEmpty()) {
+			return items;
+		}
+		
+		query.constrain(Db4oItem.class);
+		Constraint names = null;
+		for (String itemName : itemNames) {
+			Constraint name = query.descend("name").constrain(itemName).equal();
+			names = names==null ? name : names.or(name);
+		}
+		query.descend("timestamp").orderDescending();
+		
+		// the first state of an item is its latest one, so a single pass is
+		// needed, which stops as soon as all items have been found
+		ObjectSet<HistoricItem> results = query.execute();
+		while (results.hasNext() && items.size() < itemNames.size()) {
+			HistoricItem historicItem = results.next();
+			if (!items.containsKey(historicItem.getName())) {
+				items.put(historicItem.getName(), historicItem);
+			}
+		}
+		return items;
+	}
+	
+	public HistoricItem minimum(FilterCriteria filter) {
+		return aggregate(filter).minimum;
+	}
+
+	public HistoricItem maximum(FilterCriteria filter) {
+		return aggregate(filter).maximum;
+	}
+
+	public DecimalType average(FilterCriteria filter) {
+		Aggregate aggregate = aggregate(filter);
+		return aggregate.count==0 ? null : new DecimalType(aggregate.sum / aggregate.count);
+	}
+
+	public DecimalType sum(FilterCriteria filter) {
+		Aggregate aggregate = aggregate(filter);
+		return aggregate.count==0 ? null : new DecimalType(aggregate.sum);
+	}
+
+	public long count(FilterCriteria filter) {
+		return aggregate(filter).count;
+	}
+
+	public boolean changed(FilterCriteria filter) {
+		Query query = createRangeQuery(filter);
+		if (query == null) {
+			return false;
+		}
+		
+		// start with the last state before the begin date
+		State state = null;
+		if (filter.getBeginDate()!=null) {
+			Query before = queryWithReconnect();
+			before.constrain(Db4oItem.class);
+			before.descend("timestamp").constrain(filter.getBeginDate()).smaller();
+			before.descend("name").constrain(filter.getItemName()).equal();
+			before.descend("timestamp").orderDescending();
+			ObjectSet<HistoricItem> results = before.execute();
+			if (results.hasNext()) {
+				state = results.next().getState();
+			}
+		}
+		
+		ObjectSet<HistoricItem> results = query.execute();
+		if (state==null) {
+			// there is no state to compare with, so any state is a change
+			return results.hasNext();
+		}
+		while (results.hasNext()) {
+			State nextState = results.next().getState();
+			if (!state.equals(nextState)) {
+				return true;
+			}
+			state = nextState;
+		}
+		return false;
+	}
+
+	private Aggregate aggregate(FilterCriteria filter) {
+		Aggregate aggregate = new Aggregate();
+		Query query = createRangeQuery(filter);
+		if (query != null) {
+			ObjectSet<HistoricItem> results = query.execute();
+			while (results.hasNext()) {
+				aggregate.add(results.next());
+			}
+		}
+		return aggregate;
+	}
+
+	private Query createRangeQuery(FilterCriteria filter) {
+		Query query = queryWithReconnect();
+		if (query != null) {
+			query.constrain(Db4oItem.class);
+			if (filter.getBeginDate()!=null) {
+				query.descend("timestamp").constrain(filter.getBeginDate()).greater().equal();
+			}
+			if (filter.getEndDate()!=null) {
+				query.descend("timestamp").constrain(filter.getEndDate()).smaller().equal();
+			}
+			if (filter.getItemName()!=null) {
+				query.descend("name").constrain(filter.getItemName()).equal();
+			}
+			query.descend("timestamp").orderAscending();
+		}
+		return query;
+	}
+	
+	/**
+	 * The aggregation of the decimal states of a query result. Only the
+	 * historic items with the minimum and maximum state are referenced.
+	 */
+	private static class Aggregate {
+		long count = 0;
+		double sum = 0;
+		HistoricItem minimum;
+		HistoricItem maximum;
+		
+		void add(HistoricItem historicItem) {
+			if (!(historicItem.getState() instanceof DecimalType)) {
+				return;
+			}
+			DecimalType value = (DecimalType) historicItem.getState();
+			if (minimum==null || value.compareTo((DecimalType) minimum.getState()) < 0) {
+				minimum = historicItem;
+			}
+			if (maximum==null || value.compareTo((DecimalType) maximum.getState()) > 0) {
+				maximum = historicItem;
+			}
+			sum += value.doubleValue();
+			count++;
+		}
+	}
+	
 	/**
 	 * Creates a new Query and returns it. In case the Database is closed for
 	 * some reason we'll try to reopen it again and try to create a query a
@@ -0,0 +1,316 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.persistence.mysql.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * A stand-in for a mySQL database, which is registered as JDBC driver for the
+ * url {@link #URL}. It understands the statements the writer sends to create
+ * the item tables and to insert the values, and records the batches it
+ * executes. The connections, statements and result sets are proxies which
+ * implement only the methods used by the persistence service. Changes are
+ * applied at once, transactions are only counted.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class FakeDatabase implements Driver {
+
+	static final String URL = "jdbc:fakemysql://localhost/openhab";
+
+	private final Map<String, SortedMap<Long, String>> tables = new HashMap<String, SortedMap<Long, String>>();
+
+	private final List<Integer> batchSizes = new ArrayList<Integer>();
+
+	private int itemCount = 0;
+
+	private int commitCount = 0;
+
+	private String failingValue = null;
+
+	/**
+	 * @return the rows of a table by time in milliseconds, or <code>null</code>
+	 *         if the table does not exist
+	 */
+	synchronized SortedMap<Long, String> getTable(String tableName) {
+		SortedMap<Long, String> table = tables.get(tableName);
+		return table == null ? null : new TreeMap<Long, String>(table);
+	}
+
+	/**
+	 * @return the number of rows of each batch executed so far
+	 */
+	synchronized List<Integer> getBatchSizes() {
+		return new ArrayList<Integer>(batchSizes);
+	}
+
+	synchronized int getCommitCount() {
+		return commitCount;
+	}
+
+	/**
+	 * Lets every insert of the given value fail, as if it violated a
+	 * constraint of the table.
+	 */
+	synchronized void setFailingValue(String value) {
+		failingValue = value;
+	}
+
+	private synchronized void insert(String tableName, Timestamp time, String value, boolean update)
+			throws SQLException {
+		SortedMap<Long, String> table = tables.get(tableName);
+		if (table == null) {
+			throw new SQLException("Table '" + tableName + "' doesn't exist");
+		}
+		if (value.equals(failingValue)) {
+			throw new SQLException("Incorrect value '" + value + "'");
+		}
+		if (!update && table.containsKey(time.getTime())) {
+			throw new SQLException("Duplicate entry '" + time + "' for key 'PRIMARY'");
+		}
+		table.put(time.getTime(), value);
+	}
+
+	private synchronized int executeUpdate(String sql, StatementHandler statement) throws SQLException {
+		if (sql.startsWith("SHOW TABLES")) {
+			return 1;
+		} else if (sql.startsWith("INSERT INTO Items ")) {
+			statement.generatedKey = ++itemCount;
+			return 1;
+		} else if (sql.startsWith("CREATE TABLE ")) {
+			tables.put(sql.split(" ")[2], new TreeMap<Long, String>());
+			return 0;
+		}
+		throw new SQLException("Unexpected statement: " + sql);
+	}
+
+	public Connection connect(String url, Properties info) throws SQLException {
+		if (!acceptsURL(url)) {
+			return null;
+		}
+		return proxy(Connection.class, new ConnectionHandler());
+	}
+
+	public boolean acceptsURL(String url) {
+		return URL.equals(url);
+	}
+
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	private static <T> T proxy(Class<T> type, Handler handler) {
+		return type.cast(Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	/**
+	 * Implements the methods of {@link Object} for the proxies and fails for
+	 * the methods which are not implemented.
+	 */
+	private abstract static class Handler implements InvocationHandler {
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("equals")) {
+				return proxy == args[0];
+			} else if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			} else if (name.equals("toString")) {
+				return getClass().getSimpleName();
+			}
+			return invoke(name, args);
+		}
+
+		abstract Object invoke(String name, Object[] args) throws SQLException;
+	}
+
+	private class ConnectionHandler extends Handler {
+
+		private boolean closed = false;
+
+		private boolean autoCommit = true;
+
+		@Override
+		Object invoke(String name, Object[] args) throws SQLException {
+			if (name.equals("close")) {
+				closed = true;
+				return null;
+			} else if (name.equals("isClosed")) {
+				return closed;
+			} else if (name.equals("isValid")) {
+				return !closed;
+			}
+			if (closed) {
+				throw new SQLException("Connection is closed");
+			}
+			if (name.equals("setAutoCommit")) {
+				autoCommit = (Boolean) args[0];
+				return null;
+			} else if (name.equals("getAutoCommit")) {
+				return autoCommit;
+			} else if (name.equals("commit")) {
+				synchronized (FakeDatabase.this) {
+					commitCount++;
+				}
+				return null;
+			} else if (name.equals("rollback")) {
+				return null;
+			} else if (name.equals("createStatement")) {
+				return proxy(Statement.class, new StatementHandler());
+			} else if (name.equals("prepareStatement")) {
+				return proxy(PreparedStatement.class, new PreparedStatementHandler((String) args[0]));
+			}
+			throw new UnsupportedOperationException(name);
+		}
+	}
+
+	private class StatementHandler extends Handler {
+
+		private int generatedKey = 0;
+
+		@Override
+		Object invoke(String name, Object[] args) throws SQLException {
+			if (name.equals("close")) {
+				return null;
+			} else if (name.equals("executeUpdate")) {
+				return executeUpdate((String) args[0], this);
+			} else if (name.equals("getGeneratedKeys")) {
+				return proxy(ResultSet.class, new ResultSetHandler(generatedKey));
+			}
+			throw new UnsupportedOperationException(name);
+		}
+	}
+
+	/**
+	 * Executes the insert statement of the writer, which must look like
+	 * <code>INSERT INTO &lt;table&gt; (TIME, VALUE) VALUES(?,?) ...</code>.
+	 */
+	private class PreparedStatementHandler extends Handler {
+
+		private final String tableName;
+
+		private final boolean update;
+
+		private Timestamp time;
+
+		private String value;
+
+		private final List<Object[]> batch = new ArrayList<Object[]>();
+
+		PreparedStatementHandler(String sql) throws SQLException {
+			if (!sql.startsWith("INSERT INTO ")) {
+				throw new SQLException("Unexpected statement: " + sql);
+			}
+			tableName = sql.split(" ")[2];
+			update = sql.endsWith(" ON DUPLICATE KEY UPDATE VALUE=VALUES(VALUE)");
+		}
+
+		@Override
+		Object invoke(String name, Object[] args) throws SQLException {
+			if (name.equals("close")) {
+				return null;
+			} else if (name.equals("setTimestamp")) {
+				time = (Timestamp) args[1];
+				return null;
+			} else if (name.equals("setString")) {
+				value = (String) args[1];
+				return null;
+			} else if (name.equals("addBatch")) {
+				batch.add(new Object[] { time, value });
+				return null;
+			} else if (name.equals("clearBatch")) {
+				batch.clear();
+				return null;
+			} else if (name.equals("executeUpdate")) {
+				insert(tableName, time, value, update);
+				return 1;
+			} else if (name.equals("executeBatch")) {
+				synchronized (FakeDatabase.this) {
+					batchSizes.add(batch.size());
+				}
+				int[] counts = new int[batch.size()];
+				try {
+					for (int i = 0; i < counts.length; i++) {
+						insert(tableName, (Timestamp) batch.get(i)[0], (String) batch.get(i)[1], update);
+						counts[i] = 1;
+					}
+				} finally {
+					batch.clear();
+				}
+				return counts;
+			}
+			throw new UnsupportedOperationException(name);
+		}
+	}
+
+	/**
+	 * A result set with a single row of a single integer column.
+	 */
+	private static class ResultSetHandler extends Handler {
+
+		private final int key;
+
+		private boolean beforeFirst = true;
+
+		ResultSetHandler(int key) {
+			this.key = key;
+		}
+
+		@Override
+		Object invoke(String name, Object[] args) throws SQLException {
+			if (name.equals("close")) {
+				return null;
+			} else if (name.equals("next")) {
+				boolean next = beforeFirst;
+				beforeFirst = false;
+				return next;
+			} else if (name.equals("getInt")) {
+				return key;
+			}
+			throw new UnsupportedOperationException(name);
+		}
+	}
+
+}
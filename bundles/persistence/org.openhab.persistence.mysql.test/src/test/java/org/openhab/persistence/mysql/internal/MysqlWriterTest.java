@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.persistence.mysql.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.library.items.NumberItem;
+
+/**
+ * Writes values through a {@link MysqlWriter} to a {@link FakeDatabase}. The
+ * values of each test are offered before the writer is started, unless the
+ * test is about the timing of the writer.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class MysqlWriterTest {
+
+	private static final long TIMEOUT = 5000;
+
+	private FakeDatabase database;
+
+	private MysqlConnectionPool pool;
+
+	private MysqlWriter writer;
+
+	private NumberItem temperature = new NumberItem("Temperature");
+
+	private NumberItem humidity = new NumberItem("Humidity");
+
+	@Before
+	public void init() throws SQLException {
+		database = new FakeDatabase();
+		DriverManager.registerDriver(database);
+		pool = new MysqlConnectionPool(FakeDatabase.URL, "user", "password", 2);
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		if (writer != null) {
+			writer.stop();
+		}
+		pool.close();
+		DriverManager.deregisterDriver(database);
+	}
+
+	@Test
+	public void testValuesAreWrittenInBatches() {
+		writer = createWriter(100, 2, 0);
+		for (int i = 1; i <= 5; i++) {
+			assertTrue(writer.offer(temperature, Integer.toString(i), i * 1000));
+		}
+		writer.start();
+		waitForValues(5);
+
+		assertEquals(Arrays.asList(2, 2, 1), database.getBatchSizes());
+		assertEquals(3, database.getCommitCount());
+		assertEquals(rows(1000, "1", 2000, "2", 3000, "3", 4000, "4", 5000, "5"), database.getTable("Item1"));
+		assertEquals(0, writer.getFailedCount());
+	}
+
+	@Test
+	public void testBatchSpansTables() {
+		writer = createWriter(100, 10, 0);
+		writer.offer(temperature, "20", 1000);
+		writer.offer(humidity, "50", 1000);
+		writer.offer(temperature, "21", 2000);
+		writer.start();
+		waitForValues(3);
+
+		// one statement per table, committed in a single transaction
+		assertEquals(Arrays.asList(2, 1), database.getBatchSizes());
+		assertEquals(1, database.getCommitCount());
+		assertEquals(rows(1000, "20", 2000, "21"), database.getTable("Item1"));
+		assertEquals(rows(1000, "50"), database.getTable("Item2"));
+	}
+
+	@Test
+	public void testBatchIsWrittenAfterLingerTime() throws InterruptedException {
+		writer = createWriter(100, 10, 300);
+		writer.start();
+		long start = System.currentTimeMillis();
+		writer.offer(temperature, "1", 1000);
+		Thread.sleep(50);
+		writer.offer(temperature, "2", 2000);
+		assertEquals(0, writer.getWrittenCount());
+		waitForValues(2);
+
+		// the writer waited for more values, until the linger time was over
+		assertTrue(System.currentTimeMillis() - start >= 300);
+		assertEquals(Arrays.asList(2), database.getBatchSizes());
+	}
+
+	@Test
+	public void testFullQueueRejectsValues() {
+		writer = createWriter(2, 10, 0);
+		assertTrue(writer.offer(temperature, "1", 1000));
+		assertTrue(writer.offer(temperature, "2", 2000));
+		assertFalse(writer.offer(temperature, "3", 3000));
+		assertEquals(1, writer.getRejectedCount());
+		assertEquals(2, writer.getMaxQueueSize());
+
+		writer.start();
+		waitForValues(2);
+		assertEquals(rows(1000, "1", 2000, "2"), database.getTable("Item1"));
+
+		// the queue accepts values again once it has been written
+		assertTrue(writer.offer(temperature, "4", 4000));
+		waitForValues(3);
+		assertEquals(1, writer.getRejectedCount());
+	}
+
+	@Test
+	public void testLastValueWithinASecondWins() {
+		writer = createWriter(100, 10, 0);
+		writer.offer(temperature, "1", 5000);
+		writer.offer(temperature, "2", 5400);
+		writer.offer(temperature, "3", 6999);
+		writer.start();
+		waitForValues(3);
+
+		// the times are cut to seconds and the duplicate key is updated
+		assertEquals(rows(5000, "2", 6000, "3"), database.getTable("Item1"));
+		assertEquals(0, writer.getFailedCount());
+	}
+
+	@Test
+	public void testFailedBatchIsWrittenOneByOne() {
+		database.setFailingValue("bad");
+		writer = createWriter(100, 10, 0);
+		writer.offer(temperature, "1", 1000);
+		writer.offer(temperature, "bad", 2000);
+		writer.offer(temperature, "3", 3000);
+		writer.start();
+		waitForValues(3);
+
+		// only the value which fails itself is lost
+		assertEquals(2, writer.getWrittenCount());
+		assertEquals(1, writer.getFailedCount());
+		assertEquals(rows(1000, "1", 3000, "3"), database.getTable("Item1"));
+	}
+
+	private MysqlWriter createWriter(int capacity, int batchSize, long lingerTime) {
+		return new MysqlWriter(new MysqlPersistenceService(), pool, capacity, batchSize, lingerTime, 0);
+	}
+
+	/**
+	 * Waits until the given number of values has been written or failed.
+	 */
+	private void waitForValues(int count) {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (writer.getWrittenCount() + writer.getFailedCount() < count) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("only " + writer.getWrittenCount() + " of " + count + " values have been written");
+			}
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private SortedMap<Long, String> rows(Object... timesAndValues) {
+		SortedMap<Long, String> rows = new TreeMap<Long, String>();
+		for (int i = 0; i < timesAndValues.length; i += 2) {
+			rows.put(((Integer) timesAndValues[i]).longValue(), (String) timesAndValues[i + 1]);
+		}
+		return rows;
+	}
+
+}
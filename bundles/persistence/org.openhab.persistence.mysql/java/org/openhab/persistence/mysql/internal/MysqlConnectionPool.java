@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.persistence.mysql.internal;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.LinkedList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small pool of database connections, so that the writer thread and
+ * queries do not have to share a single connection. Idle connections are
+ * validated before they are handed out again. If all connections are in use,
+ * callers wait until one is released.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class MysqlConnectionPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(MysqlConnectionPool.class);
+
+	/** the time in milliseconds to wait for a free connection */
+	private static final long WAIT_TIMEOUT = 10000;
+
+	/** the time in seconds to wait for the validation of an idle connection */
+	private static final int VALIDATION_TIMEOUT = 2;
+
+	private final String url;
+	private final String user;
+	private final String password;
+	private final int maxSize;
+
+	private final LinkedList<Connection> idle = new LinkedList<Connection>();
+	private int openCount = 0;
+	private boolean closed = false;
+
+	/**
+	 * Creates a new pool. Connections are opened when they are needed.
+	 *
+	 * @param url
+	 *            the JDBC url of the database
+	 * @param user
+	 *            the database user
+	 * @param password
+	 *            the password of the user
+	 * @param maxSize
+	 *            the maximum number of open connections
+	 */
+	public MysqlConnectionPool(String url, String user, String password, int maxSize) {
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.maxSize = Math.max(1, maxSize);
+	}
+
+	/**
+	 * Returns a connection of the pool. Every connection must be given back by
+	 * {@link #release(Connection, boolean)}.
+	 *
+	 * @return an open connection
+	 * @throws SQLException
+	 *             if no connection could be opened or none became free in time
+	 */
+	public Connection getConnection() throws SQLException {
+		long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+		Connection connection = takeIdle(deadline);
+		while (connection != null) {
+			// validate outside of the lock, as this needs a round trip to the database
+			if (isValid(connection)) {
+				return connection;
+			}
+			logger.debug("mySQL: Discarding stale connection to database " + url);
+			release(connection, true);
+			connection = takeIdle(deadline);
+		}
+
+		// open the connection outside of the lock, as this might take a while
+		try {
+			connection = DriverManager.getConnection(url, user, password);
+			logger.debug("mySQL: Connected to database " + url);
+			return connection;
+		} catch (SQLException e) {
+			synchronized (this) {
+				openCount--;
+				notifyAll();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Waits for an idle connection or for the permission to open a new one.
+	 *
+	 * @return an idle connection, or <code>null</code> if a new connection
+	 *         may be opened
+	 */
+	private synchronized Connection takeIdle(long deadline) throws SQLException {
+		while (true) {
+			if (closed) {
+				throw new SQLException("mySQL: Connection pool has been closed");
+			}
+			if (!idle.isEmpty()) {
+				return idle.removeFirst();
+			}
+			if (openCount < maxSize) {
+				openCount++;
+				return null;
+			}
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				throw new SQLException("mySQL: Timed out waiting for a free connection to database " + url);
+			}
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("mySQL: Interrupted while waiting for a free connection");
+			}
+		}
+	}
+
+	/**
+	 * Gives a connection back to the pool.
+	 *
+	 * @param connection
+	 *            the connection returned by {@link #getConnection()}, may be
+	 *            <code>null</code>
+	 * @param broken
+	 *            true if an error occurred, so that the connection is closed
+	 *            instead of being used again
+	 */
+	public void release(Connection connection, boolean broken) {
+		if (connection == null) {
+			return;
+		}
+		synchronized (this) {
+			if (!broken && !closed) {
+				idle.addLast(connection);
+				notifyAll();
+				return;
+			}
+			openCount--;
+			notifyAll();
+		}
+		closeQuietly(connection);
+	}
+
+	/**
+	 * Closes all idle connections. Connections which are in use are closed
+	 * when they are released.
+	 */
+	public void close() {
+		LinkedList<Connection> closing;
+		synchronized (this) {
+			closed = true;
+			closing = new LinkedList<Connection>(idle);
+			openCount -= idle.size();
+			idle.clear();
+			notifyAll();
+		}
+		for (Connection connection : closing) {
+			closeQuietly(connection);
+		}
+		logger.debug("mySQL: Disconnected from database " + url);
+	}
+
+	private boolean isValid(Connection connection) {
+		try {
+			return connection.isValid(VALIDATION_TIMEOUT);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (Exception hidden) {
+		}
+	}
+
+}
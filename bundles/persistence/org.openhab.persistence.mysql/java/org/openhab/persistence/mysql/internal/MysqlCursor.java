@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.persistence.mysql.internal;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openhab.core.items.Item;
+import org.openhab.core.library.items.ColorItem;
+import org.openhab.core.library.items.ContactItem;
+import org.openhab.core.library.items.DateTimeItem;
+import org.openhab.core.library.items.DimmerItem;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.RollershutterItem;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.library.types.DateTimeType;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.HSBType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.OpenClosedType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.HistoricItemCursor;
+import org.openhab.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The result of a cursor query, which reads the rows from the database while it
+ * is iterated. It holds a connection of the pool until it is closed, which
+ * happens at the latest when the last row has been read.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class MysqlCursor implements HistoricItemCursor {
+
+	private static final Logger logger = LoggerFactory.getLogger(MysqlCursor.class);
+
+	/** the result of a query which could not be run */
+	static final HistoricItemCursor EMPTY = new HistoricItemCursor() {
+
+		@Override
+		public Iterator<HistoricItem> iterator() {
+			return Collections.<HistoricItem> emptyList().iterator();
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	private final MysqlConnectionPool pool;
+	private final Connection connection;
+	private final Statement statement;
+	private final ResultSet resultSet;
+	private final Item item;
+	private final String itemName;
+
+	private final long timerStart = System.currentTimeMillis();
+	private long count = 0;
+	private boolean iterated = false;
+	private boolean closed = false;
+
+	/**
+	 * Creates a new cursor, which takes over the given resources.
+	 *
+	 * @param pool
+	 *            the pool to release the connection to
+	 * @param connection
+	 *            the connection of the query
+	 * @param statement
+	 *            the statement of the query
+	 * @param resultSet
+	 *            the rows with the time and value
+	 * @param item
+	 *            the item, which determines the type of the states, or
+	 *            <code>null</code> to return them as strings
+	 * @param itemName
+	 *            the name of the item
+	 */
+	public MysqlCursor(MysqlConnectionPool pool, Connection connection, Statement statement, ResultSet resultSet,
+			Item item, String itemName) {
+		this.pool = pool;
+		this.connection = connection;
+		this.statement = statement;
+		this.resultSet = resultSet;
+		this.item = item;
+		this.itemName = itemName;
+	}
+
+	@Override
+	public synchronized Iterator<HistoricItem> iterator() {
+		if (iterated) {
+			throw new IllegalStateException("mySQL: A query result can only be iterated once");
+		}
+		iterated = true;
+		return new Iterator<HistoricItem>() {
+
+			private HistoricItem next = null;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					next = fetch();
+				}
+				return next != null;
+			}
+
+			@Override
+			public HistoricItem next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				HistoricItem result = next;
+				next = null;
+				return result;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private synchronized HistoricItem fetch() {
+		if (closed) {
+			return null;
+		}
+		try {
+			if (resultSet.next()) {
+				count++;
+				return new MysqlItem(itemName, getState(item, resultSet, 2), resultSet.getTimestamp(1));
+			}
+			logger.debug("mySQL: query returned {} rows in {}ms", count, System.currentTimeMillis() - timerStart);
+			close(false);
+		} catch (SQLException e) {
+			logger.error("mySQL: Error reading query result : " + e.getMessage());
+			close(true);
+		}
+		return null;
+	}
+
+	/**
+	 * Converts a value read from the database to the state of an item.
+	 *
+	 * @param item
+	 *            the item, which determines the type of the state, or
+	 *            <code>null</code> to return the value as a string
+	 * @param resultSet
+	 *            the result set positioned at the row of the value
+	 * @param column
+	 *            the column of the value
+	 * @return the state
+	 */
+	static State getState(Item item, ResultSet resultSet, int column) throws SQLException {
+		if (item instanceof NumberItem)
+			return new DecimalType(resultSet.getDouble(column));
+		else if (item instanceof SwitchItem)
+			return OnOffType.valueOf(resultSet.getString(column));
+		else if (item instanceof ContactItem)
+			return OpenClosedType.valueOf(resultSet.getString(column));
+		else if (item instanceof DimmerItem)
+			return new PercentType(resultSet.getInt(column));
+		else if (item instanceof RollershutterItem)
+			return new PercentType(resultSet.getInt(column));
+		else if (item instanceof ColorItem)
+			return new HSBType(resultSet.getString(column));
+		else if (item instanceof DateTimeItem) {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(resultSet.getTimestamp(column).getTime());
+			return new DateTimeType(calendar);
+		} else
+			return new StringType(resultSet.getString(column));
+	}
+
+	@Override
+	public void close() {
+		close(false);
+	}
+
+	private synchronized void close(boolean broken) {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			// the driver reads the rows which are left, so that the connection can be used again
+			resultSet.close();
+			statement.close();
+		} catch (SQLException e) {
+			broken = true;
+		}
+		pool.release(connection, broken);
+	}
+
+}
@@ -10,19 +10,18 @@ package org.openhab.persistence.mysql.internal;
 
 import java.text.SimpleDateFormat;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.Formatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -41,13 +40,17 @@ import org.openhab.core.library.types.DateTimeType;
 import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.library.types.HSBType;
 import org.openhab.core.library.types.OnOffType;
-import org.openhab.core.library.types.OpenClosedType;
 import org.openhab.core.library.types.PercentType;
 import org.openhab.core.library.types.StringType;
+import org.openhab.core.persistence.AggregatingPersistenceService;
+import org.openhab.core.persistence.BulkQueryablePersistenceService;
+import org.openhab.core.persistence.CursorQueryablePersistenceService;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.HistoricItemCursor;
+import org.openhab.core.persistence.NumericQueryablePersistenceService;
+import org.openhab.core.persistence.NumericSeries;
 import org.openhab.core.persistence.PersistenceService;
-import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
 import org.openhab.core.types.State;
 import org.osgi.service.cm.ConfigurationException;
@@ -76,12 +79,23 @@ import org.slf4j.LoggerFactory;
  * keep the best resolution, we store as a number in SQL and convert to
  * DecimalType before persisting to MySQL.
  * 
+ * Values are written to the database by a {@link MysqlWriter} in a thread of
+ * its own, which batches the values of several items into one transaction.
+ * Queries use their own connections of a small {@link MysqlConnectionPool}.
+ * A {@link MysqlCursor} returned by {@link #queryCursor(FilterCriteria)} holds
+ * its connection until it is closed, while {@link #query(FilterCriteria)}
+ * reads the whole result and releases the connection at once.
+ * 
+ * Aggregations are done by the database with SQL aggregate functions. Only
+ * items with a numeric SQL type are aggregated by value.
+ * 
  * @author Henrik Sjöstrand
  * @author Thomas.Eichstaedt-Engelen
  * @author Chris Jackson
  * @since 1.1.0
  */
-public class MysqlPersistenceService implements QueryablePersistenceService, ManagedService {
+public class MysqlPersistenceService implements AggregatingPersistenceService, NumericQueryablePersistenceService,
+		BulkQueryablePersistenceService, CursorQueryablePersistenceService, ManagedService {
 
 	private static final Pattern EXTRACT_CONFIG_PATTERN = Pattern.compile("^(.*?)\\.([0-9.a-zA-Z]+)$");
 
@@ -95,14 +109,20 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 	private boolean initialized = false;
 	protected ItemRegistry itemRegistry;
 
-	// Error counter - used to reconnect to database on error
-	private int errCnt;
+	// Number of errors in a row after which the writer reconnects to the database
 	private int errReconnectThreshold = 0;
 
-	private Connection connection = null;
+	// Write-behind settings
+	private int batchSize = 50;
+	private long lingerTime = 1000;
+	private int queueSize = 10000;
+	private int poolSize = 2;
 
-	private Map<String, String> sqlTables = new HashMap<String, String>();
-	private Map<String, String> sqlTypes = new HashMap<String, String>();
+	private volatile MysqlConnectionPool pool = null;
+	private volatile MysqlWriter writer = null;
+
+	private Map<String, String> sqlTables = new ConcurrentHashMap<String, String>();
+	private Map<String, String> sqlTypes = new ConcurrentHashMap<String, String>();
 
 	public void activate() {
 		// Initialise the type array
@@ -137,7 +157,18 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 		return "mysql";
 	}
 
-	private String getTable(Item item) {
+	/**
+	 * Returns the name of the table of an item, creating the table if it
+	 * does not exist yet. This is called by the writer thread only.
+	 * 
+	 * @param item
+	 *            the item to get the table for
+	 * @param connection
+	 *            the connection of the writer thread
+	 * @return the table name, or <code>null</code> if the table could not be
+	 *         created
+	 */
+	String getTable(Item item, Connection connection) {
 		Statement statement = null;
 		String sqlCmd = null;
 		int rowId = 0;
@@ -229,13 +260,8 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 			if (!isConnected())
 				connectToDatabase();
 
-			if (isConnected()) {
-
-				String tableName = getTable(item);
-				if (tableName == null) {
-					logger.error("Unable to store item '{}'.", item.getName());
-					return;
-				}
+			MysqlWriter writer = this.writer;
+			if (writer != null) {
 
 				// Do some type conversion to ensure we know the data type
 				// This is necessary for items that have multiple types and may
@@ -255,32 +281,11 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 					value = item.getState().toString();
 				}
 
-				String sqlCmd = null;
-				Statement statement = null;
-				try {
-					statement = connection.createStatement();
-					sqlCmd = new String("INSERT INTO " + tableName + " (TIME, VALUE) VALUES(NOW(),'"
-							+ item.getState().toString() + "');");
-					statement.executeUpdate(sqlCmd);
-
-					logger.debug("mySQL: Stored item '{}' as '{}'[{}] in SQL database at {}.", item.getName(), item
-							.getState().toString(), value, (new java.util.Date()).toString());
-					logger.debug("mySQL: {}", sqlCmd);
-
-					// Success
-					errCnt = 0;
-				} catch (Exception e) {
-					errCnt++;
-
-					logger.error("mySQL: Could not store item '{}' in database with statement '{}': {}", item.getName(),
-							sqlCmd, e.getMessage());
-				} finally {
-					if (statement != null) {
-						try {
-							statement.close();
-						} catch (Exception hidden) {
-						}
-					}
+				// The time is taken now, so that the order of the values is kept
+				// even if they are written later
+				if (writer.offer(item, value, System.currentTimeMillis())) {
+					logger.debug("mySQL: Queued item '{}' as '{}'[{}] for SQL database.", new Object[] { item.getName(),
+							item.getState().toString(), value });
 				}
 			} else {
 				logger.warn(
@@ -303,27 +308,23 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 	 * @return true if connection has been established, false otherwise
 	 */
 	private boolean isConnected() {
-		// Error check. If we have 'errReconnectThreshold' errors in a row, then
-		// reconnect to the database
-		if (errReconnectThreshold != 0 && errCnt > errReconnectThreshold) {
-			logger.debug("mySQL: Error count exceeded " + errReconnectThreshold + ". Disconnecting database.");
-			disconnectFromDatabase();
-		}
-		return connection != null;
+		return pool != null;
 	}
 
 	/**
-	 * Connects to the database
+	 * Connects to the database and starts the writer
 	 */
-	private void connectToDatabase() {
-		try {
-			// Reset the error counter
-			errCnt = 0;
+	private synchronized void connectToDatabase() {
+		if (isConnected())
+			return;
 
+		MysqlConnectionPool newPool = new MysqlConnectionPool(url, user, password, poolSize);
+		Connection connection = null;
+		boolean broken = false;
+		try {
 			logger.debug("mySQL: Attempting to connect to database " + url);
 			Class.forName(driverClass).newInstance();
-			connection = DriverManager.getConnection(url, user, password);
-			logger.debug("mySQL: Connected to database " + url);
+			connection = newPool.getConnection();
 
 			Statement st = connection.createStatement();
 			int result = st.executeUpdate("SHOW TABLES LIKE 'Items'");
@@ -348,23 +349,39 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 			rs.close();
 			st.close();
 		} catch (Exception e) {
+			broken = true;
 			logger.error("mySQL: Failed connecting to the SQL database using: driverClass=" + driverClass + ", url="
 					+ url + ", user=" + user + ", password=" + password, e);
+		} finally {
+			newPool.release(connection, broken);
+		}
+
+		if (broken) {
+			newPool.close();
+			return;
 		}
+
+		pool = newPool;
+		writer = new MysqlWriter(this, pool, queueSize, batchSize, lingerTime, errReconnectThreshold);
+		writer.start();
 	}
 
 	/**
-	 * Disconnects from the database
+	 * Stops the writer after it has written the waiting values and disconnects
+	 * from the database
 	 */
-	private void disconnectFromDatabase() {
+	private synchronized void disconnectFromDatabase() {
+		if (writer != null) {
+			writer.stop();
+			logger.debug("mySQL: Writer stopped: {} values written, {} failed, {} rejected, "
+					+ "max queue size {}, average flush time {}ms, max flush time {}ms", new Object[] {
+					writer.getWrittenCount(), writer.getFailedCount(), writer.getRejectedCount(),
+					writer.getMaxQueueSize(), writer.getAverageFlushTime(), writer.getMaxFlushTime() });
+			writer = null;
+		}
 		if (isConnected()) {
-			try {
-				connection.close();
-				logger.debug("mySQL: Disconnected from database " + url);
-			} catch (Exception e) {
-				logger.warn("mySQL: Failed disconnecting from the SQL database", e);
-			}
-			connection = null;
+			pool.close();
+			pool = null;
 		}
 	}
 
@@ -442,6 +459,11 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 				errReconnectThreshold = Integer.parseInt(errorThresholdString);
 			}
 
+			batchSize = parseInt(config, "batchSize", batchSize);
+			lingerTime = parseInt(config, "lingerTime", (int) lingerTime);
+			queueSize = parseInt(config, "queueSize", queueSize);
+			poolSize = parseInt(config, "poolSize", poolSize);
+
 			disconnectFromDatabase();
 			connectToDatabase();
 
@@ -451,18 +473,48 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 
 	}
 
+	private int parseInt(Dictionary<String, ?> config, String key, int defaultValue) throws ConfigurationException {
+		String valueString = (String) config.get(key);
+		if (StringUtils.isBlank(valueString)) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(valueString.trim());
+		} catch (NumberFormatException e) {
+			throw new ConfigurationException("mysql:" + key, "The value '" + valueString + "' of mysql:" + key
+					+ " is not a valid number");
+		}
+	}
+
 	@Override
 	public Iterable<HistoricItem> query(FilterCriteria filter) {
+		// the rows are read at once, so that the result can be iterated more
+		// than once and does not hold a connection of the pool
+		List<HistoricItem> items = new ArrayList<HistoricItem>();
+		HistoricItemCursor cursor = queryCursor(filter);
+		try {
+			for (HistoricItem item : cursor) {
+				items.add(item);
+			}
+		} finally {
+			cursor.close();
+		}
+		return items;
+	}
+
+	/**
+	 * @{inheritDoc
+	 */
+	public HistoricItemCursor queryCursor(FilterCriteria filter) {
+		HistoricItemCursor empty = MysqlCursor.EMPTY;
 		if (!initialized)
-			return Collections.emptyList();
+			return empty;
 
 		if (!isConnected())
 			connectToDatabase();
 
 		if (!isConnected())
-			return Collections.emptyList();
-
-		SimpleDateFormat mysqlDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+			return empty;
 
 		// Get the item name from the filter
 		// Also get the Item object so we can determine the type
@@ -483,8 +535,169 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 		String table = sqlTables.get(itemName);
 		if (table == null) {
 			logger.error("mySQL: Unable to find table for query '" + itemName + "'.");
-			return Collections.emptyList();
+			return empty;
+		}
+
+		MysqlConnectionPool pool = this.pool;
+		if (pool == null)
+			return empty;
+
+		String queryString = "SELECT Time, Value FROM " + table + getQueryClause(filter);
+		logger.debug("mySQL: " + queryString);
+
+		Connection connection = null;
+		Statement st = null;
+		try {
+			connection = pool.getConnection();
+			st = createStreamingStatement(connection);
+			ResultSet rs = st.executeQuery(queryString);
+
+			// the cursor releases the connection when it is closed
+			return new MysqlCursor(pool, connection, st, rs, item, itemName);
+		} catch (SQLException e) {
+			logger.error("mySQL: Error running querying : " + e.getMessage());
+			if (st != null) {
+				try {
+					st.close();
+				} catch (SQLException hidden) {
+				}
+			}
+			pool.release(connection, true);
+		}
+		return empty;
+	}
+
+	/**
+	 * @{inheritDoc
+	 */
+	public NumericSeries queryNumeric(FilterCriteria filter) {
+		NumericSeries.Builder series = new NumericSeries.Builder(filter.getItemName());
+		Item item = getNumericItem(filter.getItemName());
+		String table = item == null ? null : getTableForQuery(item.getName());
+		MysqlConnectionPool pool = this.pool;
+		if (table == null || pool == null)
+			return series.build();
+
+		String queryString = "SELECT Time, Value FROM " + table + getQueryClause(filter);
+		logger.debug("mySQL: " + queryString);
+
+		Connection connection = null;
+		boolean broken = false;
+		try {
+			long timerStart = System.currentTimeMillis();
+
+			connection = pool.getConnection();
+			Statement st = createStreamingStatement(connection);
+			ResultSet rs = st.executeQuery(queryString);
+			while (rs.next()) {
+				double value = rs.getDouble(2);
+				if (!rs.wasNull())
+					series.add(rs.getTimestamp(1).getTime(), value);
+			}
+
+			rs.close();
+			st.close();
+
+			NumericSeries result = series.build();
+			logger.debug("mySQL: query returned {} values in {}ms", result.size(), System.currentTimeMillis()
+					- timerStart);
+			return result;
+		} catch (SQLException e) {
+			broken = true;
+			logger.error("mySQL: Error running querying : " + e.getMessage());
+		} finally {
+			pool.release(connection, broken);
 		}
+		return new NumericSeries.Builder(filter.getItemName()).build();
+	}
+
+	/**
+	 * @{inheritDoc
+	 */
+	public Map<String, HistoricItem> queryLatest(Collection<String> itemNames) {
+		Map<String, HistoricItem> items = new HashMap<String, HistoricItem>();
+
+		// every item has a table of its own, so the latest row of each table is
+		// selected by a sub query, and all of them are sent in a single query.
+		// The values of different tables share a column, so they might be read
+		// as strings, which the driver converts to the type of the item.
+		List<String> names = new ArrayList<String>();
+		StringBuilder queryString = new StringBuilder();
+		for (String itemName : itemNames) {
+			String table = getTableForQuery(itemName);
+			if (table == null)
+				continue;
+			if (queryString.length() > 0)
+				queryString.append(" UNION ALL ");
+			queryString.append("(SELECT ").append(names.size()).append(" AS ItemIndex, Time, Value FROM ").append(table)
+					.append(" ORDER BY Time DESC LIMIT 1)");
+			names.add(itemName);
+		}
+
+		MysqlConnectionPool pool = this.pool;
+		if (names.isEmpty() || pool == null)
+			return items;
+
+		logger.debug("mySQL: Querying the latest values of {} items", names.size());
+
+		Connection connection = null;
+		boolean broken = false;
+		try {
+			long timerStart = System.currentTimeMillis();
+
+			connection = pool.getConnection();
+			Statement st = connection.createStatement();
+			ResultSet rs = st.executeQuery(queryString.toString());
+			while (rs.next()) {
+				String itemName = names.get(rs.getInt(1));
+				try {
+					State state = MysqlCursor.getState(getItem(itemName), rs, 3);
+					items.put(itemName, new MysqlItem(itemName, state, rs.getTimestamp(2)));
+				} catch (IllegalArgumentException e) {
+					logger.debug("mySQL: Unable to convert the latest value of item '{}': {}", itemName, e.getMessage());
+				}
+			}
+
+			rs.close();
+			st.close();
+
+			logger.debug("mySQL: query returned {} values in {}ms", items.size(), System.currentTimeMillis()
+					- timerStart);
+		} catch (SQLException e) {
+			broken = true;
+			logger.error("mySQL: Error running querying : " + e.getMessage());
+		} finally {
+			pool.release(connection, broken);
+		}
+		return items;
+	}
+
+	/**
+	 * Creates a statement, whose result sets are streamed by the driver row by
+	 * row instead of being read into memory as a whole.
+	 */
+	private Statement createStreamingStatement(Connection connection) throws SQLException {
+		Statement st = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		st.setFetchSize(Integer.MIN_VALUE);
+		return st;
+	}
+
+	private String getQueryClause(FilterCriteria filter) {
+		String filterString = getWhereClause(filter);
+
+		if (filter.getOrdering() == Ordering.ASCENDING) {
+			filterString += " ORDER BY Time ASC";
+		} else {
+			filterString += " ORDER BY Time DESC";
+		}
+
+		if (filter.getPageSize() != 0x7fffffff)
+			filterString += " LIMIT " + filter.getPageNumber() * filter.getPageSize() + "," + filter.getPageSize();
+		return filterString;
+	}
+
+	private String getWhereClause(FilterCriteria filter) {
+		SimpleDateFormat mysqlDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
 		String filterString = new String();
 
@@ -502,76 +715,187 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 				filterString += " AND";
 			filterString += " TIME<'" + mysqlDateFormat.format(filter.getEndDate().getTime()) + "'";
 		}
+		return filterString;
+	}
 
-		if (filter.getOrdering() == Ordering.ASCENDING) {
-			filterString += " ORDER BY 'Time' ASC";
-		} else {
-			filterString += " ORDER BY Time DESC";
+	/**
+	 * @{inheritDoc
+	 */
+	public HistoricItem minimum(FilterCriteria filter) {
+		return queryExtremum(filter, "ASC");
+	}
+
+	/**
+	 * @{inheritDoc
+	 */
+	public HistoricItem maximum(FilterCriteria filter) {
+		return queryExtremum(filter, "DESC");
+	}
+
+	/**
+	 * @{inheritDoc
+	 */
+	public DecimalType average(FilterCriteria filter) {
+		return queryAggregate(filter, "AVG(Value)");
+	}
+
+	/**
+	 * @{inheritDoc
+	 */
+	public DecimalType sum(FilterCriteria filter) {
+		return queryAggregate(filter, "SUM(Value)");
+	}
+
+	/**
+	 * @{inheritDoc
+	 */
+	public long count(FilterCriteria filter) {
+		DecimalType count = queryAggregate(filter, "COUNT(Value)");
+		return count == null ? 0 : count.longValue();
+	}
+
+	/**
+	 * @{inheritDoc
+	 */
+	public boolean changed(FilterCriteria filter) {
+		String table = getTableForQuery(filter.getItemName());
+		if (table == null)
+			return false;
+
+		Object[] range = queryRow("SELECT COUNT(DISTINCT Value), COUNT(Value), MIN(Value) FROM " + table
+				+ getWhereClause(filter), 3);
+		if (range == null || ((Number) range[1]).longValue() == 0)
+			return false;
+		if (((Number) range[0]).longValue() > 1)
+			return true;
+
+		// all states are equal, so compare them with the last state before the begin date
+		Object[] before = null;
+		if (filter.getBeginDate() != null) {
+			SimpleDateFormat mysqlDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+			before = queryRow("SELECT Value FROM " + table + " WHERE TIME<='"
+					+ mysqlDateFormat.format(filter.getBeginDate()) + "' ORDER BY Time DESC LIMIT 1", 1);
 		}
+		return before == null || before[0] == null || !before[0].equals(range[2]);
+	}
 
-		if (filter.getPageSize() != 0x7fffffff)
-			filterString += " LIMIT " + filter.getPageNumber() * filter.getPageSize() + "," + filter.getPageSize();
+	private HistoricItem queryExtremum(FilterCriteria filter, String order) {
+		Item item = getNumericItem(filter.getItemName());
+		String table = item == null ? null : getTableForQuery(item.getName());
+		if (table == null)
+			return null;
+
+		// the earliest of several equal values is returned
+		Object[] row = queryRow("SELECT Time, Value FROM " + table + getWhereClause(filter) + " ORDER BY Value "
+				+ order + ", Time ASC LIMIT 1", 2);
+		if (row == null || row[1] == null)
+			return null;
+
+		State state;
+		if (item instanceof NumberItem)
+			state = new DecimalType(row[1].toString());
+		else
+			state = new PercentType(row[1].toString());
+		return new MysqlItem(item.getName(), state, (java.util.Date) row[0]);
+	}
+
+	private DecimalType queryAggregate(FilterCriteria filter, String function) {
+		Item item = getNumericItem(filter.getItemName());
+		String table = item == null ? null : getTableForQuery(item.getName());
+		if (table == null)
+			return null;
 
+		Object[] row = queryRow("SELECT " + function + " FROM " + table + getWhereClause(filter), 1);
+		if (row == null || row[0] == null)
+			return null;
+		return new DecimalType(row[0].toString());
+	}
+
+	/**
+	 * Returns the item, if it is stored with a numeric SQL type
+	 * 
+	 * @return the item or <code>null</code> if its values can not be aggregated
+	 */
+	private Item getNumericItem(String itemName) {
+		Item item = getItem(itemName);
+		if (item instanceof NumberItem || item instanceof DimmerItem || item instanceof RollershutterItem)
+			return item;
+		return null;
+	}
+
+	/**
+	 * Returns the item, which determines the type of its stored values
+	 * 
+	 * @return the item or <code>null</code> if it is unknown
+	 */
+	private Item getItem(String itemName) {
 		try {
-			long timerStart = System.currentTimeMillis();
+			if (itemRegistry != null) {
+				return itemRegistry.getItem(itemName);
+			}
+		} catch (ItemNotFoundException e) {
+			logger.debug("mySQL: Unable to get item type for {}", itemName);
+		}
+		return null;
+	}
 
-			// Retrieve the table array
-			Statement st = connection.createStatement();
+	private String getTableForQuery(String itemName) {
+		if (!initialized)
+			return null;
+
+		if (!isConnected())
+			connectToDatabase();
 
-			String queryString = new String();
-			queryString = "SELECT Time, Value FROM " + table;
-			if (!filterString.isEmpty())
-				queryString += filterString;
+		if (!isConnected())
+			return null;
 
-			logger.debug("mySQL: " + queryString);
+		String table = sqlTables.get(itemName);
+		if (table == null) {
+			logger.debug("mySQL: Unable to find table for query '" + itemName + "'.");
+		}
+		return table;
+	}
 
-			// Turn use of the cursor on.
-			st.setFetchSize(50);
+	/**
+	 * Runs a query and returns the columns of its first row
+	 * 
+	 * @return the column values or <code>null</code> if there is no row or the
+	 *         query failed
+	 */
+	private Object[] queryRow(String queryString, int columns) {
+		MysqlConnectionPool pool = this.pool;
+		if (pool == null)
+			return null;
+
+		logger.debug("mySQL: " + queryString);
 
+		Connection connection = null;
+		boolean broken = false;
+		try {
+			long timerStart = System.currentTimeMillis();
+
+			connection = pool.getConnection();
+			Statement st = connection.createStatement();
 			ResultSet rs = st.executeQuery(queryString);
 
-			long count = 0;
-			List<HistoricItem> items = new ArrayList<HistoricItem>();
-			State state;
-			while (rs.next()) {
-				count++;
-
-				if (item instanceof NumberItem)
-					state = new DecimalType(rs.getDouble(2));
-				else if (item instanceof SwitchItem)
-					state = OnOffType.valueOf(rs.getString(2));
-				else if (item instanceof ContactItem)
-					state = OpenClosedType.valueOf(rs.getString(2));
-				else if (item instanceof DimmerItem)
-					state = new PercentType(rs.getInt(2));
-				else if (item instanceof RollershutterItem)
-					state = new PercentType(rs.getInt(2));
-				else if (item instanceof ColorItem)
-					state = new HSBType(rs.getString(2));
-				else if (item instanceof DateTimeItem) {
-					Calendar calendar = Calendar.getInstance();
-					calendar.setTimeInMillis(rs.getTimestamp(2).getTime());
-					state = new DateTimeType(calendar);
-				} else
-					state = new StringType(rs.getString(2));
-
-				MysqlItem mysqlItem = new MysqlItem(itemName, state, rs.getTimestamp(1));
-				items.add(mysqlItem);
+			Object[] row = null;
+			if (rs.next()) {
+				row = new Object[columns];
+				for (int i = 0; i < columns; i++) {
+					row[i] = rs.getObject(i + 1);
+				}
 			}
 
 			rs.close();
 			st.close();
 
-			long timerStop = System.currentTimeMillis();
-			logger.debug("mySQL: query returned {} rows in {}ms", count, timerStop - timerStart);
-
-			// Success
-			errCnt = 0;
-
-			return items;
+			logger.debug("mySQL: aggregate query took {}ms", System.currentTimeMillis() - timerStart);
+			return row;
 		} catch (SQLException e) {
-			errCnt++;
-			logger.error("mySQL: Error running querying : " + e.getMessage());
+			broken = true;
+			logger.error("mySQL: Error running aggregate query : " + e.getMessage());
+		} finally {
+			pool.release(connection, broken);
 		}
 		return null;
 	}
@@ -0,0 +1,473 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.persistence.mysql.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openhab.core.items.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the stored values to the database in a thread of its own, so that
+ * storing a value never waits for the database. Values are put into a
+ * bounded queue, from which the writer thread collects up to a batch size of
+ * values, waiting at most the linger time for more values after the first
+ * one. A batch is written with one prepared statement per item table and
+ * committed in a single transaction. If the batch fails, its values are
+ * written one by one, so that only the values which fail themselves are lost.
+ *
+ * The time of a value is taken when it is stored, not when it is written, so
+ * the order of the values is kept. If the queue is full, new values are
+ * rejected.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class MysqlWriter implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(MysqlWriter.class);
+
+	/** the time in milliseconds to wait for values before checking if the writer has been stopped */
+	private static final long POLL_TIMEOUT = 1000;
+
+	/** the time in milliseconds to wait for the writer thread to write the remaining values */
+	private static final long STOP_TIMEOUT = 10000;
+
+	private final MysqlPersistenceService service;
+	private final MysqlConnectionPool pool;
+	private final int capacity;
+	private final int batchSize;
+	private final long lingerTime;
+	private final int errReconnectThreshold;
+
+	private final BlockingQueue<Value> queue;
+
+	/** the connection of the writer thread and its statements by table name */
+	private Connection connection = null;
+	private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+
+	// Error counter - used to reconnect to database on error
+	private int errCnt = 0;
+
+	private final AtomicLong writtenCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong flushCount = new AtomicLong();
+	private final AtomicLong totalFlushTime = new AtomicLong();
+	private volatile long maxFlushTime = 0;
+	private volatile int maxQueueSize = 0;
+
+	/** true from the time the queue got full until it is half empty again */
+	private volatile boolean full = false;
+
+	private Thread thread;
+	private volatile boolean running;
+
+	/**
+	 * Creates a new writer.
+	 *
+	 * @param service
+	 *            the persistence service, which creates the item tables
+	 * @param pool
+	 *            the pool to take the connection of the writer from
+	 * @param capacity
+	 *            the maximum number of values waiting to be written
+	 * @param batchSize
+	 *            the maximum number of values written at once
+	 * @param lingerTime
+	 *            the time in milliseconds to wait for more values, before a
+	 *            batch which is not full is written
+	 * @param errReconnectThreshold
+	 *            the number of failed batches in a row, after which the
+	 *            connection is opened again, 0 to keep the connection
+	 */
+	public MysqlWriter(MysqlPersistenceService service, MysqlConnectionPool pool, int capacity, int batchSize,
+			long lingerTime, int errReconnectThreshold) {
+		this.service = service;
+		this.pool = pool;
+		this.capacity = Math.max(1, capacity);
+		this.batchSize = Math.max(1, batchSize);
+		this.lingerTime = Math.max(0, lingerTime);
+		this.errReconnectThreshold = errReconnectThreshold;
+		this.queue = new LinkedBlockingQueue<Value>(this.capacity);
+	}
+
+	/**
+	 * Starts the writer thread.
+	 */
+	public synchronized void start() {
+		if (thread == null) {
+			running = true;
+			thread = new Thread(this, "mySQL writer");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stops the writer thread after it has written the values in the queue.
+	 */
+	public void stop() {
+		Thread oldThread;
+		synchronized (this) {
+			running = false;
+			oldThread = thread;
+			thread = null;
+		}
+		if (oldThread != null) {
+			try {
+				oldThread.join(STOP_TIMEOUT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (oldThread.isAlive()) {
+				logger.warn("mySQL: Writer did not stop in time, {} values have not been written", queue.size());
+			}
+		}
+	}
+
+	/**
+	 * Adds a value to the queue of values to be written.
+	 *
+	 * @param item
+	 *            the item the value belongs to
+	 * @param value
+	 *            the value converted for the database
+	 * @param time
+	 *            the time in milliseconds of the value
+	 * @return false if the queue is full and the value has been rejected
+	 */
+	public boolean offer(Item item, String value, long time) {
+		if (!queue.offer(new Value(item, value, time))) {
+			rejectedCount.incrementAndGet();
+			if (!full) {
+				full = true;
+				logger.warn("mySQL: Write queue is full, rejecting values");
+			}
+			return false;
+		}
+		int size = queue.size();
+		if (size > maxQueueSize) {
+			maxQueueSize = size;
+		}
+		return true;
+	}
+
+	@Override
+	public void run() {
+		List<Value> batch = new ArrayList<Value>(batchSize);
+		try {
+			while (running) {
+				Value first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.currentTimeMillis() + lingerTime;
+				while (batch.size() < batchSize) {
+					if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+						continue;
+					}
+					long remaining = deadline - System.currentTimeMillis();
+					Value next = remaining > 0 ? queue.poll(remaining, TimeUnit.MILLISECONDS) : null;
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+				write(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			logger.debug("mySQL: Writer has been interrupted");
+		}
+
+		// write what is left before the writer stops
+		while (queue.drainTo(batch, batchSize) > 0) {
+			write(batch);
+			batch.clear();
+		}
+		closeConnection(false);
+	}
+
+	private void write(List<Value> batch) {
+		long start = System.currentTimeMillis();
+		int queued = queue.size();
+		if (full && queued <= capacity / 2) {
+			full = false;
+			logger.info("mySQL: Write queue accepts values again, {} have been rejected so far", rejectedCount.get());
+		}
+		try {
+			if (connection == null) {
+				connection = pool.getConnection();
+				connection.setAutoCommit(false);
+			}
+			List<PreparedStatement> usedStatements = new ArrayList<PreparedStatement>();
+			int count = 0;
+			int failed = 0;
+			for (Value value : batch) {
+				PreparedStatement statement = prepare(value);
+				if (statement == null) {
+					failed++;
+					continue;
+				}
+				statement.addBatch();
+				if (!usedStatements.contains(statement)) {
+					usedStatements.add(statement);
+				}
+				count++;
+			}
+			for (PreparedStatement statement : usedStatements) {
+				statement.executeBatch();
+			}
+			connection.commit();
+
+			writtenCount.addAndGet(count);
+			failedCount.addAndGet(failed);
+			long duration = System.currentTimeMillis() - start;
+			flushCount.incrementAndGet();
+			totalFlushTime.addAndGet(duration);
+			if (duration > maxFlushTime) {
+				maxFlushTime = duration;
+			}
+			logger.debug("mySQL: Stored {} values in {} tables in {}ms, {} values waiting", new Object[] { count,
+					usedStatements.size(), duration, queued });
+
+			// Success
+			errCnt = 0;
+		} catch (RuntimeException e) {
+			// keep the writer alive, but start over with a new connection
+			logger.error("mySQL: Could not store " + batch.size() + " values in database, storing them one by one", e);
+			rollback();
+			closeConnection(true);
+			writeEach(batch);
+		} catch (SQLException e) {
+			errCnt++;
+			logger.warn("mySQL: Could not store {} values in database, storing them one by one: {}", batch.size(),
+					e.getMessage());
+			// the values must not be sent again with the next batch
+			clearBatches();
+			rollback();
+
+			// If we have 'errReconnectThreshold' errors in a row, then
+			// reconnect to the database
+			if (connection != null && errReconnectThreshold != 0 && errCnt > errReconnectThreshold) {
+				logger.debug("mySQL: Error count exceeded " + errReconnectThreshold + ". Disconnecting database.");
+				closeConnection(true);
+			} else if (isClosed()) {
+				closeConnection(true);
+			}
+			writeEach(batch);
+		}
+	}
+
+	/**
+	 * Writes the values of a failed batch one by one, each in a transaction of
+	 * its own, so that only the values which fail themselves are lost. If the
+	 * connection breaks, the remaining values are given up.
+	 */
+	private void writeEach(List<Value> batch) {
+		int count = 0;
+		int failed = 0;
+		for (int i = 0; i < batch.size(); i++) {
+			Value value = batch.get(i);
+			try {
+				if (connection == null) {
+					connection = pool.getConnection();
+					connection.setAutoCommit(false);
+				}
+				PreparedStatement statement = prepare(value);
+				if (statement == null) {
+					failed++;
+					continue;
+				}
+				statement.executeUpdate();
+				connection.commit();
+				count++;
+			} catch (SQLException e) {
+				rollback();
+				if (connection == null || isClosed()) {
+					failed += batch.size() - i;
+					logger.error("mySQL: Could not store {} values in database: {}", batch.size() - i, e.getMessage());
+					closeConnection(true);
+					break;
+				}
+				failed++;
+				logger.error("mySQL: Could not store value '{}' of item '{}' in database: {}", new Object[] {
+						value.value, value.item.getName(), e.getMessage() });
+			} catch (RuntimeException e) {
+				failed += batch.size() - i;
+				logger.error("mySQL: Could not store " + (batch.size() - i) + " values in database", e);
+				rollback();
+				closeConnection(true);
+				break;
+			}
+		}
+		writtenCount.addAndGet(count);
+		failedCount.addAndGet(failed);
+		if (count > 0) {
+			errCnt = 0;
+		}
+		logger.debug("mySQL: Stored {} of {} values one by one", count, batch.size());
+	}
+
+	/**
+	 * Sets the parameters of the insert statement of the table of the given value.
+	 *
+	 * @return the prepared statement or null if the item has no table
+	 */
+	private PreparedStatement prepare(Value value) throws SQLException {
+		String tableName = service.getTable(value.item, connection);
+		if (tableName == null) {
+			logger.error("Unable to store item '{}'.", value.item.getName());
+			return null;
+		}
+		PreparedStatement statement = statements.get(tableName);
+		if (statement == null) {
+			// the time is the primary key, so the last value within a second wins
+			statement = connection.prepareStatement("INSERT INTO " + tableName
+					+ " (TIME, VALUE) VALUES(?,?) ON DUPLICATE KEY UPDATE VALUE=VALUES(VALUE)");
+			statements.put(tableName, statement);
+		}
+		// the time is stored with a resolution of seconds, like NOW() does
+		statement.setTimestamp(1, new Timestamp(value.time - value.time % 1000));
+		statement.setString(2, value.value);
+		return statement;
+	}
+
+	/**
+	 * Discards the values which have been added to the batches of the statements,
+	 * but not been executed.
+	 */
+	private void clearBatches() {
+		for (PreparedStatement statement : statements.values()) {
+			try {
+				statement.clearBatch();
+			} catch (SQLException hidden) {
+			}
+		}
+	}
+
+	private void rollback() {
+		if (connection != null) {
+			try {
+				connection.rollback();
+			} catch (SQLException hidden) {
+			}
+		}
+	}
+
+	private boolean isClosed() {
+		try {
+			return connection != null && connection.isClosed();
+		} catch (SQLException e) {
+			return true;
+		}
+	}
+
+	private void closeConnection(boolean broken) {
+		for (PreparedStatement statement : statements.values()) {
+			try {
+				statement.close();
+			} catch (Exception hidden) {
+			}
+		}
+		statements.clear();
+		if (connection != null) {
+			if (!broken) {
+				try {
+					connection.setAutoCommit(true);
+				} catch (SQLException e) {
+					broken = true;
+				}
+			}
+			pool.release(connection, broken);
+			connection = null;
+		}
+		errCnt = 0;
+	}
+
+	/**
+	 * @return the number of values waiting to be written
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	/**
+	 * @return the highest number of values which have been waiting at the
+	 *         same time
+	 */
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	/**
+	 * @return the number of values written to the database
+	 */
+	public long getWrittenCount() {
+		return writtenCount.get();
+	}
+
+	/**
+	 * @return the number of values which could not be written
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * @return the number of values rejected because the queue was full
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * @return the average time in milliseconds to write a batch, or -1 if no
+	 *         batch has been written yet
+	 */
+	public long getAverageFlushTime() {
+		long count = flushCount.get();
+		return count == 0 ? -1 : totalFlushTime.get() / count;
+	}
+
+	/**
+	 * @return the longest time in milliseconds to write a batch
+	 */
+	public long getMaxFlushTime() {
+		return maxFlushTime;
+	}
+
+	private static class Value {
+
+		private final Item item;
+		private final String value;
+		private final long time;
+
+		Value(Item item, String value, long time) {
+			this.item = item;
+			this.value = value;
+			this.time = time;
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.persistence.rrd4j.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.persistence.rrd4j.internal.RRD4jDatabaseCache.Entry;
+import org.rrd4j.ConsolFun;
+import org.rrd4j.DsType;
+import org.rrd4j.core.RrdBackendFactory;
+import org.rrd4j.core.RrdDb;
+import org.rrd4j.core.RrdDef;
+
+/**
+ * Opens in-memory databases through a {@link RRD4jDatabaseCache} and checks
+ * which of them are closed.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class RRD4jDatabaseCacheTest {
+
+	private RRD4jDatabaseCache cache;
+
+	private final Map<String, RrdDb> databases = new HashMap<String, RrdDb>();
+
+	@Before
+	public void setUp() {
+		cache = new RRD4jDatabaseCache();
+		cache.setCapacity(2);
+	}
+
+	@After
+	public void tearDown() {
+		cache.closeAll();
+	}
+
+	@Test
+	public void testLeastRecentlyUsedDatabaseIsClosed() throws IOException {
+		open("a");
+		open("b");
+		open("a");
+		open("c");
+
+		assertEquals(2, cache.size());
+		assertFalse(databases.get("a").isClosed());
+		assertTrue(databases.get("b").isClosed());
+		assertFalse(databases.get("c").isClosed());
+	}
+
+	@Test
+	public void testClosedDatabaseIsOpenedAgain() throws IOException {
+		open("a");
+		open("b");
+		open("c");
+		assertTrue(databases.get("a").isClosed());
+
+		Entry entry = cache.acquire("a");
+		try {
+			assertNull(entry.getDb());
+		} finally {
+			cache.release(entry);
+		}
+	}
+
+	@Test
+	public void testOpenDatabaseIsReused() throws IOException {
+		open("a");
+		Entry entry = cache.acquire("a");
+		try {
+			assertSame(databases.get("a"), entry.getDb());
+		} finally {
+			cache.release(entry);
+		}
+	}
+
+	@Test
+	public void testAcquiredDatabaseIsNotClosed() throws IOException {
+		cache.setCapacity(1);
+		Entry entry = cache.acquire("a");
+		try {
+			entry.setDb(createDb("a"));
+			open("b");
+
+			assertFalse(entry.getDb().isClosed());
+			assertTrue(databases.get("b").isClosed());
+		} finally {
+			cache.release(entry);
+		}
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testDatabaseWithPendingValueIsNotClosed() throws IOException {
+		cache.setCapacity(1);
+		Entry entry = cache.acquire("a");
+		entry.setDb(createDb("a"));
+		entry.setPending(1.0, ConsolFun.AVERAGE, "a");
+		cache.release(entry);
+		open("b");
+
+		assertFalse(databases.get("a").isClosed());
+		assertTrue(databases.get("b").isClosed());
+
+		// the database is closed once its value has been stored
+		entry = cache.acquire("a");
+		entry.clearPending();
+		cache.release(entry);
+		open("c");
+		assertTrue(databases.get("a").isClosed());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testReducedCapacityClosesDatabases() throws IOException {
+		cache.setCapacity(3);
+		open("a");
+		open("b");
+		open("c");
+		assertEquals(3, cache.size());
+
+		cache.setCapacity(1);
+		assertEquals(1, cache.size());
+		assertTrue(databases.get("a").isClosed());
+		assertTrue(databases.get("b").isClosed());
+		assertFalse(databases.get("c").isClosed());
+	}
+
+	@Test
+	public void testCloseAll() throws IOException {
+		open("a");
+		open("b");
+		cache.closeAll();
+
+		assertEquals(0, cache.size());
+		assertTrue(databases.get("a").isClosed());
+		assertTrue(databases.get("b").isClosed());
+	}
+
+	@Test
+	public void testLatestPendingValueWins() {
+		Entry entry = cache.acquire("a");
+		try {
+			assertFalse(entry.isPending());
+			assertTrue(entry.setPending(1.0, ConsolFun.MAX, "item"));
+			assertFalse(entry.setPending(2.0, ConsolFun.MAX, "item"));
+			assertTrue(entry.isPending());
+			assertEquals(2.0, entry.getPendingValue(), 0.0);
+
+			entry.clearPending();
+			assertFalse(entry.isPending());
+			assertTrue(entry.setPending(3.0, ConsolFun.MAX, "item"));
+		} finally {
+			cache.release(entry);
+		}
+	}
+
+	/**
+	 * Acquires a database, opens it if necessary and releases it again.
+	 */
+	private void open(String name) throws IOException {
+		Entry entry = cache.acquire(name);
+		try {
+			if (entry.getDb() == null) {
+				entry.setDb(createDb(name));
+			}
+			assertNotNull(entry.getDb());
+		} finally {
+			cache.release(entry);
+		}
+	}
+
+	private RrdDb createDb(String name) throws IOException {
+		RrdDb db = createMemoryDb(name);
+		databases.put(name, db);
+		return db;
+	}
+
+	static RrdDb createMemoryDb(String name) throws IOException {
+		RrdDef rrdDef = new RrdDef(name);
+		rrdDef.setStep(1);
+		rrdDef.setStartTime(System.currentTimeMillis() / 1000 - 1);
+		rrdDef.addDatasource("state", DsType.GAUGE, 3600, Double.NaN, Double.NaN);
+		rrdDef.addArchive(ConsolFun.MAX, .999, 1, 60);
+		return new RrdDb(rrdDef, RrdBackendFactory.getFactory("MEMORY"));
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.persistence.rrd4j.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.persistence.rrd4j.internal.RRD4jDatabaseCache.Entry;
+import org.rrd4j.ConsolFun;
+import org.rrd4j.core.RrdDb;
+
+/**
+ * Stores values faster than once per second through a {@link RRD4jService}
+ * which keeps its databases in memory.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class RRD4jServiceTest {
+
+	private static final long FLUSH_TIMEOUT = 5000;
+
+	private TestService service;
+
+	private NumberItem item;
+
+	@Before
+	public void setUp() {
+		service = new TestService();
+		service.activate();
+		item = new NumberItem("Number");
+	}
+
+	@After
+	public void tearDown() {
+		service.deactivate();
+	}
+
+	@Test
+	public void testLatestBufferedValueIsFlushed() throws Exception {
+		store(5);
+		store(6);
+		store(7);
+
+		long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT;
+		while (getLastValue() != 7 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertEquals(7, getLastValue(), 0.0);
+		assertFalse(service.entries.get("Number").isPending());
+	}
+
+	@Test
+	public void testBufferedValueIsDiscardedIfServiceIsNotActive() throws Exception {
+		service.deactivate();
+		store(5);
+		store(6);
+
+		// nothing is left behind which would keep the database open
+		assertFalse(service.entries.get("Number").isPending());
+	}
+
+	private void store(int value) {
+		item.setState(new DecimalType(value));
+		service.store(item);
+	}
+
+	private double getLastValue() throws IOException {
+		return service.entries.get("Number").getDb().getLastDatasourceValue("state");
+	}
+
+	/**
+	 * A service whose databases are only kept in memory.
+	 */
+	private static class TestService extends RRD4jService {
+
+		final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+		@Override
+		protected RrdDb getDB(Entry entry, ConsolFun function) {
+			RrdDb db = entry.getDb();
+			if (db == null || db.isClosed()) {
+				try {
+					db = RRD4jDatabaseCacheTest.createMemoryDb(entry.getName());
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+				entry.setDb(db);
+			}
+			entries.put(entry.getName(), entry);
+			return db;
+		}
+	}
+
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2010-2013, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.persistence.rrd4j.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.rrd4j.ConsolFun;
+import org.rrd4j.core.RrdDb;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of open rrd4j databases, so that storing a value does not need to
+ * open and parse the database file every time. Each database has its own
+ * lock, which is held between {@link #acquire(String)} and
+ * {@link #release(Entry)}, so that different databases can be accessed
+ * concurrently. If more databases than the capacity of the cache are open,
+ * the least recently used ones, which are neither in use nor have a pending
+ * value, are closed.
+ *
+ * @author agent
+ * @since 1.4.0
+ */
+public class RRD4jDatabaseCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(RRD4jDatabaseCache.class);
+
+	/** the default number of databases which are kept open */
+	public static final int DEFAULT_CAPACITY = 500;
+
+	/** the entries in access order, guarded by itself */
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	private int capacity = DEFAULT_CAPACITY;
+
+	/**
+	 * Sets the number of databases which are kept open.
+	 *
+	 * @param capacity the new capacity, at least 1
+	 */
+	public void setCapacity(int capacity) {
+		synchronized (entries) {
+			this.capacity = Math.max(1, capacity);
+		}
+		evict();
+	}
+
+	/**
+	 * Returns the entry of a database and locks it. The database itself is
+	 * opened by the caller, if {@link Entry#getDb()} returns <code>null</code>.
+	 * Every entry returned must be released by {@link #release(Entry)}.
+	 *
+	 * @param name the name of the database
+	 * @return the locked entry
+	 */
+	public Entry acquire(String name) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(name);
+			if (entry == null) {
+				entry = new Entry(name);
+				entries.put(name, entry);
+			}
+			entry.users++;
+		}
+		entry.lock.lock();
+		return entry;
+	}
+
+	/**
+	 * Unlocks an entry returned by {@link #acquire(String)} and closes the
+	 * least recently used databases, if the cache holds too many.
+	 *
+	 * @param entry the entry to release
+	 */
+	public void release(Entry entry) {
+		entry.lock.unlock();
+		synchronized (entries) {
+			entry.users--;
+		}
+		evict();
+	}
+
+	/**
+	 * Closes all databases and empties the cache.
+	 */
+	public void closeAll() {
+		List<Entry> closing;
+		synchronized (entries) {
+			closing = new ArrayList<Entry>(entries.values());
+			entries.clear();
+		}
+		for (Entry entry : closing) {
+			entry.lock.lock();
+			try {
+				entry.close();
+			} finally {
+				entry.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of databases in the cache
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	private void evict() {
+		List<Entry> closing = new ArrayList<Entry>();
+		synchronized (entries) {
+			int excess = entries.size() - capacity;
+			Iterator<Entry> iterator = entries.values().iterator();
+			while (excess > 0 && iterator.hasNext()) {
+				Entry entry = iterator.next();
+				if (entry.users == 0 && !entry.pending) {
+					// keep the entry in the cache until its database is
+					// closed, so that nobody opens the same file meanwhile
+					entry.users++;
+					closing.add(entry);
+					excess--;
+				}
+			}
+		}
+		for (Entry entry : closing) {
+			entry.lock.lock();
+			try {
+				entry.close();
+			} finally {
+				entry.lock.unlock();
+			}
+			synchronized (entries) {
+				entry.users--;
+				// the entry might have been used again in the meantime
+				if (entry.users == 0 && entry.db == null && !entry.pending && entries.get(entry.name) == entry) {
+					entries.remove(entry.name);
+				}
+			}
+		}
+	}
+
+	/**
+	 * An entry of the cache, holding the open database and the value which is
+	 * waiting to be stored, if any. The fields must only be accessed while the
+	 * entry is acquired.
+	 */
+	public static class Entry {
+
+		private final String name;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		/** the number of threads which acquired or wait for this entry, guarded by the cache */
+		private int users = 0;
+
+		private RrdDb db;
+
+		private volatile boolean pending = false;
+
+		private double pendingValue;
+
+		private ConsolFun pendingFunction;
+
+		private String pendingItemName;
+
+		Entry(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public RrdDb getDb() {
+			return db;
+		}
+
+		public void setDb(RrdDb db) {
+			this.db = db;
+		}
+
+		/**
+		 * @return true if a value is waiting to be stored
+		 */
+		public boolean isPending() {
+			return pending;
+		}
+
+		/**
+		 * Remembers a value to be stored later, replacing any value which is
+		 * already waiting.
+		 *
+		 * @return true if no value has been waiting before
+		 */
+		public boolean setPending(double value, ConsolFun function, String itemName) {
+			boolean first = !pending;
+			pendingValue = value;
+			pendingFunction = function;
+			pendingItemName = itemName;
+			pending = true;
+			return first;
+		}
+
+		public void clearPending() {
+			pending = false;
+		}
+
+		public double getPendingValue() {
+			return pendingValue;
+		}
+
+		public ConsolFun getPendingFunction() {
+			return pendingFunction;
+		}
+
+		public String getPendingItemName() {
+			return pendingItemName;
+		}
+
+		private void close() {
+			if (db != null) {
+				try {
+					db.close();
+				} catch (IOException e) {
+					logger.debug("Error closing rrd4j database '{}': {}", name, e.getMessage());
+				}
+				db = null;
+			}
+		}
+	}
+
+}
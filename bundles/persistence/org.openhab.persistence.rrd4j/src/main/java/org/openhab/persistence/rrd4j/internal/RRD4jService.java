@@ -10,15 +10,20 @@ package org.openhab.persistence.rrd4j.internal;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Dictionary;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
 
 import org.openhab.core.items.Item;
 import org.openhab.core.items.ItemNotFoundException;
@@ -30,16 +35,23 @@ import org.openhab.core.library.items.SwitchItem;
 import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.library.types.OnOffType;
 import org.openhab.core.library.types.OpenClosedType;
+import org.openhab.core.persistence.AggregatingPersistenceService;
+import org.openhab.core.persistence.BulkQueryablePersistenceService;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
 import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.NumericQueryablePersistenceService;
+import org.openhab.core.persistence.NumericSeries;
 import org.openhab.core.persistence.PersistenceService;
-import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.types.State;
+import org.openhab.persistence.rrd4j.internal.RRD4jDatabaseCache.Entry;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ManagedService;
 import org.rrd4j.ConsolFun;
 import org.rrd4j.DsType;
 import org.rrd4j.core.FetchData;
 import org.rrd4j.core.FetchRequest;
+import org.rrd4j.core.RrdBackendFactory;
 import org.rrd4j.core.RrdDb;
 import org.rrd4j.core.RrdDef;
 import org.rrd4j.core.Sample;
@@ -51,10 +63,18 @@ import org.slf4j.LoggerFactory;
  * This is the implementation of the RRD4j {@link PersistenceService}. To learn
  * more about RRD4j please visit their <a href="http://code.google.com/p/rrd4j/">website</a>.
  * 
+ * The databases are kept open in a {@link RRD4jDatabaseCache}. Values which
+ * arrive within the same second as the last stored value are buffered and
+ * stored at the beginning of the next second, where only the latest value
+ * of that second is kept.
+ * 
+ * Aggregations are calculated from the rows of the archive which rrd4j selects
+ * for the requested time range, i.e. from values which are already consolidated.
+ * 
  * @author Kai Kreuzer
  * @since 1.0.0
  */
-public class RRD4jService implements QueryablePersistenceService {
+public class RRD4jService implements AggregatingPersistenceService, NumericQueryablePersistenceService, BulkQueryablePersistenceService, ManagedService {
 
 	private static final String DATASOURCE_STATE = "state";
 
@@ -62,8 +82,14 @@ public class RRD4jService implements QueryablePersistenceService {
 	
 	private static final Logger logger = LoggerFactory.getLogger(RRD4jService.class);
 
-	private Map<String,Timer> timers = new HashMap<String,Timer>();
-	
+	/** the memory mapped backend, which is the default of rrd4j, too */
+	private static final String BACKEND_FACTORY = "NIO";
+
+	private final RRD4jDatabaseCache cache = new RRD4jDatabaseCache();
+
+	/** stores the buffered values, shared by all databases */
+	private volatile ScheduledExecutorService scheduler;
+
 	protected ItemRegistry itemRegistry;
 	
 	public void setItemRegistry(ItemRegistry itemRegistry) {
@@ -74,6 +100,24 @@ public class RRD4jService implements QueryablePersistenceService {
 		this.itemRegistry = null;
 	}
 
+	public void activate() {
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "RRD4j writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public void deactivate() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+			scheduler = null;
+		}
+		cache.closeAll();
+	}
+
 	/**
 	 * @{inheritDoc}
 	 */
@@ -87,67 +131,30 @@ public class RRD4jService implements QueryablePersistenceService {
 	public void store(final Item item, final String alias) {
 		final String name = alias==null ? item.getName() : alias;
 		ConsolFun function = getConsolidationFunction(item);
-		RrdDb db = getDB(name, function);
-		if(db!=null) {
-			long now = System.currentTimeMillis()/1000;
-			if(function!=ConsolFun.AVERAGE) {
-				try {
-					// we store the last value again, so that the value change in the database is not interpolated, but
-					// happens right at this spot
-					if(now - 1 > db.getLastUpdateTime()) {
-						// only do it if there is not already a value
-						double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
-						if(!Double.isNaN(lastValue)) {
-							Sample sample = db.createSample();
-				            sample.setTime(now - 1);
-				            sample.setValue(DATASOURCE_STATE, lastValue);
-				            sample.update();
-		                    logger.debug("Stored '{}' with state '{}' in rrd4j database", name, mapToState(lastValue, item.getName()));
-						}
-					}
-				} catch (IOException e) {
-					logger.debug("Error re-storing last value: {}", e.getMessage());
-				}
-			}
-			try {
-				Sample sample = db.createSample();
-	            sample.setTime(now);
-	            
-	            DecimalType state = (DecimalType) item.getStateAs(DecimalType.class);
-	            if (state!=null) {
-                    double value = state.toBigDecimal().doubleValue();
-                    sample.setValue(DATASOURCE_STATE, value);
-                    sample.update();
-                    logger.debug("Stored '{}' with state '{}' in rrd4j database", name, item.getState());
-	            }
-			} catch (IllegalArgumentException e) {
-				if(e.getMessage().contains("at least one second step is required")) {
-
-					// we try to store the value one second later
-					TimerTask task = new TimerTask() {
-						public void run() {
-							store(item, name);
-						}
-					};
-					Timer timer = timers.get(name);
-					if(timer!=null) {
-						timer.cancel();
-						timers.remove(name);
-					}
-					timer = new Timer();
-					timers.put(name, timer);
-					timer.schedule(task, 1000);
+		DecimalType state = (DecimalType) item.getStateAs(DecimalType.class);
+		if (state==null) {
+			return;
+		}
+		double value = state.toBigDecimal().doubleValue();
+		Entry entry = cache.acquire(name);
+		try {
+			RrdDb db = getDB(entry, function);
+			if(db!=null) {
+				long now = System.currentTimeMillis()/1000;
+				if(now > db.getLastUpdateTime() && !entry.isPending()) {
+					storeSample(db, name, item.getName(), function, value, now);
 				} else {
-					logger.warn("Could not persist '{}' to rrd4j database: {}", new String[] { name, e.getMessage() });
+					// rrd4j requires at least one second step, so we store the latest value
+					// of this second at the beginning of the next one
+					if(entry.setPending(value, function, item.getName())) {
+						scheduleFlush(name);
+					}
 				}
-			} catch (Exception e) {
-				logger.warn("Could not persist '{}' to rrd4j database: {}", new String[] { name, e.getMessage() });
-			}
-            try {
-				db.close();
-			} catch (IOException e) {
-				logger.debug("Error closing rrd4j database: {}", e.getMessage());
 			}
+		} catch (IOException e) {
+			logger.warn("Could not persist '{}' to rrd4j database: {}", new String[] { name, e.getMessage() });
+		} finally {
+			cache.release(entry);
 		}
 	}
 
@@ -157,17 +164,129 @@ public class RRD4jService implements QueryablePersistenceService {
 	public void store(Item item) {
 		store(item, null);
 	}
-	
+
+	private void storeSample(RrdDb db, String name, String itemName, ConsolFun function, double value, long now) {
+		if(function!=ConsolFun.AVERAGE) {
+			try {
+				// we store the last value again, so that the value change in the database is not interpolated, but
+				// happens right at this spot
+				if(now - 1 > db.getLastUpdateTime()) {
+					// only do it if there is not already a value
+					double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
+					if(!Double.isNaN(lastValue)) {
+						Sample sample = db.createSample();
+			            sample.setTime(now - 1);
+			            sample.setValue(DATASOURCE_STATE, lastValue);
+			            sample.update();
+	                    logger.debug("Stored '{}' with state '{}' in rrd4j database", name, mapToState(lastValue, itemName));
+					}
+				}
+			} catch (IOException e) {
+				logger.debug("Error re-storing last value: {}", e.getMessage());
+			}
+		}
+		try {
+			Sample sample = db.createSample();
+            sample.setTime(now);
+            sample.setValue(DATASOURCE_STATE, value);
+            sample.update();
+            logger.debug("Stored '{}' with state '{}' in rrd4j database", name, mapToState(value, itemName));
+		} catch (Exception e) {
+			logger.warn("Could not persist '{}' to rrd4j database: {}", new String[] { name, e.getMessage() });
+		}
+	}
+
+	private void scheduleFlush(final String name) {
+		ScheduledExecutorService scheduler = this.scheduler;
+		try {
+			if(scheduler!=null) {
+				long delay = 1000 - System.currentTimeMillis() % 1000;
+				scheduler.schedule(new Runnable() {
+					public void run() {
+						flush(name);
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+				return;
+			}
+		} catch(RejectedExecutionException e) {
+			// this happens if the system is shut down
+		}
+		logger.debug("Discarding buffered value of '{}' as the service is not active", name);
+		Entry entry = cache.acquire(name);
+		entry.clearPending();
+		cache.release(entry);
+	}
+
+	private void flush(String name) {
+		Entry entry = cache.acquire(name);
+		try {
+			if(entry.isPending()) {
+				RrdDb db = getDB(entry, entry.getPendingFunction());
+				if(db!=null) {
+					long now = System.currentTimeMillis()/1000;
+					if(now > db.getLastUpdateTime()) {
+						entry.clearPending();
+						storeSample(db, name, entry.getPendingItemName(), entry.getPendingFunction(), entry.getPendingValue(), now);
+					} else {
+						scheduleFlush(name);
+					}
+				} else {
+					entry.clearPending();
+				}
+			}
+		} catch (IOException e) {
+			entry.clearPending();
+			logger.warn("Could not persist '{}' to rrd4j database: {}", new String[] { name, e.getMessage() });
+		} finally {
+			cache.release(entry);
+		}
+	}
+
 	@Override
 	public Iterable<HistoricItem> query(FilterCriteria filter) {
+		final NumericSeries series = queryNumeric(filter);
+		// the historic items are only created while iterating over the values
+		return new Iterable<HistoricItem>() {
+			public Iterator<HistoricItem> iterator() {
+				return new Iterator<HistoricItem>() {
+					private int index = 0;
+
+					public boolean hasNext() {
+						return index < series.size();
+					}
+
+					public HistoricItem next() {
+						if(!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						String itemName = series.getName();
+						HistoricItem rrd4jItem = new RRD4jItem(itemName, mapToState(series.getValue(index), itemName), new Date(series.getTimestamp(index)));
+						index++;
+						return rrd4jItem;
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * @{inheritDoc}
+	 */
+	public NumericSeries queryNumeric(FilterCriteria filter) {
 		String itemName = filter.getItemName();
 		ConsolFun consolidationFunction = getConsolidationFunction(itemName);
-		RrdDb db = getDB(itemName, consolidationFunction);
-		if(db!=null) {
-			long start = 0L;
-			long end = filter.getEndDate()==null ? System.currentTimeMillis()/1000 - 1 : filter.getEndDate().getTime()/1000;
+		NumericSeries.Builder series = new NumericSeries.Builder(itemName, 1);
+		Entry entry = cache.acquire(itemName);
+		try {
+			RrdDb db = getDB(entry, consolidationFunction);
+			if(db!=null) {
+				long start = 0L;
+				long end = filter.getEndDate()==null ? System.currentTimeMillis()/1000 - 1 : filter.getEndDate().getTime()/1000;
 
-			try {
 				if(filter.getBeginDate()==null) {
 					// as rrd goes back for years and gets more and more inaccurate, we only support descending order and a single return value
 					// if there is no begin date is given - this case is required specifically for the historicState() query, which we
@@ -177,11 +296,9 @@ public class RRD4jService implements QueryablePersistenceService {
 							// we are asked only for the most recent value!
 							double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
 							if(!Double.isNaN(lastValue)) {
-								HistoricItem rrd4jItem = new RRD4jItem(itemName, mapToState(lastValue, itemName), new Date(db.getLastArchiveUpdateTime() * 1000));
-								return Collections.singletonList(rrd4jItem);
-							} else {
-								return Collections.emptyList();
+								series.add(db.getLastArchiveUpdateTime() * 1000, lastValue);
 							}
+							return series.build();
 						} else {
 							start = end;
 						}
@@ -194,39 +311,163 @@ public class RRD4jService implements QueryablePersistenceService {
 				}
 				FetchRequest request = db.createFetchRequest(consolidationFunction, start, end, 1);
 
-				List<HistoricItem> items = new ArrayList<HistoricItem>();
 				FetchData result = request.fetchData();
+				double[] values = result.getValues(DATASOURCE_STATE);
+				series = new NumericSeries.Builder(itemName, values.length);
 				long ts = result.getFirstTimestamp();
 				long step = result.getRowCount() > 1 ? result.getStep() : 0;
-				for(double value : result.getValues(DATASOURCE_STATE)) {
+				for(double value : values) {
 					if(!Double.isNaN(value)) {
-						RRD4jItem rrd4jItem = new RRD4jItem(itemName, mapToState(value, itemName), new Date(ts * 1000));
-						items.add(rrd4jItem);
+						series.add(ts * 1000, value);
 					}
 					ts += step;
 				}
-				return items;
+			}
+		} catch (IOException e) {
+			logger.warn("Could not query rrd4j database for item '{}': {}", new String[] { itemName, e.getMessage() });
+		} finally {
+			cache.release(entry);
+		}
+		return series.build();
+	}
+
+	/**
+	 * @{inheritDoc}
+	 */
+	public Map<String, HistoricItem> queryLatest(Collection<String> itemNames) {
+		Map<String, HistoricItem> items = new HashMap<String, HistoricItem>();
+		for(String itemName : itemNames) {
+			Entry entry = cache.acquire(itemName);
+			try {
+				// do not create databases for items which have never been stored
+				if(entry.getDb()==null && !new File(DB_FOLDER + File.separator + itemName + ".rrd").exists()) {
+					continue;
+				}
+				RrdDb db = getDB(entry, getConsolidationFunction(itemName));
+				if(db!=null) {
+					double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
+					if(!Double.isNaN(lastValue)) {
+						items.put(itemName, new RRD4jItem(itemName, mapToState(lastValue, itemName), new Date(db.getLastArchiveUpdateTime() * 1000)));
+					}
+				}
 			} catch (IOException e) {
 				logger.warn("Could not query rrd4j database for item '{}': {}", new String[] { itemName, e.getMessage() });
-			}	
+			} finally {
+				cache.release(entry);
+			}
+		}
+		return items;
+	}
+
+	/**
+	 * @{inheritDoc}
+	 */
+	public HistoricItem minimum(FilterCriteria filter) {
+		Aggregate aggregate = aggregate(filter);
+		if(aggregate.count==0) {
+			return null;
 		}
-		return Collections.emptyList();
+		String itemName = filter.getItemName();
+		return new RRD4jItem(itemName, mapToState(aggregate.minimum, itemName), new Date(aggregate.minimumTime * 1000));
+	}
+
+	/**
+	 * @{inheritDoc}
+	 */
+	public HistoricItem maximum(FilterCriteria filter) {
+		Aggregate aggregate = aggregate(filter);
+		if(aggregate.count==0) {
+			return null;
+		}
+		String itemName = filter.getItemName();
+		return new RRD4jItem(itemName, mapToState(aggregate.maximum, itemName), new Date(aggregate.maximumTime * 1000));
 	}
 
-	protected synchronized RrdDb getDB(String alias, ConsolFun function) {
-		RrdDb db = null;
-        File file = new File(DB_FOLDER + File.separator + alias + ".rrd");
+	/**
+	 * @{inheritDoc}
+	 */
+	public DecimalType average(FilterCriteria filter) {
+		Aggregate aggregate = aggregate(filter);
+		return aggregate.count==0 ? null : new DecimalType(aggregate.sum / aggregate.count);
+	}
+
+	/**
+	 * @{inheritDoc}
+	 */
+	public DecimalType sum(FilterCriteria filter) {
+		Aggregate aggregate = aggregate(filter);
+		return aggregate.count==0 ? null : new DecimalType(aggregate.sum);
+	}
+
+	/**
+	 * @{inheritDoc}
+	 */
+	public long count(FilterCriteria filter) {
+		return aggregate(filter).count;
+	}
+
+	/**
+	 * @{inheritDoc}
+	 */
+	public boolean changed(FilterCriteria filter) {
+		return aggregate(filter).changed;
+	}
+
+	private Aggregate aggregate(FilterCriteria filter) {
+		String itemName = filter.getItemName();
+		ConsolFun consolidationFunction = getConsolidationFunction(itemName);
+		Aggregate aggregate = new Aggregate();
+		Entry entry = cache.acquire(itemName);
+		try {
+			RrdDb db = getDB(entry, consolidationFunction);
+			if(db!=null) {
+				long end = filter.getEndDate()==null ? System.currentTimeMillis()/1000 - 1 : filter.getEndDate().getTime()/1000;
+				long start = filter.getBeginDate()==null ? end : filter.getBeginDate().getTime()/1000;
+
+				// rrd4j chooses the archive with the best resolution, which covers the whole range,
+				// so the longer the range, the less rows are aggregated
+				FetchRequest request = db.createFetchRequest(consolidationFunction, start, end, 1);
+				FetchData result = request.fetchData();
+				long ts = result.getFirstTimestamp();
+				long step = result.getRowCount() > 1 ? result.getStep() : 0;
+				for(double value : result.getValues(DATASOURCE_STATE)) {
+					if(!Double.isNaN(value)) {
+						aggregate.add(value, ts);
+					}
+					ts += step;
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Could not query rrd4j database for item '{}': {}", new String[] { itemName, e.getMessage() });
+		} finally {
+			cache.release(entry);
+		}
+		return aggregate;
+	}
+
+	/**
+	 * Returns the open database of a cache entry, opening or creating it if necessary.
+	 * The entry must be acquired by the caller.
+	 */
+	protected RrdDb getDB(Entry entry, ConsolFun function) {
+		RrdDb db = entry.getDb();
+		if (db != null && !db.isClosed()) {
+			return db;
+		}
+		db = null;
+        File file = new File(DB_FOLDER + File.separator + entry.getName() + ".rrd");
     	try {
+    		RrdBackendFactory factory = RrdBackendFactory.getFactory(BACKEND_FACTORY);
             if (file.exists()) {
             	// recreate the RrdDb instance from the file
-            	db = new RrdDb(file.getAbsolutePath());
+            	db = new RrdDb(file.getAbsolutePath(), factory);
             } else {
             	File folder = new File(DB_FOLDER);
             	if(!folder.exists()) {
             		folder.mkdir();
             	}
             	// create a new database file
-                db = new RrdDb(getRrdDef(function, file));
+                db = new RrdDb(getRrdDef(function, file), factory);
             }
 		} catch (IOException e) {
 			logger.error("Could not create rrd4j database file '{}': {}", new String[] { file.getAbsolutePath(), e.getMessage() });
@@ -234,9 +475,27 @@ public class RRD4jService implements QueryablePersistenceService {
 			// this happens if the system is shut down
 			logger.debug("Could not create rrd4j database file '{}': {}", new String[] { file.getAbsolutePath(), e.getMessage() });
 		}
+		entry.setDb(db);
 		return db;
 	}
 
+	/**
+	 * @{inheritDoc}
+	 */
+	@Override
+	public void updated(Dictionary<String, ?> config) throws ConfigurationException {
+		if (config != null) {
+			String cacheSizeString = (String) config.get("cacheSize");
+			if (StringUtils.isNotBlank(cacheSizeString)) {
+				try {
+					cache.setCapacity(Integer.parseInt(cacheSizeString.trim()));
+				} catch (NumberFormatException e) {
+					throw new ConfigurationException("rrd4j:cacheSize", "The cache size '" + cacheSizeString + "' is not a valid number");
+				}
+			}
+		}
+	}
+
 	private RrdDef getRrdDef(ConsolFun function, File file) {
     	RrdDef rrdDef = new RrdDef(file.getAbsolutePath());
     	if(function==ConsolFun.AVERAGE) {
@@ -287,6 +546,38 @@ public class RRD4jService implements QueryablePersistenceService {
 		return ConsolFun.MAX;
 	}
 
+	/**
+	 * The aggregation of the values of a fetch request. The first value is the one at the begin
+	 * of the time range, so it serves as the state before the range to detect changes.
+	 */
+	private static class Aggregate {
+		long count = 0;
+		double sum = 0;
+		double minimum;
+		long minimumTime;
+		double maximum;
+		long maximumTime;
+		double last;
+		boolean changed = false;
+
+		void add(double value, long time) {
+			if(count==0 || value < minimum) {
+				minimum = value;
+				minimumTime = time;
+			}
+			if(count==0 || value > maximum) {
+				maximum = value;
+				maximumTime = time;
+			}
+			if(count > 0 && value != last) {
+				changed = true;
+			}
+			last = value;
+			sum += value;
+			count++;
+		}
+	}
+
 	private State mapToState(double value, String itemName) {
 		if(itemRegistry!=null) {
 			try {